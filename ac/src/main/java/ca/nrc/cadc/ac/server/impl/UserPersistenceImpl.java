@@ -70,8 +70,10 @@
 package ca.nrc.cadc.ac.server.impl;
 
 import ca.nrc.cadc.ac.User;
+import ca.nrc.cadc.ac.server.AugmentedUserCache;
 import ca.nrc.cadc.ac.server.ldap.LdapUserPersistence;
 import ca.nrc.cadc.auth.AuthenticationUtil;
+import ca.nrc.cadc.io.ResourceIterator;
 import ca.nrc.cadc.net.TransientException;
 import java.security.AccessControlException;
 import java.util.Collection;
@@ -98,6 +100,14 @@ public class UserPersistenceImpl extends LdapUserPersistence
         return UserPersistenceImpl.super.getUsers();
     }
 
+    @Override
+    public ResourceIterator<User> iterateUsers(int offset, Integer limit)
+        throws AccessControlException, TransientException
+    {
+        getCurrentSubject();
+        return UserPersistenceImpl.super.iterateUsers(offset, limit);
+    }
+
     // package access for unit-tests
     Subject getCurrentSubject()
         throws AccessControlException
@@ -111,6 +121,7 @@ public class UserPersistenceImpl extends LdapUserPersistence
     }
 
     public String getPoolStatistics() throws TransientException {
-        return super.getPool(POOL_READONLY).getPoolStatistics();
+        return super.getPool(POOL_READONLY).getPoolStatistics() + "; " + getEntryCacheStatistics()
+                + "; " + AugmentedUserCache.getInstance();
     }
 }
@@ -104,11 +104,10 @@ public class CreateAction extends AbstractAction {
                 throw new IllegalArgumentException("Member name not specified in create request");
             }
 
-            Group targetGroup = groupPersistence.getGroup(requestInput.groupName);
             if (requestInput.userIDType == null) {
-                addGroupMember(targetGroup, requestInput.memberName);
+                addGroupMember(requestInput.groupName, requestInput.memberName);
             } else {
-                addUserMember(targetGroup, requestInput.memberName, requestInput.userIDType);
+                addUserMember(requestInput.groupName, requestInput.memberName, requestInput.userIDType);
             }
 
         }
@@ -167,40 +166,28 @@ public class CreateAction extends AbstractAction {
         return addedMembers;
     }
 
-    private void addGroupMember(Group group, String groupMemberName) throws
-            GroupNotFoundException, UserNotFoundException, GroupAlreadyExistsException {
-        GroupURI toAddID = new GroupURI(resourceID, groupMemberName);
-        Group toAdd = new Group(toAddID);
-
-        if (!group.getGroupMembers().add(toAdd)) {
-            throw new GroupAlreadyExistsException(groupMemberName);
-        }
+    private void addGroupMember(String groupName, String groupMemberName) throws
+            GroupNotFoundException, GroupAlreadyExistsException {
         log.debug("Adding group member: " + groupMemberName);
-        groupPersistence.modifyGroup(group);
+        groupPersistence.addGroupMember(groupName, groupMemberName);
 
         List<String> addedMembers = new ArrayList<>();
-        addedMembers.add(toAdd.getID().getName());
-        log.debug("Modified group " + getLogGroupInfo(group.getID().getName(), null, addedMembers));
+        addedMembers.add(groupMemberName);
+        log.debug("Modified group " + getLogGroupInfo(groupName, null, addedMembers));
     }
 
-    private void addUserMember(Group group, String userID, String userIDType) throws
+    private void addUserMember(String groupName, String userID, String userIDType) throws
             UserNotFoundException, MemberAlreadyExistsException, GroupNotFoundException {
         Principal userPrincipal = AuthenticationUtil.createPrincipal(userID, userIDType);
         final IdentityManager im = AuthenticationUtil.getIdentityManager();
 
-        User toAdd = new User();
-
-        toAdd.getIdentities().add(userPrincipal);
-        if (!group.getUserMembers().add(toAdd)) {
-            throw new MemberAlreadyExistsException();
-        }
         log.debug("Adding user member: " + userID + " of type: " + userIDType);
-        groupPersistence.modifyGroup(group);
+        groupPersistence.addUserMember(groupName, userPrincipal);
 
         List<String> addedMembers = new ArrayList<>();
         Subject toAddSubject = new Subject();
         toAddSubject.getPrincipals().add(userPrincipal);
         addedMembers.add(im.toDisplayString(toAddSubject));
-        log.debug("Modified " + getLogGroupInfo(group.getID().getName(), null, addedMembers));
+        log.debug("Modified " + getLogGroupInfo(groupName, null, addedMembers));
     }
 }
@@ -73,8 +73,6 @@ import ca.nrc.cadc.ac.Group;
 import ca.nrc.cadc.ac.GroupNotFoundException;
 import ca.nrc.cadc.ac.User;
 import ca.nrc.cadc.ac.UserNotFoundException;
-import ca.nrc.cadc.ac.server.PluginFactory;
-import ca.nrc.cadc.ac.server.UserPersistence;
 import ca.nrc.cadc.auth.AuthenticationUtil;
 import java.security.Principal;
 import java.util.ArrayList;
@@ -89,8 +87,8 @@ public class DeleteAction extends AbstractAction {
             throw new IllegalArgumentException("Group name is required");
         }
 
-        Group targetGroup = groupPersistence.getGroup(requestInput.groupName);
         if (requestInput.memberName == null) {
+            Group targetGroup = groupPersistence.getGroup(requestInput.groupName);
             groupPersistence.deleteGroup(requestInput.groupName);
             if ((!targetGroup.getUserMembers().isEmpty()) || (!targetGroup.getGroupMembers().isEmpty())) {
                 List<String> deletedMembers = new ArrayList<>();
@@ -104,43 +102,29 @@ public class DeleteAction extends AbstractAction {
             }
         } else {
             if (requestInput.userIDType == null) {
-                removeGroupMember(targetGroup, requestInput.memberName);
+                removeGroupMember(requestInput.groupName, requestInput.memberName);
             } else {
-                removeUserMember(targetGroup, requestInput.memberName, requestInput.userIDType);
+                removeUserMember(requestInput.groupName, requestInput.memberName, requestInput.userIDType);
             }
         }
     }
 
-    private void removeGroupMember(Group group, String memberName) throws UserNotFoundException, GroupNotFoundException {
-        log.debug("group member count: " + group.getGroupMembers().size());
-        if (!group.getGroupMembers().removeIf(g -> g.getID().getName().equals(memberName))) {
-            throw new GroupNotFoundException("Group member not found: " + memberName);
-        }
+    private void removeGroupMember(String groupName, String memberName) throws GroupNotFoundException {
+        groupPersistence.removeGroupMember(groupName, memberName);
         log.debug("removed group member: " + memberName);
-        groupPersistence.modifyGroup(group);
         List<String> deletedMembers = new ArrayList<>();
         deletedMembers.add(memberName);
-        log.debug("Modified " + getLogGroupInfo(group.getID().getName(), deletedMembers, null));
+        log.debug("Modified " + getLogGroupInfo(groupName, deletedMembers, null));
     }
 
-    private void removeUserMember(Group group, String memberName, String userIDType) throws UserNotFoundException, GroupNotFoundException {
-        log.debug("user member count: " + group.getUserMembers().size());
+    private void removeUserMember(String groupName, String memberName, String userIDType)
+        throws UserNotFoundException, GroupNotFoundException {
         Principal userPrincipal = AuthenticationUtil.createPrincipal(memberName, userIDType);
-
-        User user = getUserPersistence().getAugmentedUser(userPrincipal, false);
-        if (!group.getUserMembers().removeIf(u -> u.equals(user))) {
-            throw new UserNotFoundException("User member not found: " + memberName);
-        }
+        groupPersistence.removeUserMember(groupName, userPrincipal);
         log.debug("removed user member: " + memberName);
-        groupPersistence.modifyGroup(group);
         List<String> deletedMembers = new ArrayList<>();
         deletedMembers.add(memberName);
-        log.debug("Modified " + getLogGroupInfo(group.getID().getName(), deletedMembers, null));
-    }
-
-    protected UserPersistence getUserPersistence() {
-        PluginFactory pluginFactory = new PluginFactory();
-        return pluginFactory.createUserPersistence();
+        log.debug("Modified " + getLogGroupInfo(groupName, deletedMembers, null));
     }
 
 }
@@ -74,9 +74,9 @@ import ca.nrc.cadc.ac.GroupNotFoundException;
 import ca.nrc.cadc.ac.WriterException;
 import ca.nrc.cadc.ac.xml.GroupWriter;
 import ca.nrc.cadc.auth.AuthenticationUtil;
+import ca.nrc.cadc.io.ResourceIterator;
 import java.io.IOException;
 import java.io.PrintWriter;
-import java.util.Collection;
 import javax.security.auth.Subject;
 import org.apache.log4j.Logger;
 import org.opencadc.auth.PosixGroup;
@@ -84,6 +84,9 @@ import org.opencadc.auth.PosixGroup;
 public class GetAction extends AbstractAction {
     private static final Logger log = Logger.getLogger(GetAction.class);
 
+    // number of group names written between flushes of the output
+    private static final int FLUSH_ROWS = 1000;
+
     public void doAction() throws GroupNotFoundException, IOException, WriterException {
         if (requestInput.groupName != null) {
             log.debug("Get group: " + requestInput.groupName);
@@ -101,20 +104,28 @@ public class GetAction extends AbstractAction {
     }
 
     private void listGroups() throws IOException {
-        Collection<PosixGroup> groups = groupPersistence.getGroupNames();
-        log.debug("Found " + groups.size() + " group names");
-        syncOutput.setHeader("Content-Type", "text/plain");
-        syncOutput.setCode(200);
-        log.debug("Set content-type to text/plain");
-        PrintWriter writer = new PrintWriter(syncOutput.getOutputStream());
-        boolean start = true;
-        for (final PosixGroup group : groups) {
-            if (!start) {
-                writer.write("\r\n");
+        // names are written as they are read from the directory rather than collected first
+        ResourceIterator<PosixGroup> groups = groupPersistence.iterateGroupNames();
+        try {
+            syncOutput.setHeader("Content-Type", "text/plain");
+            syncOutput.setCode(200);
+            log.debug("Set content-type to text/plain");
+            PrintWriter writer = new PrintWriter(syncOutput.getOutputStream());
+            int count = 0;
+            while (groups.hasNext()) {
+                if (count > 0) {
+                    writer.write("\r\n");
+                    if (count % FLUSH_ROWS == 0) {
+                        writer.flush();
+                    }
+                }
+                writer.write(groups.next().getGroupURI().getName());
+                count++;
             }
-            writer.write(group.getGroupURI().getName());
-            start = false;
+            log.debug("Found " + count + " group names");
+            writer.close();
+        } finally {
+            groups.close();
         }
-        writer.close();
     }
 }
@@ -68,6 +68,7 @@
 package org.opencadc.ac;
 
 import ca.nrc.cadc.ac.server.impl.GroupPersistenceImpl;
+import ca.nrc.cadc.io.ResourceIterator;
 import ca.nrc.cadc.net.HttpTransfer;
 import ca.nrc.cadc.reg.Standards;
 import ca.nrc.cadc.reg.client.LocalAuthority;
@@ -77,6 +78,7 @@ import java.io.PrintWriter;
 import java.net.URI;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Iterator;
 import java.util.List;
 import org.apache.log4j.Logger;
 import org.opencadc.auth.PosixGroup;
@@ -91,6 +93,9 @@ public class GetGroupMapAction extends RestAction {
     private static final Logger log = Logger.getLogger(GetGroupMapAction.class);
 
     public static final String CONTENT_TYPE_TSV = "text/tab-separated-values";
+
+    // number of groups written between flushes of the output
+    private static final int FLUSH_ROWS = 1000;
     
     @Override
     protected InlineContentHandler getInlineContentHandler() {
@@ -126,25 +131,48 @@ public class GetGroupMapAction extends RestAction {
             }
         }
 
-        Collection<PosixGroup> groups = groupPersistence.getGroupNames(groupNameSubset, gidNameSubset);
-
-        log.debug("found: "  + groups.size() + " matching groups");
-        String accept = syncInput.getHeader("accept");
-        boolean tsv = CONTENT_TYPE_TSV.equals(accept);
-        if (tsv) {
-            syncOutput.setHeader(HttpTransfer.CONTENT_TYPE, CONTENT_TYPE_TSV);
+        // all groups are written as they are read from the directory rather than
+        // collected first
+        Iterator<PosixGroup> groups;
+        ResourceIterator<PosixGroup> iter = null;
+        if (groupNameSubset == null && gidNameSubset == null) {
+            iter = groupPersistence.iterateGroupNames();
+            groups = iter;
         } else {
-            syncOutput.setHeader(HttpTransfer.CONTENT_TYPE, "text/plain");
+            Collection<PosixGroup> found = groupPersistence.getGroupNames(groupNameSubset, gidNameSubset);
+            log.debug("found: "  + found.size() + " matching groups");
+            groups = found.iterator();
         }
-        syncOutput.setCode(200);
-        PrintWriter w = new PrintWriter(syncOutput.getOutputStream());
-        for (PosixGroup pg : groups) {
+
+        try {
+            String accept = syncInput.getHeader("accept");
+            boolean tsv = CONTENT_TYPE_TSV.equals(accept);
             if (tsv) {
-                w.println(pg.getGroupURI().getURI().toASCIIString() + "\t" + pg.getGID());
+                syncOutput.setHeader(HttpTransfer.CONTENT_TYPE, CONTENT_TYPE_TSV);
             } else {
-                w.println(pg.getGroupURI().getName() + ":x:" + pg.getGID() + ":");
+                syncOutput.setHeader(HttpTransfer.CONTENT_TYPE, "text/plain");
+            }
+            syncOutput.setCode(200);
+            PrintWriter w = new PrintWriter(syncOutput.getOutputStream());
+            int rows = 0;
+            while (groups.hasNext()) {
+                PosixGroup pg = groups.next();
+                if (tsv) {
+                    w.println(pg.getGroupURI().getURI().toASCIIString() + "\t" + pg.getGID());
+                } else {
+                    w.println(pg.getGroupURI().getName() + ":x:" + pg.getGID() + ":");
+                }
+                rows++;
+                if (rows % FLUSH_ROWS == 0) {
+                    w.flush();
+                }
+            }
+            log.debug("wrote: " + rows + " groups");
+            w.close();
+        } finally {
+            if (iter != null) {
+                iter.close();
             }
         }
-        w.close();
     }
 }
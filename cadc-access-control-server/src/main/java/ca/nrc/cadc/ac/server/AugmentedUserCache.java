@@ -0,0 +1,327 @@
+/*
+ ************************************************************************
+ *******************  CANADIAN ASTRONOMY DATA CENTRE  *******************
+ **************  CENTRE CANADIEN DE DONNÉES ASTRONOMIQUES  **************
+ *
+ *  (c) 2026.                            (c) 2026.
+ *  Government of Canada                 Gouvernement du Canada
+ *  National Research Council            Conseil national de recherches
+ *  Ottawa, Canada, K1A 0R6              Ottawa, Canada, K1A 0R6
+ *  All rights reserved                  Tous droits réservés
+ *
+ *  NRC disclaims any warranties,        Le CNRC dénie toute garantie
+ *  expressed, implied, or               énoncée, implicite ou légale,
+ *  statutory, of any kind with          de quelque nature que ce
+ *  respect to the software,             soit, concernant le logiciel,
+ *  including without limitation         y compris sans restriction
+ *  any warranty of merchantability      toute garantie de valeur
+ *  or fitness for a particular          marchande ou de pertinence
+ *  purpose. NRC shall not be            pour un usage particulier.
+ *  liable in any event for any          Le CNRC ne pourra en aucun cas
+ *  damages, whether direct or           être tenu responsable de tout
+ *  indirect, special or general,        dommage, direct ou indirect,
+ *  consequential or incidental,         particulier ou général,
+ *  arising from the use of the          accessoire ou fortuit, résultant
+ *  software.  Neither the name          de l'utilisation du logiciel. Ni
+ *  of the National Research             le nom du Conseil National de
+ *  Council of Canada nor the            Recherches du Canada ni les noms
+ *  names of its contributors may        de ses  participants ne peuvent
+ *  be used to endorse or promote        être utilisés pour approuver ou
+ *  products derived from this           promouvoir les produits dérivés
+ *  software without specific prior      de ce logiciel sans autorisation
+ *  written permission.                  préalable et particulière
+ *                                       par écrit.
+ *
+ *  This file is part of the             Ce fichier fait partie du projet
+ *  OpenCADC project.                    OpenCADC.
+ *
+ *  OpenCADC is free software:           OpenCADC est un logiciel libre ;
+ *  you can redistribute it and/or       vous pouvez le redistribuer ou le
+ *  modify it under the terms of         modifier suivant les termes de
+ *  the GNU Affero General Public        la “GNU Affero General Public
+ *  License as published by the          License” telle que publiée
+ *  Free Software Foundation,            par la Free Software Foundation
+ *  either version 3 of the              : soit la version 3 de cette
+ *  License, or (at your option)         licence, soit (à votre gré)
+ *  any later version.                   toute version ultérieure.
+ *
+ *  OpenCADC is distributed in the       OpenCADC est distribué
+ *  hope that it will be useful,         dans l’espoir qu’il vous
+ *  but WITHOUT ANY WARRANTY;            sera utile, mais SANS AUCUNE
+ *  without even the implied             GARANTIE : sans même la garantie
+ *  warranty of MERCHANTABILITY          implicite de COMMERCIALISABILITÉ
+ *  or FITNESS FOR A PARTICULAR          ni d’ADÉQUATION À UN OBJECTIF
+ *  PURPOSE.  See the GNU Affero         PARTICULIER. Consultez la Licence
+ *  General Public License for           Générale Publique GNU Affero
+ *  more details.                        pour plus de détails.
+ *
+ *  You should have received             Vous devriez avoir reçu une
+ *  a copy of the GNU Affero             copie de la Licence Générale
+ *  General Public License along         Publique GNU Affero avec
+ *  with OpenCADC.  If not, see          OpenCADC ; si ce n’est
+ *  <http://www.gnu.org/licenses/>.      pas le cas, consultez :
+ *                                       <http://www.gnu.org/licenses/>.
+ *
+ *
+ ************************************************************************
+ */
+
+package ca.nrc.cadc.ac.server;
+
+import ca.nrc.cadc.ac.Group;
+import ca.nrc.cadc.ac.Role;
+import ca.nrc.cadc.ac.client.GroupMemberships;
+import ca.nrc.cadc.auth.AuthenticationUtil;
+import java.security.Principal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+import javax.security.auth.Subject;
+import javax.security.auth.x500.X500Principal;
+import org.apache.log4j.Logger;
+import org.opencadc.gms.ExpiringCache;
+
+/**
+ * Process-wide cache of augmented identities and group memberships, keyed by the
+ * principal used to find the user. IdentityManagerImpl uses it to skip the user search
+ * when the same caller is augmented again within the ttl.
+ * <p>
+ * The cache is bounded in size, evicting the least recently used entry first, and in
+ * age. The persistence write paths on this node invalidate the users whose identities
+ * or memberships they change; changes made through another node are seen once the
+ * cached entry expires.
+ * <p>
+ * A user can be cached under each of its identities, so an invalidation is recorded
+ * by identity for the ttl and a cached user with any identity invalidated after it was
+ * added is dropped when it is looked up.
+ * <p>
+ * The cache is configured with system properties:
+ * <pre>
+ * ca.nrc.cadc.ac.server.AugmentedUserCache.maxSize = maximum number of cached users, 0 to disable (default 10000)
+ * ca.nrc.cadc.ac.server.AugmentedUserCache.ttl = maximum age of a cached user in seconds (default 30)
+ * </pre>
+ */
+public class AugmentedUserCache {
+    private static final Logger log = Logger.getLogger(AugmentedUserCache.class);
+
+    public static final String MAX_SIZE = AugmentedUserCache.class.getName() + ".maxSize";
+    public static final String TTL = AugmentedUserCache.class.getName() + ".ttl";
+
+    private static final int DEFAULT_MAX_SIZE = 10000;
+    private static final long DEFAULT_TTL = 30L;
+
+    private static final AugmentedUserCache INSTANCE = new AugmentedUserCache(
+            Integer.getInteger(MAX_SIZE, DEFAULT_MAX_SIZE), 1000L * Long.getLong(TTL, DEFAULT_TTL));
+
+    private final int maxSize;
+    private final long ttlMillis;
+    private final ExpiringCache<String, CachedUser> users;
+    // identity key to the sequence number of its last invalidation
+    private final ExpiringCache<String, Long> invalidated;
+    private final AtomicLong sequence = new AtomicLong();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong invalidations = new AtomicLong();
+
+    /**
+     * Constructor.
+     *
+     * @param maxSize   maximum number of cached users, 0 to disable
+     * @param ttlMillis maximum age of a cached user
+     */
+    public AugmentedUserCache(int maxSize, long ttlMillis) {
+        this(maxSize, ttlMillis, System::currentTimeMillis);
+    }
+
+    AugmentedUserCache(int maxSize, long ttlMillis, LongSupplier clock) {
+        this.maxSize = maxSize;
+        this.ttlMillis = ttlMillis;
+        this.users = new ExpiringCache<>(Math.max(maxSize, 1), ttlMillis, clock);
+        this.invalidated = new ExpiringCache<>(Math.max(maxSize, 1), ttlMillis, clock);
+    }
+
+    /**
+     * @return the cache shared by this process
+     */
+    public static AugmentedUserCache getInstance() {
+        return INSTANCE;
+    }
+
+    public boolean isEnabled() {
+        return maxSize > 0 && ttlMillis > 0;
+    }
+
+    /**
+     * Add the identities and group memberships of a cached user to a subject. The
+     * subject gets its own copy of the group memberships.
+     *
+     * @param userID  The principal used to find the user.
+     * @param subject The subject to augment.
+     * @return true if the user was cached, false if not cached or expired
+     */
+    public boolean augment(Principal userID, Subject subject) {
+        CachedUser cached = get(userID);
+        if (cached == null) {
+            return false;
+        }
+        subject.getPrincipals().addAll(cached.identities);
+        subject.getPrivateCredentials().add(copy(cached.memberships));
+        return true;
+    }
+
+    /**
+     * Add or replace a user.
+     *
+     * @param userID      The principal used to find the user.
+     * @param identities  The identities of the user.
+     * @param memberships The group memberships of the user.
+     */
+    public void put(Principal userID, Set<Principal> identities, GroupMemberships memberships) {
+        if (!isEnabled() || userID == null) {
+            return;
+        }
+        users.put(getKey(userID),
+                new CachedUser(new HashSet<Principal>(identities), copy(memberships), sequence.get()));
+    }
+
+    /**
+     * Remove the cached user with the specified identity, however it was found. Called
+     * by the write paths after the identities or memberships of a user change.
+     *
+     * @param userID An identity of the user.
+     */
+    public void invalidate(Principal userID) {
+        if (!isEnabled() || userID == null) {
+            return;
+        }
+        String key = getKey(userID);
+        synchronized (invalidated) {
+            long seq = sequence.incrementAndGet();
+            users.remove(key);
+            if (invalidated.size() >= maxSize) {
+                // an older invalidation would be evicted
+                users.clear();
+                invalidated.clear();
+            } else {
+                invalidated.put(key, seq);
+            }
+        }
+        invalidations.incrementAndGet();
+        log.debug("invalidated " + userID);
+    }
+
+    /**
+     * Remove all cached users. Called by the write paths after a change that can
+     * affect the memberships of many users, e.g. a group member change.
+     */
+    public void clear() {
+        synchronized (invalidated) {
+            sequence.incrementAndGet();
+            users.clear();
+            invalidated.clear();
+        }
+        invalidations.incrementAndGet();
+    }
+
+    public int size() {
+        return users.size();
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getEvictions() {
+        return users.getEvictions();
+    }
+
+    public long getInvalidations() {
+        return invalidations.get();
+    }
+
+    @Override
+    public String toString() {
+        return "augmented user cache: size=" + size() + "/" + maxSize + " hits=" + hits.get()
+                + " misses=" + misses.get() + " evictions=" + getEvictions()
+                + " invalidations=" + invalidations.get();
+    }
+
+    private CachedUser get(Principal userID) {
+        if (!isEnabled() || userID == null) {
+            return null;
+        }
+        String key = getKey(userID);
+        CachedUser cached = users.get(key);
+        if (cached != null && isInvalidated(cached)) {
+            users.remove(key);
+            cached = null;
+        }
+        if (cached == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+        return cached;
+    }
+
+    private boolean isInvalidated(CachedUser cached) {
+        for (String key : cached.keys) {
+            Long seq = invalidated.get(key);
+            if (seq != null && seq > cached.sequence) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // the same principal always maps to the same key
+    private static String getKey(Principal p) {
+        String name = p.getName();
+        if (p instanceof X500Principal) {
+            name = AuthenticationUtil.canonizeDistinguishedName(name);
+        }
+        return p.getClass().getName() + ":" + name;
+    }
+
+    private static GroupMemberships copy(GroupMemberships gms) {
+        GroupMemberships ret = new GroupMemberships(gms.getServiceURI(), gms.getUserID());
+        for (Role role : Role.values()) {
+            if (gms.getServiceURI() != null) {
+                // copy the names only: the groups are created if the copy needs them
+                ret.addGroupNames(gms.getGroupNames(role), role);
+            } else {
+                List<Group> groups = new ArrayList<Group>();
+                for (Group g : gms.getMemberships(role)) {
+                    groups.add(new Group(g.getID()));
+                }
+                ret.add(groups, role);
+            }
+        }
+        return ret;
+    }
+
+    private static class CachedUser {
+        final Set<Principal> identities;
+        final GroupMemberships memberships;
+        final Set<String> keys = new HashSet<String>();
+        final long sequence;
+
+        CachedUser(Set<Principal> identities, GroupMemberships memberships, long sequence) {
+            this.sequence = sequence;
+            this.identities = Collections.unmodifiableSet(identities);
+            this.memberships = memberships;
+            for (Principal p : identities) {
+                keys.add(getKey(p));
+            }
+        }
+    }
+}
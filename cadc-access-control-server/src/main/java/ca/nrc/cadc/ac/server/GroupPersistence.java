@@ -72,10 +72,13 @@ package ca.nrc.cadc.ac.server;
 import ca.nrc.cadc.ac.Group;
 import ca.nrc.cadc.ac.GroupAlreadyExistsException;
 import ca.nrc.cadc.ac.GroupNotFoundException;
+import ca.nrc.cadc.ac.MemberAlreadyExistsException;
 import ca.nrc.cadc.ac.Role;
 import ca.nrc.cadc.ac.UserNotFoundException;
+import ca.nrc.cadc.io.ResourceIterator;
 import ca.nrc.cadc.net.TransientException;
 import java.security.AccessControlException;
+import java.security.Principal;
 import java.util.Collection;
 import java.util.SortedSet;
 import org.opencadc.auth.PosixGroup;
@@ -96,6 +99,17 @@ public interface GroupPersistence {
     Collection<PosixGroup> getGroupNames()
             throws TransientException, AccessControlException;
 
+    /**
+     * Iterate over the names and gids of all groups without holding all of them
+     * in memory. The iterator must be closed.
+     *
+     * @return An iterator over the groups.
+     * @throws TransientException     If an temporary, unexpected problem occurred.
+     * @throws AccessControlException If the operation is not permitted.
+     */
+    ResourceIterator<PosixGroup> iterateGroupNames()
+            throws TransientException, AccessControlException;
+
     /**
      * Get the group with the given Group ID.
      *
@@ -168,6 +182,64 @@ public interface GroupPersistence {
             throws GroupNotFoundException, TransientException,
             AccessControlException, UserNotFoundException;
 
+    /**
+     * Add a user to the members of the group. Only the one member is written, the
+     * existing members are not read.
+     *
+     * @param groupName The group name.
+     * @param userID    An identity of the user to add.
+     * @throws GroupNotFoundException       If the group was not found.
+     * @throws UserNotFoundException        If the user was not found.
+     * @throws MemberAlreadyExistsException If the user is already a member.
+     * @throws TransientException           If an temporary, unexpected problem occurred.
+     * @throws AccessControlException       If the operation is not permitted.
+     */
+    void addUserMember(String groupName, Principal userID)
+            throws GroupNotFoundException, UserNotFoundException, MemberAlreadyExistsException,
+            TransientException, AccessControlException;
+
+    /**
+     * Add a group to the members of the group. Only the one member is written, the
+     * existing members are not read.
+     *
+     * @param groupName       The group name.
+     * @param groupMemberName The name of the group to add.
+     * @throws GroupNotFoundException      If either group was not found.
+     * @throws GroupAlreadyExistsException If the group is already a member.
+     * @throws TransientException          If an temporary, unexpected problem occurred.
+     * @throws AccessControlException      If the operation is not permitted.
+     */
+    void addGroupMember(String groupName, String groupMemberName)
+            throws GroupNotFoundException, GroupAlreadyExistsException,
+            TransientException, AccessControlException;
+
+    /**
+     * Remove a user from the members of the group.
+     *
+     * @param groupName The group name.
+     * @param userID    An identity of the user to remove.
+     * @throws GroupNotFoundException If the group was not found.
+     * @throws UserNotFoundException  If the user was not found or is not a member.
+     * @throws TransientException     If an temporary, unexpected problem occurred.
+     * @throws AccessControlException If the operation is not permitted.
+     */
+    void removeUserMember(String groupName, Principal userID)
+            throws GroupNotFoundException, UserNotFoundException,
+            TransientException, AccessControlException;
+
+    /**
+     * Remove a group from the members of the group.
+     *
+     * @param groupName       The group name.
+     * @param groupMemberName The name of the group to remove.
+     * @throws GroupNotFoundException If the group was not found or the group to
+     *                                remove is not a member.
+     * @throws TransientException     If an temporary, unexpected problem occurred.
+     * @throws AccessControlException If the operation is not permitted.
+     */
+    void removeGroupMember(String groupName, String groupMemberName)
+            throws GroupNotFoundException, TransientException, AccessControlException;
+
     /**
      * Obtain a Collection of Groups that fit the given query.
      *
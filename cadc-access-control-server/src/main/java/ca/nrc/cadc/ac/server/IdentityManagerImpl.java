@@ -159,17 +159,30 @@ public class IdentityManagerImpl implements IdentityManager {
         return subject;
     }
 
+    /**
+     * Add the identities and group memberships of the user to the subject. Users found
+     * recently are taken from the AugmentedUserCache.
+     *
+     * @param subject the subject to augment
+     */
     public void augmentSubject(final Subject subject) {
         try {
             final Profiler profiler = new Profiler(IdentityManagerImpl.class);
-            PluginFactory pluginFactory = new PluginFactory();
-            UserPersistence userPersistence = pluginFactory.createUserPersistence();
             Principal ldapPrincipal = getLdapPrincipal(subject);
 
             // CADC-10630 Remove potentially incorrect userID
             // in HttpPrincipal in subject.
             subject.getPrincipals().removeAll(subject.getPrincipals(HttpPrincipal.class));
 
+            AugmentedUserCache cache = AugmentedUserCache.getInstance();
+            if (cache.augment(ldapPrincipal, subject)) {
+                log.debug("augmented " + ldapPrincipal + " from cache");
+                profiler.checkpoint("augmentSubject.cache");
+                return;
+            }
+
+            PluginFactory pluginFactory = new PluginFactory();
+            UserPersistence userPersistence = pluginFactory.createUserPersistence();
             User user = userPersistence.getAugmentedUser(ldapPrincipal, true);
             if (user.getIdentities() != null) {
                 log.debug("Found " + user.getIdentities().size() + " principals after argument");
@@ -182,13 +195,17 @@ public class IdentityManagerImpl implements IdentityManager {
                 log.debug("found: " + user.appData.getClass().getName());
                 try {
                     GroupMemberships gms = (GroupMemberships) user.appData;
-                    for (Group g : gms.getMemberships(Role.ADMIN)) {
-                        log.debug("GroupMemberships admin: " + g.getID());
-                    }
-                    for (Group g : gms.getMemberships(Role.MEMBER)) {
-                        log.debug("GroupMemberships member: " + g.getID());
+                    if (log.isDebugEnabled()) {
+                        // builds the lazy Group list of each role, so only when it is logged
+                        for (Group g : gms.getMemberships(Role.ADMIN)) {
+                            log.debug("GroupMemberships admin: " + g.getID());
+                        }
+                        for (Group g : gms.getMemberships(Role.MEMBER)) {
+                            log.debug("GroupMemberships member: " + g.getID());
+                        }
                     }
                     subject.getPrivateCredentials().add(gms);
+                    cache.put(ldapPrincipal, user.getIdentities(), gms);
                 } catch (Exception bug) {
                     throw new RuntimeException("BUG: found User.appData but could not store in Subject as GroupMemberships cache", bug);
 
@@ -73,6 +73,7 @@ import ca.nrc.cadc.ac.UserAlreadyExistsException;
 import ca.nrc.cadc.ac.UserNotFoundException;
 import ca.nrc.cadc.ac.UserRequest;
 import ca.nrc.cadc.auth.HttpPrincipal;
+import ca.nrc.cadc.io.ResourceIterator;
 import ca.nrc.cadc.net.TransientException;
 import java.security.AccessControlException;
 import java.security.Principal;
@@ -204,6 +205,20 @@ public interface UserPersistence {
     Collection<User> getUsers()
             throws TransientException, AccessControlException;
 
+    /**
+     * Iterate over the users of the active users tree, in directory order, without
+     * holding all of them in memory. The order is not guaranteed to be the same from
+     * one call to the next. The iterator must be closed.
+     *
+     * @param offset Number of users to skip.
+     * @param limit  Maximum number of users, or null for all.
+     * @return An iterator over the users.
+     * @throws TransientException     If an temporary, unexpected problem occurred.
+     * @throws AccessControlException If the operation is not permitted.
+     */
+    ResourceIterator<User> iterateUsers(int offset, Integer limit)
+            throws TransientException, AccessControlException;
+
     /**
      * Get all user names from the pending users tree.
      *
@@ -84,12 +84,21 @@ public class ConnectionPools {
     private Map<String, LdapConnectionPool> pools;
     private static final Logger logger = Logger.getLogger(ConnectionPools.class);
 
+    // entry caches are tied to the config so that a config change starts with empty caches
+    private LdapEntryCache userCache;
+    private LdapEntryCache groupCache;
+
     private long lastPoolCheck = System.currentTimeMillis();
     private boolean isClosed;
 
     public ConnectionPools(Map<String, LdapConnectionPool> pools, LdapConfig config) {
         this.pools = pools;
         this.config = config;
+        if (config.getEntryCacheMaxSize() > 0) {
+            long ttl = config.getEntryCacheTTL() * 1000L;
+            this.userCache = new LdapEntryCache("user", config.getEntryCacheMaxSize(), ttl);
+            this.groupCache = new LdapEntryCache("group", config.getEntryCacheMaxSize(), ttl);
+        }
         isClosed = false;
     }
 
@@ -101,6 +110,20 @@ public class ConnectionPools {
         return config;
     }
 
+    /**
+     * @return the user entry cache, or null if disabled
+     */
+    public LdapEntryCache getUserCache() {
+        return userCache;
+    }
+
+    /**
+     * @return the group entry cache, or null if disabled
+     */
+    public LdapEntryCache getGroupCache() {
+        return groupCache;
+    }
+
     public long getLastPoolCheck() {
         return lastPoolCheck;
     }
@@ -120,6 +143,12 @@ public class ConnectionPools {
                 logger.warn("Could not shutdown pool " + next.getName(), t);
             }
         }
+        if (userCache != null) {
+            userCache.clear();
+        }
+        if (groupCache != null) {
+            groupCache.clear();
+        }
         isClosed = true;
     }
 
@@ -106,6 +106,16 @@ public class LdapConfig {
     public static final String LDAP_USER_REQUESTS_DN = "userRequestsDN";
     public static final String LDAP_GROUPS_DN = "groupsDN";
     public static final String LDAP_ADMIN_GROUPS_DN = "adminGroupsDN";
+    public static final String ENTRY_CACHE_MAX_SIZE = "entryCache.maxSize";
+    public static final String ENTRY_CACHE_TTL = "entryCache.ttl";
+    public static final String ASYNC_SEARCH_MAX_OUTSTANDING = "asyncSearch.maxOutstanding";
+
+    // optional entry cache config: number of entries and seconds
+    private static final int DEFAULT_ENTRY_CACHE_MAX_SIZE = 10000;
+    private static final long DEFAULT_ENTRY_CACHE_TTL = 60L;
+
+    // optional async search config: 0 or 1 keeps the connections in synchronous mode
+    private static final int DEFAULT_ASYNC_SEARCH_MAX_OUTSTANDING = 0;
 
     private final static int SECURE_PORT = 636;
 
@@ -223,6 +233,9 @@ public class LdapConfig {
     private String proxyUserDN;
     private String proxyPasswd;
     private SystemState systemState;
+    private int entryCacheMaxSize = DEFAULT_ENTRY_CACHE_MAX_SIZE;
+    private long entryCacheTTL = DEFAULT_ENTRY_CACHE_TTL;
+    private int asyncSearchMaxOutstanding = DEFAULT_ASYNC_SEARCH_MAX_OUTSTANDING;
 
     public String getProxyUserDN() {
         return proxyUserDN;
@@ -262,6 +275,19 @@ public class LdapConfig {
         ldapConfig.groupsDN = getProperty(config, LDAP_GROUPS_DN);
         ldapConfig.adminGroupsDN = getProperty(config, LDAP_ADMIN_GROUPS_DN);
 
+        String entryCacheMaxSize = config.getFirstPropertyValue(ENTRY_CACHE_MAX_SIZE);
+        if (entryCacheMaxSize != null) {
+            ldapConfig.entryCacheMaxSize = Integer.parseInt(entryCacheMaxSize);
+        }
+        String entryCacheTTL = config.getFirstPropertyValue(ENTRY_CACHE_TTL);
+        if (entryCacheTTL != null) {
+            ldapConfig.entryCacheTTL = Long.parseLong(entryCacheTTL);
+        }
+        String asyncSearchMaxOutstanding = config.getFirstPropertyValue(ASYNC_SEARCH_MAX_OUTSTANDING);
+        if (asyncSearchMaxOutstanding != null) {
+            ldapConfig.asyncSearchMaxOutstanding = Integer.parseInt(asyncSearchMaxOutstanding);
+        }
+
         ldapConfig.systemState = getSystemState(ldapConfig);
 
         return ldapConfig;
@@ -366,6 +392,15 @@ public class LdapConfig {
         if (!(l.unboundReadOnlyPool.equals(unboundReadOnlyPool)))
             return false;
 
+        if (!(l.entryCacheMaxSize == entryCacheMaxSize))
+            return false;
+
+        if (!(l.entryCacheTTL == entryCacheTTL))
+            return false;
+
+        if (!(l.asyncSearchMaxOutstanding == asyncSearchMaxOutstanding))
+            return false;
+
         return true;
     }
 
@@ -412,6 +447,34 @@ public class LdapConfig {
         return this.proxyPasswd;
     }
 
+    /**
+     * Maximum number of entries in each of the user and group entry caches.
+     * Zero disables the caches.
+     */
+    public int getEntryCacheMaxSize() {
+        return this.entryCacheMaxSize;
+    }
+
+    /**
+     * Maximum age of a cached entry in seconds.
+     */
+    public long getEntryCacheTTL() {
+        return this.entryCacheTTL;
+    }
+
+    /**
+     * Maximum number of searches of a multi-entry lookup that are outstanding at
+     * the same time on one read-only connection. Values greater than one put the
+     * read-only pools in asynchronous mode so those searches are pipelined.
+     */
+    public int getAsyncSearchMaxOutstanding() {
+        return this.asyncSearchMaxOutstanding;
+    }
+
+    public boolean isAsyncSearch() {
+        return this.asyncSearchMaxOutstanding > 1;
+    }
+
     /**
      * Check if in read-only or offline mode.
      * <p>
@@ -429,6 +492,8 @@ public class LdapConfig {
         sb.append(" UnboundReadOnlyPool: [" + unboundReadOnlyPool + "]");
         sb.append(" Default Port: " + defaultPort);
         sb.append(" proxyUserDN: " + proxyUserDN);
+        sb.append(" entryCache: " + entryCacheMaxSize + "/" + entryCacheTTL + "s");
+        sb.append(" asyncSearch.maxOutstanding: " + asyncSearchMaxOutstanding);
 
         return sb.toString();
     }
@@ -90,20 +90,21 @@ import com.unboundid.ldap.sdk.SimpleBindRequest;
  * This object is designed to be shared between the DAO classes
  * for access to LDAP.  There should only be a single instance.
  * It wraps a connection pool object from the UnboundID library.
- * This object is thread-safe.
+ * This object is thread-safe: the UnboundID pool is thread-safe and the
+ * remaining state is fixed at construction, so borrowing a connection
+ * does not take a lock here.
  *
  * @author majorb
  */
 public class LdapConnectionPool {
     private static final Logger logger = Logger.getLogger(LdapConnectionPool.class);
 
-    protected LdapConfig currentConfig;
-    private String poolName;
-    private LDAPConnectionPool pool;
-    private Object poolMonitor = new Object();
-    private LDAPConnectionOptions connectionOptions;
-    private boolean readOnly;
-    private SystemState systemState;
+    protected final LdapConfig currentConfig;
+    private final String poolName;
+    private final LDAPConnectionPool pool;
+    private final LDAPConnectionOptions connectionOptions;
+    private final boolean readOnly;
+    private final SystemState systemState;
 
     public LdapConnectionPool(LdapConfig config, LdapPool poolConfig, String poolName, boolean boundPool, boolean readOnly) {
         if (config == null)
@@ -114,7 +115,8 @@ public class LdapConnectionPool {
             throw new IllegalArgumentException("poolName required");
 
         connectionOptions = new LDAPConnectionOptions();
-        connectionOptions.setUseSynchronousMode(true);
+        // async searches need the read-only connections out of synchronous mode
+        connectionOptions.setUseSynchronousMode(!(readOnly && config.isAsyncSearch()));
         connectionOptions.setAutoReconnect(true);
         currentConfig = config;
         this.poolName = poolName;
@@ -124,25 +126,26 @@ public class LdapConnectionPool {
         logger.debug("Construct pool: " + poolName + ". system state: " + systemState);
         if (SystemState.ONLINE.equals(systemState) || (SystemState.READONLY.equals(systemState) && readOnly)) {
             Profiler profiler = new Profiler(LdapConnectionPool.class);
-            synchronized (poolMonitor) {
-                if (!boundPool)
-                    pool = createPool(config, poolConfig, poolName, null, null);
-                else
-                    pool = createPool(config, poolConfig, poolName, config.getAdminUserDN(), config.getAdminPasswd());
+            if (!boundPool)
+                pool = createPool(config, poolConfig, poolName, null, null);
+            else
+                pool = createPool(config, poolConfig, poolName, config.getAdminUserDN(), config.getAdminPasswd());
 
-                if (pool != null) {
-                    logger.debug(poolName + " statistics after create:\n" + pool.getConnectionPoolStatistics());
-                    profiler.checkpoint("Create read only pool.");
-                }
+            if (logger.isDebugEnabled()) {
+                logger.debug(poolName + " statistics after create:\n" + pool.getConnectionPoolStatistics());
             }
+            profiler.checkpoint("Create read only pool.");
         } else {
+            pool = null;
             logger.debug("Not creating pool " + poolName + " because system state is " + systemState);
         }
     }
 
     public LDAPConnection getConnection() throws TransientException {
 
-        logger.debug("Get connection: " + poolName + ". system state: " + systemState);
+        if (logger.isDebugEnabled()) {
+            logger.debug("Get connection: " + poolName + ". system state: " + systemState);
+        }
         if (SystemState.OFFLINE.equals(systemState)) {
             throw new TransientException("The system is down for maintenance.", 600);
         }
@@ -155,27 +158,29 @@ public class LdapConnectionPool {
 
         try {
             Profiler profiler = new Profiler(LdapConnectionPool.class);
-            LDAPConnection conn = null;
-            synchronized (poolMonitor) {
-                conn = pool.getConnection();
+            // the UnboundID pool is thread-safe: no lock is held while it waits
+            // for an available connection or creates a new one
+            LDAPConnection conn = pool.getConnection();
 
-                // BM: This query to the base dn (starting at dc=) has the
-                // effect of clearing any proxied authorization state associated
-                // with the receiving ldap server connection.  Without this in
-                // place, proxied authorization information is sometimes ignored.
-//                logger.debug("Testing connection");
-//                int index = currentConfig.getGroupsDN().indexOf(',');
-//                String rdn = currentConfig.getGroupsDN().substring(0, index);
-//                Filter filter = Filter.create("(" + rdn + ")");
+            // BM: This query to the base dn (starting at dc=) has the
+            // effect of clearing any proxied authorization state associated
+            // with the receiving ldap server connection.  Without this in
+            // place, proxied authorization information is sometimes ignored.
+//            logger.debug("Testing connection");
+//            int index = currentConfig.getGroupsDN().indexOf(',');
+//            String rdn = currentConfig.getGroupsDN().substring(0, index);
+//            Filter filter = Filter.create("(" + rdn + ")");
 //
-//                index = rdn.indexOf('=');
-//                String attribute = rdn.substring(0, index);
+//            index = rdn.indexOf('=');
+//            String attribute = rdn.substring(0, index);
 //
-//                SearchRequest searchRequest = new SearchRequest(currentConfig.getGroupsDN(), SearchScope.BASE, filter, new String[] {attribute});
-//                conn.search(searchRequest);
-//                profiler.checkpoint("pool.initConnection");
+//            SearchRequest searchRequest = new SearchRequest(currentConfig.getGroupsDN(), SearchScope.BASE, filter, new String[] {attribute});
+//            conn.search(searchRequest);
+//            profiler.checkpoint("pool.initConnection");
+
+            if (logger.isDebugEnabled()) {
+                logger.debug(poolName + " pool statistics after borrow:\n" + pool.getConnectionPoolStatistics());
             }
-            logger.debug(poolName + " pool statistics after borrow:\n" + pool.getConnectionPoolStatistics());
             profiler.checkpoint("get " + poolName + " connection");
             conn.setConnectionOptions(connectionOptions);
 
@@ -190,7 +195,9 @@ public class LdapConnectionPool {
             Profiler profiler = new Profiler(LdapConnectionPool.class);
             pool.releaseConnection(conn);
             profiler.checkpoint("pool.releaseConnection");
-            logger.debug(poolName + " pool statistics after release:\n" + pool.getConnectionPoolStatistics());
+            if (logger.isDebugEnabled()) {
+                logger.debug(poolName + " pool statistics after release:\n" + pool.getConnectionPoolStatistics());
+            }
         }
     }
 
@@ -226,11 +233,11 @@ public class LdapConnectionPool {
 
             ServerSet serverSet = null;
             if (poolConfig.getPolicy().equals(PoolPolicy.roundRobin)) {
-                serverSet = new RoundRobinServerSet(hosts, ports, LdapDAO.getSocketFactory(poolConfig));
+                serverSet = new RoundRobinServerSet(hosts, ports, LdapDAO.getSocketFactory(poolConfig), connectionOptions);
             } else if (poolConfig.getPolicy().equals(PoolPolicy.fewestConnections)) {
-                serverSet = new FewestConnectionsServerSet(hosts, ports, LdapDAO.getSocketFactory(poolConfig));
+                serverSet = new FewestConnectionsServerSet(hosts, ports, LdapDAO.getSocketFactory(poolConfig), connectionOptions);
             } else if (poolConfig.getPolicy().equals(PoolPolicy.fastestConnect)) {
-                serverSet = new FastestConnectServerSet(hosts, ports, LdapDAO.getSocketFactory(poolConfig));
+                serverSet = new FastestConnectServerSet(hosts, ports, LdapDAO.getSocketFactory(poolConfig), connectionOptions);
             } else {
                 throw new IllegalStateException("Unconfigured pool policy: " + poolConfig.getPolicy());
             }
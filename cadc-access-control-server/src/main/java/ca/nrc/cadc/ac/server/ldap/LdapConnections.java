@@ -256,6 +256,21 @@ class LdapConnections {
         }
     }
 
+    // entry caches are only available with pooled (auto config) connections
+    LdapEntryCache getUserCache() {
+        if (persistence != null)
+            return persistence.getUserCache();
+        else
+            return null;
+    }
+
+    LdapEntryCache getGroupCache() {
+        if (persistence != null)
+            return persistence.getGroupCache();
+        else
+            return null;
+    }
+
     LdapConfig getCurrentConfig() {
         if (persistence != null)
             return persistence.getCurrentConfig();
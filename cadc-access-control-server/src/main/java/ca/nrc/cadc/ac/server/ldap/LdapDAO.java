@@ -72,14 +72,31 @@ import ca.nrc.cadc.net.TransientException;
 import ca.nrc.cadc.profiler.Profiler;
 import java.security.AccessControlException;
 import java.security.GeneralSecurityException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
 import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import javax.net.SocketFactory;
 import javax.net.ssl.SSLSocketFactory;
 import org.apache.log4j.Logger;
+import com.unboundid.ldap.sdk.AsyncRequestID;
+import com.unboundid.ldap.sdk.AsyncSearchResultListener;
 import com.unboundid.ldap.sdk.DN;
+import com.unboundid.ldap.sdk.Filter;
 import com.unboundid.ldap.sdk.LDAPConnection;
 import com.unboundid.ldap.sdk.LDAPException;
+import com.unboundid.ldap.sdk.LDAPResult;
 import com.unboundid.ldap.sdk.ResultCode;
+import com.unboundid.ldap.sdk.SearchRequest;
+import com.unboundid.ldap.sdk.SearchResult;
+import com.unboundid.ldap.sdk.SearchResultEntry;
+import com.unboundid.ldap.sdk.SearchResultReference;
+import com.unboundid.ldap.sdk.SearchScope;
 
 
 public abstract class LdapDAO {
@@ -93,6 +110,9 @@ public abstract class LdapDAO {
     protected static final String LDAP_INET_USER = "inetuser";
     protected static final String LDAP_NSACCOUNTLOCK = "nsaccountlock";
 
+    // maximum number of components in the OR filter of a batched lookup
+    protected static final int SEARCH_BATCH_SIZE = 200;
+
     private LdapConnections connections;
     protected LdapConfig config;
 
@@ -120,6 +140,35 @@ public abstract class LdapDAO {
         connections.releaseConnections();
     }
 
+    /**
+     * @return the process-wide user entry cache, or null if disabled
+     */
+    protected LdapEntryCache getUserCache() {
+        return connections.getUserCache();
+    }
+
+    /**
+     * @return the process-wide group entry cache, or null if disabled
+     */
+    protected LdapEntryCache getGroupCache() {
+        return connections.getGroupCache();
+    }
+
+    // called by write paths so this node does not serve a stale entry
+    protected void invalidateUser(DN userDN) {
+        LdapEntryCache userCache = getUserCache();
+        if (userCache != null) {
+            userCache.invalidate(userDN);
+        }
+    }
+
+    protected void invalidateGroup(DN groupDN) {
+        LdapEntryCache groupCache = getGroupCache();
+        if (groupCache != null) {
+            groupCache.invalidate(groupDN);
+        }
+    }
+
     /**
      * Method to return a randomly generated user numeric ID. The default
      * implementation returns a value between 20000 and Integer.MAX_VALUE.
@@ -182,6 +231,146 @@ public abstract class LdapDAO {
         throw new RuntimeException("Ldap error (" + code.getName() + ")");
     }
 
+    /**
+     * Create OR filters on entrydn that together match the specified entries, with at
+     * most SEARCH_BATCH_SIZE components each. This lets a set of entries be found with
+     * a few searches instead of one search per entry.
+     *
+     * @param dns The distinguished names of the entries.
+     * @return list of filters, empty if there are no entries.
+     */
+    protected static List<Filter> createEntryDNFilters(Collection<DN> dns) {
+        List<String> values = new ArrayList<String>(dns.size());
+        for (DN dn : dns) {
+            values.add(dn.toNormalizedString());
+        }
+        return createEqualityFilters(LDAP_ENTRYDN, values);
+    }
+
+    /**
+     * Create OR filters of equality filters on one attribute that together match the
+     * specified values, with at most SEARCH_BATCH_SIZE components each.
+     *
+     * @param attribute The attribute name.
+     * @param values    The attribute values.
+     * @return list of filters, empty if there are no values.
+     */
+    protected static List<Filter> createEqualityFilters(String attribute, Collection<String> values) {
+        List<Filter> ret = new ArrayList<Filter>();
+        List<Filter> batch = new ArrayList<Filter>();
+        for (String value : values) {
+            batch.add(Filter.createEqualityFilter(attribute, value));
+            if (batch.size() == SEARCH_BATCH_SIZE) {
+                ret.add(Filter.createORFilter(batch));
+                batch = new ArrayList<Filter>();
+            }
+        }
+        if (!batch.isEmpty()) {
+            ret.add(Filter.createORFilter(batch));
+        }
+        return ret;
+    }
+
+    /**
+     * Run one search per filter and return the entries found by all of them, in filter
+     * order. When async search is configured and the connection is not in synchronous
+     * mode the searches are pipelined on the connection, with at most
+     * LdapConfig.getAsyncSearchMaxOutstanding() outstanding at a time; otherwise they
+     * are run one after the other.
+     *
+     * @param ldapConn   The LDAPConnection instance to use.
+     * @param baseDN     The base of the searches.
+     * @param scope      The scope of the searches.
+     * @param filters    One filter per search.
+     * @param attributes The attributes to return.
+     * @return the entries found.
+     * @throws LDAPException if one of the searches fails.
+     */
+    protected List<SearchResultEntry> search(final LDAPConnection ldapConn, final String baseDN,
+                                             final SearchScope scope, final List<Filter> filters,
+                                             final String... attributes) throws LDAPException {
+        List<SearchResultEntry> ret = new ArrayList<SearchResultEntry>();
+        int maxOutstanding = config.getAsyncSearchMaxOutstanding();
+        if (filters.size() < 2 || maxOutstanding < 2 || ldapConn.synchronousMode()) {
+            for (Filter filter : filters) {
+                SearchResult searchResult = ldapConn.search(new SearchRequest(baseDN, scope, filter, attributes));
+                ret.addAll(searchResult.getSearchEntries());
+            }
+            return ret;
+        }
+
+        Profiler profiler = new Profiler(LdapDAO.class);
+        long timeout = ldapConn.getConnectionOptions().getResponseTimeoutMillis();
+        List<EntryCollector> collectors = new ArrayList<EntryCollector>(filters.size());
+        List<AsyncRequestID> requests = new ArrayList<AsyncRequestID>(filters.size());
+        int completed = 0;
+        try {
+            for (Filter filter : filters) {
+                if (requests.size() - completed >= maxOutstanding) {
+                    awaitSearch(requests.get(completed++), timeout);
+                }
+                EntryCollector collector = new EntryCollector();
+                requests.add(ldapConn.asyncSearch(new SearchRequest(collector, baseDN, scope, filter, attributes)));
+                collectors.add(collector);
+            }
+            while (completed < requests.size()) {
+                awaitSearch(requests.get(completed++), timeout);
+            }
+        } finally {
+            // abandon the searches still outstanding after a failure
+            for (int i = completed; i < requests.size(); i++) {
+                requests.get(i).cancel(true);
+            }
+        }
+        profiler.checkpoint("search.async");
+
+        for (EntryCollector collector : collectors) {
+            ret.addAll(collector.entries);
+        }
+        logger.debug("search: " + filters.size() + " pipelined searches found " + ret.size() + " entries");
+        return ret;
+    }
+
+    private static void awaitSearch(Future<LDAPResult> request, long timeout) throws LDAPException {
+        try {
+            LDAPResult result;
+            if (timeout > 0) {
+                result = request.get(timeout, TimeUnit.MILLISECONDS);
+            } else {
+                result = request.get();
+            }
+            if (result.getResultCode() != ResultCode.SUCCESS) {
+                throw new LDAPException(result);
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new LDAPException(ResultCode.LOCAL_ERROR, "interrupted waiting for search result", ex);
+        } catch (ExecutionException ex) {
+            throw new LDAPException(ResultCode.LOCAL_ERROR, "search failed: " + ex.getCause(), ex.getCause());
+        } catch (TimeoutException ex) {
+            throw new LDAPException(ResultCode.TIMEOUT, "timeout waiting for search result", ex);
+        }
+    }
+
+    // collects the entries returned by one async search
+    private static class EntryCollector implements AsyncSearchResultListener {
+        final List<SearchResultEntry> entries = Collections.synchronizedList(new ArrayList<SearchResultEntry>());
+
+        @Override
+        public void searchEntryReturned(SearchResultEntry searchEntry) {
+            entries.add(searchEntry);
+        }
+
+        @Override
+        public void searchReferenceReturned(SearchResultReference searchReference) {
+            // referrals are not followed
+        }
+
+        @Override
+        public void searchResultReceived(AsyncRequestID requestID, SearchResult searchResult) {
+            // completion is seen through the AsyncRequestID
+        }
+    }
 
     static SocketFactory getSocketFactory(LdapConfig.LdapPool poolConfig) {
         final SocketFactory socketFactory;
@@ -0,0 +1,196 @@
+/*
+ ************************************************************************
+ *******************  CANADIAN ASTRONOMY DATA CENTRE  *******************
+ **************  CENTRE CANADIEN DE DONNÉES ASTRONOMIQUES  **************
+ *
+ *  (c) 2026.                            (c) 2026.
+ *  Government of Canada                 Gouvernement du Canada
+ *  National Research Council            Conseil national de recherches
+ *  Ottawa, Canada, K1A 0R6              Ottawa, Canada, K1A 0R6
+ *  All rights reserved                  Tous droits réservés
+ *
+ *  NRC disclaims any warranties,        Le CNRC dénie toute garantie
+ *  expressed, implied, or               énoncée, implicite ou légale,
+ *  statutory, of any kind with          de quelque nature que ce
+ *  respect to the software,             soit, concernant le logiciel,
+ *  including without limitation         y compris sans restriction
+ *  any warranty of merchantability      toute garantie de valeur
+ *  or fitness for a particular          marchande ou de pertinence
+ *  purpose. NRC shall not be            pour un usage particulier.
+ *  liable in any event for any          Le CNRC ne pourra en aucun cas
+ *  damages, whether direct or           être tenu responsable de tout
+ *  indirect, special or general,        dommage, direct ou indirect,
+ *  consequential or incidental,         particulier ou général,
+ *  arising from the use of the          accessoire ou fortuit, résultant
+ *  software.  Neither the name          de l'utilisation du logiciel. Ni
+ *  of the National Research             le nom du Conseil National de
+ *  Council of Canada nor the            Recherches du Canada ni les noms
+ *  names of its contributors may        de ses  participants ne peuvent
+ *  be used to endorse or promote        être utilisés pour approuver ou
+ *  products derived from this           promouvoir les produits dérivés
+ *  software without specific prior      de ce logiciel sans autorisation
+ *  written permission.                  préalable et particulière
+ *                                       par écrit.
+ *
+ *  This file is part of the             Ce fichier fait partie du projet
+ *  OpenCADC project.                    OpenCADC.
+ *
+ *  OpenCADC is free software:           OpenCADC est un logiciel libre ;
+ *  you can redistribute it and/or       vous pouvez le redistribuer ou le
+ *  modify it under the terms of         modifier suivant les termes de
+ *  the GNU Affero General Public        la “GNU Affero General Public
+ *  License as published by the          License” telle que publiée
+ *  Free Software Foundation,            par la Free Software Foundation
+ *  either version 3 of the              : soit la version 3 de cette
+ *  License, or (at your option)         licence, soit (à votre gré)
+ *  any later version.                   toute version ultérieure.
+ *
+ *  OpenCADC is distributed in the       OpenCADC est distribué
+ *  hope that it will be useful,         dans l’espoir qu’il vous
+ *  but WITHOUT ANY WARRANTY;            sera utile, mais SANS AUCUNE
+ *  without even the implied             GARANTIE : sans même la garantie
+ *  warranty of MERCHANTABILITY          implicite de COMMERCIALISABILITÉ
+ *  or FITNESS FOR A PARTICULAR          ni d’ADÉQUATION À UN OBJECTIF
+ *  PURPOSE.  See the GNU Affero         PARTICULIER. Consultez la Licence
+ *  General Public License for           Générale Publique GNU Affero
+ *  more details.                        pour plus de détails.
+ *
+ *  You should have received             Vous devriez avoir reçu une
+ *  a copy of the GNU Affero             copie de la Licence Générale
+ *  General Public License along         Publique GNU Affero avec
+ *  with OpenCADC.  If not, see          OpenCADC ; si ce n’est
+ *  <http://www.gnu.org/licenses/>.      pas le cas, consultez :
+ *                                       <http://www.gnu.org/licenses/>.
+ *
+ *
+ ************************************************************************
+ */
+
+package ca.nrc.cadc.ac.server.ldap;
+
+import java.util.function.LongSupplier;
+import org.apache.log4j.Logger;
+import org.opencadc.gms.ExpiringCache;
+import com.unboundid.ldap.sdk.DN;
+import com.unboundid.ldap.sdk.LDAPException;
+import com.unboundid.ldap.sdk.ReadOnlyEntry;
+
+/**
+ * Process-wide cache of LDAP entries keyed by entry DN. The cached values are
+ * ReadOnlyEntry snapshots so they can be shared by concurrent requests; the DAOs
+ * build new User and Group instances from them on every read.
+ * <p>
+ * The cache is bounded in size, evicting the least recently used entry first, and
+ * in age. The write paths on this node invalidate the entries they change; changes
+ * made through another node are seen once the cached entry expires.
+ * <p>
+ * A reader gets the generation before it searches and passes it to put. Every
+ * invalidation starts a new generation, so an entry read before a concurrent write
+ * was invalidated is not cached.
+ */
+public class LdapEntryCache {
+    private static final Logger logger = Logger.getLogger(LdapEntryCache.class);
+
+    private final String name;
+    private final int maxSize;
+    private final ExpiringCache<DN, ReadOnlyEntry> entries;
+    private long generation = 0L;
+
+    /**
+     * Constructor.
+     *
+     * @param name      name used in logging and statistics
+     * @param maxSize   maximum number of entries
+     * @param ttlMillis maximum age of a cached entry
+     */
+    public LdapEntryCache(String name, int maxSize, long ttlMillis) {
+        this(name, maxSize, ttlMillis, System::currentTimeMillis);
+    }
+
+    LdapEntryCache(String name, int maxSize, long ttlMillis, LongSupplier clock) {
+        this.name = name;
+        this.maxSize = maxSize;
+        this.entries = new ExpiringCache<>(maxSize, ttlMillis, clock);
+    }
+
+    /**
+     * Get a cached entry.
+     *
+     * @param dn The entry DN.
+     * @return the entry, or null if not cached or expired
+     */
+    public ReadOnlyEntry get(DN dn) {
+        return entries.get(dn);
+    }
+
+    /**
+     * Get the current generation, before searching for entries to put.
+     *
+     * @return the generation
+     */
+    public synchronized long getGeneration() {
+        return generation;
+    }
+
+    /**
+     * Add or replace an entry, unless an entry was invalidated since the search
+     * that found it started.
+     *
+     * @param entry      The entry found by a search.
+     * @param generation The generation from before the search.
+     */
+    public void put(ReadOnlyEntry entry, long generation) {
+        try {
+            DN dn = entry.getParsedDN();
+            synchronized (this) {
+                if (generation != this.generation) {
+                    logger.debug(name + " cache: invalidated during search " + dn + " -- SKIP");
+                    return;
+                }
+                entries.put(dn, entry);
+            }
+        } catch (LDAPException ex) {
+            logger.debug(name + " cache: invalid DN " + entry.getDN() + " -- SKIP");
+        }
+    }
+
+    /**
+     * Remove an entry. Called by the write paths after an entry is changed.
+     *
+     * @param dn The entry DN.
+     */
+    public void invalidate(DN dn) {
+        synchronized (this) {
+            generation++;
+            entries.remove(dn);
+        }
+        logger.debug(name + " cache: invalidated " + dn);
+    }
+
+    public synchronized void clear() {
+        generation++;
+        entries.clear();
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public long getHits() {
+        return entries.getHits();
+    }
+
+    public long getMisses() {
+        return entries.getMisses();
+    }
+
+    public long getEvictions() {
+        return entries.getEvictions();
+    }
+
+    @Override
+    public String toString() {
+        return name + " cache: size=" + size() + "/" + maxSize + " hits=" + getHits()
+                + " misses=" + getMisses() + " evictions=" + getEvictions();
+    }
+}
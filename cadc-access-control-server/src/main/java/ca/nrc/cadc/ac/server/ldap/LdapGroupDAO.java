@@ -72,24 +72,29 @@ package ca.nrc.cadc.ac.server.ldap;
 import ca.nrc.cadc.ac.Group;
 import ca.nrc.cadc.ac.GroupAlreadyExistsException;
 import ca.nrc.cadc.ac.GroupNotFoundException;
+import ca.nrc.cadc.ac.MemberAlreadyExistsException;
 import ca.nrc.cadc.ac.User;
 import ca.nrc.cadc.ac.UserNotFoundException;
 import ca.nrc.cadc.ac.UserSet;
 import ca.nrc.cadc.ac.server.GroupDetailSelector;
 import ca.nrc.cadc.auth.DNPrincipal;
+import ca.nrc.cadc.io.ResourceIterator;
 import ca.nrc.cadc.net.TransientException;
 import ca.nrc.cadc.profiler.Profiler;
-import ca.nrc.cadc.reg.Standards;
-import ca.nrc.cadc.reg.client.LocalAuthority;
 import ca.nrc.cadc.util.StringUtil;
+import java.io.IOException;
 import java.lang.reflect.Field;
 import java.net.URI;
 import java.security.AccessControlException;
+import java.security.Principal;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
-import java.util.LinkedList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import org.apache.log4j.Logger;
 import org.opencadc.auth.PosixGroup;
@@ -98,21 +103,20 @@ import com.unboundid.ldap.sdk.AddRequest;
 import com.unboundid.ldap.sdk.Attribute;
 import com.unboundid.ldap.sdk.DN;
 import com.unboundid.ldap.sdk.DeleteRequest;
+import com.unboundid.ldap.sdk.Entry;
 import com.unboundid.ldap.sdk.Filter;
 import com.unboundid.ldap.sdk.LDAPConnection;
 import com.unboundid.ldap.sdk.LDAPException;
-import com.unboundid.ldap.sdk.LDAPInterface;
 import com.unboundid.ldap.sdk.LDAPResult;
 import com.unboundid.ldap.sdk.LDAPSearchException;
 import com.unboundid.ldap.sdk.Modification;
 import com.unboundid.ldap.sdk.ModificationType;
 import com.unboundid.ldap.sdk.ModifyRequest;
+import com.unboundid.ldap.sdk.ReadOnlyEntry;
 import com.unboundid.ldap.sdk.ResultCode;
 import com.unboundid.ldap.sdk.SearchRequest;
 import com.unboundid.ldap.sdk.SearchResult;
 import com.unboundid.ldap.sdk.SearchResultEntry;
-import com.unboundid.ldap.sdk.SearchResultListener;
-import com.unboundid.ldap.sdk.SearchResultReference;
 import com.unboundid.ldap.sdk.SearchScope;
 
 public class LdapGroupDAO extends LdapDAO {
@@ -142,6 +146,9 @@ public class LdapGroupDAO extends LdapDAO {
                     LDAP_MODIFY_TIMESTAMP, LDAP_DESCRIPTION, LDAP_GID_NUMBER, LDAP_UNIQUE_MEMBER
             };
 
+    // number of groups read per search by iterateGroupNames
+    static final int GROUPS_PAGE_SIZE = 1000;
+
     private LdapUserDAO userDAO;
 
     // this gets filled by the LdapgroupPersistence
@@ -413,117 +420,163 @@ public class LdapGroupDAO extends LdapDAO {
      *
      * @return A collection of strings
      * @throws TransientException If an temporary, unexpected problem occurred.
+     * @see #iterateGroupNames()
      */
     public Collection<PosixGroup> getGroupNames()
             throws TransientException {
+        final List<PosixGroup> ret = new ArrayList<PosixGroup>();
+        ResourceIterator<PosixGroup> iter = iterateGroupNames();
         try {
-            LocalAuthority loc = new LocalAuthority();
-            URI gmsResourceID = loc.getServiceURI(Standards.GMS_SEARCH_10.toASCIIString());
-            Filter filter = Filter
-                    .createNOTFilter(Filter.createPresenceFilter(LDAP_NSACCOUNTLOCK));
-            filter = Filter.createANDFilter(filter, Filter.create("(cn=*)"));
-
-            final List<PosixGroup> ret = new LinkedList<>();
-            SearchRequest searchRequest = new SearchRequest(
-                    new SearchResultListener() {
-                        long t1 = System.currentTimeMillis();
-
-                        public void searchEntryReturned(SearchResultEntry sre) {
-                            String gname = sre.getAttributeValue(LDAP_CN);
-                            String gidstr = sre.getAttributeValue(LDAP_GID_NUMBER);
-                            Integer gid = Integer.valueOf(gidstr);
-                            try {
-                                PosixGroup pg = new PosixGroup(gid, new GroupURI(gmsResourceID, gname));
-                                ret.add(pg);
-                            } catch (IllegalArgumentException ex) {
-                                logger.warn("invalid group name: " + gname + " -- SKIP");
-                            }
-
-                            long t2 = System.currentTimeMillis();
-                            long dt = t2 - t1;
-                            if (ret.size() == 1) {
-                                logger.debug("first row: " + dt + "ms");
-                                t1 = t2;
-                            }
-                            if ((ret.size() % 100) == 0) {
-                                logger.debug("found: " + ret.size() +
-                                        " " + dt + "ms");
-                                t1 = t2;
-                            }
-                        }
-
-                        public void searchReferenceReturned(SearchResultReference srr) {
-                            throw new UnsupportedOperationException("Not supported yet.");
-                        }
-                    }, config.getGroupsDN(), SearchScope.ONE, filter, PUB_GROUP_ATTRS);
-
-            SearchResult searchResult = null;
+            while (iter.hasNext()) {
+                ret.add(iter.next());
+            }
+        } finally {
             try {
-                Profiler profiler = new Profiler(LdapGroupDAO.class);
-                LDAPInterface con = getReadOnlyConnection();
-                profiler.checkpoint("getGroupNames.getConnection");
-                searchResult = con.search(searchRequest);
-                profiler.checkpoint("getGroupNames.search");
-            } catch (LDAPSearchException e) {
-                logger.debug("Could not find groups root", e);
-                LdapDAO.checkLdapResult(e.getResultCode());
-                if (e.getResultCode() == ResultCode.NO_SUCH_OBJECT) {
-                    throw new IllegalStateException("Could not find groups root");
-                }
-
-                throw new IllegalStateException("unexpected failure", e);
+                iter.close();
+            } catch (IOException e) {
+                logger.debug("failed to close group name iterator: " + e);
             }
+        }
+        logger.debug("getGroupNames: found " + ret.size());
+        return ret;
+    }
 
-            LdapDAO.checkLdapResult(searchResult.getResultCode());
-//            profiler.checkpoint("checkLdapResult");
+    /**
+     * Iterate over the names and gids of all active groups, reading them GROUPS_PAGE_SIZE
+     * at a time with the simple paged results control so callers can write the groups
+     * as they are read instead of holding all of them. The first page is read before
+     * returning, so errors finding the groups tree are thrown here; the iterator throws
+     * a RuntimeException if a later page fails. The iterator must be closed to release
+     * the paged search if it is not read to the end.
+     *
+     * @return An iterator over the groups, to be closed after use.
+     * @throws TransientException If an temporary, unexpected problem occurred.
+     */
+    public ResourceIterator<PosixGroup> iterateGroupNames()
+            throws TransientException {
+        final URI gmsResourceID = LocalServices.getInstance().getGroupSearchServiceURI();
+        Filter filter = Filter
+                .createNOTFilter(Filter.createPresenceFilter(LDAP_NSACCOUNTLOCK));
+        filter = Filter.createANDFilter(filter, Filter.createPresenceFilter(LDAP_CN));
+        SearchRequest searchRequest = new SearchRequest(
+                config.getGroupsDN(), SearchScope.ONE, filter, PUB_GROUP_ATTRS);
 
+        try {
+            Profiler profiler = new Profiler(LdapGroupDAO.class);
+            LDAPConnection con = getReadOnlyConnection();
+            profiler.checkpoint("iterateGroupNames.getConnection");
+            ResourceIterator<PosixGroup> ret = new PagedSearchIterator<PosixGroup>(con, searchRequest,
+                    GROUPS_PAGE_SIZE, 0, null) {
+                @Override
+                PosixGroup toObject(SearchResultEntry sre) {
+                    String gname = sre.getAttributeValue(LDAP_CN);
+                    String gidstr = sre.getAttributeValue(LDAP_GID_NUMBER);
+                    Integer gid = Integer.valueOf(gidstr);
+                    try {
+                        return new PosixGroup(gid, new GroupURI(gmsResourceID, gname));
+                    } catch (IllegalArgumentException ex) {
+                        logger.warn("invalid group name: " + gname + " -- SKIP");
+                        return null;
+                    }
+                }
+            };
+            profiler.checkpoint("iterateGroupNames.search");
             return ret;
+        } catch (LDAPSearchException e) {
+            logger.debug("Could not find groups root", e);
+            if (e.getResultCode() == ResultCode.NO_SUCH_OBJECT) {
+                throw new IllegalStateException("Could not find groups root");
+            }
+            LdapDAO.checkLdapResult(e.getResultCode());
+            throw new IllegalStateException("unexpected failure", e);
         } catch (LDAPException e1) {
-            logger.debug("getGroupNames Exception: " + e1, e1);
+            logger.debug("iterateGroupNames Exception: " + e1, e1);
             LdapDAO.checkLdapResult(e1.getResultCode());
             throw new IllegalStateException("Unexpected exception: " +
                     e1.getMatchedDN(), e1);
         }
     }
 
-    private void addGroupMembers(SearchResultEntry searchEntry, Group ldapGroup, LDAPConnection ldapConn, boolean isPending)
+    /**
+     * Get the names and gids of the specified active groups. The groups are found with one
+     * search per SEARCH_BATCH_SIZE names or gids rather than one search per group, and only
+     * the name and gid attributes are returned. Groups that do not exist are not included.
+     *
+     * @param groupNames The names of the groups to find, may be null.
+     * @param gids       The gids of the groups to find, may be null.
+     * @return the groups found, in the order names then gids.
+     * @throws TransientException If an temporary, unexpected problem occurred.
+     */
+    public Collection<PosixGroup> getGroupNames(final Collection<String> groupNames, final Collection<Integer> gids)
+            throws TransientException {
+        Profiler profiler = new Profiler(LdapGroupDAO.class);
+        List<Filter> idFilters = new ArrayList<Filter>();
+        if (groupNames != null) {
+            idFilters.addAll(createEqualityFilters(LDAP_CN, groupNames));
+        }
+        if (gids != null) {
+            List<String> values = new ArrayList<String>(gids.size());
+            for (Integer gid : gids) {
+                values.add(gid.toString());
+            }
+            idFilters.addAll(createEqualityFilters(LDAP_GID_NUMBER, values));
+        }
+
+        Filter notLocked = Filter.createNOTFilter(Filter.createPresenceFilter(LDAP_NSACCOUNTLOCK));
+        List<Filter> filters = new ArrayList<Filter>(idFilters.size());
+        for (Filter idFilter : idFilters) {
+            filters.add(Filter.createANDFilter(notLocked, idFilter));
+        }
+
+        try {
+            URI gmsServiceID = LocalServices.getInstance().getGroupsServiceURI();
+
+            List<SearchResultEntry> entries = search(getReadOnlyConnection(), config.getGroupsDN(),
+                    SearchScope.ONE, filters, LDAP_CN, LDAP_GID_NUMBER);
+            profiler.checkpoint("getGroupNames.search");
+
+            // a group matched by both name and gid is only returned once
+            Map<String, PosixGroup> ret = new LinkedHashMap<String, PosixGroup>();
+            for (SearchResultEntry entry : entries) {
+                String gname = entry.getAttributeValue(LDAP_CN);
+                String gidstr = entry.getAttributeValue(LDAP_GID_NUMBER);
+                if (gidstr == null || ret.containsKey(gname)) {
+                    continue;
+                }
+                try {
+                    ret.put(gname, new PosixGroup(Integer.valueOf(gidstr), new GroupURI(gmsServiceID, gname)));
+                } catch (IllegalArgumentException ex) {
+                    logger.warn("invalid group name: " + gname + " -- SKIP");
+                }
+            }
+            logger.debug("getGroupNames: found " + ret.size() + " in " + filters.size() + " searches");
+            return ret.values();
+        } catch (LDAPException e) {
+            logger.debug("getGroupNames Exception: " + e, e);
+            LdapDAO.checkLdapResult(e.getResultCode());
+            throw new IllegalStateException("Could not find groups root", e);
+        }
+    }
+
+    private void addGroupMembers(SearchResultEntry searchEntry, Group ldapGroup, MemberResolver resolver)
             throws LDAPException, AccessControlException, TransientException {
         if (searchEntry.getAttributeValues(LDAP_UNIQUE_MEMBER) != null) {
             for (String member : searchEntry
                     .getAttributeValues(LDAP_UNIQUE_MEMBER)) {
-                String userDN = null;
-                if (isPending) {
-                    userDN = config.getUserRequestsDN();
-                } else {
-                    userDN = config.getUsersDN();
-                }
-
                 DN memberDN = new DN(member);
-                if (memberDN.isDescendantOf(userDN, false)) {
-                    User user;
-                    try {
-                        if (isPending) {
-                            user = userDAO.getUserRequest(new DNPrincipal(member), ldapConn);
-                        } else {
-                            user = userDAO.getUser(new DNPrincipal(member), ldapConn);
-                        }
+                if (memberDN.isDescendantOf(resolver.memberUsersDN, false)) {
+                    User user = resolver.getUser(memberDN, resolver.memberUsersDN);
+                    // ignore users not found as we do not cleanup deleted users
+                    // from groups they belong to
+                    if (user != null) {
                         ldapGroup.getUserMembers().add(user);
-                    } catch (UserNotFoundException e) {
-                        // ignore as we do not cleanup deleted users
-                        // from groups they belong to
                     }
                 } else if (memberDN.isDescendantOf(config.getGroupsDN(), false)) {
-                    try {
-                        if (isPending) {
-                            ldapGroup.getGroupMembers()
-                                    .add(getUserAssociatedGroup(memberDN, null, PUB_GROUP_ATTRS, ldapConn));
-                        } else {
-                            ldapGroup.getGroupMembers()
-                                    .add(getGroup(memberDN, null, PUB_GROUP_ATTRS, ldapConn));
-                        }
-                    } catch (GroupNotFoundException e) {
-                        // ignore as we are not cleaning up
-                        // deleted groups from the group members
+                    Group group = resolver.getGroup(memberDN);
+                    // ignore groups not found as we are not cleaning up
+                    // deleted groups from the group members
+                    if (group != null) {
+                        ldapGroup.getGroupMembers().add(group);
                     }
                 } else {
                     throw new RuntimeException(
@@ -572,10 +625,14 @@ public class LdapGroupDAO extends LdapDAO {
                         searchEntry.getAttributeValue(LDAP_ENTRYDN));
             }
 
-            Group ldapGroup = createGroupFromSearchResult(searchEntry, attributes, ldapConn);
+            MemberResolver resolver = new MemberResolver(ldapConn, isUserRequest);
+            resolver.prefetch(searchEntry);
+            profiler.checkpoint("getGroup.prefetch");
+
+            Group ldapGroup = createGroupFromSearchResult(searchEntry, attributes, resolver);
             profiler.checkpoint("getGroup.createGroupFromSearchResult");
 
-            addGroupMembers(searchEntry, ldapGroup, ldapConn, isUserRequest);
+            addGroupMembers(searchEntry, ldapGroup, resolver);
             profiler.checkpoint("getGroup.addMembers");
 
             return ldapGroup;
@@ -623,10 +680,14 @@ public class LdapGroupDAO extends LdapDAO {
             SearchResultEntry searchEntry =
                     searchForEntry(profiler, groupDN, loggableGroupID, filter, attributes, ldapConn);
 
-            Group ldapGroup = createGroupFromSearchResult(searchEntry, attributes, ldapConn);
+            MemberResolver resolver = new MemberResolver(ldapConn, true);
+            resolver.prefetch(searchEntry);
+            profiler.checkpoint("getGroup.prefetch");
+
+            Group ldapGroup = createGroupFromSearchResult(searchEntry, attributes, resolver);
             profiler.checkpoint("getGroup.createGroupFromSearchResult");
 
-            addUserAssociatedGroupMembers(searchEntry, ldapGroup, ldapConn);
+            addGroupMembers(searchEntry, ldapGroup, resolver);
             profiler.checkpoint("getGroup.addMembers");
 
             return ldapGroup;
@@ -637,41 +698,6 @@ public class LdapGroupDAO extends LdapDAO {
         }
     }
 
-    private void addUserAssociatedGroupMembers(SearchResultEntry searchEntry, Group ldapGroup, LDAPConnection ldapConn)
-            throws LDAPException, AccessControlException, TransientException {
-        if (searchEntry.getAttributeValues(LDAP_UNIQUE_MEMBER) != null) {
-            for (String member : searchEntry
-                    .getAttributeValues(LDAP_UNIQUE_MEMBER)) {
-                String userDN = null;
-                userDN = config.getUserRequestsDN();
-
-                DN memberDN = new DN(member);
-                if (memberDN.isDescendantOf(userDN, false)) {
-                    User user;
-                    try {
-                        user = userDAO.getUserRequest(new DNPrincipal(member), ldapConn);
-                        ldapGroup.getUserMembers().add(user);
-                    } catch (UserNotFoundException e) {
-                        // ignore as we do not cleanup deleted users
-                        // from groups they belong to
-                    }
-                } else if (memberDN.isDescendantOf(config.getGroupsDN(), false)) {
-                    try {
-                        ldapGroup.getGroupMembers()
-                                .add(getUserAssociatedGroup(memberDN, null, PUB_GROUP_ATTRS, ldapConn));
-                    } catch (GroupNotFoundException e) {
-                        // ignore as we are not cleaning up
-                        // deleted groups from the group members
-                    }
-                } else {
-                    throw new RuntimeException(
-                            "BUG: unknown member DN type: " + memberDN);
-                }
-            }
-
-        }
-    }
-
     /**
      * Get the group with members.
      *
@@ -707,7 +733,7 @@ public class LdapGroupDAO extends LdapDAO {
                 throw new RuntimeException("BUG: found group with nsaccountlock set: " + searchEntry.getAttributeValue(LDAP_ENTRYDN));
             }
 
-            Group ldapGroup = createGroupFromSearchResult(searchEntry, PUB_GROUP_ATTRS, ldapConn);
+            Group ldapGroup = createGroupFromSearchResult(searchEntry, PUB_GROUP_ATTRS, null);
             return ldapGroup;
         } catch (IllegalArgumentException ex) {
             // invalid group name
@@ -732,10 +758,12 @@ public class LdapGroupDAO extends LdapDAO {
         if (groupID != null) {
             groupDN = getGroupDN(groupID);
         }
-        Group group = getGroup(groupDN, groupID, attrs, ldapConn);
+        // the group and its admin group usually share the owner and some members
+        MemberResolver resolver = new MemberResolver(ldapConn, false);
+        Group group = getGroup(groupDN, groupID, attrs, resolver);
 
         if (complete && !isUserAssociatedGroup(group)) {
-            Group adminGroup = getGroup(getAdminGroupDN(groupID), null, GROUP_AND_MEMBER_ATTRS, ldapConn);
+            Group adminGroup = getGroup(getAdminGroupDN(groupID), null, GROUP_AND_MEMBER_ATTRS, resolver);
             group.getGroupAdmins().addAll(adminGroup.getGroupMembers());
             group.getUserAdmins().addAll(adminGroup.getUserMembers());
         }
@@ -748,6 +776,14 @@ public class LdapGroupDAO extends LdapDAO {
                            final LDAPConnection ldapConn)
             throws GroupNotFoundException, TransientException,
             AccessControlException {
+        return getGroup(groupDN, loggableID, attributes, new MemberResolver(ldapConn, false));
+    }
+
+    private Group getGroup(final DN groupDN, final String loggableID, String[] attributes,
+                           final MemberResolver resolver)
+            throws GroupNotFoundException, TransientException,
+            AccessControlException {
+        final LDAPConnection ldapConn = resolver.ldapConn;
         logger.debug("getGroup: " + groupDN + " attrs: " + attributes.length);
         String loggableGroupID = loggableID;
         if (loggableGroupID == null) {
@@ -768,10 +804,13 @@ public class LdapGroupDAO extends LdapDAO {
                         searchEntry.getAttributeValue(LDAP_ENTRYDN));
             }
 
-            Group ldapGroup = createGroupFromSearchResult(searchEntry, attributes, ldapConn);
+            resolver.prefetch(searchEntry);
+            profiler.checkpoint("getGroup.prefetch");
+
+            Group ldapGroup = createGroupFromSearchResult(searchEntry, attributes, resolver);
             profiler.checkpoint("getGroup.createGroupFromSearchResult");
 
-            addGroupMembers(searchEntry, ldapGroup, ldapConn, false);
+            addGroupMembers(searchEntry, ldapGroup, resolver);
             profiler.checkpoint("getGroup.addMembers");
 
             return ldapGroup;
@@ -882,6 +921,7 @@ public class LdapGroupDAO extends LdapDAO {
                         new ModifyRequest(getAdminGroupDN(group.getID().getName()), adminMods);
 
                 LdapDAO.checkLdapResult(ldapRWConn.modify(adminModify).getResultCode());
+                invalidateGroup(getAdminGroupDN(group.getID().getName()));
             }
 
             // modify the group itself
@@ -893,6 +933,7 @@ public class LdapGroupDAO extends LdapDAO {
                     new ModifyRequest(getGroupDN(group.getID().getName()), mods);
 
             LdapDAO.checkLdapResult(ldapRWConn.modify(modifyRequest).getResultCode());
+            invalidateGroup(getGroupDN(group.getID().getName()));
         } catch (LDAPException e1) {
             logger.debug("Modify Exception: " + e1, e1);
             LdapDAO.checkLdapResult(e1.getResultCode());
@@ -950,6 +991,143 @@ public class LdapGroupDAO extends LdapDAO {
         }
     }
 
+    /**
+     * Add a user to the members of an active group with a single LDAP ADD modification
+     * of the uniquemember attribute; the existing members are not read or rewritten.
+     *
+     * @param groupID The group name.
+     * @param userID  An identity of the user to add.
+     * @throws GroupNotFoundException       If the group was not found.
+     * @throws UserNotFoundException        If the user was not found.
+     * @throws MemberAlreadyExistsException If the user is already a member.
+     * @throws TransientException           If an temporary, unexpected problem occurred.
+     */
+    public void addUserMember(final String groupID, final Principal userID)
+            throws GroupNotFoundException, UserNotFoundException, MemberAlreadyExistsException,
+            TransientException, AccessControlException {
+        LDAPConnection ldapRWConn = getReadWriteConnection();
+        DN groupDN = getGroupDN(groupID);
+        // group must exist and be active; use the same LDAP server
+        getGroup(groupDN, groupID, PUB_GROUP_ATTRS, ldapRWConn);
+
+        DN memberDN = getMemberDN(userID, ldapRWConn);
+        if (!modifyMember(groupDN, groupID, ModificationType.ADD, memberDN, ldapRWConn)) {
+            throw new MemberAlreadyExistsException("User member already exists: " + userID.getName());
+        }
+    }
+
+    /**
+     * Add a group to the members of an active group with a single LDAP ADD modification
+     * of the uniquemember attribute; the existing members are not read or rewritten.
+     *
+     * @param groupID       The group name.
+     * @param memberGroupID The name of the group to add.
+     * @throws GroupNotFoundException      If either group was not found.
+     * @throws GroupAlreadyExistsException If the group is already a member.
+     * @throws TransientException          If an temporary, unexpected problem occurred.
+     */
+    public void addGroupMember(final String groupID, final String memberGroupID)
+            throws GroupNotFoundException, GroupAlreadyExistsException,
+            TransientException, AccessControlException {
+        LDAPConnection ldapRWConn = getReadWriteConnection();
+        DN groupDN = getGroupDN(groupID);
+        getGroup(groupDN, groupID, PUB_GROUP_ATTRS, ldapRWConn);
+
+        try {
+            if (!checkGroupExists(memberGroupID, ldapRWConn)) {
+                throw new GroupNotFoundException(memberGroupID);
+            }
+        } catch (LDAPException e) {
+            logger.debug("addGroupMember Exception: " + e, e);
+            LdapDAO.checkLdapResult(e.getResultCode());
+        }
+        if (!modifyMember(groupDN, groupID, ModificationType.ADD, getGroupDN(memberGroupID), ldapRWConn)) {
+            throw new GroupAlreadyExistsException(memberGroupID);
+        }
+    }
+
+    /**
+     * Remove a user from the members of an active group with a single LDAP DELETE
+     * modification of the uniquemember attribute.
+     *
+     * @param groupID The group name.
+     * @param userID  An identity of the user to remove.
+     * @throws GroupNotFoundException If the group was not found.
+     * @throws UserNotFoundException  If the user was not found or is not a member.
+     * @throws TransientException     If an temporary, unexpected problem occurred.
+     */
+    public void removeUserMember(final String groupID, final Principal userID)
+            throws GroupNotFoundException, UserNotFoundException,
+            TransientException, AccessControlException {
+        LDAPConnection ldapRWConn = getReadWriteConnection();
+        DN groupDN = getGroupDN(groupID);
+        getGroup(groupDN, groupID, PUB_GROUP_ATTRS, ldapRWConn);
+
+        DN memberDN = getMemberDN(userID, ldapRWConn);
+        if (!modifyMember(groupDN, groupID, ModificationType.DELETE, memberDN, ldapRWConn)) {
+            throw new UserNotFoundException("User member not found: " + userID.getName());
+        }
+    }
+
+    /**
+     * Remove a group from the members of an active group with a single LDAP DELETE
+     * modification of the uniquemember attribute.
+     *
+     * @param groupID       The group name.
+     * @param memberGroupID The name of the group to remove.
+     * @throws GroupNotFoundException If the group was not found or the group to remove
+     *                                is not a member.
+     * @throws TransientException     If an temporary, unexpected problem occurred.
+     */
+    public void removeGroupMember(final String groupID, final String memberGroupID)
+            throws GroupNotFoundException, TransientException, AccessControlException {
+        LDAPConnection ldapRWConn = getReadWriteConnection();
+        DN groupDN = getGroupDN(groupID);
+        getGroup(groupDN, groupID, PUB_GROUP_ATTRS, ldapRWConn);
+
+        if (!modifyMember(groupDN, groupID, ModificationType.DELETE, getGroupDN(memberGroupID), ldapRWConn)) {
+            throw new GroupNotFoundException("Group member not found: " + memberGroupID);
+        }
+    }
+
+    private DN getMemberDN(final Principal userID, final LDAPConnection ldapConn)
+            throws UserNotFoundException, TransientException {
+        User user = new User();
+        user.getIdentities().add(userID);
+        try {
+            return userDAO.getUserDN(user, ldapConn, false);
+        } catch (LDAPException e) {
+            logger.debug("getMemberDN Exception: " + e, e);
+            LdapDAO.checkLdapResult(e.getResultCode());
+            throw new RuntimeException("BUG: checkLdapResult didn't throw an exception");
+        }
+    }
+
+    // returns false if the member was already present (ADD) or not present (DELETE)
+    private boolean modifyMember(final DN groupDN, final String groupID, final ModificationType type,
+                                 final DN memberDN, final LDAPConnection ldapRWConn)
+            throws GroupNotFoundException, TransientException {
+        Modification mod = new Modification(type, LDAP_UNIQUE_MEMBER, memberDN.toNormalizedString());
+        try {
+            LDAPResult result = ldapRWConn.modify(new ModifyRequest(groupDN, mod));
+            LdapDAO.checkLdapResult(result.getResultCode());
+        } catch (LDAPException e) {
+            logger.debug("modifyMember Exception: " + e, e);
+            ResultCode code = e.getResultCode();
+            if (code == ResultCode.ATTRIBUTE_OR_VALUE_EXISTS || code == ResultCode.NO_SUCH_ATTRIBUTE) {
+                return false;
+            }
+            if (code == ResultCode.NO_SUCH_OBJECT) {
+                throw new GroupNotFoundException(groupID);
+            }
+            LdapDAO.checkLdapResult(code);
+        } finally {
+            invalidateGroup(groupDN);
+        }
+        logger.debug("modifyMember: " + type.getName() + " " + memberDN + " in " + groupDN);
+        return true;
+    }
+
     /**
      * Deletes the specified group associated with a pending user.
      *
@@ -978,6 +1156,7 @@ public class LdapGroupDAO extends LdapDAO {
             LDAPResult result = ldapRWConn.delete(delRequest);
             logger.info("delete result:" + delRequest);
             LdapDAO.checkLdapResult(result.getResultCode());
+            invalidateGroup(groupDN);
         } catch (LDAPException e1) {
             logger.debug("delete group fail: " + e1, e1);
             LdapDAO.checkLdapResult(e1.getResultCode());
@@ -1028,6 +1207,7 @@ public class LdapGroupDAO extends LdapDAO {
             logger.debug("deleteGroup " + groupDN);
             LDAPResult result = ldapRWConn.modify(deleteGroup);
             LdapDAO.checkLdapResult(result.getResultCode());
+            invalidateGroup(groupDN);
         } catch (LDAPException e1) {
             logger.debug("delete group fail: " + e1, e1);
             LdapDAO.checkLdapResult(e1.getResultCode());
@@ -1062,12 +1242,14 @@ public class LdapGroupDAO extends LdapDAO {
 
             LDAPConnection ldapROConn = getReadOnlyConnection();
             SearchResult results = getReadOnlyConnection().search(searchRequest);
+            // all the groups have the same owner
+            MemberResolver resolver = new MemberResolver(ldapROConn, false);
             for (SearchResultEntry result : results.getSearchEntries()) {
                 if (result.getAttribute(LDAP_NSACCOUNTLOCK) != null) {
                     throw new RuntimeException("BUG: found group with nsaccountlock set: " +
                             result.getAttributeValue(LDAP_ENTRYDN));
                 }
-                ret.add(createGroupFromSearchResult(result, GROUP_ATTRS, ldapROConn));
+                ret.add(createGroupFromSearchResult(result, GROUP_ATTRS, resolver));
             }
         } catch (LDAPException e1) {
             logger.debug("getOwnerGroups Exception: " + e1, e1);
@@ -1076,13 +1258,13 @@ public class LdapGroupDAO extends LdapDAO {
         return ret;
     }
 
-    private Group createGroupFromSearchResult(SearchResultEntry result, String[] attributes,
-                                              final LDAPConnection ldapConn)
+    // resolver is not used for PUB_GROUP_ATTRS
+    private Group createGroupFromSearchResult(Entry result, String[] attributes,
+                                              final MemberResolver resolver)
             throws LDAPException, TransientException {
         String entryDN = result.getAttributeValue(LDAP_ENTRYDN);
         String groupName = result.getAttributeValue(LDAP_CN);
-        LocalAuthority localAuthority = new LocalAuthority();
-        URI gmsServiceID = localAuthority.getServiceURI(Standards.GMS_GROUPS_01.toString());
+        URI gmsServiceID = LocalServices.getInstance().getGroupsServiceURI();
         if (attributes == PUB_GROUP_ATTRS) {
             GroupURI groupID = new GroupURI(gmsServiceID, groupName);
             Group ret = new Group(groupID);
@@ -1094,24 +1276,146 @@ public class LdapGroupDAO extends LdapDAO {
         if (ownerDN == null) {
             throw new AccessControlException(groupName);
         }
-        try {
-            User owner = userDAO.getUser(new DNPrincipal(ownerDN), ldapConn);
-            GroupURI groupID = new GroupURI(gmsServiceID, groupName);
-            Group group = new Group(groupID);
-            setField(group, owner, LDAP_OWNER);
-            if (result.hasAttribute(LDAP_DESCRIPTION)) {
-                group.description = result.getAttributeValue(LDAP_DESCRIPTION);
+        User owner = resolver.getUser(new DN(ownerDN), config.getUsersDN());
+        if (owner == null) {
+            throw new RuntimeException("Invalid state: owner does not exist: " +
+                    ownerDN + " group: " + entryDN);
+        }
+        GroupURI groupID = new GroupURI(gmsServiceID, groupName);
+        Group group = new Group(groupID);
+        setField(group, owner, LDAP_OWNER);
+        if (result.hasAttribute(LDAP_DESCRIPTION)) {
+            group.description = result.getAttributeValue(LDAP_DESCRIPTION);
+        }
+        if (result.hasAttribute(LDAP_GID_NUMBER)) {
+            group.gid = Integer.parseInt(result.getAttributeValue(LDAP_GID_NUMBER));
+        }
+        if (result.hasAttribute(LDAP_MODIFY_TIMESTAMP)) {
+            group.lastModified = result.getAttributeValueAsDate(LDAP_MODIFY_TIMESTAMP);
+        }
+        return group;
+    }
+
+    /**
+     * Request-scoped map of distinguished name to the owner or member it refers to.
+     * The owner and members of a group are collected up front and found with a few
+     * batched searches, and an owner or member that appears again later in the same
+     * request is not searched for a second time.
+     */
+    private class MemberResolver {
+        private final LDAPConnection ldapConn;
+        // member groups of pending (user associated) groups may be locked
+        private final boolean isPending;
+        private final String memberUsersDN;
+
+        private final Map<DN, User> users = new HashMap<DN, User>();
+        private final Map<DN, Group> groups = new HashMap<DN, Group>();
+        private final Set<DN> searchedUsers = new HashSet<DN>();
+        private final Set<DN> searchedGroups = new HashSet<DN>();
+
+        MemberResolver(LDAPConnection ldapConn, boolean isPending) {
+            this.ldapConn = ldapConn;
+            this.isPending = isPending;
+            this.memberUsersDN = isPending ? config.getUserRequestsDN() : config.getUsersDN();
+        }
+
+        // find the owner and all members of the group entry
+        void prefetch(SearchResultEntry searchEntry) throws LDAPException, TransientException {
+            List<DN> owners = new ArrayList<DN>();
+            List<DN> memberUsers = new ArrayList<DN>();
+            List<DN> memberGroups = new ArrayList<DN>();
+
+            String ownerDN = searchEntry.getAttributeValue(LDAP_OWNER);
+            if (ownerDN != null) {
+                owners.add(new DN(ownerDN));
             }
-            if (result.hasAttribute(LDAP_GID_NUMBER)) {
-                group.gid = Integer.parseInt(result.getAttributeValue(LDAP_GID_NUMBER));
+            String[] members = searchEntry.getAttributeValues(LDAP_UNIQUE_MEMBER);
+            if (members != null) {
+                for (String member : members) {
+                    DN memberDN = new DN(member);
+                    if (memberDN.isDescendantOf(memberUsersDN, false)) {
+                        memberUsers.add(memberDN);
+                    } else if (memberDN.isDescendantOf(config.getGroupsDN(), false)) {
+                        memberGroups.add(memberDN);
+                    }
+                }
             }
-            if (result.hasAttribute(LDAP_MODIFY_TIMESTAMP)) {
-                group.lastModified = result.getAttributeValueAsDate(LDAP_MODIFY_TIMESTAMP);
+
+            if (config.getUsersDN().equals(memberUsersDN)) {
+                memberUsers.addAll(owners);
+            } else {
+                findUsers(owners, config.getUsersDN());
+            }
+            findUsers(memberUsers, memberUsersDN);
+            findGroups(memberGroups);
+        }
+
+        User getUser(DN userDN, String usersDN) throws LDAPException, TransientException {
+            findUsers(Collections.singletonList(userDN), usersDN);
+            return users.get(userDN);
+        }
+
+        Group getGroup(DN groupDN) throws LDAPException, TransientException {
+            findGroups(Collections.singletonList(groupDN));
+            return groups.get(groupDN);
+        }
+
+        private void findUsers(List<DN> userDNs, String usersDN) throws LDAPException, TransientException {
+            List<DN> notSearched = new ArrayList<DN>();
+            for (DN userDN : userDNs) {
+                if (searchedUsers.add(userDN) && userDN.isDescendantOf(usersDN, false)) {
+                    notSearched.add(userDN);
+                }
+            }
+            if (!notSearched.isEmpty()) {
+                users.putAll(userDAO.getUsers(notSearched, usersDN, ldapConn));
+            }
+        }
+
+        private void findGroups(List<DN> groupDNs) throws LDAPException, TransientException {
+            // the shared cache only holds active groups
+            LdapEntryCache groupCache = isPending ? null : getGroupCache();
+            long cacheGeneration = (groupCache == null) ? 0L : groupCache.getGeneration();
+            List<DN> notSearched = new ArrayList<DN>();
+            for (DN groupDN : groupDNs) {
+                if (searchedGroups.add(groupDN)) {
+                    ReadOnlyEntry cached = (groupCache == null) ? null : groupCache.get(groupDN);
+                    if (cached == null) {
+                        notSearched.add(groupDN);
+                    } else {
+                        addGroup(groupDN, cached);
+                    }
+                }
+            }
+
+            Profiler profiler = new Profiler(LdapGroupDAO.class);
+            List<Filter> filters = new ArrayList<Filter>();
+            for (Filter dnFilter : createEntryDNFilters(notSearched)) {
+                if (isPending) {
+                    filters.add(dnFilter);
+                } else {
+                    filters.add(Filter.createANDFilter(
+                            Filter.createNOTFilter(Filter.createPresenceFilter(LDAP_NSACCOUNTLOCK)), dnFilter));
+                }
+            }
+            List<SearchResultEntry> groupEntries = search(ldapConn, config.getGroupsDN(), SearchScope.SUB,
+                    filters, PUB_GROUP_ATTRS);
+            profiler.checkpoint("findGroups.search");
+
+            for (SearchResultEntry groupEntry : groupEntries) {
+                addGroup(groupEntry.getParsedDN(), groupEntry);
+                if (groupCache != null) {
+                    groupCache.put(groupEntry, cacheGeneration);
+                }
+            }
+        }
+
+        private void addGroup(DN groupDN, Entry groupEntry) throws LDAPException, TransientException {
+            try {
+                groups.put(groupDN, createGroupFromSearchResult(groupEntry, PUB_GROUP_ATTRS, null));
+            } catch (IllegalArgumentException ex) {
+                logger.debug("invalid member group name: " + groupEntry.getDN() + " -- SKIP");
             }
-            return group;
-        } catch (UserNotFoundException ex) {
-            throw new RuntimeException("Invalid state: owner does not exist: " +
-                    ownerDN + " group: " + entryDN);
         }
     }
 
@@ -71,17 +71,20 @@ package ca.nrc.cadc.ac.server.ldap;
 import ca.nrc.cadc.ac.Group;
 import ca.nrc.cadc.ac.GroupAlreadyExistsException;
 import ca.nrc.cadc.ac.GroupNotFoundException;
+import ca.nrc.cadc.ac.MemberAlreadyExistsException;
 import ca.nrc.cadc.ac.Role;
 import ca.nrc.cadc.ac.User;
 import ca.nrc.cadc.ac.UserNotFoundException;
 import ca.nrc.cadc.ac.UserSet;
 import ca.nrc.cadc.ac.client.GroupMemberships;
+import ca.nrc.cadc.ac.server.AugmentedUserCache;
 import ca.nrc.cadc.ac.server.GroupDetailSelector;
 import ca.nrc.cadc.ac.server.GroupPersistence;
 import ca.nrc.cadc.auth.AuthMethod;
 import ca.nrc.cadc.auth.AuthenticationUtil;
 import ca.nrc.cadc.auth.DNPrincipal;
 import ca.nrc.cadc.auth.HttpPrincipal;
+import ca.nrc.cadc.io.ResourceIterator;
 import ca.nrc.cadc.net.TransientException;
 import ca.nrc.cadc.profiler.Profiler;
 import ca.nrc.cadc.util.ObjectUtil;
@@ -140,35 +143,31 @@ public class LdapGroupPersistence extends LdapPersistence implements GroupPersis
             if (all) {
                 return groupDAO.getGroupNames();
             }
-            Collection<PosixGroup> ret = new ArrayList<>();
-            if (groupNameSubset != null) {
-                for (String groupName : groupNameSubset) {
-                    try {
-                        Group g = groupDAO.getGroup(groupName, false);
-                        PosixGroup pg = new PosixGroup(g.gid, g.getID());
-                        ret.add(pg);
-                    } catch (GroupNotFoundException skip) {
-                        log.debug("skip: " + skip);
-                    }
-                }
-            }
-            if (gidSubset != null) {
-                for (Integer gid : gidSubset) {
-                    try {
-                        Group g = groupDAO.getGroup(gid);
-                        PosixGroup pg = new PosixGroup(g.gid, g.getID());
-                        ret.add(pg);
-                    } catch (GroupNotFoundException skip) {
-                        log.warn("skip: " + skip);
-                    }
-                }
-            }
-            return ret;
+            return groupDAO.getGroupNames(groupNameSubset, gidSubset);
         } finally {
             conns.releaseConnections();
         }
     }
 
+    public ResourceIterator<PosixGroup> iterateGroupNames()
+            throws TransientException, AccessControlException {
+        // current policy: group names and gids are visible to all authenticated users
+        Subject caller = AuthenticationUtil.getCurrentSubject();
+        checkAuthenticatedWithAccount(caller);
+
+        final LdapConnections conns = new LdapConnections(this);
+        final ResourceIterator<PosixGroup> iter;
+        try {
+            LdapGroupDAO groupDAO = new LdapGroupDAO(conns, new LdapUserDAO(conns));
+            iter = groupDAO.iterateGroupNames();
+        } catch (RuntimeException e) {
+            conns.releaseConnections();
+            throw e;
+        }
+
+        return new ConnectionReleasingIterator<PosixGroup>(iter, conns);
+    }
+
     public Group getGroup(String groupName)
             throws GroupNotFoundException, TransientException,
             AccessControlException {
@@ -210,7 +209,9 @@ public class LdapGroupPersistence extends LdapPersistence implements GroupPersis
             User owner = userDAO.getAugmentedUser(userID, false);
             ObjectUtil.setField(group, owner, "owner");
             LdapGroupDAO groupDAO = new LdapGroupDAO(conns, userDAO);
-            return groupDAO.addGroup(group);
+            Group ret = groupDAO.addGroup(group);
+            AugmentedUserCache.getInstance().clear();
+            return ret;
         } finally {
             conns.releaseConnections();
         }
@@ -228,10 +229,12 @@ public class LdapGroupPersistence extends LdapPersistence implements GroupPersis
             userDAO = new LdapUserDAO(conns);
             groupDAO = new LdapGroupDAO(conns, userDAO);
             Group g = groupDAO.getGroup(groupName, false);
-            if (isOwner(callerSubject, g))
+            if (isOwner(callerSubject, g)) {
                 groupDAO.deleteGroup(groupName);
-            else
+                AugmentedUserCache.getInstance().clear();
+            } else {
                 throw new AccessControlException("permission denied");
+            }
         } finally {
             conns.releaseConnections();
         }
@@ -254,16 +257,87 @@ public class LdapGroupPersistence extends LdapPersistence implements GroupPersis
                 if (isOwner(callerSubject, g))
                     allowed = true;
             }
-            if (allowed)
+            if (allowed) {
                 // TODO: pass g into the modify so it doesn't have to do another get
-                return groupDAO.modifyGroup(group);
-            else
+                Group ret = groupDAO.modifyGroup(group);
+                AugmentedUserCache.getInstance().clear();
+                return ret;
+            } else {
                 throw new AccessControlException("permission denied");
+            }
         } finally {
             conns.releaseConnections();
         }
     }
 
+    public void addUserMember(String groupName, Principal userID)
+            throws GroupNotFoundException, UserNotFoundException, MemberAlreadyExistsException,
+            TransientException, AccessControlException {
+        LdapConnections conns = new LdapConnections(this);
+        try {
+            LdapGroupDAO groupDAO = new LdapGroupDAO(conns, new LdapUserDAO(conns));
+            checkModifyPermission(groupName, groupDAO);
+            groupDAO.addUserMember(groupName, userID);
+            AugmentedUserCache.getInstance().invalidate(userID);
+        } finally {
+            conns.releaseConnections();
+        }
+    }
+
+    public void addGroupMember(String groupName, String groupMemberName)
+            throws GroupNotFoundException, GroupAlreadyExistsException,
+            TransientException, AccessControlException {
+        LdapConnections conns = new LdapConnections(this);
+        try {
+            LdapGroupDAO groupDAO = new LdapGroupDAO(conns, new LdapUserDAO(conns));
+            checkModifyPermission(groupName, groupDAO);
+            groupDAO.addGroupMember(groupName, groupMemberName);
+            AugmentedUserCache.getInstance().clear();
+        } finally {
+            conns.releaseConnections();
+        }
+    }
+
+    public void removeUserMember(String groupName, Principal userID)
+            throws GroupNotFoundException, UserNotFoundException,
+            TransientException, AccessControlException {
+        LdapConnections conns = new LdapConnections(this);
+        try {
+            LdapGroupDAO groupDAO = new LdapGroupDAO(conns, new LdapUserDAO(conns));
+            checkModifyPermission(groupName, groupDAO);
+            groupDAO.removeUserMember(groupName, userID);
+            AugmentedUserCache.getInstance().invalidate(userID);
+        } finally {
+            conns.releaseConnections();
+        }
+    }
+
+    public void removeGroupMember(String groupName, String groupMemberName)
+            throws GroupNotFoundException, TransientException, AccessControlException {
+        LdapConnections conns = new LdapConnections(this);
+        try {
+            LdapGroupDAO groupDAO = new LdapGroupDAO(conns, new LdapUserDAO(conns));
+            checkModifyPermission(groupName, groupDAO);
+            groupDAO.removeGroupMember(groupName, groupMemberName);
+            AugmentedUserCache.getInstance().clear();
+        } finally {
+            conns.releaseConnections();
+        }
+    }
+
+    // same policy as modifyGroup: group admins and the owner
+    private void checkModifyPermission(String groupName, LdapGroupDAO groupDAO)
+            throws GroupNotFoundException, TransientException, AccessControlException {
+        Subject callerSubject = AuthenticationUtil.getCurrentSubject();
+        if (isAdmin(callerSubject, groupName)) {
+            return;
+        }
+        Group g = groupDAO.getGroup(groupName, false);
+        if (!isOwner(callerSubject, g)) {
+            throw new AccessControlException("permission denied");
+        }
+    }
+
     /**
      * @param role
      * @param groupID check membership in a specific group or null to get all groups
@@ -371,33 +445,26 @@ public class LdapGroupPersistence extends LdapPersistence implements GroupPersis
 
     // GroupMemberships cache created by AuthenticatorImpl
     private List<Group> getGroupCache(Subject caller, Role role) {
+        return getGroupMemberships(caller).getMemberships(role);
+    }
+
+    private GroupMemberships getGroupMemberships(Subject caller) {
         if (caller == null || AuthMethod.ANON.equals(AuthenticationUtil.getAuthMethod(caller)))
             throw new AccessControlException("Caller is not authenticated");
 
         Set<GroupMemberships> gset = caller.getPrivateCredentials(GroupMemberships.class);
         if (gset == null || gset.isEmpty())
             throw new RuntimeException("BUG: no GroupMemberships cache in Subject");
-        GroupMemberships gms = gset.iterator().next();
-        return gms.getMemberships(role);
+        return gset.iterator().next();
     }
 
     // true if the current subject is a member: using GroupMemberships cache
     private boolean isMember(Subject caller, String groupName) {
-        List<Group> groups = getGroupCache(caller, Role.MEMBER);
-        for (Group g : groups) {
-            if (g.getID().getName().equalsIgnoreCase(groupName))
-                return true;
-        }
-        return false;
+        return getGroupMemberships(caller).hasGroup(groupName, Role.MEMBER);
     }
 
     private boolean isAdmin(Subject caller, String groupName) {
-        List<Group> groups = getGroupCache(caller, Role.ADMIN);
-        for (Group g : groups) {
-            if (g.getID().getName().equalsIgnoreCase(groupName))
-                return true;
-        }
-        return false;
+        return getGroupMemberships(caller).hasGroup(groupName, Role.ADMIN);
     }
 
     private boolean isOwner(Subject caller, Group g) {
@@ -425,14 +492,7 @@ public class LdapGroupPersistence extends LdapPersistence implements GroupPersis
     }
 
     private Principal getUser(Subject caller) {
-        if (caller == null || AuthMethod.ANON.equals(AuthenticationUtil.getAuthMethod(caller)))
-            throw new AccessControlException("Caller is not authenticated");
-
-        Set<GroupMemberships> gset = caller.getPrivateCredentials(GroupMemberships.class);
-        if (gset == null || gset.isEmpty())
-            throw new RuntimeException("BUG: no GroupMemberships cache in Subject");
-        GroupMemberships gms = gset.iterator().next();
-        return gms.getUserID();
+        return getGroupMemberships(caller).getUserID();
     }
 
     private void checkAuthenticatedWithAccount(Subject caller) {
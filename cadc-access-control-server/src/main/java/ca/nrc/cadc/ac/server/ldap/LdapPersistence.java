@@ -126,6 +126,42 @@ public abstract class LdapPersistence {
         }
     }
 
+    protected LdapEntryCache getUserCache() {
+        try {
+            ConnectionPools pools = lookupPools();
+            if (pools == null || pools.isClosed())
+                throw new IllegalStateException("Pools are closed.");
+            return pools.getUserCache();
+        } catch (NamingException e) {
+            throw new IllegalStateException("JNDI error", e);
+        }
+    }
+
+    protected LdapEntryCache getGroupCache() {
+        try {
+            ConnectionPools pools = lookupPools();
+            if (pools == null || pools.isClosed())
+                throw new IllegalStateException("Pools are closed.");
+            return pools.getGroupCache();
+        } catch (NamingException e) {
+            throw new IllegalStateException("JNDI error", e);
+        }
+    }
+
+    /**
+     * Get the hit, miss and eviction counts of the user and group entry caches.
+     *
+     * @return summary of the entry cache statistics
+     */
+    public String getEntryCacheStatistics() {
+        LdapEntryCache userCache = getUserCache();
+        LdapEntryCache groupCache = getGroupCache();
+        if (userCache == null || groupCache == null) {
+            return "entry cache disabled";
+        }
+        return userCache + "; " + groupCache;
+    }
+
     protected void shutdown() {
         // shutdown the pools
         try {
@@ -223,6 +259,8 @@ public abstract class LdapPersistence {
             // check to see if the configuration has changed
             logger.debug("checking for ldap config change");
             LdapConfig newConfig = LdapConfig.getLdapConfig();
+            // and pick up changes to the local service IDs used by the DAOs
+            LocalServices.getInstance().reload();
             if (newConfig.equals(pools.getConfig())) {
                 pools.setLastPoolCheck(System.currentTimeMillis());
             } else {
@@ -68,7 +68,6 @@
  */
 package ca.nrc.cadc.ac.server.ldap;
 
-import ca.nrc.cadc.ac.Group;
 import ca.nrc.cadc.ac.InternalID;
 import ca.nrc.cadc.ac.PersonalDetails;
 import ca.nrc.cadc.ac.PosixDetails;
@@ -82,12 +81,12 @@ import ca.nrc.cadc.auth.DNPrincipal;
 import ca.nrc.cadc.auth.HttpPrincipal;
 import ca.nrc.cadc.auth.NumericPrincipal;
 import ca.nrc.cadc.auth.PosixPrincipal;
+import ca.nrc.cadc.io.ResourceIterator;
 import ca.nrc.cadc.net.TransientException;
 import ca.nrc.cadc.profiler.Profiler;
-import ca.nrc.cadc.reg.Standards;
-import ca.nrc.cadc.reg.client.LocalAuthority;
 import ca.nrc.cadc.util.ObjectUtil;
 import ca.nrc.cadc.util.StringUtil;
+import java.io.IOException;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.security.AccessControlException;
@@ -96,6 +95,7 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -104,13 +104,13 @@ import java.util.TreeSet;
 import java.util.UUID;
 import javax.security.auth.x500.X500Principal;
 import org.apache.log4j.Logger;
-import org.opencadc.gms.GroupURI;
 import com.unboundid.ldap.sdk.AddRequest;
 import com.unboundid.ldap.sdk.Attribute;
 import com.unboundid.ldap.sdk.BindRequest;
 import com.unboundid.ldap.sdk.BindResult;
 import com.unboundid.ldap.sdk.DN;
 import com.unboundid.ldap.sdk.DeleteRequest;
+import com.unboundid.ldap.sdk.Entry;
 import com.unboundid.ldap.sdk.Filter;
 import com.unboundid.ldap.sdk.LDAPConnection;
 import com.unboundid.ldap.sdk.LDAPException;
@@ -120,6 +120,7 @@ import com.unboundid.ldap.sdk.Modification;
 import com.unboundid.ldap.sdk.ModificationType;
 import com.unboundid.ldap.sdk.ModifyDNRequest;
 import com.unboundid.ldap.sdk.ModifyRequest;
+import com.unboundid.ldap.sdk.ReadOnlyEntry;
 import com.unboundid.ldap.sdk.ResultCode;
 import com.unboundid.ldap.sdk.SearchRequest;
 import com.unboundid.ldap.sdk.SearchResult;
@@ -173,6 +174,9 @@ public class LdapUserDAO extends LdapDAO {
     protected static final String LDAP_LOGIN_SHELL = "loginShell";
 
     protected static final String USER_ID = "id";
+
+    // number of users read per search when listing a users tree
+    static final int USERS_PAGE_SIZE = 1000;
     protected static final String NO_LOGIN = "/bin/nologin";
 
     public static final String SUPPRESS_CHECKUSER_KEY = "cadc.skip.checkuser";
@@ -473,6 +477,57 @@ public class LdapUserDAO extends LdapDAO {
         return getUser(userID, config.getUsersDN(), ldapConn, false);
     }
 
+    /**
+     * Get the users with the specified distinguished names using the specified LDAPConnection.
+     * The users are found with one search per SEARCH_BATCH_SIZE names rather than one search
+     * per name; those searches are pipelined when async search is configured. Users that do
+     * not exist or are locked are not included in the result.
+     *
+     * @param userDNs  The distinguished names of the users.
+     * @param usersDN  The tree to search.
+     * @param ldapConn The LDAPConnection instance to use.
+     * @return map of distinguished name to User for the users found.
+     * @throws TransientException     If an temporary, unexpected problem occurred.
+     * @throws AccessControlException If the operation is not permitted.
+     */
+    public Map<DN, User> getUsers(final Collection<DN> userDNs, final String usersDN, final LDAPConnection ldapConn)
+            throws TransientException, AccessControlException {
+        Profiler profiler = new Profiler(LdapUserDAO.class);
+        Map<DN, User> ret = new HashMap<DN, User>();
+        LdapEntryCache userCache = getUserCache();
+        long cacheGeneration = (userCache == null) ? 0L : userCache.getGeneration();
+        List<DN> notCached = new ArrayList<DN>();
+        for (DN userDN : userDNs) {
+            ReadOnlyEntry cached = (userCache == null) ? null : userCache.get(userDN);
+            if (cached == null) {
+                notCached.add(userDN);
+            } else {
+                ret.put(userDN, makeUserFromResult(cached));
+            }
+        }
+
+        try {
+            List<Filter> filters = new ArrayList<Filter>();
+            for (Filter dnFilter : createEntryDNFilters(notCached)) {
+                filters.add(Filter.createANDFilter(this.notLockedFilter, dnFilter));
+            }
+            List<SearchResultEntry> userEntries = search(ldapConn, usersDN, SearchScope.ONE, filters, userAttribs);
+            profiler.checkpoint("getUsers.search");
+
+            for (SearchResultEntry userEntry : userEntries) {
+                ret.put(userEntry.getParsedDN(), makeUserFromResult(userEntry));
+                if (userCache != null) {
+                    userCache.put(userEntry, cacheGeneration);
+                }
+            }
+            logger.debug("getUsers: found " + ret.size() + "/" + userDNs.size() + " in " + usersDN);
+        } catch (LDAPException e) {
+            logger.debug("getUsers Exception: " + e, e);
+            LdapDAO.checkLdapResult(e.getResultCode());
+        }
+        return ret;
+    }
+
     /**
      * Obtain a user who is awaiting approval.
      *
@@ -548,7 +603,7 @@ public class LdapUserDAO extends LdapDAO {
         return ret;
     }
 
-    private User makeUserFromResult(SearchResultEntry userEntry) {
+    private User makeUserFromResult(Entry userEntry) {
         User newUser = new User();
 
         if (userEntry == null) {
@@ -646,6 +701,24 @@ public class LdapUserDAO extends LdapDAO {
         }
 
         try {
+            // lookup by DN of an unlocked user can use the entry cache
+            LdapEntryCache userCache = null;
+            long cacheGeneration = 0L;
+            if (!getLocked && userID instanceof DNPrincipal && DN.isValidDN(userID.getName())) {
+                userCache = getUserCache();
+                DN userDN = new DN(userID.getName());
+                if (userCache != null && userDN.isDescendantOf(usersDN, false)) {
+                    cacheGeneration = userCache.getGeneration();
+                    ReadOnlyEntry cached = userCache.get(userDN);
+                    if (cached != null) {
+                        profiler.checkpoint("getUser.cached");
+                        return makeUserFromResult(cached);
+                    }
+                } else {
+                    userCache = null;
+                }
+            }
+
             String name;
             if (userID instanceof NumericPrincipal) {
                 name = String.valueOf(uuid2long(UUID.fromString(userID.getName())));
@@ -684,6 +757,9 @@ public class LdapUserDAO extends LdapDAO {
                 throw new RuntimeException(
                         "BUG: user not found (" + userID.getName() + ")");
             }
+            if (userCache != null && multiSearchResult.getSearchEntries().size() == 1) {
+                userCache.put(multiSearchResult.getSearchEntries().get(0), cacheGeneration);
+            }
             logger.debug("getUser: found " + userID.getName() + " in " + usersDN);
             return foundUser;
 
@@ -928,27 +1004,19 @@ public class LdapUserDAO extends LdapDAO {
             }
 
             // cache memberOf values in the user
-            LocalAuthority localAuthority = new LocalAuthority();
-            URI gmsServiceURI = localAuthority.getServiceURI(Standards.GMS_GROUPS_01.toString());
-
             if (primeGroupCache) {
+                URI gmsServiceURI = LocalServices.getInstance().getGroupsServiceURI();
                 GroupMemberships gms = new GroupMemberships(gmsServiceURI.toString(), userID);
                 user.appData = gms; // add even if empty
                 String[] mems = userFromSearch.getAttributeValues(LDAP_MEMBEROF);
                 if (mems != null && mems.length > 0) {
-                    DN adminDN = new DN(config.getAdminGroupsDN());
-                    DN groupsDN = new DN(config.getGroupsDN());
-                    List<Group> memberOf = new ArrayList<Group>();
-                    List<Group> adminOf = new ArrayList<Group>();
-                    for (String m : mems) {
-                        DN groupDN = new DN(m);
-                        if (groupDN.isDescendantOf(groupsDN, false))
-                            memberOf.add(createGroupFromDN(groupDN));
-                        else if (groupDN.isDescendantOf(adminDN, false))
-                            adminOf.add(createGroupFromDN(groupDN));
-                    }
-                    gms.add(adminOf, Role.ADMIN);
-                    gms.add(memberOf, Role.MEMBER);
+                    MemberOfParser parser = new MemberOfParser(config.getGroupsDN(), config.getAdminGroupsDN());
+                    List<String> memberOf = new ArrayList<String>(mems.length);
+                    List<String> adminOf = new ArrayList<String>();
+                    parser.parse(mems, memberOf, adminOf);
+                    // the Group instances are only created if needed
+                    gms.addGroupNames(adminOf, Role.ADMIN);
+                    gms.addGroupNames(memberOf, Role.MEMBER);
                 }
             }
             profiler.checkpoint("getAugmentedUser.mapIdentities");
@@ -963,18 +1031,66 @@ public class LdapUserDAO extends LdapDAO {
         }
     }
 
-    // some pretty horrible hacks to avoid querying LDAP for group details...
-    private Group createGroupFromDN(DN groupDN) {
-        LocalAuthority localAuthority = new LocalAuthority();
-        URI gmsServiceURI = localAuthority.getServiceURI(Standards.GMS_GROUPS_01.toString());
-        String cn = groupDN.getRDNString();
-        String[] parts = cn.split("=");
-        if (parts.length == 2 && parts[0].equals("cn")) {
-            GroupURI groupID = new GroupURI(gmsServiceURI, parts[1]);
-            return new Group(groupID);
-        }
-        throw new RuntimeException("BUG: failed to extract group name from " + groupDN
-                .toString());
+    /**
+     * Get the posix identities of the specified active users. The users are found with one
+     * search per SEARCH_BATCH_SIZE usernames or uids rather than one search per user, and
+     * only the username and uid number are returned. Users that do not exist or have no
+     * uid number are not included.
+     *
+     * @param usernames The usernames of the users to find, may be null.
+     * @param uids      The uid numbers of the users to find, may be null.
+     * @return the users found, in the order usernames then uids.
+     * @throws TransientException If an temporary, unexpected problem occurred.
+     */
+    public Collection<PosixPrincipal> getPosixPrincipals(final Collection<String> usernames,
+                                                         final Collection<Integer> uids)
+            throws TransientException {
+        Profiler profiler = new Profiler(LdapUserDAO.class);
+        List<Filter> idFilters = new ArrayList<Filter>();
+        if (usernames != null) {
+            idFilters.addAll(createEqualityFilters(LDAP_USER_NAME, usernames));
+        }
+        if (uids != null) {
+            List<String> values = new ArrayList<String>(uids.size());
+            for (Integer uid : uids) {
+                values.add(uid.toString());
+            }
+            idFilters.addAll(createEqualityFilters(LDAP_UID_NUMBER, values));
+        }
+
+        List<Filter> filters = new ArrayList<Filter>(idFilters.size());
+        for (Filter idFilter : idFilters) {
+            filters.add(Filter.createANDFilter(this.notLockedFilter, idFilter));
+        }
+
+        try {
+            List<SearchResultEntry> entries = search(getReadOnlyConnection(), config.getUsersDN(),
+                    SearchScope.ONE, filters, LDAP_USER_NAME, LDAP_UID_NUMBER);
+            profiler.checkpoint("getPosixPrincipals.search");
+
+            // a user matched by both username and uid is only returned once
+            Map<Integer, PosixPrincipal> ret = new LinkedHashMap<Integer, PosixPrincipal>();
+            for (SearchResultEntry entry : entries) {
+                String uidNumberString = entry.getAttributeValue(LDAP_UID_NUMBER);
+                if (uidNumberString == null) {
+                    continue;
+                }
+                Integer uidNumber = Integer.valueOf(uidNumberString);
+                if (!ret.containsKey(uidNumber)) {
+                    // uidNumber and gidNumber hold the same value
+                    PosixPrincipal p = new PosixPrincipal(uidNumber);
+                    p.defaultGroup = uidNumber;
+                    p.username = entry.getAttributeValue(LDAP_USER_NAME);
+                    ret.put(uidNumber, p);
+                }
+            }
+            logger.debug("getPosixPrincipals: found " + ret.size() + " in " + filters.size() + " searches");
+            return ret.values();
+        } catch (LDAPException e) {
+            logger.debug("getPosixPrincipals Exception: " + e, e);
+            LdapDAO.checkLdapResult(e.getResultCode());
+            throw new IllegalStateException("Could not find users root", e);
+        }
     }
 
     /**
@@ -988,6 +1104,20 @@ public class LdapUserDAO extends LdapDAO {
         return getUsers(config.getUsersDN());
     }
 
+    /**
+     * Iterate over the users of the active tree.
+     *
+     * @param offset Number of users to skip.
+     * @param limit  Maximum number of users to return, or null for all.
+     * @return An iterator over the users, to be closed after use.
+     * @throws TransientException If an temporary, unexpected problem occurred.
+     * @see #iterateUsers(String, int, Integer)
+     */
+    public ResourceIterator<User> iterateUsers(int offset, Integer limit)
+            throws AccessControlException, TransientException {
+        return iterateUsers(config.getUsersDN(), offset, limit);
+    }
+
     /**
      * Get all users from the pending tree.
      *
@@ -1002,7 +1132,33 @@ public class LdapUserDAO extends LdapDAO {
     public Collection<User> getUsers(final String usersDN)
             throws AccessControlException, TransientException {
         final Collection<User> users = new ArrayList<User>();
+        ResourceIterator<User> iter = iterateUsers(usersDN, 0, null);
+        try {
+            while (iter.hasNext()) {
+                users.add(iter.next());
+            }
+        } finally {
+            close(iter);
+        }
+        logger.debug("getUsers: found " + users.size() + " in " + usersDN);
+        return users;
+    }
 
+    /**
+     * Iterate over the users of a tree in directory order, reading them USERS_PAGE_SIZE
+     * at a time with the simple paged results control. The first page is read before
+     * returning, so errors finding the tree are thrown here; the iterator throws a
+     * RuntimeException if a later page fails. The iterator must be closed to release
+     * the paged search if it is not read to the end.
+     *
+     * @param usersDN The tree to list.
+     * @param offset  Number of users to skip.
+     * @param limit   Maximum number of users to return, or null for all.
+     * @return users with their username and, if set, personal and posix details
+     * @throws TransientException If an temporary, unexpected problem occurred.
+     */
+    public ResourceIterator<User> iterateUsers(final String usersDN, int offset, Integer limit)
+            throws AccessControlException, TransientException {
         Filter presenceFilter = Filter.createPresenceFilter(LDAP_UID);
         Filter filter = Filter.createANDFilter(this.notLockedFilter, presenceFilter);
         logger.debug("search filter: " + filter);
@@ -1013,46 +1169,61 @@ public class LdapUserDAO extends LdapDAO {
                 new SearchRequest(usersDN, SearchScope.ONE, filter, attributes);
 
         try {
-            final SearchResult searchResult =
-                    getReadOnlyConnection().search(searchRequest);
-
-            LdapDAO.checkLdapResult(searchResult.getResultCode());
-            for (SearchResultEntry next : searchResult.getSearchEntries()) {
-                final String firstName =
-                        next.getAttributeValue(LDAP_FIRST_NAME);
-                final String lastName =
-                        next.getAttributeValue(LDAP_LAST_NAME).trim();
-                final String username = next.getAttributeValue(LDAP_USER_NAME);
-
-                User user = new User();
-                // don't add users with no http identities
-                if (!EXTERNAL_USER_CN.equals(username)) {
-                    user.getIdentities().add(new HttpPrincipal(username));
-
-                    if (StringUtil.hasLength(firstName) && StringUtil.hasLength(lastName)) {
-                        user.personalDetails = new PersonalDetails(firstName.trim(), lastName.trim());
-                    }
-
-                    String homeDir = next.getAttributeValue(LDAP_HOME_DIRECTORY);
-                    if (homeDir != null) {
-                        // uid, uidNumber and gidNumber hold the same value
-                        int uidNumber = Integer.parseInt(next.getAttributeValue(LDAP_UID_NUMBER));
-                        user.posixDetails = new PosixDetails(username, uidNumber, uidNumber, homeDir);
-                        user.posixDetails.loginShell = next.getAttributeValue(LDAP_LOGIN_SHELL);
-                    }
-
-                    users.add(user);
+            return new PagedSearchIterator<User>(getReadOnlyConnection(), searchRequest, USERS_PAGE_SIZE,
+                    offset, limit) {
+                @Override
+                User toObject(SearchResultEntry entry) {
+                    return makeUserListEntry(entry);
                 }
-            }
+            };
         } catch (LDAPSearchException e) {
             if (e.getResultCode() == ResultCode.NO_SUCH_OBJECT) {
                 final String message = "Could not find users root";
                 logger.debug(message, e);
                 throw new IllegalStateException(message);
             }
+            logger.debug("iterateUsers Exception: " + e, e);
+            LdapDAO.checkLdapResult(e.getResultCode());
+            throw new RuntimeException("BUG: checkLdapResult didn't throw an exception");
+        } catch (LDAPException e) {
+            logger.debug("iterateUsers Exception: " + e, e);
+            LdapDAO.checkLdapResult(e.getResultCode());
+            throw new RuntimeException("BUG: checkLdapResult didn't throw an exception");
         }
-        logger.debug("getUsers: found " + users.size() + " in " + usersDN);
-        return users;
+    }
+
+    private static void close(ResourceIterator<User> iter) {
+        try {
+            iter.close();
+        } catch (IOException e) {
+            logger.debug("failed to close user iterator: " + e);
+        }
+    }
+
+    // user of a list entry, null for users without an http identity
+    private User makeUserListEntry(SearchResultEntry next) {
+        final String username = next.getAttributeValue(LDAP_USER_NAME);
+        if (EXTERNAL_USER_CN.equals(username)) {
+            return null;
+        }
+        final String firstName = next.getAttributeValue(LDAP_FIRST_NAME);
+        final String lastName = next.getAttributeValue(LDAP_LAST_NAME).trim();
+
+        User user = new User();
+        user.getIdentities().add(new HttpPrincipal(username));
+
+        if (StringUtil.hasLength(firstName) && StringUtil.hasLength(lastName)) {
+            user.personalDetails = new PersonalDetails(firstName.trim(), lastName.trim());
+        }
+
+        String homeDir = next.getAttributeValue(LDAP_HOME_DIRECTORY);
+        if (homeDir != null) {
+            // uid, uidNumber and gidNumber hold the same value
+            int uidNumber = Integer.parseInt(next.getAttributeValue(LDAP_UID_NUMBER));
+            user.posixDetails = new PosixDetails(username, uidNumber, uidNumber, homeDir);
+            user.posixDetails.loginShell = next.getAttributeValue(LDAP_LOGIN_SHELL);
+        }
+        return user;
     }
 
     public SortedSet<String> getEmailsForAllUsers()
@@ -1112,6 +1283,8 @@ public class LdapUserDAO extends LdapDAO {
                     new ModifyDNRequest(dn, uid, true, config.getUsersDN());
 
             LdapDAO.checkLdapResult(ldapRWConn.modifyDN(modifyDNRequest).getResultCode());
+            invalidateUser(new DN(dn));
+            invalidateUser(new DN(uid + "," + config.getUsersDN()));
         } catch (LDAPException e) {
             logger.debug("Modify Exception", e);
             LdapDAO.checkLdapResult(e.getResultCode());
@@ -1171,11 +1344,13 @@ public class LdapUserDAO extends LdapDAO {
 
         LDAPConnection ldapRWConn = getReadWriteConnection();
         try {
-            ModifyRequest modifyRequest = new ModifyRequest(getUserDN(user, ldapRWConn, false), mods);
+            DN userDN = getUserDN(user, ldapRWConn, false);
+            ModifyRequest modifyRequest = new ModifyRequest(userDN, mods);
             //modifyRequest.addControl(
             //    new ProxiedAuthorizationV2RequestControl(
             //        "dn:" + getSubjectDN().toNormalizedString()));
             LdapDAO.checkLdapResult(ldapRWConn.modify(modifyRequest).getResultCode());
+            invalidateUser(userDN);
         } catch (LDAPException e) {
             logger.debug("Modify Exception", e);
             LdapDAO.checkLdapResult(e.getResultCode());
@@ -1321,6 +1496,7 @@ public class LdapUserDAO extends LdapDAO {
                 logger.info("delete result:" + delRequest);
                 LdapDAO.checkLdapResult(result.getResultCode());
             }
+            invalidateUser(userDN);
             logger.debug("deleted " + userID.getName() + " from " + usersDN);
         } catch (LDAPException e1) {
             logger.debug("Delete Exception: " + e1, e1);
@@ -1353,6 +1529,7 @@ public class LdapUserDAO extends LdapDAO {
 
             LDAPResult result = ldapRWConn.modify(modifyRequest);
             LdapDAO.checkLdapResult(result.getResultCode());
+            invalidateUser(userDN);
 
             logger.debug("unlocked " + userID.getName());
         } catch (LDAPException e1) {
@@ -1489,8 +1666,7 @@ public class LdapUserDAO extends LdapDAO {
 
     protected InternalID getInternalID(String numericID) {
         UUID uuid = new UUID(0L, Long.parseLong(numericID));
-        LocalAuthority localAuthority = new LocalAuthority();
-        URI umsServiceURI = localAuthority.getServiceURI(Standards.UMS_REQS_01.toString());
+        URI umsServiceURI = LocalServices.getInstance().getUserRequestsServiceURI();
         String uriString = umsServiceURI.toString() + "?" + uuid.toString();
         URI uri;
         try {
@@ -75,15 +75,15 @@ import ca.nrc.cadc.ac.User;
 import ca.nrc.cadc.ac.UserAlreadyExistsException;
 import ca.nrc.cadc.ac.UserNotFoundException;
 import ca.nrc.cadc.ac.UserRequest;
+import ca.nrc.cadc.ac.server.AugmentedUserCache;
 import ca.nrc.cadc.ac.server.UserPersistence;
 import ca.nrc.cadc.auth.AuthMethod;
 import ca.nrc.cadc.auth.AuthenticationUtil;
 import ca.nrc.cadc.auth.HttpPrincipal;
 import ca.nrc.cadc.auth.PosixPrincipal;
+import ca.nrc.cadc.io.ResourceIterator;
 import ca.nrc.cadc.net.TransientException;
 import ca.nrc.cadc.profiler.Profiler;
-import ca.nrc.cadc.reg.Standards;
-import ca.nrc.cadc.reg.client.LocalAuthority;
 import ca.nrc.cadc.util.ObjectUtil;
 import java.net.URI;
 import java.security.AccessControlException;
@@ -155,8 +155,7 @@ public class LdapUserPersistence extends LdapPersistence implements UserPersiste
             // create the group to be associated with this userRequest
             userDAO = new LdapUserDAO(conns);
             groupDAO = new LdapGroupDAO(conns, userDAO);
-            LocalAuthority localAuthority = new LocalAuthority();
-            URI gmsServiceURI = localAuthority.getServiceURI(Standards.GMS_GROUPS_01.toString());
+            URI gmsServiceURI = LocalServices.getInstance().getGroupsServiceURI();
             GroupURI groupID = new GroupURI(gmsServiceURI, userRequest.getUser().getHttpPrincipal().getName());
             group = new Group(groupID);
             User groupOwner = userDAO.getAugmentedUser(ownerHttpPrincipal, false);
@@ -356,6 +355,42 @@ public class LdapUserPersistence extends LdapPersistence implements UserPersiste
         }
     }
 
+    /**
+     * Iterate over the users of the active users tree. The LDAP connection is held
+     * until the iterator is closed.
+     *
+     * @param offset Number of users to skip.
+     * @param limit  Maximum number of users, or null for all.
+     * @return An iterator over the users.
+     * @throws TransientException     If an temporary, unexpected problem occurred.
+     * @throws AccessControlException If the operation is not permitted.
+     */
+    public ResourceIterator<User> iterateUsers(int offset, Integer limit)
+            throws TransientException, AccessControlException {
+        // current policy: usernames visible to all authenticated users
+        Subject caller = AuthenticationUtil.getCurrentSubject();
+        if (caller == null || AuthMethod.ANON.equals(AuthenticationUtil.getAuthMethod(caller))) {
+            throw new AccessControlException("Caller is not authenticated");
+        }
+
+        // user must also have an approved account
+        if (caller.getPrincipals(HttpPrincipal.class).isEmpty()) {
+            throw new AccessControlException("Caller does not have authorized account");
+        }
+
+        final LdapConnections conns = new LdapConnections(this);
+        final ResourceIterator<User> iter;
+        try {
+            LdapUserDAO userDAO = new LdapUserDAO(conns);
+            iter = userDAO.iterateUsers(offset, limit);
+        } catch (RuntimeException e) {
+            conns.releaseConnections();
+            throw e;
+        }
+
+        return new ConnectionReleasingIterator<User>(iter, conns);
+    }
+
     public Collection<PosixPrincipal> getUsers(List<String> usernameSubset, List<Integer> uidSubset)
             throws TransientException, AccessControlException {
         // current policy: usernames visible to all authenticated users
@@ -385,38 +420,7 @@ public class LdapUserPersistence extends LdapPersistence implements UserPersiste
                 }
                 return ret;
             }
-            Collection<PosixPrincipal> ret = new ArrayList<>();
-            if (usernameSubset != null) {
-                for (String username : usernameSubset) {
-                    try {
-                        User u = userDAO.getAugmentedUser(new HttpPrincipal(username), false);
-                        if (u.posixDetails != null) {
-                            PosixPrincipal p = new PosixPrincipal(u.posixDetails.getUid());
-                            p.defaultGroup = u.posixDetails.getGid();
-                            p.username = u.posixDetails.getUsername();
-                            ret.add(p);
-                        }
-                    } catch (UserNotFoundException skip) {
-                        logger.debug("skip: " + skip);
-                    }
-                }
-            }
-            if (uidSubset != null) {
-                for (Integer uid : uidSubset) {
-                    try {
-                        User u = userDAO.getAugmentedUser(new PosixPrincipal(uid), false);
-                        if (u.posixDetails != null) {
-                            PosixPrincipal p = new PosixPrincipal(u.posixDetails.getUid());
-                            p.defaultGroup = u.posixDetails.getGid();
-                            p.username = u.posixDetails.getUsername();
-                            ret.add(p);
-                        }
-                    } catch (UserNotFoundException skip) {
-                        logger.debug("skip: " + skip);
-                    }
-                }
-            }
-            return ret;
+            return userDAO.getPosixPrincipals(usernameSubset, uidSubset);
         } finally {
             conns.releaseConnections();
         }
@@ -466,8 +470,7 @@ public class LdapUserPersistence extends LdapPersistence implements UserPersiste
             // get the group associated with the userRequest
             userDAO = new LdapUserDAO(conns);
             LdapGroupDAO groupDAO = new LdapGroupDAO(conns, userDAO);
-            LocalAuthority localAuthority = new LocalAuthority();
-            URI gmsServiceURI = localAuthority.getServiceURI(Standards.GMS_GROUPS_01.toString());
+            URI gmsServiceURI = LocalServices.getInstance().getGroupsServiceURI();
             String userName = userRequest.getHttpPrincipal().getName();
             GroupURI groupID = new GroupURI(gmsServiceURI, userName);
             try {
@@ -544,7 +547,12 @@ public class LdapUserPersistence extends LdapPersistence implements UserPersiste
         LdapConnections conns = new LdapConnections(this);
         try {
             userDAO = new LdapUserDAO(conns);
-            return userDAO.modifyUser(user);
+            User ret = userDAO.modifyUser(user);
+            // the identities may have changed
+            for (Principal p : user.getIdentities()) {
+                AugmentedUserCache.getInstance().invalidate(p);
+            }
+            return ret;
         } finally {
             conns.releaseConnections();
         }
@@ -570,6 +578,7 @@ public class LdapUserPersistence extends LdapPersistence implements UserPersiste
         try {
             userDAO = new LdapUserDAO(conns);
             userDAO.deleteUser(userID, true);
+            AugmentedUserCache.getInstance().invalidate(userID);
         } finally {
             conns.releaseConnections();
         }
@@ -619,6 +628,7 @@ public class LdapUserPersistence extends LdapPersistence implements UserPersiste
         try {
             userDAO = new LdapUserDAO(conns);
             userDAO.deleteUser(userID, false);
+            AugmentedUserCache.getInstance().invalidate(userID);
         } finally {
             conns.releaseConnections();
         }
@@ -643,8 +653,7 @@ public class LdapUserPersistence extends LdapPersistence implements UserPersiste
             LdapGroupDAO groupDAO = new LdapGroupDAO(conns, userDAO);
 
             // delete the pending group associated with the user
-            LocalAuthority localAuthority = new LocalAuthority();
-            URI gmsServiceURI = localAuthority.getServiceURI(Standards.GMS_GROUPS_01.toString());
+            URI gmsServiceURI = LocalServices.getInstance().getGroupsServiceURI();
             GroupURI groupID = new GroupURI(gmsServiceURI, userID.getName());
             try {
                 // delete the group and then the userRequest
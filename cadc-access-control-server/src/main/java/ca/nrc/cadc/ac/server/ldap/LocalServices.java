@@ -0,0 +1,166 @@
+/*
+ ************************************************************************
+ *******************  CANADIAN ASTRONOMY DATA CENTRE  *******************
+ **************  CENTRE CANADIEN DE DONNÉES ASTRONOMIQUES  **************
+ *
+ *  (c) 2026.                            (c) 2026.
+ *  Government of Canada                 Gouvernement du Canada
+ *  National Research Council            Conseil national de recherches
+ *  Ottawa, Canada, K1A 0R6              Ottawa, Canada, K1A 0R6
+ *  All rights reserved                  Tous droits réservés
+ *
+ *  NRC disclaims any warranties,        Le CNRC dénie toute garantie
+ *  expressed, implied, or               énoncée, implicite ou légale,
+ *  statutory, of any kind with          de quelque nature que ce
+ *  respect to the software,             soit, concernant le logiciel,
+ *  including without limitation         y compris sans restriction
+ *  any warranty of merchantability      toute garantie de valeur
+ *  or fitness for a particular          marchande ou de pertinence
+ *  purpose. NRC shall not be            pour un usage particulier.
+ *  liable in any event for any          Le CNRC ne pourra en aucun cas
+ *  damages, whether direct or           être tenu responsable de tout
+ *  indirect, special or general,        dommage, direct ou indirect,
+ *  consequential or incidental,         particulier ou général,
+ *  arising from the use of the          accessoire ou fortuit, résultant
+ *  software.  Neither the name          de l'utilisation du logiciel. Ni
+ *  of the National Research             le nom du Conseil National de
+ *  Council of Canada nor the            Recherches du Canada ni les noms
+ *  names of its contributors may        de ses  participants ne peuvent
+ *  be used to endorse or promote        être utilisés pour approuver ou
+ *  products derived from this           promouvoir les produits dérivés
+ *  software without specific prior      de ce logiciel sans autorisation
+ *  written permission.                  préalable et particulière
+ *                                       par écrit.
+ *
+ *  This file is part of the             Ce fichier fait partie du projet
+ *  OpenCADC project.                    OpenCADC.
+ *
+ *  OpenCADC is free software:           OpenCADC est un logiciel libre ;
+ *  you can redistribute it and/or       vous pouvez le redistribuer ou le
+ *  modify it under the terms of         modifier suivant les termes de
+ *  the GNU Affero General Public        la “GNU Affero General Public
+ *  License as published by the          License” telle que publiée
+ *  Free Software Foundation,            par la Free Software Foundation
+ *  either version 3 of the              : soit la version 3 de cette
+ *  License, or (at your option)         licence, soit (à votre gré)
+ *  any later version.                   toute version ultérieure.
+ *
+ *  OpenCADC is distributed in the       OpenCADC est distribué
+ *  hope that it will be useful,         dans l’espoir qu’il vous
+ *  but WITHOUT ANY WARRANTY;            sera utile, mais SANS AUCUNE
+ *  without even the implied             GARANTIE : sans même la garantie
+ *  warranty of MERCHANTABILITY          implicite de COMMERCIALISABILITÉ
+ *  or FITNESS FOR A PARTICULAR          ni d’ADÉQUATION À UN OBJECTIF
+ *  PURPOSE.  See the GNU Affero         PARTICULIER. Consultez la Licence
+ *  General Public License for           Générale Publique GNU Affero
+ *  more details.                        pour plus de détails.
+ *
+ *  You should have received             Vous devriez avoir reçu une
+ *  a copy of the GNU Affero             copie de la Licence Générale
+ *  General Public License along         Publique GNU Affero avec
+ *  with OpenCADC.  If not, see          OpenCADC ; si ce n’est
+ *  <http://www.gnu.org/licenses/>.      pas le cas, consultez :
+ *                                       <http://www.gnu.org/licenses/>.
+ *
+ *
+ ************************************************************************
+ */
+
+package ca.nrc.cadc.ac.server.ldap;
+
+import ca.nrc.cadc.reg.Standards;
+import ca.nrc.cadc.reg.client.LocalAuthority;
+import java.net.URI;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import org.apache.log4j.Logger;
+
+/**
+ * Process-wide holder of the local service IDs used by the LDAP DAOs, so the
+ * LocalAuthority configuration is read once per standard instead of once per group
+ * or user built. The service IDs are resolved when first used and resolved again by
+ * reload(), which LdapPersistence calls when it checks the LDAP configuration.
+ */
+public class LocalServices {
+    private static final Logger logger = Logger.getLogger(LocalServices.class);
+
+    private static final LocalServices INSTANCE = new LocalServices();
+
+    private final Map<String, URI> serviceURIs = new ConcurrentHashMap<String, URI>();
+
+    LocalServices() {
+    }
+
+    public static LocalServices getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * @return the local group management (GMS groups) service ID
+     */
+    public URI getGroupsServiceURI() {
+        return getServiceURI(Standards.GMS_GROUPS_01);
+    }
+
+    /**
+     * @return the local group search service ID
+     */
+    public URI getGroupSearchServiceURI() {
+        return getServiceURI(Standards.GMS_SEARCH_10);
+    }
+
+    /**
+     * @return the local user requests service ID
+     */
+    public URI getUserRequestsServiceURI() {
+        return getServiceURI(Standards.UMS_REQS_01);
+    }
+
+    /**
+     * Get the local service ID of a standard, resolving it on first use.
+     *
+     * @param standardID The standard ID.
+     * @return the service ID
+     */
+    public URI getServiceURI(URI standardID) {
+        String key = standardID.toString();
+        URI ret = serviceURIs.get(key);
+        if (ret == null) {
+            ret = resolve(key);
+            if (ret != null) {
+                serviceURIs.put(key, ret);
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * Resolve the service IDs used so far again, to pick up configuration changes.
+     */
+    public void reload() {
+        for (Map.Entry<String, URI> e : serviceURIs.entrySet()) {
+            try {
+                URI cur = resolve(e.getKey());
+                if (cur == null) {
+                    serviceURIs.remove(e.getKey());
+                } else if (!cur.equals(e.getValue())) {
+                    logger.info("local service for " + e.getKey() + " changed: " + e.getValue() + " -> " + cur);
+                    serviceURIs.put(e.getKey(), cur);
+                }
+            } catch (RuntimeException ex) {
+                logger.warn("failed to resolve local service for " + e.getKey() + ": " + ex);
+                serviceURIs.remove(e.getKey());
+            }
+        }
+    }
+
+    // for testing
+    void clear() {
+        serviceURIs.clear();
+    }
+
+    private URI resolve(String standardID) {
+        LocalAuthority localAuthority = new LocalAuthority();
+        return localAuthority.getServiceURI(standardID);
+    }
+}
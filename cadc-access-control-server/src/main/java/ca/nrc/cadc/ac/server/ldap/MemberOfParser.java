@@ -0,0 +1,170 @@
+/*
+ ************************************************************************
+ *******************  CANADIAN ASTRONOMY DATA CENTRE  *******************
+ **************  CENTRE CANADIEN DE DONNÉES ASTRONOMIQUES  **************
+ *
+ *  (c) 2026.                            (c) 2026.
+ *  Government of Canada                 Gouvernement du Canada
+ *  National Research Council            Conseil national de recherches
+ *  Ottawa, Canada, K1A 0R6              Ottawa, Canada, K1A 0R6
+ *  All rights reserved                  Tous droits réservés
+ *
+ *  NRC disclaims any warranties,        Le CNRC dénie toute garantie
+ *  expressed, implied, or               énoncée, implicite ou légale,
+ *  statutory, of any kind with          de quelque nature que ce
+ *  respect to the software,             soit, concernant le logiciel,
+ *  including without limitation         y compris sans restriction
+ *  any warranty of merchantability      toute garantie de valeur
+ *  or fitness for a particular          marchande ou de pertinence
+ *  purpose. NRC shall not be            pour un usage particulier.
+ *  liable in any event for any          Le CNRC ne pourra en aucun cas
+ *  damages, whether direct or           être tenu responsable de tout
+ *  indirect, special or general,        dommage, direct ou indirect,
+ *  consequential or incidental,         particulier ou général,
+ *  arising from the use of the          accessoire ou fortuit, résultant
+ *  software.  Neither the name          de l'utilisation du logiciel. Ni
+ *  of the National Research             le nom du Conseil National de
+ *  Council of Canada nor the            Recherches du Canada ni les noms
+ *  names of its contributors may        de ses  participants ne peuvent
+ *  be used to endorse or promote        être utilisés pour approuver ou
+ *  products derived from this           promouvoir les produits dérivés
+ *  software without specific prior      de ce logiciel sans autorisation
+ *  written permission.                  préalable et particulière
+ *                                       par écrit.
+ *
+ *  This file is part of the             Ce fichier fait partie du projet
+ *  OpenCADC project.                    OpenCADC.
+ *
+ *  OpenCADC is free software:           OpenCADC est un logiciel libre ;
+ *  you can redistribute it and/or       vous pouvez le redistribuer ou le
+ *  modify it under the terms of         modifier suivant les termes de
+ *  the GNU Affero General Public        la “GNU Affero General Public
+ *  License as published by the          License” telle que publiée
+ *  Free Software Foundation,            par la Free Software Foundation
+ *  either version 3 of the              : soit la version 3 de cette
+ *  License, or (at your option)         licence, soit (à votre gré)
+ *  any later version.                   toute version ultérieure.
+ *
+ *  OpenCADC is distributed in the       OpenCADC est distribué
+ *  hope that it will be useful,         dans l’espoir qu’il vous
+ *  but WITHOUT ANY WARRANTY;            sera utile, mais SANS AUCUNE
+ *  without even the implied             GARANTIE : sans même la garantie
+ *  warranty of MERCHANTABILITY          implicite de COMMERCIALISABILITÉ
+ *  or FITNESS FOR A PARTICULAR          ni d’ADÉQUATION À UN OBJECTIF
+ *  PURPOSE.  See the GNU Affero         PARTICULIER. Consultez la Licence
+ *  General Public License for           Générale Publique GNU Affero
+ *  more details.                        pour plus de détails.
+ *
+ *  You should have received             Vous devriez avoir reçu une
+ *  a copy of the GNU Affero             copie de la Licence Générale
+ *  General Public License along         Publique GNU Affero avec
+ *  with OpenCADC.  If not, see          OpenCADC ; si ce n’est
+ *  <http://www.gnu.org/licenses/>.      pas le cas, consultez :
+ *                                       <http://www.gnu.org/licenses/>.
+ *
+ *
+ ************************************************************************
+ */
+
+package ca.nrc.cadc.ac.server.ldap;
+
+import com.unboundid.ldap.sdk.DN;
+import com.unboundid.ldap.sdk.LDAPException;
+import java.util.List;
+
+/**
+ * Extracts group names from the memberOf values of a user entry. The values written
+ * by the directory are normally normalized DNs of the form cn=name,groupsDN, so the
+ * group name and the parent DN are found by string comparison with the normalized
+ * groups and admin groups DNs. Values in any other form, e.g. with escaped
+ * characters, spaces or upper case attribute names, are parsed as DNs.
+ */
+class MemberOfParser {
+    private static final String CN = "cn=";
+
+    private final DN groupsDN;
+    private final DN adminGroupsDN;
+    private final String groupsSuffix;
+    private final String adminGroupsSuffix;
+
+    /**
+     * Constructor.
+     *
+     * @param groupsDN      DN of the groups tree
+     * @param adminGroupsDN DN of the admin groups tree
+     * @throws LDAPException if either DN is invalid
+     */
+    MemberOfParser(String groupsDN, String adminGroupsDN) throws LDAPException {
+        this.groupsDN = new DN(groupsDN);
+        this.adminGroupsDN = new DN(adminGroupsDN);
+        this.groupsSuffix = this.groupsDN.toNormalizedString();
+        this.adminGroupsSuffix = this.adminGroupsDN.toNormalizedString();
+    }
+
+    /**
+     * Add the names of the groups in the memberOf values to the member or admin list.
+     * Values that are not in either tree are ignored.
+     *
+     * @param memberOf     memberOf attribute values
+     * @param memberGroups names of member groups
+     * @param adminGroups  names of admin groups
+     * @throws LDAPException if a value is not a valid DN
+     */
+    void parse(String[] memberOf, List<String> memberGroups, List<String> adminGroups)
+        throws LDAPException {
+        for (String m : memberOf) {
+            if (!parseNormalized(m, memberGroups, adminGroups)) {
+                parseDN(m, memberGroups, adminGroups);
+            }
+        }
+    }
+
+    // fast path: returns false if the value is not in the expected normalized form
+    private boolean parseNormalized(String m, List<String> memberGroups, List<String> adminGroups) {
+        if (!m.startsWith(CN)) {
+            return false;
+        }
+        int comma = m.indexOf(',');
+        if (comma <= CN.length()) {
+            return false;
+        }
+        for (int i = CN.length(); i < comma; i++) {
+            char c = m.charAt(i);
+            if (c == '\\' || c == '"' || c == '+' || c == '=' || c == ' ') {
+                return false;
+            }
+        }
+        int len = m.length() - comma - 1;
+        if (len == groupsSuffix.length()
+                && m.regionMatches(true, comma + 1, groupsSuffix, 0, len)) {
+            memberGroups.add(m.substring(CN.length(), comma));
+            return true;
+        }
+        if (len == adminGroupsSuffix.length()
+                && m.regionMatches(true, comma + 1, adminGroupsSuffix, 0, len)) {
+            adminGroups.add(m.substring(CN.length(), comma));
+            return true;
+        }
+        return false;
+    }
+
+    private void parseDN(String m, List<String> memberGroups, List<String> adminGroups)
+        throws LDAPException {
+        DN groupDN = new DN(m);
+        if (groupDN.isDescendantOf(groupsDN, false)) {
+            memberGroups.add(getGroupName(groupDN));
+        } else if (groupDN.isDescendantOf(adminGroupsDN, false)) {
+            adminGroups.add(getGroupName(groupDN));
+        }
+    }
+
+    static String getGroupName(DN groupDN) {
+        String cn = groupDN.getRDNString();
+        String[] parts = cn.split("=");
+        if (parts.length == 2 && parts[0].equals("cn")) {
+            return parts[1];
+        }
+        throw new RuntimeException("BUG: failed to extract group name from " + groupDN
+                .toString());
+    }
+}
@@ -0,0 +1,225 @@
+/*
+ ************************************************************************
+ *******************  CANADIAN ASTRONOMY DATA CENTRE  *******************
+ **************  CENTRE CANADIEN DE DONNÉES ASTRONOMIQUES  **************
+ *
+ *  (c) 2026.                            (c) 2026.
+ *  Government of Canada                 Gouvernement du Canada
+ *  National Research Council            Conseil national de recherches
+ *  Ottawa, Canada, K1A 0R6              Ottawa, Canada, K1A 0R6
+ *  All rights reserved                  Tous droits réservés
+ *
+ *  NRC disclaims any warranties,        Le CNRC dénie toute garantie
+ *  expressed, implied, or               énoncée, implicite ou légale,
+ *  statutory, of any kind with          de quelque nature que ce
+ *  respect to the software,             soit, concernant le logiciel,
+ *  including without limitation         y compris sans restriction
+ *  any warranty of merchantability      toute garantie de valeur
+ *  or fitness for a particular          marchande ou de pertinence
+ *  purpose. NRC shall not be            pour un usage particulier.
+ *  liable in any event for any          Le CNRC ne pourra en aucun cas
+ *  damages, whether direct or           être tenu responsable de tout
+ *  indirect, special or general,        dommage, direct ou indirect,
+ *  consequential or incidental,         particulier ou général,
+ *  arising from the use of the          accessoire ou fortuit, résultant
+ *  software.  Neither the name          de l'utilisation du logiciel. Ni
+ *  of the National Research             le nom du Conseil National de
+ *  Council of Canada nor the            Recherches du Canada ni les noms
+ *  names of its contributors may        de ses  participants ne peuvent
+ *  be used to endorse or promote        être utilisés pour approuver ou
+ *  products derived from this           promouvoir les produits dérivés
+ *  software without specific prior      de ce logiciel sans autorisation
+ *  written permission.                  préalable et particulière
+ *                                       par écrit.
+ *
+ *  This file is part of the             Ce fichier fait partie du projet
+ *  OpenCADC project.                    OpenCADC.
+ *
+ *  OpenCADC is free software:           OpenCADC est un logiciel libre ;
+ *  you can redistribute it and/or       vous pouvez le redistribuer ou le
+ *  modify it under the terms of         modifier suivant les termes de
+ *  the GNU Affero General Public        la “GNU Affero General Public
+ *  License as published by the          License” telle que publiée
+ *  Free Software Foundation,            par la Free Software Foundation
+ *  either version 3 of the              : soit la version 3 de cette
+ *  License, or (at your option)         licence, soit (à votre gré)
+ *  any later version.                   toute version ultérieure.
+ *
+ *  OpenCADC is distributed in the       OpenCADC est distribué
+ *  hope that it will be useful,         dans l’espoir qu’il vous
+ *  but WITHOUT ANY WARRANTY;            sera utile, mais SANS AUCUNE
+ *  without even the implied             GARANTIE : sans même la garantie
+ *  warranty of MERCHANTABILITY          implicite de COMMERCIALISABILITÉ
+ *  or FITNESS FOR A PARTICULAR          ni d’ADÉQUATION À UN OBJECTIF
+ *  PURPOSE.  See the GNU Affero         PARTICULIER. Consultez la Licence
+ *  General Public License for           Générale Publique GNU Affero
+ *  more details.                        pour plus de détails.
+ *
+ *  You should have received             Vous devriez avoir reçu une
+ *  a copy of the GNU Affero             copie de la Licence Générale
+ *  General Public License along         Publique GNU Affero avec
+ *  with OpenCADC.  If not, see          OpenCADC ; si ce n’est
+ *  <http://www.gnu.org/licenses/>.      pas le cas, consultez :
+ *                                       <http://www.gnu.org/licenses/>.
+ *
+ *
+ ************************************************************************
+ */
+
+package ca.nrc.cadc.ac.server.ldap;
+
+import ca.nrc.cadc.io.ResourceIterator;
+import ca.nrc.cadc.profiler.Profiler;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import org.apache.log4j.Logger;
+import com.unboundid.asn1.ASN1OctetString;
+import com.unboundid.ldap.sdk.LDAPConnection;
+import com.unboundid.ldap.sdk.LDAPException;
+import com.unboundid.ldap.sdk.SearchRequest;
+import com.unboundid.ldap.sdk.SearchResult;
+import com.unboundid.ldap.sdk.SearchResultEntry;
+import com.unboundid.ldap.sdk.controls.SimplePagedResultsControl;
+
+/**
+ * Iterator over the objects made from the entries of a search, reading the entries
+ * one page at a time with the simple paged results control so only one page is held
+ * in memory. The first page is read by the constructor, so errors in the search are
+ * thrown to the caller; an error reading a later page is thrown as a RuntimeException
+ * from next(). Closing the iterator before the end abandons the paged search.
+ *
+ * <p>Servers that do not support the control return all entries in the first page.
+ *
+ * @param <T> type of the objects
+ */
+abstract class PagedSearchIterator<T> implements ResourceIterator<T> {
+    private static final Logger logger = Logger.getLogger(PagedSearchIterator.class);
+
+    private final LDAPConnection conn;
+    private final SearchRequest searchRequest;
+    private final int pageSize;
+    private int skip;
+    private Integer remaining;
+
+    private Iterator<SearchResultEntry> page;
+    private ASN1OctetString cookie;
+    private T next;
+    private int pages;
+    private int count;
+
+    /**
+     * Constructor. Reads the first page.
+     *
+     * @param conn          connection to search with, used for all pages
+     * @param searchRequest search request; its controls are replaced
+     * @param pageSize      number of entries per page
+     * @param offset        number of objects to skip
+     * @param limit         maximum number of objects, or null for all
+     * @throws LDAPException if the first page could not be read
+     */
+    PagedSearchIterator(LDAPConnection conn, SearchRequest searchRequest, int pageSize, int offset, Integer limit)
+            throws LDAPException {
+        this.conn = conn;
+        this.searchRequest = searchRequest;
+        this.pageSize = pageSize;
+        this.skip = offset;
+        this.remaining = limit;
+        readPage();
+        advance();
+    }
+
+    /**
+     * Make the object for an entry.
+     *
+     * @param entry search result entry
+     * @return the object, or null to skip the entry
+     */
+    abstract T toObject(SearchResultEntry entry);
+
+    @Override
+    public boolean hasNext() {
+        return next != null;
+    }
+
+    @Override
+    public T next() {
+        if (next == null) {
+            throw new NoSuchElementException();
+        }
+        T ret = next;
+        try {
+            advance();
+        } catch (LDAPException e) {
+            throw new RuntimeException("failed to read entries from " + searchRequest.getBaseDN()
+                    + ": " + e.getResultCode(), e);
+        }
+        return ret;
+    }
+
+    @Override
+    public void close() throws IOException {
+        abandon();
+    }
+
+    private void abandon() {
+        if (cookie != null && cookie.getValueLength() > 0) {
+            // a page size of 0 abandons the paged search
+            try {
+                SearchRequest abandon = new SearchRequest(searchRequest.getBaseDN(), searchRequest.getScope(),
+                        searchRequest.getFilter(), searchRequest.getAttributes());
+                abandon.addControl(new SimplePagedResultsControl(0, cookie, false));
+                conn.search(abandon);
+            } catch (LDAPException e) {
+                logger.debug("failed to abandon paged search: " + e);
+            }
+        }
+        cookie = null;
+        page = null;
+        next = null;
+    }
+
+    private void advance() throws LDAPException {
+        next = null;
+        if (remaining != null && remaining <= 0) {
+            abandon();
+            return;
+        }
+        while (next == null && page != null) {
+            if (!page.hasNext()) {
+                if (cookie == null || cookie.getValueLength() == 0) {
+                    page = null;
+                    logger.debug("found " + count + " in " + pages + " pages from " + searchRequest.getBaseDN());
+                    return;
+                }
+                readPage();
+                continue;
+            }
+            T obj = toObject(page.next());
+            if (obj == null) {
+                continue;
+            }
+            if (skip > 0) {
+                skip--;
+                continue;
+            }
+            next = obj;
+            count++;
+            if (remaining != null) {
+                remaining--;
+            }
+        }
+    }
+
+    private void readPage() throws LDAPException {
+        Profiler profiler = new Profiler(PagedSearchIterator.class);
+        searchRequest.setControls(new SimplePagedResultsControl(pageSize, cookie, false));
+        SearchResult searchResult = conn.search(searchRequest);
+        page = searchResult.getSearchEntries().iterator();
+        pages++;
+
+        SimplePagedResultsControl control = SimplePagedResultsControl.get(searchResult);
+        cookie = (control == null) ? null : control.getCookie();
+        profiler.checkpoint("readPage");
+    }
+}
@@ -92,6 +92,7 @@ import java.io.Writer;
 import java.security.AccessControlException;
 import java.security.PrivilegedExceptionAction;
 import java.util.Collection;
+import java.util.Iterator;
 import org.apache.log4j.Logger;
 
 public abstract class AbstractUserAction implements PrivilegedExceptionAction<Object> {
@@ -323,4 +324,26 @@ public abstract class AbstractUserAction implements PrivilegedExceptionAction<Ob
         profiler.checkpoint("writeUsers");
     }
 
+    /**
+     * Write out users as this Action's specified content type as they are read
+     * from the iterator.
+     *
+     * @param users The users.
+     */
+    protected void writeUsers(final Iterator<User> users)
+            throws WriterException, IOException {
+        Profiler profiler = new Profiler(AbstractUserAction.class);
+        syncOut.setHeader("Content-Type", acceptedContentType);
+        final Writer writer = syncOut.getWriter();
+
+        if (acceptedContentType.equals(DEFAULT_CONTENT_TYPE)) {
+            UserListWriter userListWriter = new UserListWriter();
+            userListWriter.write(users, writer);
+        } else if (acceptedContentType.equals(JSON_CONTENT_TYPE)) {
+            JsonUserListWriter userListWriter = new JsonUserListWriter();
+            userListWriter.write(users, writer);
+        }
+        profiler.checkpoint("writeUsers");
+    }
+
 }
@@ -69,7 +69,8 @@
 
 package ca.nrc.cadc.ac.server.web.users;
 
-
+import ca.nrc.cadc.ac.User;
+import ca.nrc.cadc.io.ResourceIterator;
 import org.apache.log4j.Logger;
 
 
@@ -77,10 +78,29 @@ public class GetUserListAction extends AbstractUserAction {
 
     private static final Logger log = Logger.getLogger(GetUserListAction.class);
 
+    private final int offset;
+    private final Integer limit;
+
     GetUserListAction() {
+        this(0, null);
+    }
+
+    /**
+     * @param offset number of users to skip
+     * @param limit  maximum number of users, or null for all
+     */
+    GetUserListAction(int offset, Integer limit) {
+        this.offset = offset;
+        this.limit = limit;
     }
 
     public void doAction() throws Exception {
-        writeUsers(userPersistence.getUsers());
+        // the users are written as they are read from the directory
+        ResourceIterator<User> users = userPersistence.iterateUsers(offset, limit);
+        try {
+            writeUsers(users);
+        } finally {
+            users.close();
+        }
     }
 }
@@ -101,7 +101,9 @@ public abstract class UserActionFactory {
                 String[] segments = WebUtil.getPathSegments(path);
 
                 if (segments.length == 0) {
-                    action = new GetUserListAction();
+                    int offset = getCount(request, "offset", 0);
+                    int limit = getCount(request, "limit", -1);
+                    action = new GetUserListAction(offset, (limit < 0) ? null : limit);
                 } else if (segments.length == 1) {
                     String userID = NetUtil.decode(segments[0]);
                     Principal p = getIdentity(userID, request.getParameter("idType"));
@@ -230,4 +232,21 @@ public abstract class UserActionFactory {
         }
     }
 
+    // non-negative integer parameter
+    private static int getCount(HttpServletRequest request, String name, int defaultValue) {
+        String value = request.getParameter(name);
+        if (value == null || value.isEmpty()) {
+            return defaultValue;
+        }
+        try {
+            int ret = Integer.parseInt(value);
+            if (ret >= 0) {
+                return ret;
+            }
+        } catch (NumberFormatException e) {
+            log.debug("invalid " + name + ": " + value);
+        }
+        throw new IllegalArgumentException("Bad value for " + name + ": " + value);
+    }
+
 }
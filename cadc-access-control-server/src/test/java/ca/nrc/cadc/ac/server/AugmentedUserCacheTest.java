@@ -0,0 +1,152 @@
+package ca.nrc.cadc.ac.server;
+
+import ca.nrc.cadc.ac.Group;
+import ca.nrc.cadc.ac.Role;
+import ca.nrc.cadc.ac.client.GroupMemberships;
+import ca.nrc.cadc.auth.HttpPrincipal;
+import ca.nrc.cadc.auth.NumericPrincipal;
+import ca.nrc.cadc.util.Log4jInit;
+import java.net.URI;
+import java.security.Principal;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.security.auth.Subject;
+import javax.security.auth.x500.X500Principal;
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.junit.Assert;
+import org.junit.Test;
+import org.opencadc.gms.GroupURI;
+
+public class AugmentedUserCacheTest {
+    private static final Logger log = Logger.getLogger(AugmentedUserCacheTest.class);
+
+    private static final String GMS = "ivo://example.net/gms";
+
+    static {
+        Log4jInit.setLevel("ca.nrc.cadc.ac", Level.INFO);
+    }
+
+    @Test
+    public void testAugment() throws Exception {
+        AugmentedUserCache cache = new AugmentedUserCache(10, 60000L);
+        HttpPrincipal http = new HttpPrincipal("alice");
+        X500Principal x500 = new X500Principal("CN=alice,OU=cadc,O=hia,C=ca");
+        Set<Principal> identities = getIdentities(http, x500);
+
+        Assert.assertFalse(cache.augment(http, new Subject()));
+        cache.put(http, identities, getMemberships(http, "g1", "g2"));
+
+        Subject subject = new Subject();
+        Assert.assertTrue(cache.augment(http, subject));
+        Assert.assertEquals(3, subject.getPrincipals().size());
+        Assert.assertEquals(1, subject.getPrincipals(NumericPrincipal.class).size());
+        GroupMemberships gms = subject.getPrivateCredentials(GroupMemberships.class).iterator().next();
+        Assert.assertEquals(2, gms.getMemberships(Role.MEMBER).size());
+        Assert.assertEquals(0, gms.getMemberships(Role.ADMIN).size());
+
+        // callers get their own copy
+        gms.getMemberships(Role.MEMBER).clear();
+        Subject other = new Subject();
+        Assert.assertTrue(cache.augment(http, other));
+        gms = other.getPrivateCredentials(GroupMemberships.class).iterator().next();
+        Assert.assertEquals(2, gms.getMemberships(Role.MEMBER).size());
+
+        // keyed by the principal used to find the user
+        Assert.assertFalse(cache.augment(x500, new Subject()));
+        Assert.assertEquals(2, cache.getHits());
+        Assert.assertEquals(2, cache.getMisses());
+        log.info(cache);
+    }
+
+    @Test
+    public void testInvalidate() throws Exception {
+        AugmentedUserCache cache = new AugmentedUserCache(10, 60000L);
+        HttpPrincipal http = new HttpPrincipal("alice");
+        X500Principal x500 = new X500Principal("CN=alice,OU=cadc,O=hia,C=ca");
+        Set<Principal> identities = getIdentities(http, x500);
+        cache.put(http, identities, getMemberships(http, "g1"));
+        cache.put(x500, identities, getMemberships(x500, "g1"));
+        cache.put(new HttpPrincipal("bob"), getIdentities(new HttpPrincipal("bob")), getMemberships(http));
+        Assert.assertEquals(3, cache.size());
+
+        // any identity of the user removes all its entries
+        cache.invalidate(new X500Principal("cn=alice, ou=cadc, o=hia, c=ca"));
+        Assert.assertFalse(cache.augment(http, new Subject()));
+        Assert.assertFalse(cache.augment(x500, new Subject()));
+        Assert.assertTrue(cache.augment(new HttpPrincipal("bob"), new Subject()));
+        Assert.assertEquals(1, cache.size());
+
+        // added again after the invalidation
+        cache.put(http, identities, getMemberships(http, "g2"));
+        Assert.assertTrue(cache.augment(http, new Subject()));
+
+        cache.clear();
+        Assert.assertEquals(0, cache.size());
+        Assert.assertEquals(2, cache.getInvalidations());
+    }
+
+    @Test
+    public void testInvalidationsFull() throws Exception {
+        AugmentedUserCache cache = new AugmentedUserCache(2, 60000L);
+        HttpPrincipal alice = new HttpPrincipal("alice");
+        HttpPrincipal bob = new HttpPrincipal("bob");
+        cache.put(alice, getIdentities(alice), getMemberships(alice));
+        cache.invalidate(new HttpPrincipal("carol"));
+        cache.invalidate(new HttpPrincipal("dave"));
+        cache.put(bob, getIdentities(bob), getMemberships(bob));
+        Assert.assertEquals(2, cache.size());
+
+        // no room to record another invalidation: every user is removed instead
+        cache.invalidate(new HttpPrincipal("erin"));
+        Assert.assertEquals(0, cache.size());
+        Assert.assertFalse(cache.augment(alice, new Subject()));
+        Assert.assertEquals(3, cache.getInvalidations());
+    }
+
+    @Test
+    public void testBounds() throws Exception {
+        AtomicLong now = new AtomicLong(1000000L);
+        AugmentedUserCache cache = new AugmentedUserCache(2, 50L, now::get);
+        for (int i = 0; i < 3; i++) {
+            HttpPrincipal p = new HttpPrincipal("user" + i);
+            cache.put(p, getIdentities(p), getMemberships(p));
+        }
+        Assert.assertEquals(2, cache.size());
+        Assert.assertFalse("evicted", cache.augment(new HttpPrincipal("user0"), new Subject()));
+        Assert.assertTrue(cache.augment(new HttpPrincipal("user2"), new Subject()));
+
+        now.addAndGet(50L);
+        Assert.assertFalse("expired", cache.augment(new HttpPrincipal("user2"), new Subject()));
+        Assert.assertEquals(1, cache.getEvictions());
+
+        AugmentedUserCache disabled = new AugmentedUserCache(0, 60000L);
+        HttpPrincipal p = new HttpPrincipal("alice");
+        disabled.put(p, getIdentities(p), getMemberships(p));
+        Assert.assertFalse(disabled.isEnabled());
+        Assert.assertFalse(disabled.augment(p, new Subject()));
+    }
+
+    private static Set<Principal> getIdentities(Principal... principals) {
+        Set<Principal> ret = new HashSet<Principal>();
+        for (Principal p : principals) {
+            ret.add(p);
+        }
+        ret.add(new NumericPrincipal(UUID.randomUUID()));
+        return ret;
+    }
+
+    private static GroupMemberships getMemberships(Principal userID, String... names) {
+        GroupMemberships gms = new GroupMemberships(GMS, userID);
+        List<Group> groups = new ArrayList<Group>();
+        for (String name : names) {
+            groups.add(new Group(new GroupURI(URI.create(GMS + "?" + name))));
+        }
+        gms.add(groups, Role.MEMBER);
+        return gms;
+    }
+}
@@ -0,0 +1,53 @@
+package ca.nrc.cadc.ac.server.ldap;
+
+import com.unboundid.ldap.sdk.LDAPConnection;
+
+/**
+ * LdapConnections that hand out one connection to an in-memory directory server
+ * instead of borrowing from the pools.
+ */
+class InMemoryConnections extends LdapConnections {
+    private final LDAPConnection conn;
+    private final LdapEntryCache userCache;
+    private final LdapEntryCache groupCache;
+
+    InMemoryConnections(LdapConfig config, LDAPConnection conn) {
+        this(config, conn, null, null);
+    }
+
+    InMemoryConnections(LdapConfig config, LDAPConnection conn, LdapEntryCache userCache, LdapEntryCache groupCache) {
+        super(config);
+        this.conn = conn;
+        this.userCache = userCache;
+        this.groupCache = groupCache;
+    }
+
+    @Override
+    LdapEntryCache getUserCache() {
+        return userCache;
+    }
+
+    @Override
+    LdapEntryCache getGroupCache() {
+        return groupCache;
+    }
+
+    @Override
+    LDAPConnection getReadOnlyConnection() {
+        return conn;
+    }
+
+    @Override
+    LDAPConnection getReadWriteConnection() {
+        return conn;
+    }
+
+    @Override
+    LDAPConnection getUnboundReadOnlyConnection() {
+        return conn;
+    }
+
+    @Override
+    void releaseConnections() {
+    }
+}
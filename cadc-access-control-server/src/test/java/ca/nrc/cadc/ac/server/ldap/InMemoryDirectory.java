@@ -0,0 +1,275 @@
+package ca.nrc.cadc.ac.server.ldap;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.log4j.Logger;
+import com.unboundid.ldap.listener.InMemoryDirectoryServer;
+import com.unboundid.ldap.listener.InMemoryDirectoryServerConfig;
+import com.unboundid.ldap.listener.interceptor.InMemoryInterceptedModifyRequest;
+import com.unboundid.ldap.listener.interceptor.InMemoryInterceptedSearchRequest;
+import com.unboundid.ldap.listener.interceptor.InMemoryOperationInterceptor;
+import com.unboundid.ldap.sdk.DN;
+import com.unboundid.ldap.sdk.Filter;
+import com.unboundid.ldap.sdk.LDAPConnection;
+import com.unboundid.ldap.sdk.LDAPException;
+import com.unboundid.ldap.sdk.Modification;
+import com.unboundid.ldap.sdk.ModificationType;
+import com.unboundid.ldap.sdk.ReadOnlyEntry;
+import com.unboundid.ldap.sdk.SearchResultEntry;
+import com.unboundid.ldap.sdk.SearchScope;
+import com.unboundid.ldif.LDIFException;
+
+/**
+ * In-memory UnboundID directory server with the trees of testConfig.in-memory.properties
+ * and a generator of synthetic users and groups, for measuring the LDAP DAOs without a
+ * 389-ds server. Searches and modifications are counted.
+ *
+ * <p>Users are entries uid=(FIRST_UID + i) with username user(FIRST_UID + i). Groups are
+ * group(j) with gid FIRST_GID + j, each with an admin group of the same name. Schema
+ * checking is disabled, as in the other in-memory tests; the entries use the CADC object
+ * classes and attributes. The in-memory server has no memberOf plugin: updateMemberOf()
+ * sets the memberOf values of all users from the group entries, including nested groups,
+ * and must be called again after group memberships are modified. Tests that need a
+ * particular layout can add their own entries instead of generating them.
+ */
+class InMemoryDirectory {
+    private static final Logger log = Logger.getLogger(InMemoryDirectory.class);
+
+    static final String USERS_DN = "ou=users,ou=ds,dc=test";
+    static final String USER_REQUESTS_DN = "ou=userrequests,ou=ds,dc=test";
+    static final String GROUPS_DN = "ou=groups,ou=ds,dc=test";
+    static final String ADMIN_GROUPS_DN = "ou=admingroups,ou=ds,dc=test";
+
+    static final int FIRST_UID = 100000;
+    static final int FIRST_GID = 500000;
+
+    final AtomicInteger searches = new AtomicInteger();
+    final AtomicInteger modifies = new AtomicInteger();
+
+    private final InMemoryDirectoryServer server;
+
+    private int numUsers;
+    private int numGroups;
+    // expected member groups of each user, including groups of member groups
+    private final Map<Integer, Set<String>> memberGroups = new HashMap<Integer, Set<String>>();
+
+    InMemoryDirectory() throws LDAPException, LDIFException {
+        InMemoryDirectoryServerConfig serverConfig = new InMemoryDirectoryServerConfig("dc=test");
+        serverConfig.setSchema(null);
+        serverConfig.addInMemoryOperationInterceptor(new InMemoryOperationInterceptor() {
+            @Override
+            public void processSearchRequest(InMemoryInterceptedSearchRequest request) {
+                searches.incrementAndGet();
+            }
+
+            @Override
+            public void processModifyRequest(InMemoryInterceptedModifyRequest request) {
+                modifies.incrementAndGet();
+            }
+        });
+        server = new InMemoryDirectoryServer(serverConfig);
+
+        server.add("dn: dc=test", "objectClass: domain", "dc: test");
+        server.add("dn: ou=ds,dc=test", "objectClass: organizationalUnit", "ou: ds");
+        server.add("dn: " + USERS_DN, "objectClass: organizationalUnit", "ou: users");
+        server.add("dn: " + USER_REQUESTS_DN, "objectClass: organizationalUnit", "ou: userrequests");
+        server.add("dn: " + GROUPS_DN, "objectClass: organizationalUnit", "ou: groups");
+        server.add("dn: " + ADMIN_GROUPS_DN, "objectClass: organizationalUnit", "ou: admingroups");
+        server.startListening();
+    }
+
+    LDAPConnection getConnection() throws LDAPException {
+        return server.getConnection();
+    }
+
+    int getListenPort() {
+        return server.getListenPort();
+    }
+
+    void shutDown() {
+        server.shutDown(true);
+    }
+
+    /**
+     * Add one entry.
+     *
+     * @param ldif lines of the entry, starting with its dn
+     */
+    void add(String... ldif) throws LDAPException, LDIFException {
+        server.add(ldif);
+    }
+
+    /**
+     * @param dn entry DN
+     * @return the entry, or null if not found
+     */
+    ReadOnlyEntry getEntry(String dn) throws LDAPException {
+        return server.getEntry(dn);
+    }
+
+    /**
+     * Add the users and groups, once. Each group is owned by one user, who is the only member of
+     * its admin group, and has fanOut distinct user members picked at random. With a
+     * nesting depth greater than 0, groups form chains of nesting + 1 groups where each
+     * group is a member of the previous one.
+     *
+     * @param users   number of users
+     * @param groups  number of groups
+     * @param fanOut  number of user members of each group
+     * @param nesting number of nested member groups below a top level group
+     * @param seed    random seed, so the same arguments give the same directory
+     */
+    void generate(int users, int groups, int fanOut, int nesting, long seed) throws LDAPException, LDIFException {
+        if (numUsers > 0) {
+            throw new IllegalStateException("already generated");
+        }
+        if (fanOut > users) {
+            throw new IllegalArgumentException("fanOut " + fanOut + " > users " + users);
+        }
+        long start = System.currentTimeMillis();
+        Random random = new Random(seed);
+
+        for (int i = 0; i < users; i++) {
+            int uid = FIRST_UID + i;
+            String username = getUsername(i);
+            server.add("dn: " + getUserDN(i),
+                    "objectClass: inetOrgPerson", "objectClass: inetuser",
+                    "objectClass: cadcaccount", "objectClass: posixaccount",
+                    "uid: " + uid, "cn: " + username, "givenName: first" + uid, "sn: last" + uid,
+                    "email: " + username + "@example.net", "institute: example",
+                    "distinguishedName: cn=" + username + ",ou=cadc,o=hia,c=ca",
+                    "uidNumber: " + uid, "gidNumber: " + uid, "homeDirectory: /home/" + username);
+            memberGroups.put(i, new TreeSet<String>());
+        }
+
+        for (int j = 0; j < groups; j++) {
+            String name = getGroupName(j);
+            String ownerDN = getUserDN(j % users);
+
+            List<String> entry = new ArrayList<String>();
+            entry.add("dn: cn=" + name + "," + GROUPS_DN);
+            entry.add("objectClass: groupofuniquenames");
+            entry.add("objectClass: posixgroup");
+            entry.add("cn: " + name);
+            entry.add("gidNumber: " + (FIRST_GID + j));
+            entry.add("owner: " + ownerDN);
+            entry.add("description: generated group " + j);
+
+            Set<Integer> members = new HashSet<Integer>();
+            while (members.size() < fanOut) {
+                members.add(random.nextInt(users));
+            }
+            for (int i : members) {
+                entry.add("uniquemember: " + getUserDN(i));
+                // member of this group and of the groups above it in the chain
+                int k = j;
+                memberGroups.get(i).add(getGroupName(k));
+                while (isNested(k, nesting)) {
+                    k--;
+                    memberGroups.get(i).add(getGroupName(k));
+                }
+            }
+            if (isNested(j + 1, nesting) && j + 1 < groups) {
+                entry.add("uniquemember: cn=" + getGroupName(j + 1) + "," + GROUPS_DN);
+            }
+            server.add(entry.toArray(new String[entry.size()]));
+
+            server.add("dn: cn=" + name + "," + ADMIN_GROUPS_DN, "objectClass: groupofuniquenames",
+                    "cn: " + name, "owner: " + ownerDN, "uniquemember: " + ownerDN);
+        }
+        this.numUsers = users;
+        this.numGroups = groups;
+
+        updateMemberOf();
+        log.info("generated " + users + " users, " + groups + " groups, fanOut " + fanOut
+                + ", nesting " + nesting + ": " + (System.currentTimeMillis() - start) + "ms");
+    }
+
+    /**
+     * Set the memberOf values of all users from the uniquemember values of the groups and
+     * admin groups, following member groups like the 389-ds memberOf plugin.
+     */
+    void updateMemberOf() throws LDAPException {
+        // direct members and parent groups of each group
+        Map<String, List<String>> parents = new HashMap<String, List<String>>();
+        Map<String, List<String>> userGroups = new HashMap<String, List<String>>();
+        Filter filter = Filter.createEqualityFilter("objectClass", "groupofuniquenames");
+        for (String base : new String[] {GROUPS_DN, ADMIN_GROUPS_DN}) {
+            for (SearchResultEntry group : server.search(base, SearchScope.ONE, filter, "uniquemember")
+                    .getSearchEntries()) {
+                String groupDN = group.getParsedDN().toNormalizedString();
+                String[] members = group.getAttributeValues("uniquemember");
+                if (members == null) {
+                    continue;
+                }
+                for (String member : members) {
+                    DN memberDN = new DN(member);
+                    Map<String, List<String>> map = memberDN.isDescendantOf(USERS_DN, false) ? userGroups : parents;
+                    String key = memberDN.toNormalizedString();
+                    if (!map.containsKey(key)) {
+                        map.put(key, new ArrayList<String>());
+                    }
+                    map.get(key).add(groupDN);
+                }
+            }
+        }
+
+        for (int i = 0; i < numUsers; i++) {
+            String userDN = new DN(getUserDN(i)).toNormalizedString();
+            Set<String> memberOf = new TreeSet<String>();
+            List<String> todo = new ArrayList<String>();
+            if (userGroups.containsKey(userDN)) {
+                todo.addAll(userGroups.get(userDN));
+            }
+            while (!todo.isEmpty()) {
+                String groupDN = todo.remove(todo.size() - 1);
+                if (memberOf.add(groupDN) && parents.containsKey(groupDN)) {
+                    todo.addAll(parents.get(groupDN));
+                }
+            }
+            server.modify(getUserDN(i), new Modification(ModificationType.REPLACE, "memberOf",
+                    memberOf.toArray(new String[memberOf.size()])));
+        }
+    }
+
+    int getNumUsers() {
+        return numUsers;
+    }
+
+    int getNumGroups() {
+        return numGroups;
+    }
+
+    /**
+     * @param user index of a generated user
+     * @return names of the groups the user was generated as a member of, directly or
+     *     through member groups
+     */
+    Set<String> getMemberGroups(int user) {
+        return memberGroups.get(user);
+    }
+
+    static String getUserDN(int user) {
+        return "uid=" + (FIRST_UID + user) + "," + USERS_DN;
+    }
+
+    static String getUsername(int user) {
+        return "user" + (FIRST_UID + user);
+    }
+
+    static String getGroupName(int group) {
+        return "group" + group;
+    }
+
+    // true if the group is a member of the previous group
+    private static boolean isNested(int group, int nesting) {
+        return nesting > 0 && group % (nesting + 1) != 0;
+    }
+}
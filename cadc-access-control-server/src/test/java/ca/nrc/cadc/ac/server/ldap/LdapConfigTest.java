@@ -117,6 +117,9 @@ public class LdapConfigTest {
             Assert.assertEquals(30000, c.getReadWritePool().getMaxWait());
             Assert.assertEquals(false, c.getReadWritePool().getCreateIfNeeded());
 
+            Assert.assertEquals(0, c.getAsyncSearchMaxOutstanding());
+            Assert.assertFalse(c.isAsyncSearch());
+
             Assert.assertTrue("offline mode", c.getSystemState().equals(SystemState.ONLINE));
         } catch (Throwable t) {
             log.error("Unexpected exception", t);
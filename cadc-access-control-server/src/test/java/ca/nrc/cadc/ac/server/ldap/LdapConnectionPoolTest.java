@@ -0,0 +1,138 @@
+package ca.nrc.cadc.ac.server.ldap;
+
+import ca.nrc.cadc.util.Log4jInit;
+import ca.nrc.cadc.util.PropertiesReader;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import com.unboundid.ldap.sdk.LDAPConnection;
+
+/**
+ * Multithreaded borrow/release benchmark for LdapConnectionPool against the
+ * in-memory UnboundID directory server. Borrow throughput should grow with the
+ * number of threads now that borrowing does not serialize on a pool monitor.
+ */
+public class LdapConnectionPoolTest {
+    private static final Logger log = Logger.getLogger(LdapConnectionPoolTest.class);
+
+    private static final int MAX_THREADS = 8;
+    private static final int BORROWS_PER_THREAD = 20000;
+
+    private static InMemoryDirectory directory;
+    private static File configDir;
+    private static LdapConfig config;
+
+    @BeforeClass
+    public static void setUpBeforeClass() throws Exception {
+        // debug logging would add the statistics string building back to each borrow
+        Log4jInit.setLevel("ca.nrc.cadc.ac", Level.INFO);
+
+        directory = new InMemoryDirectory();
+
+        configDir = File.createTempFile("ldap-pool-test", "");
+        configDir.delete();
+        configDir.mkdir();
+        File configFile = new File(configDir, "testConfig.pool.properties");
+        PrintWriter w = new PrintWriter(new FileWriter(configFile));
+        w.println("port = " + directory.getListenPort());
+        for (String prefix : new String[] {"readOnly.", "readWrite.", "unboundReadOnly."}) {
+            w.println(prefix + "servers = localhost");
+            w.println(prefix + "poolInitSize = " + MAX_THREADS);
+            w.println(prefix + "poolMaxSize = " + MAX_THREADS);
+            w.println(prefix + "poolPolicy = roundRobin");
+            w.println(prefix + "maxWait = 30000");
+            w.println(prefix + "createIfNeeded = false");
+        }
+        w.println("proxyUser = uid=testuser,ou=testorg,dc=test");
+        w.println("proxyPassword = 123456");
+        w.println("usersDN = " + InMemoryDirectory.USERS_DN);
+        w.println("userRequestsDN = " + InMemoryDirectory.USER_REQUESTS_DN);
+        w.println("groupsDN = " + InMemoryDirectory.GROUPS_DN);
+        w.println("adminGroupsDN = " + InMemoryDirectory.ADMIN_GROUPS_DN);
+        w.close();
+
+        System.setProperty(PropertiesReader.class.getName() + ".dir", configDir.getAbsolutePath());
+        config = LdapConfig.loadLdapConfig(configFile.getName());
+    }
+
+    @AfterClass
+    public static void tearDownAfterClass() {
+        if (directory != null) {
+            directory.shutDown();
+        }
+        if (configDir != null) {
+            for (File f : configDir.listFiles()) {
+                f.delete();
+            }
+            configDir.delete();
+        }
+        System.clearProperty(PropertiesReader.class.getName() + ".dir");
+    }
+
+    @Test
+    public void testBorrowThroughput() throws Exception {
+        LdapConnectionPool pool = new LdapConnectionPool(config, config.getUnboundReadOnlyPool(),
+                LdapPersistence.POOL_UNBOUNDREADONLY, false, true);
+        try {
+            // warm up
+            borrow(pool, MAX_THREADS, BORROWS_PER_THREAD / 4);
+
+            for (int threads = 1; threads <= MAX_THREADS; threads *= 2) {
+                long elapsed = borrow(pool, threads, BORROWS_PER_THREAD);
+                long total = (long) threads * BORROWS_PER_THREAD;
+                log.info(String.format("threads: %d borrows: %d time: %d ms throughput: %d borrows/s",
+                        threads, total, elapsed, (total * 1000L) / Math.max(elapsed, 1L)));
+            }
+            log.info(pool.getPoolStatistics());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    // returns the elapsed time in milliseconds
+    private long borrow(final LdapConnectionPool pool, int threads, final int borrows) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        final CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<Integer>> results = new ArrayList<Future<Integer>>();
+            for (int i = 0; i < threads; i++) {
+                results.add(executor.submit(new Callable<Integer>() {
+                    @Override
+                    public Integer call() throws Exception {
+                        start.await();
+                        int count = 0;
+                        for (int n = 0; n < borrows; n++) {
+                            LDAPConnection conn = pool.getConnection();
+                            Assert.assertNotNull(conn);
+                            pool.releaseConnection(conn);
+                            count++;
+                        }
+                        return count;
+                    }
+                }));
+            }
+
+            long t1 = System.currentTimeMillis();
+            start.countDown();
+            for (Future<Integer> f : results) {
+                Assert.assertEquals(borrows, f.get().intValue());
+            }
+            return System.currentTimeMillis() - t1;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
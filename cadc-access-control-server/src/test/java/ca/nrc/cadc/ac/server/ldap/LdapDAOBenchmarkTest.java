@@ -0,0 +1,291 @@
+package ca.nrc.cadc.ac.server.ldap;
+
+import ca.nrc.cadc.ac.Group;
+import ca.nrc.cadc.ac.Role;
+import ca.nrc.cadc.ac.User;
+import ca.nrc.cadc.ac.client.GroupMemberships;
+import ca.nrc.cadc.auth.HttpPrincipal;
+import ca.nrc.cadc.io.ResourceIterator;
+import ca.nrc.cadc.util.Log4jInit;
+import ca.nrc.cadc.util.PropertiesReader;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.opencadc.auth.PosixGroup;
+import com.unboundid.ldap.sdk.LDAPConnection;
+
+/**
+ * Measures the main LdapUserDAO and LdapGroupDAO operations against a generated
+ * in-memory directory and checks the number of LDAP operations each one needs, so
+ * changes that add searches per member or per group fail here.
+ *
+ * <p>The directory size can be set with system properties prefixed with this class
+ * name, e.g. -Dca.nrc.cadc.ac.server.ldap.LdapDAOBenchmarkTest.users=100000; the
+ * defaults keep the test quick.
+ */
+public class LdapDAOBenchmarkTest {
+    private static final Logger log = Logger.getLogger(LdapDAOBenchmarkTest.class);
+
+    private static final String PREFIX = LdapDAOBenchmarkTest.class.getName();
+    private static final int USERS = Integer.getInteger(PREFIX + ".users", 2000);
+    private static final int GROUPS = Integer.getInteger(PREFIX + ".groups", 200);
+    private static final int FAN_OUT = Integer.getInteger(PREFIX + ".fanOut", 50);
+    private static final int NESTING = Integer.getInteger(PREFIX + ".nesting", 2);
+    private static final int WARMUP = Integer.getInteger(PREFIX + ".warmup", 20);
+    private static final int ITERATIONS = Integer.getInteger(PREFIX + ".iterations", 100);
+
+    private static InMemoryDirectory directory;
+    private static LDAPConnection conn;
+    private static LdapConfig config;
+
+    private interface Operation {
+        void run(int i) throws Exception;
+    }
+
+    private static class Result {
+        int searches;
+        int modifies;
+    }
+
+    @BeforeClass
+    public static void setUpBeforeClass() throws Exception {
+        Log4jInit.setLevel("ca.nrc.cadc.ac", Level.INFO);
+        System.setProperty(PropertiesReader.class.getName() + ".dir", "src/test/config");
+        config = LdapConfig.loadLdapConfig("testConfig.in-memory.properties");
+        Assert.assertTrue("fanOut < users", FAN_OUT < USERS);
+
+        directory = new InMemoryDirectory();
+        directory.generate(USERS, GROUPS, FAN_OUT, NESTING, 1L);
+        conn = directory.getConnection();
+    }
+
+    @AfterClass
+    public static void tearDownAfterClass() {
+        if (conn != null) {
+            conn.close();
+        }
+        if (directory != null) {
+            directory.shutDown();
+        }
+        System.clearProperty(PropertiesReader.class.getName() + ".dir");
+    }
+
+    @Test
+    public void testGetAugmentedUser() throws Exception {
+        final LdapConnections connections = new InMemoryConnections(config, conn);
+        Result r = measure("getAugmentedUser", ITERATIONS, new Operation() {
+            @Override
+            public void run(int i) throws Exception {
+                LdapUserDAO userDAO = new LdapUserDAO(connections);
+                User user = userDAO.getAugmentedUser(new HttpPrincipal(getUsername(i)), false);
+                Assert.assertNotNull(user.posixDetails);
+            }
+        });
+        Assert.assertEquals(ITERATIONS, r.searches);
+    }
+
+    @Test
+    public void testGetMemberGroups() throws Exception {
+        // the GroupMemberships of the augmented user are the groups returned by
+        // LdapGroupPersistence.getGroups(Role.MEMBER, null)
+        final LdapConnections connections = new InMemoryConnections(config, conn);
+        Result r = measure("getGroups(MEMBER)", ITERATIONS, new Operation() {
+            @Override
+            public void run(int i) throws Exception {
+                LdapUserDAO userDAO = new LdapUserDAO(connections);
+                User user = userDAO.getAugmentedUser(new HttpPrincipal(getUsername(i)), true);
+                GroupMemberships gms = (GroupMemberships) user.appData;
+                Set<String> names = new TreeSet<String>();
+                for (Group g : gms.getMemberships(Role.MEMBER)) {
+                    names.add(g.getID().getName());
+                }
+                Assert.assertEquals(directory.getMemberGroups(i % USERS), names);
+            }
+        });
+        Assert.assertEquals(ITERATIONS, r.searches);
+    }
+
+    @Test
+    public void testGetGroup() throws Exception {
+        final LdapConnections connections = new InMemoryConnections(config, conn);
+        Result r = measure("getGroup(complete)", ITERATIONS, new Operation() {
+            @Override
+            public void run(int i) throws Exception {
+                LdapGroupDAO groupDAO = new LdapGroupDAO(connections, new LdapUserDAO(connections));
+                Group group = groupDAO.getGroup(InMemoryDirectory.getGroupName(i % GROUPS), true);
+                Assert.assertEquals(FAN_OUT, group.getUserMembers().size());
+                Assert.assertEquals(1, group.getUserAdmins().size());
+            }
+        });
+
+        // group entry, owner and member batches, member groups, admin group entry
+        int batches = (FAN_OUT + 1 + LdapDAO.SEARCH_BATCH_SIZE - 1) / LdapDAO.SEARCH_BATCH_SIZE;
+        Assert.assertTrue(r.searches + " searches", r.searches <= ITERATIONS * (3 + batches));
+    }
+
+    @Test
+    public void testGetUsers() throws Exception {
+        final LdapConnections connections = new InMemoryConnections(config, conn);
+        int iterations = Math.max(1, ITERATIONS / 10);
+        Result r = measure("getUsers", iterations, new Operation() {
+            @Override
+            public void run(int i) throws Exception {
+                LdapUserDAO userDAO = new LdapUserDAO(connections);
+                Collection<User> users = userDAO.getUsers();
+                Assert.assertEquals(USERS, users.size());
+            }
+        });
+        // one search per page
+        int pages = (USERS + LdapUserDAO.USERS_PAGE_SIZE - 1) / LdapUserDAO.USERS_PAGE_SIZE;
+        Assert.assertTrue(r.searches + " searches", r.searches <= iterations * (pages + 1));
+    }
+
+    @Test
+    public void testIterateUsers() throws Exception {
+        LdapConnections connections = new InMemoryConnections(config, conn);
+        LdapUserDAO userDAO = new LdapUserDAO(connections);
+        List<String> all = new ArrayList<String>();
+        ResourceIterator<User> iter = userDAO.iterateUsers(0, null);
+        while (iter.hasNext()) {
+            all.add(iter.next().getHttpPrincipal().getName());
+        }
+        iter.close();
+        Assert.assertEquals(USERS, all.size());
+        Assert.assertEquals(USERS, new TreeSet<String>(all).size());
+
+        // pages of the list, across the LDAP page boundaries
+        int limit = LdapUserDAO.USERS_PAGE_SIZE / 3 + 1;
+        for (int offset = 0; offset < USERS + limit; offset += limit) {
+            List<String> page = new ArrayList<String>();
+            iter = userDAO.iterateUsers(offset, limit);
+            try {
+                while (iter.hasNext()) {
+                    page.add(iter.next().getHttpPrincipal().getName());
+                }
+            } finally {
+                iter.close();
+            }
+            Assert.assertEquals(all.subList(Math.min(offset, USERS), Math.min(offset + limit, USERS)), page);
+        }
+
+        directory.searches.set(0);
+        iter = userDAO.iterateUsers(0, 0);
+        Assert.assertFalse(iter.hasNext());
+        iter.close();
+        // the first page and the request abandoning the paged search
+        Assert.assertTrue(directory.searches.get() + " searches", directory.searches.get() <= 2);
+    }
+
+    @Test
+    public void testIterateGroupNames() throws Exception {
+        LdapConnections connections = new InMemoryConnections(config, conn);
+        LdapGroupDAO groupDAO = new LdapGroupDAO(connections, new LdapUserDAO(connections));
+        directory.searches.set(0);
+        Set<String> names = new TreeSet<String>();
+        ResourceIterator<PosixGroup> iter = groupDAO.iterateGroupNames();
+        try {
+            while (iter.hasNext()) {
+                PosixGroup pg = iter.next();
+                Assert.assertTrue(names.add(pg.getGroupURI().getName()));
+                Assert.assertEquals(InMemoryDirectory.FIRST_GID
+                        + Integer.parseInt(pg.getGroupURI().getName().substring("group".length())),
+                        pg.getGID().intValue());
+            }
+        } finally {
+            iter.close();
+        }
+        Assert.assertEquals(GROUPS, names.size());
+
+        // one search per page
+        int pages = (GROUPS + LdapGroupDAO.GROUPS_PAGE_SIZE - 1) / LdapGroupDAO.GROUPS_PAGE_SIZE;
+        Assert.assertTrue(directory.searches.get() + " searches", directory.searches.get() <= pages + 1);
+        Assert.assertEquals(GROUPS, groupDAO.getGroupNames().size());
+    }
+
+    @Test
+    public void testModifyGroup() throws Exception {
+        final LdapConnections connections = new InMemoryConnections(config, conn);
+
+        // each group with one more member; later modifications of a group rewrite
+        // the same members
+        final List<Group> updates = new ArrayList<Group>();
+        final List<Integer> added = new ArrayList<Integer>();
+        List<Group> originals = new ArrayList<Group>();
+        LdapGroupDAO reader = new LdapGroupDAO(connections, new LdapUserDAO(connections));
+        for (int j = 0; j < Math.min(GROUPS, ITERATIONS); j++) {
+            originals.add(reader.getGroup(InMemoryDirectory.getGroupName(j), true));
+            Group group = reader.getGroup(InMemoryDirectory.getGroupName(j), true);
+            int u = (j * 7) % USERS;
+            while (group.getUserMembers().getUser(new HttpPrincipal(InMemoryDirectory.getUsername(u))) != null) {
+                u = (u + 1) % USERS;
+            }
+            User member = new User();
+            member.getIdentities().add(new HttpPrincipal(InMemoryDirectory.getUsername(u)));
+            group.getUserMembers().add(member);
+            updates.add(group);
+            added.add(u);
+        }
+
+        Result r = measure("modifyGroup", ITERATIONS, new Operation() {
+            @Override
+            public void run(int i) throws Exception {
+                LdapGroupDAO groupDAO = new LdapGroupDAO(connections, new LdapUserDAO(connections));
+                Group group = groupDAO.modifyGroup(updates.get(i % updates.size()));
+                Assert.assertEquals(FAN_OUT + 1, group.getUserMembers().size());
+            }
+        });
+        // admin group and group
+        Assert.assertEquals(2 * ITERATIONS, r.modifies);
+
+        directory.updateMemberOf();
+        LdapUserDAO userDAO = new LdapUserDAO(connections);
+        User user = userDAO.getAugmentedUser(new HttpPrincipal(InMemoryDirectory.getUsername(added.get(0))), true);
+        List<Group> memberOf = ((GroupMemberships) user.appData).getMemberships(Role.MEMBER);
+        boolean found = false;
+        for (Group g : memberOf) {
+            found = found || g.getID().getName().equals(InMemoryDirectory.getGroupName(0));
+        }
+        Assert.assertTrue("memberOf updated", found);
+
+        // restore the generated memberships for the other tests
+        for (Group g : originals) {
+            reader.modifyGroup(g);
+        }
+        directory.updateMemberOf();
+    }
+
+    private static String getUsername(int i) {
+        return InMemoryDirectory.getUsername(i % USERS);
+    }
+
+    // run the operation WARMUP times, then iterations times with the LDAP operations counted
+    private Result measure(String name, int iterations, Operation op) throws Exception {
+        for (int i = 0; i < WARMUP; i++) {
+            op.run(i);
+        }
+        directory.searches.set(0);
+        directory.modifies.set(0);
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            op.run(WARMUP + i);
+        }
+        long nanos = System.nanoTime() - start;
+
+        Result r = new Result();
+        r.searches = directory.searches.get();
+        r.modifies = directory.modifies.get();
+        log.info(String.format("%s: %d users %d groups fanOut %d nesting %d: %d ops %.3f ms/op %.1f ops/s "
+                + "%.2f searches/op %.2f modifies/op", name, USERS, GROUPS, FAN_OUT, NESTING, iterations,
+                nanos / 1.0e6 / iterations, iterations * 1.0e9 / nanos,
+                (double) r.searches / iterations, (double) r.modifies / iterations));
+        return r;
+    }
+}
@@ -0,0 +1,97 @@
+package ca.nrc.cadc.ac.server.ldap;
+
+import ca.nrc.cadc.util.Log4jInit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.junit.Assert;
+import org.junit.Test;
+import com.unboundid.ldap.sdk.Attribute;
+import com.unboundid.ldap.sdk.DN;
+import com.unboundid.ldap.sdk.ReadOnlyEntry;
+
+public class LdapEntryCacheTest {
+    private static final Logger log = Logger.getLogger(LdapEntryCacheTest.class);
+
+    public LdapEntryCacheTest() {
+        Log4jInit.setLevel("ca.nrc.cadc.ac", Level.INFO);
+    }
+
+    @Test
+    public void testGetPut() throws Exception {
+        LdapEntryCache cache = new LdapEntryCache("test", 10, 60000L);
+        DN dn = new DN("uid=1,ou=users,dc=test");
+        Assert.assertNull(cache.get(dn));
+
+        cache.put(entry(1), cache.getGeneration());
+        ReadOnlyEntry cached = cache.get(new DN("UID=1, ou=Users, dc=test"));
+        Assert.assertNotNull(cached);
+        Assert.assertEquals("user1", cached.getAttributeValue("cn"));
+        Assert.assertEquals(1, cache.getHits());
+        Assert.assertEquals(1, cache.getMisses());
+
+        cache.invalidate(dn);
+        Assert.assertNull(cache.get(dn));
+        Assert.assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testLeastRecentlyUsedEviction() throws Exception {
+        LdapEntryCache cache = new LdapEntryCache("test", 3, 60000L);
+        cache.put(entry(1), cache.getGeneration());
+        cache.put(entry(2), cache.getGeneration());
+        cache.put(entry(3), cache.getGeneration());
+
+        // touch 1 so 2 is the least recently used
+        Assert.assertNotNull(cache.get(new DN("uid=1,ou=users,dc=test")));
+        cache.put(entry(4), cache.getGeneration());
+
+        Assert.assertEquals(3, cache.size());
+        Assert.assertEquals(1, cache.getEvictions());
+        Assert.assertNull(cache.get(new DN("uid=2,ou=users,dc=test")));
+        Assert.assertNotNull(cache.get(new DN("uid=1,ou=users,dc=test")));
+        Assert.assertNotNull(cache.get(new DN("uid=4,ou=users,dc=test")));
+        log.info(cache);
+    }
+
+    @Test
+    public void testExpiry() throws Exception {
+        AtomicLong now = new AtomicLong(1000000L);
+        LdapEntryCache cache = new LdapEntryCache("test", 10, 50L, now::get);
+        cache.put(entry(1), cache.getGeneration());
+        now.addAndGet(49L);
+        Assert.assertNotNull(cache.get(new DN("uid=1,ou=users,dc=test")));
+
+        now.addAndGet(1L);
+        Assert.assertNull(cache.get(new DN("uid=1,ou=users,dc=test")));
+        Assert.assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testPutAfterInvalidate() throws Exception {
+        LdapEntryCache cache = new LdapEntryCache("test", 10, 60000L);
+        DN dn = new DN("uid=1,ou=users,dc=test");
+
+        // a search that started before a write invalidated the entry
+        long generation = cache.getGeneration();
+        cache.invalidate(dn);
+        cache.put(entry(1), generation);
+        Assert.assertNull(cache.get(dn));
+        Assert.assertEquals(0, cache.size());
+
+        // a search that started after the write
+        cache.put(entry(1), cache.getGeneration());
+        Assert.assertNotNull(cache.get(dn));
+
+        generation = cache.getGeneration();
+        cache.clear();
+        cache.put(entry(2), generation);
+        Assert.assertEquals(0, cache.size());
+    }
+
+    private static ReadOnlyEntry entry(int uid) {
+        return new ReadOnlyEntry("uid=" + uid + ",ou=users,dc=test",
+                new Attribute("uid", Integer.toString(uid)),
+                new Attribute("cn", "user" + uid));
+    }
+}
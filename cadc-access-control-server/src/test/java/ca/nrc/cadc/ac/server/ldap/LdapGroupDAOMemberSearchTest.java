@@ -0,0 +1,188 @@
+package ca.nrc.cadc.ac.server.ldap;
+
+import static ca.nrc.cadc.ac.server.ldap.InMemoryDirectory.ADMIN_GROUPS_DN;
+import static ca.nrc.cadc.ac.server.ldap.InMemoryDirectory.GROUPS_DN;
+import static ca.nrc.cadc.ac.server.ldap.InMemoryDirectory.USERS_DN;
+
+import ca.nrc.cadc.ac.Group;
+import ca.nrc.cadc.ac.User;
+import ca.nrc.cadc.auth.DNPrincipal;
+import ca.nrc.cadc.auth.HttpPrincipal;
+import ca.nrc.cadc.util.Log4jInit;
+import ca.nrc.cadc.util.PropertiesReader;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import com.unboundid.ldap.sdk.LDAPConnection;
+
+/**
+ * Counts the LDAP searches needed to expand group members, using the in-memory
+ * UnboundID directory server.
+ */
+public class LdapGroupDAOMemberSearchTest {
+    private static final Logger log = Logger.getLogger(LdapGroupDAOMemberSearchTest.class);
+
+    private static final int NUM_MEMBERS = 450;
+    private static final String OWNER_DN = "uid=1000," + USERS_DN;
+
+    private static InMemoryDirectory directory;
+    private static LDAPConnection conn;
+    private static LdapConfig config;
+
+    @BeforeClass
+    public static void setUpBeforeClass() throws Exception {
+        Log4jInit.setLevel("ca.nrc.cadc.ac", Level.INFO);
+        System.setProperty(PropertiesReader.class.getName() + ".dir", "src/test/config");
+        config = LdapConfig.loadLdapConfig("testConfig.in-memory.properties");
+
+        directory = new InMemoryDirectory();
+        for (int i = 0; i <= NUM_MEMBERS; i++) {
+            int uid = 1000 + i;
+            directory.add("dn: uid=" + uid + "," + USERS_DN, "objectClass: inetOrgPerson",
+                    "uid: " + uid, "cn: user" + uid, "sn: user" + uid);
+        }
+        directory.add("dn: cn=sub1," + GROUPS_DN, "objectClass: groupofuniquenames",
+                "cn: sub1", "gidNumber: 5001", "owner: " + OWNER_DN);
+        directory.add("dn: cn=locked," + GROUPS_DN, "objectClass: groupofuniquenames",
+                "cn: locked", "gidNumber: 5002", "owner: " + OWNER_DN, "nsaccountlock: true");
+
+        List<String> group = new ArrayList<String>();
+        group.add("dn: cn=big," + GROUPS_DN);
+        group.add("objectClass: groupofuniquenames");
+        group.add("cn: big");
+        group.add("gidNumber: 5000");
+        group.add("owner: " + OWNER_DN);
+        for (int i = 1; i <= NUM_MEMBERS; i++) {
+            group.add("uniquemember: uid=" + (1000 + i) + "," + USERS_DN);
+        }
+        group.add("uniquemember: uid=9999," + USERS_DN);
+        group.add("uniquemember: cn=sub1," + GROUPS_DN);
+        group.add("uniquemember: cn=locked," + GROUPS_DN);
+        directory.add(group.toArray(new String[group.size()]));
+
+        directory.add("dn: cn=big," + ADMIN_GROUPS_DN, "objectClass: groupofuniquenames",
+                "cn: big", "owner: " + OWNER_DN,
+                "uniquemember: uid=1001," + USERS_DN,
+                "uniquemember: uid=1002," + USERS_DN,
+                "uniquemember: cn=sub1," + GROUPS_DN);
+        conn = directory.getConnection();
+    }
+
+    @AfterClass
+    public static void tearDownAfterClass() {
+        if (conn != null) {
+            conn.close();
+        }
+        if (directory != null) {
+            directory.shutDown();
+        }
+        System.clearProperty(PropertiesReader.class.getName() + ".dir");
+    }
+
+    @Test
+    public void testGetGroupSearchCount() throws Exception {
+        LdapConnections connections = new InMemoryConnections(config, conn);
+        LdapGroupDAO groupDAO = new LdapGroupDAO(connections, new LdapUserDAO(connections));
+
+        directory.searches.set(0);
+        Group group = groupDAO.getGroup("big", true);
+        int count = directory.searches.get();
+        log.info("getGroup: " + count + " searches");
+
+        // group entry, 451 owner and member DNs in 3 batches, member groups,
+        // admin group entry; the admin group owner and members were already found
+        Assert.assertEquals(6, count);
+
+        Assert.assertEquals("user1000", getUsername(group.getOwner()));
+        Assert.assertEquals(NUM_MEMBERS, group.getUserMembers().size());
+        Assert.assertEquals(1, group.getGroupMembers().size());
+        Assert.assertEquals("sub1", group.getGroupMembers().iterator().next().getID().getName());
+
+        Set<String> admins = new HashSet<String>();
+        for (User u : group.getUserAdmins()) {
+            admins.add(getUsername(u));
+        }
+        Assert.assertEquals(2, admins.size());
+        Assert.assertTrue(admins.contains("user1001"));
+        Assert.assertTrue(admins.contains("user1002"));
+        Assert.assertEquals(1, group.getGroupAdmins().size());
+    }
+
+    @Test
+    public void testAsyncSearch() throws Exception {
+        LdapConfig asyncConfig = LdapConfig.loadLdapConfig("testConfig.in-memory-async.properties");
+        Assert.assertTrue(asyncConfig.isAsyncSearch());
+        Assert.assertFalse(conn.synchronousMode());
+
+        LdapConnections connections = new InMemoryConnections(asyncConfig, conn);
+        LdapGroupDAO groupDAO = new LdapGroupDAO(connections, new LdapUserDAO(connections));
+
+        // same searches, pipelined two at a time
+        directory.searches.set(0);
+        Group group = groupDAO.getGroup("big", true);
+        Assert.assertEquals(6, directory.searches.get());
+        Assert.assertEquals("user1000", getUsername(group.getOwner()));
+        Assert.assertEquals(NUM_MEMBERS, group.getUserMembers().size());
+        Assert.assertEquals(1, group.getGroupMembers().size());
+        Assert.assertEquals(2, group.getUserAdmins().size());
+    }
+
+    @Test
+    public void testEntryCache() throws Exception {
+        LdapEntryCache userCache = new LdapEntryCache("user", 1000, 60000L);
+        LdapEntryCache groupCache = new LdapEntryCache("group", 1000, 60000L);
+        LdapConnections connections = new InMemoryConnections(config, conn, userCache, groupCache);
+
+        directory.searches.set(0);
+        LdapGroupDAO groupDAO = new LdapGroupDAO(connections, new LdapUserDAO(connections));
+        groupDAO.getGroup("big", true);
+        Assert.assertEquals(6, directory.searches.get());
+        Assert.assertEquals(NUM_MEMBERS + 1, userCache.size());
+        Assert.assertEquals(1, groupCache.size());
+
+        // a later request only searches for the group entries and the members
+        // that were not found, uid=9999 and the locked group
+        directory.searches.set(0);
+        groupDAO = new LdapGroupDAO(connections, new LdapUserDAO(connections));
+        Group group = groupDAO.getGroup("big", true);
+        Assert.assertEquals(4, directory.searches.get());
+        Assert.assertEquals(NUM_MEMBERS, group.getUserMembers().size());
+        Assert.assertEquals(1, group.getGroupMembers().size());
+        log.info(userCache);
+        log.info(groupCache);
+
+        // lookup by DN of a cached user
+        directory.searches.set(0);
+        LdapUserDAO userDAO = new LdapUserDAO(connections);
+        User user = userDAO.getUser(new DNPrincipal("uid=1001," + USERS_DN));
+        Assert.assertEquals("user1001", getUsername(user));
+        Assert.assertEquals(0, directory.searches.get());
+    }
+
+    @Test
+    public void testOwnerGroupsSearchCount() throws Exception {
+        LdapConnections connections = new InMemoryConnections(config, conn);
+        LdapGroupDAO groupDAO = new LdapGroupDAO(connections, new LdapUserDAO(connections));
+
+        directory.searches.set(0);
+        Collection<Group> groups = groupDAO.getOwnerGroups(new DNPrincipal(OWNER_DN), null);
+        int count = directory.searches.get();
+        log.info("getOwnerGroups: " + count + " searches");
+
+        // the shared owner is only found once
+        Assert.assertEquals(2, groups.size());
+        Assert.assertEquals(2, count);
+    }
+
+    private static String getUsername(User user) {
+        return user.getIdentities(HttpPrincipal.class).iterator().next().getName();
+    }
+}
@@ -0,0 +1,168 @@
+package ca.nrc.cadc.ac.server.ldap;
+
+import static ca.nrc.cadc.ac.server.ldap.InMemoryDirectory.GROUPS_DN;
+import static ca.nrc.cadc.ac.server.ldap.InMemoryDirectory.USERS_DN;
+
+import ca.nrc.cadc.ac.GroupAlreadyExistsException;
+import ca.nrc.cadc.ac.GroupNotFoundException;
+import ca.nrc.cadc.ac.MemberAlreadyExistsException;
+import ca.nrc.cadc.ac.UserNotFoundException;
+import ca.nrc.cadc.auth.HttpPrincipal;
+import ca.nrc.cadc.util.Log4jInit;
+import ca.nrc.cadc.util.PropertiesReader;
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import com.unboundid.ldap.sdk.LDAPConnection;
+
+/**
+ * Checks that adding or removing one group member only writes that member, using the
+ * in-memory UnboundID directory server.
+ */
+public class LdapGroupDAOMemberUpdateTest {
+    private static final Logger log = Logger.getLogger(LdapGroupDAOMemberUpdateTest.class);
+
+    private static final String GROUP_DN = "cn=archive," + GROUPS_DN;
+
+    private static final int NUM_MEMBERS = 1000;
+
+    private static InMemoryDirectory directory;
+    private static LDAPConnection conn;
+    private static LdapConfig config;
+
+    @BeforeClass
+    public static void setUpBeforeClass() throws Exception {
+        Log4jInit.setLevel("ca.nrc.cadc.ac", Level.INFO);
+        System.setProperty(PropertiesReader.class.getName() + ".dir", "src/test/config");
+        config = LdapConfig.loadLdapConfig("testConfig.in-memory.properties");
+
+        directory = new InMemoryDirectory();
+        for (int i = 0; i <= NUM_MEMBERS + 1; i++) {
+            int uid = 1000 + i;
+            directory.add("dn: uid=" + uid + "," + USERS_DN, "objectClass: inetOrgPerson",
+                    "uid: " + uid, "cn: user" + uid, "sn: user" + uid);
+        }
+        directory.add("dn: cn=sub1," + GROUPS_DN, "objectClass: groupofuniquenames",
+                "cn: sub1", "gidNumber: 5001", "owner: uid=1000," + USERS_DN);
+
+        List<String> group = new ArrayList<String>();
+        group.add("dn: " + GROUP_DN);
+        group.add("objectClass: groupofuniquenames");
+        group.add("cn: archive");
+        group.add("gidNumber: 5000");
+        group.add("owner: uid=1000," + USERS_DN);
+        for (int i = 1; i <= NUM_MEMBERS; i++) {
+            group.add("uniquemember: uid=" + (1000 + i) + "," + USERS_DN);
+        }
+        directory.add(group.toArray(new String[group.size()]));
+        conn = directory.getConnection();
+    }
+
+    @AfterClass
+    public static void tearDownAfterClass() {
+        if (conn != null) {
+            conn.close();
+        }
+        if (directory != null) {
+            directory.shutDown();
+        }
+        System.clearProperty(PropertiesReader.class.getName() + ".dir");
+    }
+
+    @Test
+    public void testUserMember() throws Exception {
+        LdapConnections connections = new InMemoryConnections(config, conn);
+        LdapGroupDAO groupDAO = new LdapGroupDAO(connections, new LdapUserDAO(connections));
+        HttpPrincipal newMember = new HttpPrincipal("user" + (1000 + NUM_MEMBERS + 1));
+
+        directory.searches.set(0);
+        directory.modifies.set(0);
+        groupDAO.addUserMember("archive", newMember);
+        log.info("addUserMember: " + directory.searches.get() + " searches " + directory.modifies.get() + " modifies");
+
+        // group entry, member DN, one modification
+        Assert.assertEquals(2, directory.searches.get());
+        Assert.assertEquals(1, directory.modifies.get());
+        Assert.assertEquals(NUM_MEMBERS + 1, getMemberCount());
+
+        try {
+            groupDAO.addUserMember("archive", newMember);
+            Assert.fail("expected MemberAlreadyExistsException");
+        } catch (MemberAlreadyExistsException expected) {
+            log.debug("caught expected: " + expected);
+        }
+
+        directory.searches.set(0);
+        directory.modifies.set(0);
+        groupDAO.removeUserMember("archive", newMember);
+        Assert.assertEquals(2, directory.searches.get());
+        Assert.assertEquals(1, directory.modifies.get());
+        Assert.assertEquals(NUM_MEMBERS, getMemberCount());
+
+        try {
+            groupDAO.removeUserMember("archive", newMember);
+            Assert.fail("expected UserNotFoundException");
+        } catch (UserNotFoundException expected) {
+            log.debug("caught expected: " + expected);
+        }
+
+        try {
+            groupDAO.addUserMember("archive", new HttpPrincipal("no-such-user"));
+            Assert.fail("expected UserNotFoundException");
+        } catch (UserNotFoundException expected) {
+            log.debug("caught expected: " + expected);
+        }
+
+        try {
+            groupDAO.addUserMember("no-such-group", newMember);
+            Assert.fail("expected GroupNotFoundException");
+        } catch (GroupNotFoundException expected) {
+            log.debug("caught expected: " + expected);
+        }
+        Assert.assertEquals(NUM_MEMBERS, getMemberCount());
+    }
+
+    @Test
+    public void testGroupMember() throws Exception {
+        LdapConnections connections = new InMemoryConnections(config, conn);
+        LdapGroupDAO groupDAO = new LdapGroupDAO(connections, new LdapUserDAO(connections));
+
+        directory.modifies.set(0);
+        groupDAO.addGroupMember("archive", "sub1");
+        Assert.assertEquals(1, directory.modifies.get());
+        Assert.assertTrue(directory.getEntry(GROUP_DN).hasAttributeValue("uniquemember", "cn=sub1," + GROUPS_DN));
+
+        try {
+            groupDAO.addGroupMember("archive", "sub1");
+            Assert.fail("expected GroupAlreadyExistsException");
+        } catch (GroupAlreadyExistsException expected) {
+            log.debug("caught expected: " + expected);
+        }
+
+        try {
+            groupDAO.addGroupMember("archive", "no-such-group");
+            Assert.fail("expected GroupNotFoundException");
+        } catch (GroupNotFoundException expected) {
+            log.debug("caught expected: " + expected);
+        }
+
+        groupDAO.removeGroupMember("archive", "sub1");
+        Assert.assertFalse(directory.getEntry(GROUP_DN).hasAttributeValue("uniquemember", "cn=sub1," + GROUPS_DN));
+
+        try {
+            groupDAO.removeGroupMember("archive", "sub1");
+            Assert.fail("expected GroupNotFoundException");
+        } catch (GroupNotFoundException expected) {
+            log.debug("caught expected: " + expected);
+        }
+    }
+
+    private int getMemberCount() throws Exception {
+        return directory.getEntry(GROUP_DN).getAttributeValues("uniquemember").length;
+    }
+}
@@ -0,0 +1,176 @@
+package ca.nrc.cadc.ac.server.ldap;
+
+import static ca.nrc.cadc.ac.server.ldap.InMemoryDirectory.GROUPS_DN;
+import static ca.nrc.cadc.ac.server.ldap.InMemoryDirectory.USERS_DN;
+
+import ca.nrc.cadc.ac.Group;
+import ca.nrc.cadc.ac.GroupNotFoundException;
+import ca.nrc.cadc.ac.User;
+import ca.nrc.cadc.auth.PosixPrincipal;
+import ca.nrc.cadc.util.Log4jInit;
+import ca.nrc.cadc.util.PropertiesReader;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.opencadc.auth.PosixGroup;
+import com.unboundid.ldap.sdk.LDAPConnection;
+
+/**
+ * Compares the per-id and batched lookups of users and groups by name and posix id
+ * used by the posix mapping endpoints, using the in-memory UnboundID directory server.
+ */
+public class LdapSubsetLookupTest {
+    private static final Logger log = Logger.getLogger(LdapSubsetLookupTest.class);
+
+
+    private static final int NUM = 500;
+    private static final int FIRST_ID = 10000;
+
+    private static InMemoryDirectory directory;
+    private static LDAPConnection conn;
+    private static LdapConfig config;
+
+    @BeforeClass
+    public static void setUpBeforeClass() throws Exception {
+        Log4jInit.setLevel("ca.nrc.cadc.ac", Level.INFO);
+        System.setProperty(PropertiesReader.class.getName() + ".dir", "src/test/config");
+        config = LdapConfig.loadLdapConfig("testConfig.in-memory.properties");
+
+        directory = new InMemoryDirectory();
+        for (int i = 0; i < NUM; i++) {
+            int id = FIRST_ID + i;
+            directory.add("dn: uid=" + id + "," + USERS_DN, "objectClass: inetOrgPerson",
+                    "uid: " + id, "cn: user" + id, "sn: user" + id, "uidNumber: " + id);
+            directory.add("dn: cn=group" + id + "," + GROUPS_DN, "objectClass: groupofuniquenames",
+                    "cn: group" + id, "gidNumber: " + id, "owner: uid=" + FIRST_ID + "," + USERS_DN);
+        }
+        directory.add("dn: cn=locked," + GROUPS_DN, "objectClass: groupofuniquenames",
+                "cn: locked", "gidNumber: 9999", "nsaccountlock: true");
+        conn = directory.getConnection();
+    }
+
+    @AfterClass
+    public static void tearDownAfterClass() {
+        if (conn != null) {
+            conn.close();
+        }
+        if (directory != null) {
+            directory.shutDown();
+        }
+        System.clearProperty(PropertiesReader.class.getName() + ".dir");
+    }
+
+    @Test
+    public void testGetGroupNames() throws Exception {
+        LdapConnections connections = new InMemoryConnections(config, conn);
+        LdapGroupDAO groupDAO = new LdapGroupDAO(connections, new LdapUserDAO(connections));
+
+        List<String> names = new ArrayList<String>();
+        List<Integer> gids = new ArrayList<Integer>();
+        for (int i = 0; i < NUM; i++) {
+            if (i % 2 == 0) {
+                names.add("group" + (FIRST_ID + i));
+            } else {
+                gids.add(FIRST_ID + i);
+            }
+        }
+        names.add("locked");
+        names.add("no-such-group");
+        gids.add(9999);
+        gids.add(FIRST_ID); // also found by name
+
+        // per-id lookups
+        directory.searches.set(0);
+        long t1 = System.currentTimeMillis();
+        Set<Integer> perID = new HashSet<Integer>();
+        for (int gid : gids) {
+            try {
+                Group g = groupDAO.getGroup(gid);
+                perID.add(g.gid);
+            } catch (GroupNotFoundException expected) {
+                log.debug("not found: " + gid);
+            }
+        }
+        long perIDTime = System.currentTimeMillis() - t1;
+        int perIDSearches = directory.searches.get();
+
+        // batched lookup
+        directory.searches.set(0);
+        t1 = System.currentTimeMillis();
+        Collection<PosixGroup> groups = groupDAO.getGroupNames(names, gids);
+        long batchTime = System.currentTimeMillis() - t1;
+        int batchSearches = directory.searches.get();
+        log.info("gid lookups: per-id " + perIDSearches + " searches " + perIDTime + "ms, "
+                + "batched names and gids " + batchSearches + " searches " + batchTime + "ms");
+
+        Assert.assertEquals(gids.size(), perIDSearches);
+        Assert.assertEquals(perID.size(), NUM / 2 + 1);
+
+        // 252 names and 252 gids in batches of 200
+        Assert.assertEquals(4, batchSearches);
+        Assert.assertEquals(NUM, groups.size());
+        Set<Integer> found = new HashSet<Integer>();
+        for (PosixGroup pg : groups) {
+            Assert.assertEquals("group" + pg.getGID(), pg.getGroupURI().getName());
+            found.add(pg.getGID());
+        }
+        Assert.assertEquals(NUM, found.size());
+        Assert.assertFalse("locked", found.contains(9999));
+    }
+
+    @Test
+    public void testGetPosixPrincipals() throws Exception {
+        LdapConnections connections = new InMemoryConnections(config, conn);
+        LdapUserDAO userDAO = new LdapUserDAO(connections);
+
+        List<String> usernames = new ArrayList<String>();
+        List<Integer> uids = new ArrayList<Integer>();
+        for (int i = 0; i < NUM; i++) {
+            if (i % 2 == 0) {
+                usernames.add("user" + (FIRST_ID + i));
+            } else {
+                uids.add(FIRST_ID + i);
+            }
+        }
+        usernames.add("no-such-user");
+
+        // per-id lookups
+        directory.searches.set(0);
+        long t1 = System.currentTimeMillis();
+        int perID = 0;
+        for (int uid : uids) {
+            User u = userDAO.getAugmentedUser(new PosixPrincipal(uid), false);
+            Assert.assertNotNull(u.posixDetails);
+            perID++;
+        }
+        long perIDTime = System.currentTimeMillis() - t1;
+        int perIDSearches = directory.searches.get();
+
+        // batched lookup
+        directory.searches.set(0);
+        t1 = System.currentTimeMillis();
+        Collection<PosixPrincipal> users = userDAO.getPosixPrincipals(usernames, uids);
+        long batchTime = System.currentTimeMillis() - t1;
+        int batchSearches = directory.searches.get();
+        log.info("uid lookups: per-id " + perIDSearches + " searches " + perIDTime + "ms, "
+                + "batched usernames and uids " + batchSearches + " searches " + batchTime + "ms");
+
+        Assert.assertEquals(NUM / 2, perID);
+        Assert.assertEquals(uids.size(), perIDSearches);
+
+        Assert.assertEquals(4, batchSearches);
+        Assert.assertEquals(NUM, users.size());
+        for (PosixPrincipal p : users) {
+            Assert.assertEquals("user" + p.getUidNumber(), p.username);
+            Assert.assertEquals(Integer.valueOf(p.getUidNumber()), p.defaultGroup);
+        }
+    }
+}
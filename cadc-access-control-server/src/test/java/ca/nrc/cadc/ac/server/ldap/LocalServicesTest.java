@@ -0,0 +1,41 @@
+package ca.nrc.cadc.ac.server.ldap;
+
+import ca.nrc.cadc.util.PropertiesReader;
+import java.net.URI;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class LocalServicesTest {
+
+    @BeforeClass
+    public static void setUpBeforeClass() {
+        System.setProperty(PropertiesReader.class.getName() + ".dir", "src/test/config");
+    }
+
+    @AfterClass
+    public static void tearDownAfterClass() {
+        System.clearProperty(PropertiesReader.class.getName() + ".dir");
+    }
+
+    @Test
+    public void testServiceURIs() {
+        LocalServices services = new LocalServices();
+        URI gms = URI.create("ivo://example.net/gms");
+        URI groups = services.getGroupsServiceURI();
+        Assert.assertEquals(gms, groups);
+        Assert.assertEquals(gms, services.getGroupSearchServiceURI());
+        Assert.assertEquals(gms, services.getUserRequestsServiceURI());
+
+        // resolved once
+        Assert.assertSame(groups, services.getGroupsServiceURI());
+
+        // unchanged configuration keeps the resolved instance
+        services.reload();
+        Assert.assertSame(groups, services.getGroupsServiceURI());
+
+        services.clear();
+        Assert.assertEquals(gms, services.getGroupsServiceURI());
+    }
+}
@@ -0,0 +1,111 @@
+package ca.nrc.cadc.ac.server.ldap;
+
+import ca.nrc.cadc.util.Log4jInit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.junit.Assert;
+import org.junit.Test;
+import com.unboundid.ldap.sdk.DN;
+
+public class MemberOfParserTest {
+    private static final Logger log = Logger.getLogger(MemberOfParserTest.class);
+
+    private static final String GROUPS_DN = "ou=groups,ou=ds,dc=canfar,dc=net";
+    private static final String ADMIN_GROUPS_DN = "ou=adminGroups,ou=ds,dc=canfar,dc=net";
+
+    static {
+        Log4jInit.setLevel("ca.nrc.cadc.ac", Level.INFO);
+    }
+
+    @Test
+    public void testParse() throws Exception {
+        MemberOfParser parser = new MemberOfParser(GROUPS_DN, ADMIN_GROUPS_DN);
+        String[] memberOf = new String[] {
+            "cn=group1," + GROUPS_DN,
+            "cn=Group2,ou=Groups,ou=DS,dc=canfar,dc=net",
+            "cn=group3,ou=admingroups,ou=ds,dc=canfar,dc=net",
+            "cn=group4, ou=groups, ou=ds, dc=canfar, dc=net",
+            "cn=a\\,b," + GROUPS_DN,
+            "cn=group5," + ADMIN_GROUPS_DN,
+            "cn=other,ou=other,ou=ds,dc=canfar,dc=net",
+            "cn=nested,cn=group1," + GROUPS_DN,
+            "uid=1000,ou=users,ou=ds,dc=canfar,dc=net"
+        };
+        List<String> members = new ArrayList<String>();
+        List<String> admins = new ArrayList<String>();
+        parser.parse(memberOf, members, admins);
+        Assert.assertEquals(5, members.size());
+        Assert.assertTrue(members.containsAll(Arrays.asList("group1", "Group2", "group4", "nested")));
+        Assert.assertEquals(Arrays.asList("group3", "group5"), admins);
+
+        // same result as parsing every value
+        List<String> expectedMembers = new ArrayList<String>();
+        List<String> expectedAdmins = new ArrayList<String>();
+        parseDN(memberOf, expectedMembers, expectedAdmins);
+        Assert.assertEquals(expectedMembers, members);
+        Assert.assertEquals(expectedAdmins, admins);
+    }
+
+    @Test
+    public void testParseBenchmark() throws Exception {
+        Random random = new Random(1L);
+        String[] memberOf = new String[2500];
+        for (int i = 0; i < memberOf.length; i++) {
+            String name = "proj-" + Integer.toHexString(random.nextInt()) + "-" + i;
+            memberOf[i] = "cn=" + name + "," + (i % 10 == 0 ? ADMIN_GROUPS_DN.toLowerCase() : GROUPS_DN);
+        }
+        MemberOfParser parser = new MemberOfParser(GROUPS_DN, ADMIN_GROUPS_DN);
+        List<String> members = new ArrayList<String>();
+        List<String> admins = new ArrayList<String>();
+        List<String> expectedMembers = new ArrayList<String>();
+        List<String> expectedAdmins = new ArrayList<String>();
+        parser.parse(memberOf, members, admins);
+        parseDN(memberOf, expectedMembers, expectedAdmins);
+        Assert.assertEquals(expectedMembers, members);
+        Assert.assertEquals(expectedAdmins, admins);
+        Assert.assertEquals(memberOf.length / 10, admins.size());
+
+        int iterations = 200;
+        for (int pass = 0; pass < 2; pass++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < iterations; i++) {
+                members.clear();
+                admins.clear();
+                parser.parse(memberOf, members, admins);
+            }
+            long fast = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            for (int i = 0; i < iterations; i++) {
+                expectedMembers.clear();
+                expectedAdmins.clear();
+                parseDN(memberOf, expectedMembers, expectedAdmins);
+            }
+            long dn = System.nanoTime() - start;
+
+            // first pass is warmup
+            if (pass > 0) {
+                log.info(String.format("%d memberOf values: parser %.3f ms/user, DN parsing %.3f ms/user",
+                        memberOf.length, fast / 1.0e6 / iterations, dn / 1.0e6 / iterations));
+            }
+        }
+    }
+
+    // parse every value as a DN, as getAugmentedUser used to
+    private static void parseDN(String[] memberOf, List<String> members, List<String> admins) throws Exception {
+        DN groupsDN = new DN(GROUPS_DN);
+        DN adminDN = new DN(ADMIN_GROUPS_DN);
+        for (String m : memberOf) {
+            DN groupDN = new DN(m);
+            if (groupDN.isDescendantOf(groupsDN, false)) {
+                members.add(MemberOfParser.getGroupName(groupDN));
+            } else if (groupDN.isDescendantOf(adminDN, false)) {
+                admins.add(MemberOfParser.getGroupName(groupDN));
+            }
+        }
+    }
+}
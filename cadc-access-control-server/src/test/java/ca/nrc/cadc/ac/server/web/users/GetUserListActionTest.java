@@ -76,12 +76,14 @@ import ca.nrc.cadc.ac.server.UserPersistence;
 import ca.nrc.cadc.ac.server.web.SyncOutput;
 import ca.nrc.cadc.ac.xml.UserListWriter;
 import ca.nrc.cadc.auth.HttpPrincipal;
+import ca.nrc.cadc.io.ResourceIterator;
 import ca.nrc.cadc.util.Log4jInit;
 import ca.nrc.cadc.util.PropertiesReader;
 import java.io.PrintWriter;
 import java.io.StringWriter;
 import java.io.Writer;
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
 import org.apache.log4j.Level;
 import org.junit.AfterClass;
@@ -135,7 +137,7 @@ public class GetUserListActionTest {
         final Writer actualWriter = new StringWriter();
         final PrintWriter actualPrintWriter = new PrintWriter(actualWriter);
 
-        expect(mockUserPersistence.getUsers()).andReturn(expectedUsers).once();
+        expect(mockUserPersistence.iterateUsers(0, null)).andReturn(iterator(expectedUsers)).once();
         expect(mockSyncOut.getWriter()).andReturn(actualPrintWriter).once();
         mockSyncOut.setHeader("Content-Type", "application/json");
         expectLastCall().once();
@@ -178,7 +180,7 @@ public class GetUserListActionTest {
         final Writer actualWriter = new StringWriter();
         final PrintWriter actualPrintWriter = new PrintWriter(actualWriter);
 
-        expect(mockUserPersistence.getUsers()).andReturn(expectedUsers).once();
+        expect(mockUserPersistence.iterateUsers(0, null)).andReturn(iterator(expectedUsers)).once();
         expect(mockSyncOut.getWriter()).andReturn(actualPrintWriter).once();
         mockSyncOut.setHeader("Content-Type", "text/xml");
         expectLastCall().once();
@@ -197,4 +199,23 @@ public class GetUserListActionTest {
 
         verify(mockSyncOut, mockUserPersistence);
     }
+
+    private static ResourceIterator<User> iterator(List<User> users) {
+        final Iterator<User> iter = users.iterator();
+        return new ResourceIterator<User>() {
+            @Override
+            public boolean hasNext() {
+                return iter.hasNext();
+            }
+
+            @Override
+            public User next() {
+                return iter.next();
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+    }
 }
@@ -151,6 +151,8 @@ public class UserActionFactoryTest {
         try {
             HttpServletRequest request = EasyMock.createMock(HttpServletRequest.class);
             EasyMock.expect(request.getPathInfo()).andReturn("");
+            EasyMock.expect(request.getParameter("offset")).andReturn(null);
+            EasyMock.expect(request.getParameter("limit")).andReturn(null);
             EasyMock.replay(request);
             AbstractUserAction action = UserActionFactory.httpGetFactory().createAction(request);
             EasyMock.verify(request);
@@ -161,6 +163,40 @@ public class UserActionFactoryTest {
         }
     }
 
+    @Test
+    public void testGetUserNamesActionPage() {
+        try {
+            HttpServletRequest request = EasyMock.createMock(HttpServletRequest.class);
+            EasyMock.expect(request.getPathInfo()).andReturn("");
+            EasyMock.expect(request.getParameter("offset")).andReturn("1000");
+            EasyMock.expect(request.getParameter("limit")).andReturn("500");
+            EasyMock.replay(request);
+            AbstractUserAction action = UserActionFactory.httpGetFactory().createAction(request);
+            EasyMock.verify(request);
+            Assert.assertTrue("Wrong action", action instanceof GetUserListAction);
+        } catch (Throwable t) {
+            log.error(t.getMessage(), t);
+            Assert.fail("unexpected error: " + t.getMessage());
+        }
+
+        for (String limit : new String[] {"-1", "ten"}) {
+            try {
+                HttpServletRequest request = EasyMock.createMock(HttpServletRequest.class);
+                EasyMock.expect(request.getPathInfo()).andReturn("");
+                EasyMock.expect(request.getParameter("offset")).andReturn(null);
+                EasyMock.expect(request.getParameter("limit")).andReturn(limit);
+                EasyMock.replay(request);
+                UserActionFactory.httpGetFactory().createAction(request);
+                Assert.fail("expected IllegalArgumentException for limit " + limit);
+            } catch (IllegalArgumentException expected) {
+                log.debug("caught expected: " + expected);
+            } catch (Throwable t) {
+                log.error(t.getMessage(), t);
+                Assert.fail("unexpected error: " + t.getMessage());
+            }
+        }
+    }
+
     @Test
     public void testModifyUserAction() {
         try {
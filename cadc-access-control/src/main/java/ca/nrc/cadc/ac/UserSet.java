@@ -1,48 +1,80 @@
 package ca.nrc.cadc.ac;
 
+import ca.nrc.cadc.auth.AuthenticationUtil;
 import java.security.Principal;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import javax.security.auth.x500.X500Principal;
 
 /**
- * A custom set built on a list implementation.
+ * A custom set of users using the User.equals (consistent identities) semantics.
  *
  * <p>Ordering will not be deterministic as per the Set specification.
+ *
+ * <p>Two equal users always share at least one identity (users without identities
+ * are not equal to any user), so the members are indexed
+ * by identity and add, contains and remove only compare a user with the members that
+ * share one of its identities. The index is built when a user is added: the identities
+ * of a member must not be changed while it is in the set.
  */
 public class UserSet implements Set<User> {
 
-    private List<User> users;
+    private final Set<Member> users = new LinkedHashSet<Member>();
+
+    // members by identity key
+    private final Map<String, List<User>> index = new HashMap<String, List<User>>();
 
     public UserSet() {
-        users = new ArrayList<User>();
     }
 
     public User getUser(Principal identity) {
-        User test = null;
-        for (User u : users) {
-            test = new User();
+        List<User> candidates = index.get(getKey(identity));
+        if (candidates != null) {
+            User test = new User();
             test.getIdentities().add(identity);
-            if (test.isConsistent(u)) {
-                return u;
+            for (User u : candidates) {
+                if (test.isConsistent(u)) {
+                    return u;
+                }
             }
         }
         return null;
     }
 
+    /**
+     * @return a copy of the members as a list
+     */
     public List<User> getUserList() {
-        return users;
+        List<User> ret = new ArrayList<User>(users.size());
+        for (Member m : users) {
+            ret.add(m.user);
+        }
+        return ret;
     }
 
     @Override
     public boolean add(User e) {
-        if (!users.contains(e)) {
-            users.add(e);
-            return true;
+        if (find(e) != null) {
+            return false;
         }
-        return false;
+        users.add(new Member(e));
+        for (Principal p : e.getIdentities()) {
+            List<User> candidates = index.get(getKey(p));
+            if (candidates == null) {
+                candidates = new ArrayList<User>(1);
+                index.put(getKey(p), candidates);
+            }
+            if (!containsRef(candidates, e)) {
+                candidates.add(e);
+            }
+        }
+        return true;
     }
 
     @Override
@@ -60,16 +92,22 @@ public class UserSet implements Set<User> {
     @Override
     public void clear() {
         users.clear();
+        index.clear();
     }
 
     @Override
     public boolean contains(Object o) {
-        return users.contains(o);
+        return (o instanceof User) && find((User) o) != null;
     }
 
     @Override
     public boolean containsAll(Collection<?> c) {
-        return users.containsAll(c);
+        for (Object o : c) {
+            if (!contains(o)) {
+                return false;
+            }
+        }
+        return true;
     }
 
     @Override
@@ -79,13 +117,38 @@ public class UserSet implements Set<User> {
 
     @Override
     public Iterator<User> iterator() {
-        return users.iterator();
+        final Iterator<Member> i = users.iterator();
+        return new Iterator<User>() {
+            private User current;
+
+            @Override
+            public boolean hasNext() {
+                return i.hasNext();
+            }
+
+            @Override
+            public User next() {
+                current = i.next().user;
+                return current;
+            }
+
+            @Override
+            public void remove() {
+                i.remove();
+                unindex(current);
+            }
+        };
     }
 
     @Override
     public boolean remove(Object o) {
-        if (users.contains(o)) {
-            users.remove(o);
+        if (!(o instanceof User)) {
+            return false;
+        }
+        User found = find((User) o);
+        if (found != null) {
+            users.remove(new Member(found));
+            unindex(found);
             return true;
         }
         return false;
@@ -105,7 +168,7 @@ public class UserSet implements Set<User> {
 
     @Override
     public boolean retainAll(Collection<?> c) {
-        Iterator<User> i = users.listIterator();
+        Iterator<User> i = iterator();
         boolean modified = false;
         User next = null;
         while (i.hasNext()) {
@@ -125,12 +188,83 @@ public class UserSet implements Set<User> {
 
     @Override
     public Object[] toArray() {
-        return users.toArray();
+        return getUserList().toArray();
     }
 
     @Override
     public <T> T[] toArray(T[] a) {
-        return users.toArray(a);
+        return getUserList().toArray(a);
+    }
+
+    // the member equal to the user, or null
+    private User find(User user) {
+        for (Principal p : user.getIdentities()) {
+            List<User> candidates = index.get(getKey(p));
+            if (candidates != null) {
+                for (User u : candidates) {
+                    if (user.equals(u)) {
+                        return u;
+                    }
+                }
+            }
+        }
+        return null;
+    }
+
+    private void unindex(User user) {
+        for (Principal p : user.getIdentities()) {
+            String key = getKey(p);
+            List<User> candidates = index.get(key);
+            if (candidates != null) {
+                for (Iterator<User> i = candidates.iterator(); i.hasNext(); ) {
+                    if (i.next() == user) {
+                        i.remove();
+                    }
+                }
+                if (candidates.isEmpty()) {
+                    index.remove(key);
+                }
+            }
+        }
+    }
+
+    private static boolean containsRef(List<User> users, User user) {
+        for (User u : users) {
+            if (u == user) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // principals that compare equal map to the same key; the key may be coarser
+    // than the comparison, the candidates are always checked with User.equals
+    private static String getKey(Principal p) {
+        String name = p.getName();
+        if (name == null) {
+            name = "";
+        } else if (p instanceof X500Principal) {
+            name = AuthenticationUtil.canonizeDistinguishedName(name);
+        }
+        return p.getClass().getName() + ":" + name.toLowerCase();
     }
 
+    // identity wrapper: User.equals is not an equivalence relation
+    private static final class Member {
+        final User user;
+
+        Member(User user) {
+            this.user = user;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return (obj instanceof Member) && ((Member) obj).user == user;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(user);
+        }
+    }
 }
@@ -911,14 +911,13 @@ public class GMSClient implements TransferListener, GroupClient {
     }
 
     protected Group getCachedGroup(Principal userID, String groupID, Role role) {
-        List<Group> groups = getCachedGroups(userID, role, false);
-        if (groups == null) {
+        GroupMemberships mems = getGroupCache(userID);
+        if (mems == null) {
             return null; // no cache
         }
-        for (Group g : groups) {
-            if (g.getID().getName().equals(groupID)) {
-                return g;
-            }
+        Group g = mems.getGroup(groupID, role);
+        if (g != null && g.getID().getName().equals(groupID)) {
+            return g;
         }
         return null;
     }
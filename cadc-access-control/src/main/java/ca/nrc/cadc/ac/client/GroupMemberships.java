@@ -71,16 +71,25 @@ package ca.nrc.cadc.ac.client;
 
 import ca.nrc.cadc.ac.Group;
 import ca.nrc.cadc.ac.Role;
+import java.net.URI;
 import java.security.Principal;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import org.apache.log4j.Logger;
+import org.opencadc.gms.GroupURI;
 
 /**
  * Class used to hold list of groups in which a user is known to be a member.
  *
+ * <p>The groups of each role are indexed by case-insensitive name. Groups added by
+ * name are only created when the list of groups is requested, or when one is found
+ * by name. The list returned by getMemberships is the cached list: groups added to
+ * it directly are not indexed.
+ *
  * @author pdowler
  */
 public class GroupMemberships implements Comparable {
@@ -88,7 +97,7 @@ public class GroupMemberships implements Comparable {
 
     private String serviceURI;
     private Principal userID;
-    private Map<Role, List<Group>> memberships = new HashMap<Role, List<Group>>();
+    private Map<Role, Memberships> memberships = new HashMap<Role, Memberships>();
     private Map<Role, Boolean> complete = new HashMap<Role, Boolean>();
 
     public GroupMemberships() {
@@ -110,13 +119,41 @@ public class GroupMemberships implements Comparable {
     }
 
     public List<Group> getMemberships(Role role) {
-        return memberships.get(role);
+        return memberships.get(role).getGroups();
+    }
+
+    /**
+     * @param role the role
+     * @return the names of the groups, in the order they were added
+     */
+    public List<String> getGroupNames(Role role) {
+        return new ArrayList<String>(memberships.get(role).names.values());
+    }
+
+    /**
+     * Find a group by name.
+     *
+     * @param groupName the group name, compared without case
+     * @param role      the role
+     * @return the group, or null if not found
+     */
+    public Group getGroup(String groupName, Role role) {
+        return memberships.get(role).getGroup(groupName);
+    }
+
+    /**
+     * @param groupName the group name, compared without case
+     * @param role      the role
+     * @return true if the user has the role in the named group
+     */
+    public boolean hasGroup(String groupName, Role role) {
+        return groupName != null && memberships.get(role).names.containsKey(groupName.toLowerCase());
     }
 
     private void init() {
         for (Role role : Role.values()) {
             complete.put(role, Boolean.FALSE);
-            memberships.put(role, new ArrayList<Group>());
+            memberships.put(role, new Memberships());
         }
     }
 
@@ -125,18 +162,30 @@ public class GroupMemberships implements Comparable {
     }
 
     public void add(Group group, Role role) {
-        List<Group> groups = memberships.get(role);
-        if (!groups.contains(group)) {
-            groups.add(group);
-        }
+        memberships.get(role).add(group);
     }
 
     public void add(List<Group> groups, Role role) {
-        List<Group> cur = memberships.get(role);
+        Memberships cur = memberships.get(role);
         for (Group group : groups) {
-            if (!cur.contains(group)) {
-                cur.add(group);
-            }
+            cur.add(group);
+            complete.put(role, Boolean.TRUE);
+        }
+    }
+
+    /**
+     * Add groups of the service by name, without creating the Group instances.
+     *
+     * @param groupNames the group names
+     * @param role       the role
+     */
+    public void addGroupNames(Collection<String> groupNames, Role role) {
+        if (serviceURI == null) {
+            throw new IllegalStateException("serviceURI is required to add groups by name");
+        }
+        Memberships cur = memberships.get(role);
+        for (String name : groupNames) {
+            cur.add(name);
             complete.put(role, Boolean.TRUE);
         }
     }
@@ -152,4 +201,60 @@ public class GroupMemberships implements Comparable {
         }
         return -1; // wonder if this is sketchy
     }
+
+    // groups of one role
+    private class Memberships {
+        // lower case name to name
+        final Map<String, String> names = new LinkedHashMap<String, String>();
+        // lower case name to group, for the groups created so far
+        final Map<String, Group> groups = new HashMap<String, Group>();
+        // all groups, once requested
+        List<Group> list;
+
+        void add(Group group) {
+            String key = group.getID().getName().toLowerCase();
+            if (names.containsKey(key)) {
+                return;
+            }
+            names.put(key, group.getID().getName());
+            groups.put(key, group);
+            if (list != null) {
+                list.add(group);
+            }
+        }
+
+        void add(String name) {
+            String key = name.toLowerCase();
+            if (names.containsKey(key)) {
+                return;
+            }
+            names.put(key, name);
+            if (list != null) {
+                list.add(getGroup(name));
+            }
+        }
+
+        Group getGroup(String name) {
+            if (name == null) {
+                return null;
+            }
+            String key = name.toLowerCase();
+            Group ret = groups.get(key);
+            if (ret == null && names.containsKey(key)) {
+                ret = new Group(new GroupURI(URI.create(serviceURI), names.get(key)));
+                groups.put(key, ret);
+            }
+            return ret;
+        }
+
+        List<Group> getGroups() {
+            if (list == null) {
+                list = new ArrayList<Group>(names.size());
+                for (String name : names.values()) {
+                    list.add(getGroup(name));
+                }
+            }
+            return list;
+        }
+    }
 }
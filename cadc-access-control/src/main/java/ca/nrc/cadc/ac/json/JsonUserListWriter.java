@@ -75,7 +75,9 @@ import ca.nrc.cadc.xml.JsonOutputter;
 import java.io.IOException;
 import java.io.Writer;
 import java.security.Principal;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Iterator;
 import org.jdom2.Document;
 import org.jdom2.Element;
 
@@ -97,16 +99,61 @@ public class JsonUserListWriter extends UserListWriter {
             throw new WriterException("null users");
         }
 
-        Element usersElement = getElement(users);
+        output(getElement(users), writer);
+    }
+
+    /**
+     * Write Users to a Writer as they are read from an Iterator. The users
+     * object start and end are written here and each user is output as it is
+     * read, flushing the writer every BATCH_SIZE users. The JSON has the same
+     * content as writing a Collection of the same users.
+     *
+     * @param users  Users to write.
+     * @param writer Writer to write to.
+     * @throws IOException if the writer fails to write.
+     */
+    @Override
+    public void write(Iterator<User> users, Writer writer)
+            throws WriterException, IOException {
+        if (users == null) {
+            throw new WriterException("null users");
+        }
+        if (!users.hasNext()) {
+            output(getElement(new ArrayList<User>()), writer);
+            return;
+        }
+
+        // a document with a user root element is written as a users list item
+        JsonOutputter jsonOutputter = getJsonOutputter();
+        writer.write("{\"" + USERS + "\":{\"$\":[");
+        int count = 0;
+        while (users.hasNext()) {
+            if (count > 0) {
+                writer.write(",");
+            }
+            jsonOutputter.output(new Document(getElement(users.next())), writer);
+            if (++count % BATCH_SIZE == 0) {
+                writer.flush();
+            }
+        }
+        writer.write("]}}");
+        writer.flush();
+    }
+
+    private void output(Element usersElement, Writer writer)
+            throws IOException {
         Document document = new Document();
         document.setRootElement(usersElement);
 
+        getJsonOutputter().output(document, writer);
+    }
+
+    private JsonOutputter getJsonOutputter() {
         JsonOutputter jsonOutputter = new JsonOutputter();
         jsonOutputter.getListElementNames().add(GROUPS);
         jsonOutputter.getListElementNames().add(USERS);
         jsonOutputter.getListElementNames().add(IDENTITIES);
-
-        jsonOutputter.output(document, writer);
+        return jsonOutputter;
     }
 
 }
@@ -78,13 +78,25 @@ import java.io.OutputStreamWriter;
 import java.io.UnsupportedEncodingException;
 import java.io.Writer;
 import java.security.Principal;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Iterator;
 import org.jdom2.Element;
+import org.jdom2.output.Format;
+import org.jdom2.output.XMLOutputter;
+import org.jdom2.output.support.AbstractXMLOutputProcessor;
+import org.jdom2.output.support.FormatStack;
+import org.jdom2.util.NamespaceStack;
 
 /**
  * Class to write a XML representation of a List of User's.
  */
 public class UserListWriter extends AbstractReaderWriter {
+    /**
+     * Number of users written between flushes when writing from an Iterator.
+     */
+    protected static final int BATCH_SIZE = 100;
+
     /**
      * Write a Collection of User's to a StringBuilder.
      *
@@ -134,6 +146,43 @@ public class UserListWriter extends AbstractReaderWriter {
         write(getElement(users), writer);
     }
 
+    /**
+     * Write Users to a Writer as they are read from an Iterator. The users
+     * element start and end are written here and each user element is output
+     * as it is read, flushing the writer every BATCH_SIZE users, so the list is
+     * never held in memory; the output is the same as writing a Collection of
+     * the same users.
+     *
+     * @param users  Users to write.
+     * @param writer Writer to write to.
+     * @throws IOException     if the writer fails to write.
+     * @throws WriterException
+     */
+    public void write(Iterator<User> users, Writer writer)
+            throws IOException, WriterException {
+        if (users == null) {
+            throw new WriterException("null users");
+        }
+        if (!users.hasNext()) {
+            write(getElement(new ArrayList<User>()), writer);
+            return;
+        }
+
+        final Format format = Format.getPrettyFormat();
+        final String lineSeparator = format.getLineSeparator();
+        XMLOutputter outputter = new XMLOutputter(format, new ChildElementProcessor());
+        writer.write("<?xml version=\"1.0\" encoding=\"" + format.getEncoding() + "\"?>" + lineSeparator);
+        writer.write("<" + USERS + ">" + lineSeparator);
+        int count = 0;
+        while (users.hasNext()) {
+            outputter.output(getElement(users.next()), writer);
+            if (++count % BATCH_SIZE == 0) {
+                writer.flush();
+            }
+        }
+        writer.write("</" + USERS + ">" + lineSeparator);
+        writer.flush();
+    }
 
     /**
      * Get a JDOM element from a Collection of User objects.
@@ -153,4 +202,20 @@ public class UserListWriter extends AbstractReaderWriter {
         return usersElement;
     }
 
+    /**
+     * Outputs an element as a child of the document root element, so it is
+     * indented the same as when the whole document is output.
+     */
+    private static class ChildElementProcessor extends AbstractXMLOutputProcessor {
+        @Override
+        public void process(Writer out, Format format, Element element)
+                throws IOException {
+            FormatStack fstack = new FormatStack(format);
+            fstack.push();
+            out.write(fstack.getLevelIndent());
+            printElement(out, fstack, new NamespaceStack(), element);
+            out.write(fstack.getLineSeparator());
+        }
+    }
+
 }
@@ -0,0 +1,220 @@
+/*
+ ************************************************************************
+ *******************  CANADIAN ASTRONOMY DATA CENTRE  *******************
+ **************  CENTRE CANADIEN DE DONNÉES ASTRONOMIQUES  **************
+ *
+ *  (c) 2026.                            (c) 2026.
+ *  Government of Canada                 Gouvernement du Canada
+ *  National Research Council            Conseil national de recherches
+ *  Ottawa, Canada, K1A 0R6              Ottawa, Canada, K1A 0R6
+ *  All rights reserved                  Tous droits réservés
+ *
+ *  NRC disclaims any warranties,        Le CNRC dénie toute garantie
+ *  expressed, implied, or               énoncée, implicite ou légale,
+ *  statutory, of any kind with          de quelque nature que ce
+ *  respect to the software,             soit, concernant le logiciel,
+ *  including without limitation         y compris sans restriction
+ *  any warranty of merchantability      toute garantie de valeur
+ *  or fitness for a particular          marchande ou de pertinence
+ *  purpose. NRC shall not be            pour un usage particulier.
+ *  liable in any event for any          Le CNRC ne pourra en aucun cas
+ *  damages, whether direct or           être tenu responsable de tout
+ *  indirect, special or general,        dommage, direct ou indirect,
+ *  consequential or incidental,         particulier ou général,
+ *  arising from the use of the          accessoire ou fortuit, résultant
+ *  software.  Neither the name          de l'utilisation du logiciel. Ni
+ *  of the National Research             le nom du Conseil National de
+ *  Council of Canada nor the            Recherches du Canada ni les noms
+ *  names of its contributors may        de ses  participants ne peuvent
+ *  be used to endorse or promote        être utilisés pour approuver ou
+ *  products derived from this           promouvoir les produits dérivés
+ *  software without specific prior      de ce logiciel sans autorisation
+ *  written permission.                  préalable et particulière
+ *                                       par écrit.
+ *
+ *  This file is part of the             Ce fichier fait partie du projet
+ *  OpenCADC project.                    OpenCADC.
+ *
+ *  OpenCADC is free software:           OpenCADC est un logiciel libre ;
+ *  you can redistribute it and/or       vous pouvez le redistribuer ou le
+ *  modify it under the terms of         modifier suivant les termes de
+ *  the GNU Affero General Public        la “GNU Affero General Public
+ *  License as published by the          License” telle que publiée
+ *  Free Software Foundation,            par la Free Software Foundation
+ *  either version 3 of the              : soit la version 3 de cette
+ *  License, or (at your option)         licence, soit (à votre gré)
+ *  any later version.                   toute version ultérieure.
+ *
+ *  OpenCADC is distributed in the       OpenCADC est distribué
+ *  hope that it will be useful,         dans l’espoir qu’il vous
+ *  but WITHOUT ANY WARRANTY;            sera utile, mais SANS AUCUNE
+ *  without even the implied             GARANTIE : sans même la garantie
+ *  warranty of MERCHANTABILITY          implicite de COMMERCIALISABILITÉ
+ *  or FITNESS FOR A PARTICULAR          ni d’ADÉQUATION À UN OBJECTIF
+ *  PURPOSE.  See the GNU Affero         PARTICULIER. Consultez la Licence
+ *  General Public License for           Générale Publique GNU Affero
+ *  more details.                        pour plus de détails.
+ *
+ *  You should have received             Vous devriez avoir reçu une
+ *  a copy of the GNU Affero             copie de la Licence Générale
+ *  General Public License along         Publique GNU Affero avec
+ *  with OpenCADC.  If not, see          OpenCADC ; si ce n’est
+ *  <http://www.gnu.org/licenses/>.      pas le cas, consultez :
+ *                                       <http://www.gnu.org/licenses/>.
+ *
+ *  $Revision: 4 $
+ *
+ ************************************************************************
+ */
+
+package ca.nrc.cadc.ac;
+
+import ca.nrc.cadc.auth.HttpPrincipal;
+import ca.nrc.cadc.auth.NumericPrincipal;
+import ca.nrc.cadc.util.Log4jInit;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.UUID;
+import javax.security.auth.x500.X500Principal;
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class UserSetTest {
+    private static Logger log = Logger.getLogger(UserSetTest.class);
+
+    static {
+        Log4jInit.setLevel("ca.nrc.cadc.ac", Level.INFO);
+    }
+
+    @Test
+    public void testConsistentIdentities() throws Exception {
+        UserSet users = new UserSet();
+        User full = newUser("foo");
+        full.getIdentities().add(new X500Principal("cn=foo,c=bar"));
+        assertTrue(users.add(full));
+
+        // a user with a subset of the identities is already a member
+        User http = new User();
+        http.getIdentities().add(new HttpPrincipal("foo"));
+        assertTrue(users.contains(http));
+        assertFalse(users.add(http));
+
+        // distinguished names compare in canonical form
+        User x500 = new User();
+        x500.getIdentities().add(new X500Principal("CN=foo, C=bar"));
+        assertTrue(users.contains(x500));
+
+        User other = newUser("bar");
+        assertFalse(users.contains(other));
+        assertTrue(users.add(other));
+        assertEquals(2, users.size());
+
+        assertSame(full, users.getUser(new HttpPrincipal("foo")));
+        assertSame(other, users.getUser(new HttpPrincipal("bar")));
+        assertNull(users.getUser(new HttpPrincipal("baz")));
+
+        assertTrue(users.remove(http));
+        assertFalse(users.contains(full));
+        assertFalse(users.remove(http));
+        assertNull(users.getUser(new HttpPrincipal("foo")));
+        assertEquals(1, users.size());
+    }
+
+    @Test
+    public void testNoIdentities() throws Exception {
+        UserSet users = new UserSet();
+        users.add(newUser("foo"));
+
+        // a user without identities is not equal to any user
+        User anon = new User();
+        assertFalse(users.contains(anon));
+        assertTrue(users.add(anon));
+        assertTrue(users.add(new User()));
+        assertEquals(3, users.size());
+        assertFalse(users.remove(new User()));
+        assertTrue(users.remove(newUser("foo")));
+        assertEquals(2, users.size());
+    }
+
+    @Test
+    public void testIterator() throws Exception {
+        UserSet users = new UserSet();
+        for (int i = 0; i < 10; i++) {
+            users.add(newUser("user" + i));
+        }
+
+        int n = 0;
+        for (Iterator<User> iter = users.iterator(); iter.hasNext(); n++) {
+            User u = iter.next();
+            assertEquals("user" + n, u.getHttpPrincipal().getName());
+            if (n % 2 == 0) {
+                iter.remove();
+            }
+        }
+        assertEquals(5, users.size());
+        assertFalse(users.contains(newUser("user0")));
+        assertTrue(users.contains(newUser("user1")));
+
+        List<User> keep = new ArrayList<User>();
+        keep.add(newUser("user1"));
+        keep.add(newUser("user3"));
+        assertTrue(users.retainAll(keep));
+        assertEquals(2, users.size());
+        assertTrue(users.containsAll(keep));
+        assertFalse(users.contains(newUser("user5")));
+        assertNull(users.getUser(new HttpPrincipal("user5")));
+
+        // the list is a copy
+        users.getUserList().clear();
+        assertEquals(2, users.size());
+        assertEquals(2, users.toArray().length);
+    }
+
+    @Test
+    public void testScaling() throws Exception {
+        int[] sizes = new int[] {1000, 10000, 100000};
+        for (int size : sizes) {
+            List<User> members = new ArrayList<User>(size);
+            for (int i = 0; i < size; i++) {
+                User u = newUser("user" + i);
+                u.getIdentities().add(new NumericPrincipal(new UUID(0L, i)));
+                members.add(u);
+            }
+
+            long start = System.currentTimeMillis();
+            UserSet users = new UserSet();
+            users.addAll(members);
+            long added = System.currentTimeMillis();
+
+            for (int i = 0; i < size; i++) {
+                User probe = new User();
+                probe.getIdentities().add(new NumericPrincipal(new UUID(0L, i)));
+                assertTrue(users.contains(probe));
+            }
+            assertFalse(users.contains(newUser("other")));
+            long checked = System.currentTimeMillis();
+
+            for (int i = 0; i < size; i += 2) {
+                assertTrue(users.remove(newUser("user" + i)));
+            }
+            long removed = System.currentTimeMillis();
+            assertEquals(size / 2, users.size());
+
+            log.info(size + " members: add " + (added - start) + "ms contains " + (checked - added)
+                    + "ms remove " + (removed - checked) + "ms");
+        }
+    }
+
+    private static User newUser(String username) {
+        User u = new User();
+        u.getIdentities().add(new HttpPrincipal(username));
+        return u;
+    }
+}
@@ -0,0 +1,174 @@
+/*
+ ************************************************************************
+ *******************  CANADIAN ASTRONOMY DATA CENTRE  *******************
+ **************  CENTRE CANADIEN DE DONNÉES ASTRONOMIQUES  **************
+ *
+ *  (c) 2026.                            (c) 2026.
+ *  Government of Canada                 Gouvernement du Canada
+ *  National Research Council            Conseil national de recherches
+ *  Ottawa, Canada, K1A 0R6              Ottawa, Canada, K1A 0R6
+ *  All rights reserved                  Tous droits réservés
+ *
+ *  NRC disclaims any warranties,        Le CNRC dénie toute garantie
+ *  expressed, implied, or               énoncée, implicite ou légale,
+ *  statutory, of any kind with          de quelque nature que ce
+ *  respect to the software,             soit, concernant le logiciel,
+ *  including without limitation         y compris sans restriction
+ *  any warranty of merchantability      toute garantie de valeur
+ *  or fitness for a particular          marchande ou de pertinence
+ *  purpose. NRC shall not be            pour un usage particulier.
+ *  liable in any event for any          Le CNRC ne pourra en aucun cas
+ *  damages, whether direct or           être tenu responsable de tout
+ *  indirect, special or general,        dommage, direct ou indirect,
+ *  consequential or incidental,         particulier ou général,
+ *  arising from the use of the          accessoire ou fortuit, résultant
+ *  software.  Neither the name          de l'utilisation du logiciel. Ni
+ *  of the National Research             le nom du Conseil National de
+ *  Council of Canada nor the            Recherches du Canada ni les noms
+ *  names of its contributors may        de ses  participants ne peuvent
+ *  be used to endorse or promote        être utilisés pour approuver ou
+ *  products derived from this           promouvoir les produits dérivés
+ *  software without specific prior      de ce logiciel sans autorisation
+ *  written permission.                  préalable et particulière
+ *                                       par écrit.
+ *
+ *  This file is part of the             Ce fichier fait partie du projet
+ *  OpenCADC project.                    OpenCADC.
+ *
+ *  OpenCADC is free software:           OpenCADC est un logiciel libre ;
+ *  you can redistribute it and/or       vous pouvez le redistribuer ou le
+ *  modify it under the terms of         modifier suivant les termes de
+ *  the GNU Affero General Public        la “GNU Affero General Public
+ *  License as published by the          License” telle que publiée
+ *  Free Software Foundation,            par la Free Software Foundation
+ *  either version 3 of the              : soit la version 3 de cette
+ *  License, or (at your option)         licence, soit (à votre gré)
+ *  any later version.                   toute version ultérieure.
+ *
+ *  OpenCADC is distributed in the       OpenCADC est distribué
+ *  hope that it will be useful,         dans l’espoir qu’il vous
+ *  but WITHOUT ANY WARRANTY;            sera utile, mais SANS AUCUNE
+ *  without even the implied             GARANTIE : sans même la garantie
+ *  warranty of MERCHANTABILITY          implicite de COMMERCIALISABILITÉ
+ *  or FITNESS FOR A PARTICULAR          ni d’ADÉQUATION À UN OBJECTIF
+ *  PURPOSE.  See the GNU Affero         PARTICULIER. Consultez la Licence
+ *  General Public License for           Générale Publique GNU Affero
+ *  more details.                        pour plus de détails.
+ *
+ *  You should have received             Vous devriez avoir reçu une
+ *  a copy of the GNU Affero             copie de la Licence Générale
+ *  General Public License along         Publique GNU Affero avec
+ *  with OpenCADC.  If not, see          OpenCADC ; si ce n’est
+ *  <http://www.gnu.org/licenses/>.      pas le cas, consultez :
+ *                                       <http://www.gnu.org/licenses/>.
+ *
+ *
+ ************************************************************************
+ */
+
+package ca.nrc.cadc.ac.client;
+
+import ca.nrc.cadc.ac.Group;
+import ca.nrc.cadc.ac.Role;
+import ca.nrc.cadc.auth.HttpPrincipal;
+import ca.nrc.cadc.util.Log4jInit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.junit.Assert;
+import org.junit.Test;
+import org.opencadc.gms.GroupURI;
+
+public class GroupMembershipsTest {
+    private static final Logger log = Logger.getLogger(GroupMembershipsTest.class);
+
+    private static final String GMS = "ivo://example.org/gms";
+
+    public GroupMembershipsTest() {
+        Log4jInit.setLevel("ca.nrc.cadc.ac", Level.INFO);
+    }
+
+    @Test
+    public void testGroupNames() throws Exception {
+        GroupMemberships gms = new GroupMemberships(GMS, new HttpPrincipal("alice"));
+        Assert.assertFalse(gms.isComplete(Role.MEMBER));
+
+        gms.addGroupNames(new ArrayList<String>(), Role.MEMBER);
+        Assert.assertFalse("empty list", gms.isComplete(Role.MEMBER));
+
+        gms.addGroupNames(Arrays.asList("Staff", "users", "STAFF"), Role.MEMBER);
+        Assert.assertTrue(gms.isComplete(Role.MEMBER));
+        Assert.assertFalse(gms.isComplete(Role.ADMIN));
+        Assert.assertEquals(Arrays.asList("Staff", "users"), gms.getGroupNames(Role.MEMBER));
+
+        Assert.assertTrue(gms.hasGroup("staff", Role.MEMBER));
+        Assert.assertTrue(gms.hasGroup("USERS", Role.MEMBER));
+        Assert.assertFalse(gms.hasGroup("staff", Role.ADMIN));
+        Assert.assertFalse(gms.hasGroup("other", Role.MEMBER));
+        Assert.assertFalse(gms.hasGroup(null, Role.MEMBER));
+
+        Group staff = gms.getGroup("staff", Role.MEMBER);
+        Assert.assertNotNull(staff);
+        Assert.assertEquals(new GroupURI(GMS + "?Staff"), staff.getID());
+        Assert.assertSame("created once", staff, gms.getGroup("STAFF", Role.MEMBER));
+        Assert.assertNull(gms.getGroup("other", Role.MEMBER));
+        Assert.assertNull(gms.getGroup(null, Role.MEMBER));
+
+        List<Group> groups = gms.getMemberships(Role.MEMBER);
+        Assert.assertEquals(2, groups.size());
+        Assert.assertSame(staff, groups.get(0));
+        Assert.assertEquals("users", groups.get(1).getID().getName());
+        Assert.assertSame("same list", groups, gms.getMemberships(Role.MEMBER));
+        Assert.assertTrue(gms.getMemberships(Role.ADMIN).isEmpty());
+
+        // groups added later are also added to the list
+        gms.addGroupNames(Arrays.asList("new"), Role.MEMBER);
+        Assert.assertEquals(3, groups.size());
+        Assert.assertEquals("new", groups.get(2).getID().getName());
+    }
+
+    @Test
+    public void testGroups() throws Exception {
+        GroupMemberships gms = new GroupMemberships();
+        Group g1 = new Group(new GroupURI(GMS + "?one"));
+        Group g2 = new Group(new GroupURI("ivo://example.net/gms?Two"));
+
+        gms.add(g1, Role.ADMIN);
+        Assert.assertFalse("single group", gms.isComplete(Role.ADMIN));
+        gms.add(Arrays.asList(g1, g2, new Group(new GroupURI(GMS + "?ONE"))), Role.ADMIN);
+        Assert.assertTrue(gms.isComplete(Role.ADMIN));
+
+        Assert.assertEquals(Arrays.asList(g1, g2), gms.getMemberships(Role.ADMIN));
+        Assert.assertSame(g2, gms.getGroup("two", Role.ADMIN));
+        Assert.assertTrue(gms.hasGroup("ONE", Role.ADMIN));
+
+        try {
+            gms.addGroupNames(Arrays.asList("three"), Role.ADMIN);
+            Assert.fail("expected IllegalStateException");
+        } catch (IllegalStateException expected) {
+            log.debug("caught expected: " + expected);
+        }
+    }
+
+    @Test
+    public void testLookupScaling() throws Exception {
+        for (int n : new int[] {1000, 10000, 100000}) {
+            List<String> names = new ArrayList<String>(n);
+            for (int i = 0; i < n; i++) {
+                names.add("group" + i);
+            }
+            long start = System.nanoTime();
+            GroupMemberships gms = new GroupMemberships(GMS, new HttpPrincipal("alice"));
+            gms.addGroupNames(names, Role.MEMBER);
+            long added = System.nanoTime();
+            for (int i = 0; i < n; i++) {
+                Assert.assertTrue(gms.hasGroup("GROUP" + i, Role.MEMBER));
+            }
+            long found = System.nanoTime();
+            log.info(String.format("%d groups: add %.3f ms, %.1f ns/hasGroup", n,
+                    (added - start) / 1.0e6, (double) (found - added) / n));
+        }
+    }
+}
@@ -13,13 +13,17 @@ import ca.nrc.cadc.util.PropertiesReader;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.Reader;
+import java.io.StringWriter;
 import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.UUID;
 import org.apache.log4j.Level;
 import org.apache.log4j.Logger;
 import org.junit.AfterClass;
 import org.junit.BeforeClass;
 import org.junit.Test;
+import org.skyscreamer.jsonassert.JSONAssert;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
@@ -169,4 +173,28 @@ public class JsonUserListReaderWriterTest {
         assertEquals(expected, actual);
     }
 
+    @Test
+    public void testWriteIterator()
+            throws Exception {
+        for (int n : new int[] {0, 1, 100, 250}) {
+            List<User> expected = new ArrayList<User>();
+            for (int i = 0; i < n; i++) {
+                User user = new User();
+                user.getIdentities().add(new NumericPrincipal(UUID.randomUUID()));
+                user.personalDetails = new PersonalDetails("first" + i, "last" + i);
+                expected.add(user);
+            }
+
+            JsonUserListWriter writer = new JsonUserListWriter();
+            StringWriter collectionJSON = new StringWriter();
+            writer.write(expected, collectionJSON);
+            StringWriter iteratorJSON = new StringWriter();
+            writer.write(expected.iterator(), iteratorJSON);
+            JSONAssert.assertEquals(collectionJSON.toString(), iteratorJSON.toString(), true);
+
+            List<User> actual = new JsonUserListReader().read(iteratorJSON.toString());
+            assertEquals(expected, actual);
+        }
+    }
+
 }
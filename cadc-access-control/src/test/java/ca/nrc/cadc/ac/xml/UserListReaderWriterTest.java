@@ -9,6 +9,7 @@ import ca.nrc.cadc.util.PropertiesReader;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.Reader;
+import java.io.StringWriter;
 import java.net.URI;
 import java.util.ArrayList;
 import java.util.List;
@@ -104,4 +105,27 @@ public class UserListReaderWriterTest {
         assertEquals(expected.get(1), actual.get(1));
     }
 
-}
\ No newline at end of file
+    @Test
+    public void testWriteIterator()
+            throws Exception {
+        for (int n : new int[] {0, 1, 100, 250}) {
+            List<User> expected = new ArrayList<User>();
+            for (int i = 0; i < n; i++) {
+                User user = new User();
+                user.getIdentities().add(new HttpPrincipal("user" + i));
+                expected.add(user);
+            }
+
+            UserListWriter userListWriter = new UserListWriter();
+            StringWriter collectionXML = new StringWriter();
+            userListWriter.write(expected, collectionXML);
+            StringWriter iteratorXML = new StringWriter();
+            userListWriter.write(expected.iterator(), iteratorXML);
+            assertEquals("users: " + n, collectionXML.toString(), iteratorXML.toString());
+
+            List<User> actual = new UserListReader().read(iteratorXML.toString());
+            assertEquals(expected, actual);
+        }
+    }
+
+}
@@ -0,0 +1,281 @@
+/*
+ ************************************************************************
+ *******************  CANADIAN ASTRONOMY DATA CENTRE  *******************
+ **************  CENTRE CANADIEN DE DONNÉES ASTRONOMIQUES  **************
+ *
+ *  (c) 2026.                            (c) 2026.
+ *  Government of Canada                 Gouvernement du Canada
+ *  National Research Council            Conseil national de recherches
+ *  Ottawa, Canada, K1A 0R6              Ottawa, Canada, K1A 0R6
+ *  All rights reserved                  Tous droits réservés
+ *
+ *  NRC disclaims any warranties,        Le CNRC dénie toute garantie
+ *  expressed, implied, or               énoncée, implicite ou légale,
+ *  statutory, of any kind with          de quelque nature que ce
+ *  respect to the software,             soit, concernant le logiciel,
+ *  including without limitation         y compris sans restriction
+ *  any warranty of merchantability      toute garantie de valeur
+ *  or fitness for a particular          marchande ou de pertinence
+ *  purpose. NRC shall not be            pour un usage particulier.
+ *  liable in any event for any          Le CNRC ne pourra en aucun cas
+ *  damages, whether direct or           être tenu responsable de tout
+ *  indirect, special or general,        dommage, direct ou indirect,
+ *  consequential or incidental,         particulier ou général,
+ *  arising from the use of the          accessoire ou fortuit, résultant
+ *  software.  Neither the name          de l'utilisation du logiciel. Ni
+ *  of the National Research             le nom du Conseil National de
+ *  Council of Canada nor the            Recherches du Canada ni les noms
+ *  names of its contributors may        de ses  participants ne peuvent
+ *  be used to endorse or promote        être utilisés pour approuver ou
+ *  products derived from this           promouvoir les produits dérivés
+ *  software without specific prior      de ce logiciel sans autorisation
+ *  written permission.                  préalable et particulière
+ *                                       par écrit.
+ *
+ *  This file is part of the             Ce fichier fait partie du projet
+ *  OpenCADC project.                    OpenCADC.
+ *
+ *  OpenCADC is free software:           OpenCADC est un logiciel libre ;
+ *  you can redistribute it and/or       vous pouvez le redistribuer ou le
+ *  modify it under the terms of         modifier suivant les termes de
+ *  the GNU Affero General Public        la “GNU Affero General Public
+ *  License as published by the          License” telle que publiée
+ *  Free Software Foundation,            par la Free Software Foundation
+ *  either version 3 of the              : soit la version 3 de cette
+ *  License, or (at your option)         licence, soit (à votre gré)
+ *  any later version.                   toute version ultérieure.
+ *
+ *  OpenCADC is distributed in the       OpenCADC est distribué
+ *  hope that it will be useful,         dans l’espoir qu’il vous
+ *  but WITHOUT ANY WARRANTY;            sera utile, mais SANS AUCUNE
+ *  without even the implied             GARANTIE : sans même la garantie
+ *  warranty of MERCHANTABILITY          implicite de COMMERCIALISABILITÉ
+ *  or FITNESS FOR A PARTICULAR          ni d’ADÉQUATION À UN OBJECTIF
+ *  PURPOSE.  See the GNU Affero         PARTICULIER. Consultez la Licence
+ *  General Public License for           Générale Publique GNU Affero
+ *  more details.                        pour plus de détails.
+ *
+ *  You should have received             Vous devriez avoir reçu une
+ *  a copy of the GNU Affero             copie de la Licence Générale
+ *  General Public License along         Publique GNU Affero avec
+ *  with OpenCADC.  If not, see          OpenCADC ; si ce n’est
+ *  <http://www.gnu.org/licenses/>.      pas le cas, consultez :
+ *                                       <http://www.gnu.org/licenses/>.
+ *
+ *
+ ************************************************************************
+ */
+
+package org.opencadc.auth;
+
+import java.io.IOException;
+import java.net.URI;
+import java.security.Key;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+import org.apache.log4j.Logger;
+import org.jose4j.jwk.JsonWebKey;
+import org.jose4j.jwk.JsonWebKeySet;
+import org.jose4j.jwk.VerificationJwkSelector;
+import org.jose4j.jws.JsonWebSignature;
+import org.jose4j.lang.JoseException;
+import org.jose4j.lang.UnresolvableKeyException;
+
+/**
+ * Parsed copy of the public keys (JWKS) of an OIDC issuer, shared by all the validations of tokens from that
+ * issuer so that resolving the key of a token does no file I/O or JSON parsing.  The keys are held as an
+ * immutable snapshot indexed by key ID.  A snapshot older than the time-to-live is still used while it is
+ * reloaded in the background; a token with an unknown key ID (key rotation) reloads the keys immediately.
+ * Loads are single-flight and, after the first, at most one per minimum refresh interval.
+ */
+class JwksKeyCache {
+    private static final Logger log = Logger.getLogger(JwksKeyCache.class);
+
+    private static final Map<URI, JwksKeyCache> CACHES = new ConcurrentHashMap<>();
+    private static final ExecutorService REFRESH_EXECUTOR = Executors.newSingleThreadExecutor(runnable -> {
+        final Thread thread = new Thread(runnable, JwksKeyCache.class.getSimpleName() + "-refresh");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Reader of the current JWKS document of an issuer.
+     */
+    interface KeySource {
+        String getContent() throws IOException;
+    }
+
+    // immutable snapshot of the parsed keys
+    private static final class KeySet {
+        final List<JsonWebKey> keys;
+        final Map<String, List<JsonWebKey>> keysByID;
+        final long loaded;
+
+        KeySet(List<JsonWebKey> keys, long loaded) {
+            this.loaded = loaded;
+            this.keys = Collections.unmodifiableList(new ArrayList<>(keys));
+            final Map<String, List<JsonWebKey>> byID = new HashMap<>();
+            for (JsonWebKey jwk : keys) {
+                if (jwk.getKeyId() != null) {
+                    byID.computeIfAbsent(jwk.getKeyId(), k -> new ArrayList<>()).add(jwk);
+                }
+            }
+            this.keysByID = byID;
+        }
+    }
+
+    private final URI issuer;
+    private final KeySource source;
+    private final long ttlMillis;
+    private final long minRefreshMillis;
+    private final LongSupplier clock;
+    private final VerificationJwkSelector selector = new VerificationJwkSelector();
+
+    private volatile KeySet keySet;
+    private volatile long lastLoadAttempt = 0L;
+    private final Object loadLock = new Object();
+    private final AtomicBoolean refreshing = new AtomicBoolean(false);
+    private final AtomicLong loads = new AtomicLong(0L);
+
+    /**
+     * Constructor.
+     *
+     * @param issuer           the issuer of the keys, for logging
+     * @param source           reader of the JWKS document
+     * @param ttlMillis        age of the keys after which they are reloaded in the background
+     * @param minRefreshMillis minimum time between loads
+     */
+    JwksKeyCache(URI issuer, KeySource source, long ttlMillis, long minRefreshMillis) {
+        this(issuer, source, ttlMillis, minRefreshMillis, System::currentTimeMillis);
+    }
+
+    JwksKeyCache(URI issuer, KeySource source, long ttlMillis, long minRefreshMillis, LongSupplier clock) {
+        this.issuer = issuer;
+        this.source = source;
+        this.ttlMillis = ttlMillis;
+        this.minRefreshMillis = minRefreshMillis;
+        this.clock = clock;
+    }
+
+    /**
+     * Get the process-wide cache of the keys of an issuer, creating it on first use.
+     *
+     * @param issuer           the token issuer
+     * @param source           reader of the JWKS document, used if the cache is created
+     * @param ttlMillis        age of the keys after which they are reloaded in the background
+     * @param minRefreshMillis minimum time between loads
+     * @return the cache
+     */
+    static JwksKeyCache getInstance(URI issuer, KeySource source, long ttlMillis, long minRefreshMillis) {
+        return CACHES.computeIfAbsent(issuer.normalize(), k -> {
+            log.info("JWKS key cache: " + issuer + " ttl=" + ttlMillis + "ms minRefresh=" + minRefreshMillis + "ms");
+            return new JwksKeyCache(issuer, source, ttlMillis, minRefreshMillis);
+        });
+    }
+
+    /**
+     * Find the key to verify a signature with.
+     *
+     * @param jws                             the signed token
+     * @param disambiguateWithVerifySignature true to pick from several matching keys by verifying the signature
+     * @return the verification key
+     * @throws UnresolvableKeyException if the keys cannot be loaded or none matches the signature
+     */
+    Key resolveKey(JsonWebSignature jws, boolean disambiguateWithVerifySignature) throws UnresolvableKeyException {
+        try {
+            KeySet cur = keySet;
+            if (cur == null) {
+                cur = load(null);
+            } else if (clock.getAsLong() - cur.loaded > ttlMillis) {
+                scheduleRefresh(cur);
+            }
+
+            final String kid = jws.getKeyIdHeaderValue();
+            List<JsonWebKey> candidates = getCandidates(cur, kid);
+            if (candidates == null && isLoadAllowed()) {
+                log.debug("unknown key ID " + kid + " from " + issuer + ": reloading keys");
+                cur = load(cur);
+                candidates = getCandidates(cur, kid);
+            }
+            if (candidates == null) {
+                throw new UnresolvableKeyException("No key found for signature: unknown key ID " + kid);
+            }
+
+            final JsonWebKey jwk = disambiguateWithVerifySignature
+                    ? selector.selectWithVerifySignatureDisambiguate(jws, candidates) : selector.select(jws, candidates);
+            if (jwk == null) {
+                throw new UnresolvableKeyException("No key found for signature");
+            }
+            return jwk.getKey();
+        } catch (JoseException | IOException e) {
+            throw new UnresolvableKeyException("Bug: Error selecting key", e);
+        }
+    }
+
+    long getLoads() {
+        return loads.get();
+    }
+
+    @Override
+    public String toString() {
+        final KeySet cur = keySet;
+        return JwksKeyCache.class.getSimpleName() + "[" + issuer + ",keys=" + (cur == null ? 0 : cur.keys.size())
+                + ",loads=" + loads.get() + "]";
+    }
+
+    private static List<JsonWebKey> getCandidates(KeySet keySet, String kid) {
+        if (kid == null) {
+            return keySet.keys;
+        }
+        return keySet.keysByID.get(kid);
+    }
+
+    private boolean isLoadAllowed() {
+        return clock.getAsLong() - lastLoadAttempt >= minRefreshMillis;
+    }
+
+    // load the keys unless another thread replaced the given snapshot meanwhile
+    private KeySet load(KeySet seen) throws IOException, JoseException {
+        synchronized (loadLock) {
+            final KeySet cur = keySet;
+            if (cur != null && cur != seen) {
+                return cur;
+            }
+            lastLoadAttempt = clock.getAsLong();
+            final KeySet ret = new KeySet(new JsonWebKeySet(source.getContent()).getJsonWebKeys(), lastLoadAttempt);
+            keySet = ret;
+            loads.incrementAndGet();
+            log.debug("loaded " + ret.keys.size() + " keys from " + issuer);
+            return ret;
+        }
+    }
+
+    private void scheduleRefresh(final KeySet seen) {
+        if (!isLoadAllowed() || !refreshing.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            REFRESH_EXECUTOR.execute(() -> {
+                try {
+                    load(seen);
+                } catch (IOException | JoseException | RuntimeException ex) {
+                    log.warn("JWKS key cache refresh failed: " + issuer + " " + ex);
+                } finally {
+                    refreshing.set(false);
+                }
+            });
+        } catch (RejectedExecutionException ex) {
+            refreshing.set(false);
+        }
+    }
+}
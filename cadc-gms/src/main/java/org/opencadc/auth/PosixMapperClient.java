@@ -87,10 +87,19 @@ import java.io.InputStreamReader;
 import java.net.URI;
 import java.net.URL;
 import java.security.Principal;
+import java.security.PrivilegedActionException;
+import java.security.PrivilegedExceptionAction;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
 import javax.security.auth.Subject;
 import org.apache.log4j.Logger;
 import org.opencadc.gms.GroupURI;
@@ -103,8 +112,25 @@ import org.opencadc.gms.GroupURI;
 public class PosixMapperClient {
     private static final Logger log = Logger.getLogger(PosixMapperClient.class);
 
+    // optional local mapping cache, configured with system properties and shared by all clients of a service
+    public static final String CACHE_MAX_ENTRIES = PosixMapperClient.class.getName() + ".cacheMaxEntries";
+    public static final String CACHE_TTL = PosixMapperClient.class.getName() + ".cacheTTL";
+    public static final String CACHE_REFRESH = PosixMapperClient.class.getName() + ".cacheRefresh";
+    // response header with the change cursor to send as changedSince on the next refresh
+    static final String CHANGE_CURSOR_HEADER = "X-Mapping-Cursor";
+    private static final long DEFAULT_CACHE_TTL = 600L;    // sec
+    private static final long DEFAULT_CACHE_REFRESH = 60L; // sec
+
+    private static final Map<String, PosixMappingCache> CACHES = new ConcurrentHashMap<>();
+    private static final ExecutorService REFRESH_EXECUTOR = Executors.newSingleThreadExecutor(runnable -> {
+        final Thread thread = new Thread(runnable, PosixMappingCache.class.getSimpleName() + "-refresh");
+        thread.setDaemon(true);
+        return thread;
+    });
+
     private final String service;
     private final Capabilities capabilities;
+    private final PosixMappingCache cache;
     private final TSVPosixGroupParser tsvPosixGroupParser = new TSVPosixGroupParser();
     private final TSVPosixPrincipalParser tsvPosixPrincipalParser = new TSVPosixPrincipalParser();
 
@@ -121,6 +147,7 @@ public class PosixMapperClient {
         } catch (Exception ex) {
             throw new RuntimeException("failed to read capabilities for " + service, ex);
         }
+        this.cache = initCache(service);
     }
 
     public PosixMapperClient(URL baseURL) {
@@ -141,6 +168,30 @@ public class PosixMapperClient {
         } catch (ResourceNotFoundException | IOException | InterruptedException ex) {
             throw new RuntimeException("failed to read capabilities from " + service, ex);
         }
+        this.cache = initCache(service);
+    }
+
+    private static PosixMappingCache initCache(String service) {
+        final int maxEntries = Integer.getInteger(CACHE_MAX_ENTRIES, 0);
+        if (maxEntries <= 0) {
+            return null;
+        }
+        final long ttl = Long.getLong(CACHE_TTL, DEFAULT_CACHE_TTL) * 1000L;
+        final long refresh = Long.getLong(CACHE_REFRESH, DEFAULT_CACHE_REFRESH) * 1000L;
+        return CACHES.computeIfAbsent(service, k -> {
+            log.info("posix mapping cache: " + service + " maxEntries=" + maxEntries + " ttl=" + ttl
+                    + "ms refresh=" + refresh + "ms");
+            return new PosixMappingCache(maxEntries, ttl, refresh);
+        });
+    }
+
+    /**
+     * Get the local mapping cache used by this client.
+     *
+     * @return the cache, or null if caching is not enabled
+     */
+    public PosixMappingCache getCache() {
+        return cache;
     }
 
     // use case: cavern needs PosixPrincipal added to the caller subject for create node
@@ -163,8 +214,6 @@ public class PosixMapperClient {
             throw new IllegalArgumentException("Subject must contain either a HttpPrincipal or a PosixPrincipal");
         }
 
-        URL userMapURL = getServiceURL(Standards.POSIX_USERMAP);
-
         String user = null;
         Integer uid = null;
         if (!posixPrincipals.isEmpty()) {
@@ -173,6 +222,41 @@ public class PosixMapperClient {
             user = httpPrincipals.iterator().next().getName();
         }
 
+        final PosixPrincipal posixPrincipal;
+        if (cache == null) {
+            posixPrincipal = queryUser(user, uid);
+        } else {
+            scheduleRefresh();
+            final String username = user;
+            final Integer uidNumber = uid;
+            PosixPrincipal cached = (username != null) ? cache.getUser(username) : cache.getUser(uidNumber);
+            if (cached == null) {
+                final String key = (username != null) ? "user=" + username : "uid=" + uidNumber;
+                cached = singleFlight(key, () -> {
+                    final PosixPrincipal loaded = queryUser(username, uidNumber);
+                    cache.putUser(loaded);
+                    return loaded;
+                });
+            }
+            posixPrincipal = cached;
+        }
+
+        Set<Principal> principals = new HashSet<>();
+        principals.add(posixPrincipal);
+        principals.add(new HttpPrincipal(posixPrincipal.username));
+        for (Principal p : subject.getPrincipals()) {
+            if (!(p instanceof HttpPrincipal) && !(p instanceof PosixPrincipal)) {
+                principals.add(p);
+            }
+        }
+        return new Subject(false, principals, subject.getPublicCredentials(),
+                subject.getPrivateCredentials());
+    }
+
+    private PosixPrincipal queryUser(String user, Integer uid)
+            throws IOException, InterruptedException, ResourceNotFoundException, ResourceAlreadyExistsException {
+        URL userMapURL = getServiceURL(Standards.POSIX_USERMAP);
+
         StringBuilder query = new StringBuilder(userMapURL.toExternalForm());
         query.append("?");
         if (user != null) {
@@ -190,18 +274,7 @@ public class PosixMapperClient {
 
         try (BufferedReader reader = new BufferedReader(new InputStreamReader(get.getInputStream()))) {
             String line = reader.readLine();
-            final PosixPrincipal posixPrincipal = tsvPosixPrincipalParser.parse(line);
-
-            Set<Principal> principals = new HashSet<>();
-            principals.add(posixPrincipal);
-            principals.add(new HttpPrincipal(posixPrincipal.username));
-            for (Principal p : subject.getPrincipals()) {
-                if (!(p instanceof HttpPrincipal) && !(p instanceof PosixPrincipal)) {
-                    principals.add(p);
-                }
-            }
-            return new Subject(false, principals, subject.getPublicCredentials(),
-                    subject.getPrivateCredentials());
+            return tsvPosixPrincipalParser.parse(line);
         }
     }
 
@@ -213,7 +286,25 @@ public class PosixMapperClient {
         if (groups == null) {
             throw new IllegalArgumentException("groups cannot be null");
         }
-        return getPosixGroups(groups, null);
+        if (cache == null) {
+            return getPosixGroups(groups, null);
+        }
+
+        scheduleRefresh();
+        final List<PosixGroup> ret = new ArrayList<>(groups.size());
+        final List<GroupURI> missed = new ArrayList<>();
+        for (GroupURI groupURI : groups) {
+            final PosixGroup cached = cache.getGroup(groupURI);
+            if (cached == null) {
+                missed.add(groupURI);
+            } else {
+                ret.add(cached);
+            }
+        }
+        if (!missed.isEmpty()) {
+            ret.addAll(loadGroups("group=" + missed, missed, null));
+        }
+        return ret;
     }
 
     // use case: cavern uses this when reading a node from disk and output the node doc
@@ -222,7 +313,36 @@ public class PosixMapperClient {
         if (groups == null) {
             throw new IllegalArgumentException("groups cannot be null");
         }
-        return getPosixGroups(null, groups);
+        if (cache == null) {
+            return getPosixGroups(null, groups);
+        }
+
+        scheduleRefresh();
+        final List<PosixGroup> ret = new ArrayList<>(groups.size());
+        final List<Integer> missed = new ArrayList<>();
+        for (Integer gid : groups) {
+            final PosixGroup cached = cache.getGroup(gid);
+            if (cached == null) {
+                missed.add(gid);
+            } else {
+                ret.add(cached);
+            }
+        }
+        if (!missed.isEmpty()) {
+            ret.addAll(loadGroups("gid=" + missed, null, missed));
+        }
+        return ret;
+    }
+
+    private List<PosixGroup> loadGroups(String key, List<GroupURI> groupURIs, List<Integer> groupGIDs)
+            throws IOException, InterruptedException, ResourceNotFoundException, ResourceAlreadyExistsException {
+        return singleFlight(key, () -> {
+            final List<PosixGroup> loaded = getPosixGroups(groupURIs, groupGIDs);
+            for (PosixGroup posixGroup : loaded) {
+                cache.putGroup(posixGroup);
+            }
+            return loaded;
+        });
     }
 
     /**
@@ -361,6 +481,167 @@ public class PosixMapperClient {
         }
     }
 
+    // concurrent misses for the same key share a single call to the service
+    @SuppressWarnings("unchecked")
+    private <T> T singleFlight(String key, MappingLoader<T> loader)
+            throws IOException, InterruptedException, ResourceNotFoundException, ResourceAlreadyExistsException {
+        final CompletableFuture<Object> mine = new CompletableFuture<>();
+        final CompletableFuture<Object> existing = cache.getInFlight().putIfAbsent(key, mine);
+        if (existing != null) {
+            log.debug("single-flight wait: " + key);
+            try {
+                return (T) existing.get();
+            } catch (ExecutionException ex) {
+                throw rethrow(ex.getCause());
+            }
+        }
+
+        try {
+            final T ret = loader.load();
+            mine.complete(ret);
+            return ret;
+        } catch (IOException | InterruptedException | ResourceNotFoundException | ResourceAlreadyExistsException
+                 | RuntimeException ex) {
+            mine.completeExceptionally(ex);
+            throw ex;
+        } finally {
+            cache.getInFlight().remove(key, mine);
+        }
+    }
+
+    private static RuntimeException rethrow(Throwable cause)
+            throws IOException, InterruptedException, ResourceNotFoundException, ResourceAlreadyExistsException {
+        if (cause instanceof IOException) {
+            throw (IOException) cause;
+        }
+        if (cause instanceof InterruptedException) {
+            throw (InterruptedException) cause;
+        }
+        if (cause instanceof ResourceNotFoundException) {
+            throw (ResourceNotFoundException) cause;
+        }
+        if (cause instanceof ResourceAlreadyExistsException) {
+            throw (ResourceAlreadyExistsException) cause;
+        }
+        if (cause instanceof RuntimeException) {
+            return (RuntimeException) cause;
+        }
+        return new RuntimeException(cause);
+    }
+
+    // incremental refresh in the background, using the credentials of the caller that triggered it
+    private void scheduleRefresh() {
+        if (!cache.claimRefresh()) {
+            return;
+        }
+
+        final Subject caller = AuthenticationUtil.getCurrentSubject();
+        if (caller == null) {
+            log.debug("posix mapping cache refresh skipped: no caller credentials");
+            cache.refreshDone(false);
+            return;
+        }
+
+        try {
+            REFRESH_EXECUTOR.execute(() -> {
+                boolean success = false;
+                try {
+                    Subject.doAs(caller, (PrivilegedExceptionAction<Void>) () -> {
+                        refreshUsers();
+                        refreshGroups();
+                        return null;
+                    });
+                    success = true;
+                    log.debug("posix mapping cache refreshed: " + cache);
+                } catch (PrivilegedActionException ex) {
+                    log.warn("posix mapping cache refresh failed: " + service + " " + ex.getException());
+                } catch (RuntimeException ex) {
+                    log.warn("posix mapping cache refresh failed: " + service, ex);
+                } finally {
+                    cache.refreshDone(success);
+                }
+            });
+        } catch (RejectedExecutionException ex) {
+            cache.refreshDone(false);
+        }
+    }
+
+    private void refreshUsers()
+            throws IOException, InterruptedException, ResourceNotFoundException, ResourceAlreadyExistsException {
+        final HttpGet get = conditionalGet(getServiceURL(Standards.POSIX_USERMAP),
+                cache.userChangeCursor, cache.userMapVersion);
+        if (get == null) {
+            return; // not modified
+        }
+
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(get.getInputStream()))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.isBlank()) {
+                    final PosixPrincipal posixPrincipal = tsvPosixPrincipalParser.parse(line);
+                    cache.putUser(posixPrincipal);
+                }
+            }
+        }
+        cache.userChangeCursor = getChangeCursor(get);
+        cache.userMapVersion = get.getResponseHeader("ETag");
+    }
+
+    private void refreshGroups()
+            throws IOException, InterruptedException, ResourceNotFoundException, ResourceAlreadyExistsException {
+        final HttpGet get = conditionalGet(getServiceURL(Standards.POSIX_GROUPMAP),
+                cache.groupChangeCursor, cache.groupMapVersion);
+        if (get == null) {
+            return; // not modified
+        }
+
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(get.getInputStream()))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.isBlank()) {
+                    final PosixGroup posixGroup = tsvPosixGroupParser.parse(line);
+                    cache.putGroup(posixGroup);
+                }
+            }
+        }
+        cache.groupChangeCursor = getChangeCursor(get);
+        cache.groupMapVersion = get.getResponseHeader("ETag");
+    }
+
+    // full map on the first call, then only what changed since the cursor the service last returned
+    private HttpGet conditionalGet(URL mapURL, Long changeCursor, String version)
+            throws IOException, InterruptedException, ResourceNotFoundException, ResourceAlreadyExistsException {
+        final URL queryURL = (changeCursor == null)
+                             ? mapURL : new URL(mapURL.toExternalForm() + "?changedSince=" + changeCursor);
+        final HttpGet get = new HttpGet(queryURL, true);
+        get.setConnectionTimeout(6000); // ms
+        get.setReadTimeout(30000);      // ms
+        get.setRequestProperty("accept", "text/tab-separated-values");
+        if (version != null) {
+            get.setRequestProperty("If-None-Match", version);
+        }
+        get.prepare();
+
+        if (get.getResponseCode() == 304) {
+            return null;
+        }
+        return get;
+    }
+
+    // services that do not send a cursor only support full (conditional) requests
+    private static Long getChangeCursor(HttpGet get) {
+        final String cursor = get.getResponseHeader(CHANGE_CURSOR_HEADER);
+        if (cursor == null || cursor.isBlank()) {
+            return null;
+        }
+        try {
+            return Long.parseLong(cursor.trim());
+        } catch (NumberFormatException ex) {
+            log.debug("ignoring invalid " + CHANGE_CURSOR_HEADER + ": " + cursor);
+            return null;
+        }
+    }
+
     private URL getServiceURL(URI standardID) {
         // this probably failed in ctor already
         if (capabilities == null) {
@@ -384,6 +665,10 @@ public class PosixMapperClient {
         return iface.getAccessURL().getURL();
     }
 
+    private interface MappingLoader<T> {
+        T load() throws IOException, InterruptedException, ResourceNotFoundException, ResourceAlreadyExistsException;
+    }
+
     private static class TSVPosixGroupParser {
         final PosixGroup parse(final String line) {
             log.debug("line: " + line);
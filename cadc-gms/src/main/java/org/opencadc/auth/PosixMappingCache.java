@@ -0,0 +1,293 @@
+/*
+ ************************************************************************
+ *******************  CANADIAN ASTRONOMY DATA CENTRE  *******************
+ **************  CENTRE CANADIEN DE DONNÉES ASTRONOMIQUES  **************
+ *
+ *  (c) 2026.                            (c) 2026.
+ *  Government of Canada                 Gouvernement du Canada
+ *  National Research Council            Conseil national de recherches
+ *  Ottawa, Canada, K1A 0R6              Ottawa, Canada, K1A 0R6
+ *  All rights reserved                  Tous droits réservés
+ *
+ *  NRC disclaims any warranties,        Le CNRC dénie toute garantie
+ *  expressed, implied, or               énoncée, implicite ou légale,
+ *  statutory, of any kind with          de quelque nature que ce
+ *  respect to the software,             soit, concernant le logiciel,
+ *  including without limitation         y compris sans restriction
+ *  any warranty of merchantability      toute garantie de valeur
+ *  or fitness for a particular          marchande ou de pertinence
+ *  purpose. NRC shall not be            pour un usage particulier.
+ *  liable in any event for any          Le CNRC ne pourra en aucun cas
+ *  damages, whether direct or           être tenu responsable de tout
+ *  indirect, special or general,        dommage, direct ou indirect,
+ *  consequential or incidental,         particulier ou général,
+ *  arising from the use of the          accessoire ou fortuit, résultant
+ *  software.  Neither the name          de l'utilisation du logiciel. Ni
+ *  of the National Research             le nom du Conseil National de
+ *  Council of Canada nor the            Recherches du Canada ni les noms
+ *  names of its contributors may        de ses  participants ne peuvent
+ *  be used to endorse or promote        être utilisés pour approuver ou
+ *  products derived from this           promouvoir les produits dérivés
+ *  software without specific prior      de ce logiciel sans autorisation
+ *  written permission.                  préalable et particulière
+ *                                       par écrit.
+ *
+ *  This file is part of the             Ce fichier fait partie du projet
+ *  OpenCADC project.                    OpenCADC.
+ *
+ *  OpenCADC is free software:           OpenCADC est un logiciel libre ;
+ *  you can redistribute it and/or       vous pouvez le redistribuer ou le
+ *  modify it under the terms of         modifier suivant les termes de
+ *  the GNU Affero General Public        la “GNU Affero General Public
+ *  License as published by the          License” telle que publiée
+ *  Free Software Foundation,            par la Free Software Foundation
+ *  either version 3 of the              : soit la version 3 de cette
+ *  License, or (at your option)         licence, soit (à votre gré)
+ *  any later version.                   toute version ultérieure.
+ *
+ *  OpenCADC is distributed in the       OpenCADC est distribué
+ *  hope that it will be useful,         dans l’espoir qu’il vous
+ *  but WITHOUT ANY WARRANTY;            sera utile, mais SANS AUCUNE
+ *  without even the implied             GARANTIE : sans même la garantie
+ *  warranty of MERCHANTABILITY          implicite de COMMERCIALISABILITÉ
+ *  or FITNESS FOR A PARTICULAR          ni d’ADÉQUATION À UN OBJECTIF
+ *  PURPOSE.  See the GNU Affero         PARTICULIER. Consultez la Licence
+ *  General Public License for           Générale Publique GNU Affero
+ *  more details.                        pour plus de détails.
+ *
+ *  You should have received             Vous devriez avoir reçu une
+ *  a copy of the GNU Affero             copie de la Licence Générale
+ *  General Public License along         Publique GNU Affero avec
+ *  with OpenCADC.  If not, see          OpenCADC ; si ce n’est
+ *  <http://www.gnu.org/licenses/>.      pas le cas, consultez :
+ *                                       <http://www.gnu.org/licenses/>.
+ *
+ *
+ ************************************************************************
+ */
+
+package org.opencadc.auth;
+
+import ca.nrc.cadc.auth.PosixPrincipal;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.LongSupplier;
+import org.apache.log4j.Logger;
+import org.opencadc.gms.ExpiringCache;
+import org.opencadc.gms.GroupURI;
+
+/**
+ * Local copy of the user and group mappings of a single posix-mapper service.  The cache is warmed from the full
+ * mappings and then kept current by incremental refreshes; see PosixMapperClient.  Mappings are never re-assigned,
+ * so entries do not expire individually.  Instead, if the cache has not been refreshed within the time-to-live it is
+ * bypassed until the next successful refresh.  When full, the least recently used users or groups are evicted and
+ * are looked up from the service again if needed.
+ */
+public class PosixMappingCache {
+    private static final Logger log = Logger.getLogger(PosixMappingCache.class);
+
+    private final long ttlMillis;
+    private final long refreshIntervalMillis;
+
+    // the write lock keeps the two lookups of a user or group consistent with each other
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final ExpiringCache<Integer, PosixPrincipal> usersByUID;
+    private final ExpiringCache<String, PosixPrincipal> usersByName;
+    private final ExpiringCache<Integer, PosixGroup> groupsByGID;
+    private final ExpiringCache<GroupURI, PosixGroup> groupsByURI;
+
+    // incremental refresh state: only touched by the refreshing thread
+    Long userChangeCursor;
+    Long groupChangeCursor;
+    String userMapVersion;
+    String groupMapVersion;
+
+    private final LongSupplier clock;
+    private volatile long lastRefresh;
+    private volatile long lastRefreshAttempt = 0L;
+    private final AtomicBoolean refreshing = new AtomicBoolean(false);
+
+    // single-flight service lookups on a miss
+    private final Map<String, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+
+    private final AtomicLong hits = new AtomicLong(0L);
+    private final AtomicLong misses = new AtomicLong(0L);
+    private final AtomicLong refreshes = new AtomicLong(0L);
+
+    /**
+     * Constructor.
+     *
+     * @param maxEntries            maximum number of users, and of groups, held locally
+     * @param ttlMillis             maximum time since the last successful refresh before the cache is bypassed
+     * @param refreshIntervalMillis minimum time between incremental refreshes
+     */
+    public PosixMappingCache(int maxEntries, long ttlMillis, long refreshIntervalMillis) {
+        this(maxEntries, ttlMillis, refreshIntervalMillis, System::currentTimeMillis);
+    }
+
+    PosixMappingCache(int maxEntries, long ttlMillis, long refreshIntervalMillis, LongSupplier clock) {
+        if (maxEntries <= 0) {
+            throw new IllegalArgumentException("invalid maxEntries: " + maxEntries);
+        }
+        this.ttlMillis = ttlMillis;
+        this.refreshIntervalMillis = refreshIntervalMillis;
+        this.clock = clock;
+        this.lastRefresh = clock.getAsLong();
+        // entries are only dropped when evicted: the whole cache is bypassed instead when it is stale
+        this.usersByUID = new ExpiringCache<>(maxEntries, Long.MAX_VALUE, clock);
+        this.usersByName = new ExpiringCache<>(maxEntries, Long.MAX_VALUE, clock);
+        this.groupsByGID = new ExpiringCache<>(maxEntries, Long.MAX_VALUE, clock);
+        this.groupsByURI = new ExpiringCache<>(maxEntries, Long.MAX_VALUE, clock);
+    }
+
+    PosixPrincipal getUser(int uid) {
+        final PosixPrincipal cached;
+        lock.readLock().lock();
+        try {
+            cached = isLive() ? usersByUID.get(uid) : null;
+        } finally {
+            lock.readLock().unlock();
+        }
+        return count(copy(cached));
+    }
+
+    PosixPrincipal getUser(String username) {
+        final PosixPrincipal cached;
+        lock.readLock().lock();
+        try {
+            cached = isLive() ? usersByName.get(username) : null;
+        } finally {
+            lock.readLock().unlock();
+        }
+        return count(copy(cached));
+    }
+
+    PosixGroup getGroup(int gid) {
+        lock.readLock().lock();
+        try {
+            return count(isLive() ? groupsByGID.get(gid) : null);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    PosixGroup getGroup(GroupURI groupURI) {
+        lock.readLock().lock();
+        try {
+            return count(isLive() ? groupsByURI.get(groupURI) : null);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    void putUser(PosixPrincipal posixPrincipal) {
+        final PosixPrincipal cached = copy(posixPrincipal);
+        lock.writeLock().lock();
+        try {
+            final PosixPrincipal previous = usersByUID.get(cached.getUidNumber());
+            if (previous != null && previous.username != null && !previous.username.equals(cached.username)) {
+                usersByName.remove(previous.username);
+            }
+            usersByUID.put(cached.getUidNumber(), cached);
+            if (cached.username != null) {
+                usersByName.put(cached.username, cached);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    void putGroup(PosixGroup posixGroup) {
+        lock.writeLock().lock();
+        try {
+            groupsByGID.put(posixGroup.getGID(), posixGroup);
+            groupsByURI.put(posixGroup.getGroupURI(), posixGroup);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Check whether an incremental refresh is due, and claim it if so.  Callers that get true MUST call
+     * refreshDone() when finished.
+     *
+     * @return true if the caller should refresh the cache
+     */
+    boolean claimRefresh() {
+        final long now = clock.getAsLong();
+        if (now - lastRefreshAttempt < refreshIntervalMillis) {
+            return false;
+        }
+        if (refreshing.compareAndSet(false, true)) {
+            lastRefreshAttempt = now;
+            return true;
+        }
+        return false;
+    }
+
+    void refreshDone(boolean success) {
+        if (success) {
+            lastRefresh = clock.getAsLong();
+            refreshes.incrementAndGet();
+        }
+        refreshing.set(false);
+    }
+
+    Map<String, CompletableFuture<Object>> getInFlight() {
+        return inFlight;
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getRefreshes() {
+        return refreshes.get();
+    }
+
+    @Override
+    public String toString() {
+        lock.readLock().lock();
+        try {
+            return PosixMappingCache.class.getSimpleName() + "[users=" + usersByUID.size() + ",groups="
+                    + groupsByGID.size() + ",hits=" + hits.get() + ",misses=" + misses.get() + ",evictions="
+                    + (usersByUID.getEvictions() + groupsByGID.getEvictions()) + ",refreshes=" + refreshes.get() + "]";
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // caller holds the read lock
+    private boolean isLive() {
+        return (clock.getAsLong() - lastRefresh) <= ttlMillis;
+    }
+
+    private <T> T count(T cached) {
+        if (cached == null) {
+            misses.incrementAndGet();
+        } else {
+            hits.incrementAndGet();
+        }
+        return cached;
+    }
+
+    // PosixPrincipal is mutable so never hand out the cached instance
+    private static PosixPrincipal copy(PosixPrincipal posixPrincipal) {
+        if (posixPrincipal == null) {
+            return null;
+        }
+        final PosixPrincipal ret = new PosixPrincipal(posixPrincipal.getUidNumber());
+        ret.username = posixPrincipal.username;
+        ret.defaultGroup = posixPrincipal.defaultGroup;
+        return ret;
+    }
+}
@@ -101,19 +101,16 @@ import java.util.Set;
 import java.util.TreeSet;
 import javax.security.auth.Subject;
 import org.apache.log4j.Logger;
-import org.jose4j.jwk.JsonWebKey;
-import org.jose4j.jwk.JsonWebKeySet;
-import org.jose4j.jwk.VerificationJwkSelector;
 import org.jose4j.jws.JsonWebSignature;
 import org.jose4j.jwt.JwtClaims;
 import org.jose4j.jwt.MalformedClaimException;
+import org.jose4j.jwt.NumericDate;
 import org.jose4j.jwt.consumer.InvalidJwtException;
 import org.jose4j.jwt.consumer.JwtConsumer;
 import org.jose4j.jwt.consumer.JwtConsumerBuilder;
 import org.jose4j.jwt.consumer.JwtContext;
 import org.jose4j.jwx.JsonWebStructure;
 import org.jose4j.keys.resolvers.VerificationKeyResolver;
-import org.jose4j.lang.JoseException;
 import org.jose4j.lang.UnresolvableKeyException;
 import org.json.JSONObject;
 
@@ -146,6 +143,21 @@ public class StandardIdentityManager implements IdentityManager {
 
     private static final String OID_OWNER_DELIM = " ";  // delimiter between issuer and openID that form the owner str
 
+    // optional configuration of the shared issuer key cache, with system properties (seconds)
+    public static final String JWKS_CACHE_TTL = StandardIdentityManager.class.getName() + ".jwksCacheTTL";
+    public static final String JWKS_CACHE_MIN_REFRESH = StandardIdentityManager.class.getName() + ".jwksCacheMinRefresh";
+    private static final long DEFAULT_JWKS_CACHE_TTL = 600L;        // sec
+    private static final long DEFAULT_JWKS_CACHE_MIN_REFRESH = 60L; // sec
+
+    // optional configuration of the shared cache of validated tokens, with system properties;
+    // maxEntries 0 disables the cache
+    public static final String TOKEN_CACHE_MAX_ENTRIES = StandardIdentityManager.class.getName() + ".tokenCacheMaxEntries";
+    public static final String TOKEN_CACHE_MAX_AGE = StandardIdentityManager.class.getName() + ".tokenCacheMaxAge";
+    private static final int DEFAULT_TOKEN_CACHE_MAX_ENTRIES = 10000;
+    private static final long DEFAULT_TOKEN_CACHE_MAX_AGE = 300L; // sec
+
+    private static final ValidatedTokenCache TOKEN_CACHE = initTokenCache();
+
     public StandardIdentityManager() {
         LocalAuthority loc = new LocalAuthority();
         this.oidcClient = new OIDCClient(loc.getResourceID(Standards.SECURITY_METHOD_OPENID));
@@ -189,6 +201,25 @@ public class StandardIdentityManager implements IdentityManager {
         }
     }
 
+    private static ValidatedTokenCache initTokenCache() {
+        final int maxEntries = Integer.getInteger(TOKEN_CACHE_MAX_ENTRIES, DEFAULT_TOKEN_CACHE_MAX_ENTRIES);
+        if (maxEntries <= 0) {
+            return null;
+        }
+        final long maxAge = Long.getLong(TOKEN_CACHE_MAX_AGE, DEFAULT_TOKEN_CACHE_MAX_AGE) * 1000L;
+        log.info("validated token cache: maxEntries=" + maxEntries + " maxAge=" + maxAge + "ms");
+        return new ValidatedTokenCache(maxEntries, maxAge);
+    }
+
+    /**
+     * Get the cache of validated tokens shared by all instances, for metrics.
+     *
+     * @return the cache, or null if caching is not enabled
+     */
+    public static ValidatedTokenCache getTokenCache() {
+        return TOKEN_CACHE;
+    }
+
     @Override
     public Set<URI> getSecurityMethods() {
         return SEC_METHODS;
@@ -337,15 +368,15 @@ public class StandardIdentityManager implements IdentityManager {
         return null;
     }
 
-    private URI getJwtIssuer(String jwtToken) throws InvalidJwtException, MalformedClaimException, MalformedURLException {
-        // get the issuer of the token without validating it
+    private JwtContext parseJwt(String jwtToken) throws InvalidJwtException {
+        // parse the token without validating it, to get the issuer; the context is then
+        // validated by validateWithPubKey without parsing the token again
         JwtConsumer firstPassJwtConsumer = new JwtConsumerBuilder()
                 .setSkipAllValidators()
                 .setDisableRequireSignature()
                 .setSkipSignatureVerification()
                 .build();
-        JwtContext jwtContext = firstPassJwtConsumer.process(jwtToken);
-        return URI.create(jwtContext.getJwtClaims().getIssuer());
+        return firstPassJwtConsumer.process(jwtToken);
     }
 
     private void validateOidcAccessToken(Subject s) {
@@ -382,21 +413,41 @@ public class StandardIdentityManager implements IdentityManager {
         log.debug("challenge type: " + challengeType);
         log.debug("credentials: " + credentials);
 
+        List<Principal> validatedPrincipals = (TOKEN_CACHE == null) ? null : TOKEN_CACHE.get(credentials);
+        if (validatedPrincipals != null) {
+            log.debug("validated token from cache");
+        } else {
+            validatedPrincipals = validateCredentials(raw, challengeType, credentials);
+        }
+
+        s.getPrincipals().remove(raw);
+        for (Principal p : validatedPrincipals) {
+            s.getPrincipals().add(p);
+        }
+
+        // TODO - oidcScope not assigned yet
+        AuthorizationToken authToken = new AuthorizationToken(challengeType, credentials, oidcDomains, oidcScope);
+        s.getPublicCredentials().add(authToken);
+    }
+
+    private List<Principal> validateCredentials(AuthorizationTokenPrincipal raw, String challengeType, String credentials) {
         URI jwtIssuer = null;
+        JwtContext jwtContext = null;
         try {
-            jwtIssuer = getJwtIssuer(credentials);
+            jwtContext = parseJwt(credentials);
+            jwtIssuer = URI.create(jwtContext.getJwtClaims().getIssuer());
             if (!jwtIssuer.normalize().equals(oidcClient.issuer.normalize())) {
                 throw new NotAuthenticatedException(AuthenticationUtil.CHALLENGE_TYPE_BEARER,
                         NotAuthenticatedException.AuthError.INVALID_REQUEST,
                         "Token from untrusted issuer: " + jwtIssuer + " ignored");
             }
-        } catch (MalformedClaimException | InvalidJwtException | MalformedURLException e) {
+        } catch (MalformedClaimException | InvalidJwtException e) {
             log.debug("Cannot determine issuer from token", e);
         }
         List<Principal> validatedPrincipals = null;
         if (jwtIssuer != null) {
             try {
-                validatedPrincipals = validateWithPubKey(jwtIssuer, challengeType, credentials);
+                validatedPrincipals = validateWithPubKey(jwtIssuer, jwtContext, credentials);
             } catch (InvalidJwtException e) {
                 String message = "Invalid JWT token";
                 if (e.hasExpired()) {
@@ -414,25 +465,22 @@ public class StandardIdentityManager implements IdentityManager {
                 // makes the assumption that there's only one issuer (the configured one. This allows it to work with
                 // both JWT tokens (issuer specified in the token) and access tokens with no issuer specified
                 validatedPrincipals = validateWithUserInfo(raw, oidcClient.getUserInfoEndpoint());
+                if (TOKEN_CACHE != null) {
+                    // a JWT is never cached beyond its expiry, an opaque token up to the cache max age
+                    TOKEN_CACHE.put(credentials, validatedPrincipals, getExpirationTime(jwtContext), false);
+                }
             } catch (ResourceAlreadyExistsException | ResourceNotFoundException | IOException | InterruptedException | NotAuthenticatedException e) {
                 throw new NotAuthenticatedException(challengeType, NotAuthenticatedException.AuthError.INVALID_TOKEN,
                         "Cannot validate token using user info endpoint", e);
             }
         }
 
-        s.getPrincipals().remove(raw);
-        for (Principal p : validatedPrincipals) {
-            s.getPrincipals().add(p);
-        }
-
-        // TODO - oidcScope not assigned yet
-        AuthorizationToken authToken = new AuthorizationToken(challengeType, credentials, oidcDomains, oidcScope);
-        s.getPublicCredentials().add(authToken);
+        return validatedPrincipals;
     }
 
-    private List<Principal> validateWithPubKey(URI jwtIssuer, String challengeType, String credentials)
+    private List<Principal> validateWithPubKey(URI jwtIssuer, JwtContext jwtContext, String credentials)
             throws MalformedURLException, InvalidJwtException, MalformedClaimException {
-        VerificationKeyResolver httpsJwksKeyResolver = getHttpsJwksVerificationKeyResolver(jwtIssuer, challengeType);
+        VerificationKeyResolver httpsJwksKeyResolver = getHttpsJwksVerificationKeyResolver(jwtIssuer);
         JwtConsumer jwtConsumer = new JwtConsumerBuilder()
                 .setRequireExpirationTime()
                 .setExpectedIssuers(true, jwtIssuer.toString())
@@ -440,8 +488,9 @@ public class StandardIdentityManager implements IdentityManager {
                 .setSkipDefaultAudienceValidation()
                 .build(); // create the JwtConsumer instance;
 
-        //  Validate the JWT and process it to the Claims
-        JwtClaims jwtClaims = jwtConsumer.processToClaims(credentials);
+        //  Validate the JWT parsed by parseJwt
+        jwtConsumer.processContext(jwtContext);
+        JwtClaims jwtClaims = jwtContext.getJwtClaims();
         log.debug("JWT validation succeeded! " + jwtClaims);
 
         String sub = jwtClaims.getClaimValue("sub", String.class);
@@ -454,9 +503,27 @@ public class StandardIdentityManager implements IdentityManager {
             result.add(new HttpPrincipal(jwtClaims.getClaimValueAsString("preferred_username")));
         }
         log.debug("Validated user via issuer pub key: " + oip);
+        if (TOKEN_CACHE != null) {
+            // never cached beyond the required expiry of the token
+            TOKEN_CACHE.put(credentials, result, jwtClaims.getExpirationTime().getValueInMillis(), true);
+        }
         return result;
     }
 
+    // expiry of a parsed JWT in milliseconds, or null for an opaque token or a JWT without a valid exp claim
+    private static Long getExpirationTime(JwtContext jwtContext) {
+        if (jwtContext == null) {
+            return null;
+        }
+        try {
+            NumericDate exp = jwtContext.getJwtClaims().getExpirationTime();
+            return (exp == null) ? null : exp.getValueInMillis();
+        } catch (MalformedClaimException e) {
+            log.debug("Cannot read token expiration time", e);
+            return null;
+        }
+    }
+
     private static List<Principal> validateWithUserInfo(AuthorizationTokenPrincipal raw, URL issuerURL)
             throws ResourceAlreadyExistsException, ResourceNotFoundException, IOException, InterruptedException {
         HttpGet get = new HttpGet(issuerURL, true);
@@ -488,57 +555,35 @@ public class StandardIdentityManager implements IdentityManager {
         return result;
     }
 
-    private VerificationKeyResolver getHttpsJwksVerificationKeyResolver(URI jwtIssuer, String challengeType) throws
-            MalformedURLException {
-        JSONObject oidcConfig = getJsonObject(jwtIssuer, challengeType);
-        if (oidcConfig.getString("jwks_uri") == null) {
-            throw new NotAuthenticatedException(challengeType, NotAuthenticatedException.AuthError.INVALID_TOKEN,
-                    "BUG: Missing jwks_uri in OIDC .well-known/openid-configuration", null);
-        }
-        URL jwksUrl = URI.create(oidcConfig.getString("jwks_uri")).toURL();
-        return new CacheVerificationKeyResolver(jwtIssuer, jwksUrl);
-    }
-
-    private JSONObject getJsonObject(URI jwtIssuer, String challengeType) {
-        try {
-            return oidcClient.getWellKnownJSON();
-        } catch (IOException e) {
-            throw new NotAuthenticatedException(challengeType, NotAuthenticatedException.AuthError.INVALID_TOKEN,
-                    "BUG: Cannot access OIDC .well-known/openid-configuration end point", e);
-        }
+    private VerificationKeyResolver getHttpsJwksVerificationKeyResolver(URI jwtIssuer) {
+        // the keys are read through the OIDC .well-known/openid-configuration jwks_uri when the
+        // process-wide cache of the issuer is first used or refreshed
+        final OIDCClient client = this.oidcClient;
+        final long ttl = Long.getLong(JWKS_CACHE_TTL, DEFAULT_JWKS_CACHE_TTL) * 1000L;
+        final long minRefresh = Long.getLong(JWKS_CACHE_MIN_REFRESH, DEFAULT_JWKS_CACHE_MIN_REFRESH) * 1000L;
+        JwksKeyCache keyCache = JwksKeyCache.getInstance(jwtIssuer, () -> {
+            JSONObject oidcConfig = client.getWellKnownJSON();
+            if (!oidcConfig.has("jwks_uri")) {
+                throw new IOException("BUG: Missing jwks_uri in OIDC .well-known/openid-configuration");
+            }
+            URL jwksUrl = URI.create(oidcConfig.getString("jwks_uri")).toURL();
+            return new OIDCProviderPubKey(jwtIssuer, jwksUrl).getCachingFile().getContent();
+        }, ttl, minRefresh);
+        return new CacheVerificationKeyResolver(keyCache);
     }
 
     static class CacheVerificationKeyResolver implements VerificationKeyResolver {
-        // uses a local cached copy of the public keys from the OIDC provider
-        private final VerificationJwkSelector verificationJwkSelector = new VerificationJwkSelector();
+        // uses the parsed keys of the OIDC provider shared by all validations
         private boolean disambiguateWithVerifySignature;
-        private final OIDCProviderPubKey oidcProviderPubKey;
+        private final JwksKeyCache keyCache;
 
-        public CacheVerificationKeyResolver(URI jwtIssuer, URL jwksUrl) {
-            this.oidcProviderPubKey = new OIDCProviderPubKey(jwtIssuer, jwksUrl);
+        public CacheVerificationKeyResolver(JwksKeyCache keyCache) {
+            this.keyCache = keyCache;
         }
 
         @Override
         public Key resolveKey(JsonWebSignature jsonWebSignature, List<JsonWebStructure> list) throws UnresolvableKeyException {
-            JsonWebKeySet jwks = null;
-            try {
-                jwks = new JsonWebKeySet(this.oidcProviderPubKey.getCachingFile().getContent());
-                List<JsonWebKey> keys = jwks.getJsonWebKeys();
-                JsonWebKey jwk = select(jsonWebSignature, keys);
-                if (jwk == null) {
-                    throw new UnresolvableKeyException("No key found for signature");
-                } else {
-                    return jwk.getKey();
-                }
-            } catch (JoseException | IOException e) {
-                throw new UnresolvableKeyException("Bug: Error selecting key", e);
-            }
-        }
-
-        protected JsonWebKey select(JsonWebSignature jws, List<JsonWebKey> jsonWebKeys) throws JoseException {
-            return this.disambiguateWithVerifySignature
-                    ? this.verificationJwkSelector.selectWithVerifySignatureDisambiguate(jws, jsonWebKeys) :
-                    this.verificationJwkSelector.select(jws, jsonWebKeys);
+            return keyCache.resolveKey(jsonWebSignature, disambiguateWithVerifySignature);
         }
 
         public void setDisambiguateWithVerifySignature(boolean disambiguateWithVerifySignature) {
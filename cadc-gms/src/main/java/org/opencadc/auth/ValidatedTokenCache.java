@@ -0,0 +1,201 @@
+/*
+ ************************************************************************
+ *******************  CANADIAN ASTRONOMY DATA CENTRE  *******************
+ **************  CENTRE CANADIEN DE DONNÉES ASTRONOMIQUES  **************
+ *
+ *  (c) 2026.                            (c) 2026.
+ *  Government of Canada                 Gouvernement du Canada
+ *  National Research Council            Conseil national de recherches
+ *  Ottawa, Canada, K1A 0R6              Ottawa, Canada, K1A 0R6
+ *  All rights reserved                  Tous droits réservés
+ *
+ *  NRC disclaims any warranties,        Le CNRC dénie toute garantie
+ *  expressed, implied, or               énoncée, implicite ou légale,
+ *  statutory, of any kind with          de quelque nature que ce
+ *  respect to the software,             soit, concernant le logiciel,
+ *  including without limitation         y compris sans restriction
+ *  any warranty of merchantability      toute garantie de valeur
+ *  or fitness for a particular          marchande ou de pertinence
+ *  purpose. NRC shall not be            pour un usage particulier.
+ *  liable in any event for any          Le CNRC ne pourra en aucun cas
+ *  damages, whether direct or           être tenu responsable de tout
+ *  indirect, special or general,        dommage, direct ou indirect,
+ *  consequential or incidental,         particulier ou général,
+ *  arising from the use of the          accessoire ou fortuit, résultant
+ *  software.  Neither the name          de l'utilisation du logiciel. Ni
+ *  of the National Research             le nom du Conseil National de
+ *  Council of Canada nor the            Recherches du Canada ni les noms
+ *  names of its contributors may        de ses  participants ne peuvent
+ *  be used to endorse or promote        être utilisés pour approuver ou
+ *  products derived from this           promouvoir les produits dérivés
+ *  software without specific prior      de ce logiciel sans autorisation
+ *  written permission.                  préalable et particulière
+ *                                       par écrit.
+ *
+ *  This file is part of the             Ce fichier fait partie du projet
+ *  OpenCADC project.                    OpenCADC.
+ *
+ *  OpenCADC is free software:           OpenCADC est un logiciel libre ;
+ *  you can redistribute it and/or       vous pouvez le redistribuer ou le
+ *  modify it under the terms of         modifier suivant les termes de
+ *  the GNU Affero General Public        la “GNU Affero General Public
+ *  License as published by the          License” telle que publiée
+ *  Free Software Foundation,            par la Free Software Foundation
+ *  either version 3 of the              : soit la version 3 de cette
+ *  License, or (at your option)         licence, soit (à votre gré)
+ *  any later version.                   toute version ultérieure.
+ *
+ *  OpenCADC is distributed in the       OpenCADC est distribué
+ *  hope that it will be useful,         dans l’espoir qu’il vous
+ *  but WITHOUT ANY WARRANTY;            sera utile, mais SANS AUCUNE
+ *  without even the implied             GARANTIE : sans même la garantie
+ *  warranty of MERCHANTABILITY          implicite de COMMERCIALISABILITÉ
+ *  or FITNESS FOR A PARTICULAR          ni d’ADÉQUATION À UN OBJECTIF
+ *  PURPOSE.  See the GNU Affero         PARTICULIER. Consultez la Licence
+ *  General Public License for           Générale Publique GNU Affero
+ *  more details.                        pour plus de détails.
+ *
+ *  You should have received             Vous devriez avoir reçu une
+ *  a copy of the GNU Affero             copie de la Licence Générale
+ *  General Public License along         Publique GNU Affero avec
+ *  with OpenCADC.  If not, see          OpenCADC ; si ce n’est
+ *  <http://www.gnu.org/licenses/>.      pas le cas, consultez :
+ *                                       <http://www.gnu.org/licenses/>.
+ *
+ *
+ ************************************************************************
+ */
+
+package org.opencadc.auth;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.Principal;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+import org.opencadc.gms.ExpiringCache;
+
+/**
+ * Bounded cache of the principals of validated bearer tokens, so a client sending the same token on many requests
+ * only has it verified once.  Entries are keyed by a SHA-256 hash of the token, so tokens are not held in memory,
+ * and never outlive the expiry of the token or the maximum age of the cache.  The least recently used entries are
+ * evicted when the cache is full.
+ */
+public class ValidatedTokenCache {
+    private static final class Entry {
+        final List<Principal> principals;
+        final boolean signatureVerified;
+
+        Entry(List<Principal> principals, boolean signatureVerified) {
+            this.principals = principals;
+            this.signatureVerified = signatureVerified;
+        }
+    }
+
+    private final ExpiringCache<String, Entry> entries;
+
+    private final AtomicLong verificationsAvoided = new AtomicLong(0L);
+    private final AtomicLong userInfoCallsAvoided = new AtomicLong(0L);
+
+    /**
+     * Constructor.
+     *
+     * @param maxEntries   maximum number of tokens held
+     * @param maxAgeMillis maximum time a token is held, also for tokens with a later expiry
+     */
+    public ValidatedTokenCache(int maxEntries, long maxAgeMillis) {
+        this(maxEntries, maxAgeMillis, System::currentTimeMillis);
+    }
+
+    ValidatedTokenCache(int maxEntries, long maxAgeMillis, LongSupplier clock) {
+        this.entries = new ExpiringCache<>(maxEntries, maxAgeMillis, clock);
+    }
+
+    /**
+     * Get the principals of a token that was validated before.
+     *
+     * @param token the raw token
+     * @return the principals, or null if the token is not cached or has expired
+     */
+    List<Principal> get(String token) {
+        final Entry e = entries.get(hash(token));
+        if (e == null) {
+            return null;
+        }
+        if (e.signatureVerified) {
+            verificationsAvoided.incrementAndGet();
+        } else {
+            userInfoCallsAvoided.incrementAndGet();
+        }
+        return e.principals;
+    }
+
+    /**
+     * Add the principals of a validated token.
+     *
+     * @param token             the raw token
+     * @param principals        the principals the token was validated as
+     * @param expires           expiry time of the token in milliseconds, or null if unknown
+     * @param signatureVerified true if the token was validated by verifying its signature, false if it was
+     *                          validated by the issuer
+     */
+    void put(String token, List<Principal> principals, Long expires, boolean signatureVerified) {
+        final Entry e = new Entry(Collections.unmodifiableList(new ArrayList<>(principals)), signatureVerified);
+        entries.put(hash(token), e, expires);
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public long getHits() {
+        return entries.getHits();
+    }
+
+    public long getMisses() {
+        return entries.getMisses();
+    }
+
+    /**
+     * @return fraction of lookups that found the token, 0 before the first lookup
+     */
+    public double getHitRate() {
+        return entries.getHitRate();
+    }
+
+    /**
+     * @return number of token signature verifications avoided
+     */
+    public long getVerificationsAvoided() {
+        return verificationsAvoided.get();
+    }
+
+    /**
+     * @return number of calls to the userinfo endpoint of the issuer avoided
+     */
+    public long getUserInfoCallsAvoided() {
+        return userInfoCallsAvoided.get();
+    }
+
+    @Override
+    public String toString() {
+        return ValidatedTokenCache.class.getSimpleName() + "[size=" + size() + ",hits=" + getHits() + ",misses="
+                + getMisses() + ",verificationsAvoided=" + verificationsAvoided.get() + ",userInfoCallsAvoided="
+                + userInfoCallsAvoided.get() + "]";
+    }
+
+    private static String hash(String token) {
+        try {
+            MessageDigest md = MessageDigest.getInstance("SHA-256");
+            byte[] digest = md.digest(token.getBytes(StandardCharsets.UTF_8));
+            return Base64.getEncoder().encodeToString(digest);
+        } catch (NoSuchAlgorithmException ex) {
+            throw new RuntimeException("BUG: SHA-256 not available", ex);
+        }
+    }
+}
@@ -0,0 +1,257 @@
+/*
+ ************************************************************************
+ *******************  CANADIAN ASTRONOMY DATA CENTRE  *******************
+ **************  CENTRE CANADIEN DE DONNÉES ASTRONOMIQUES  **************
+ *
+ *  (c) 2026.                            (c) 2026.
+ *  Government of Canada                 Gouvernement du Canada
+ *  National Research Council            Conseil national de recherches
+ *  Ottawa, Canada, K1A 0R6              Ottawa, Canada, K1A 0R6
+ *  All rights reserved                  Tous droits réservés
+ *
+ *  NRC disclaims any warranties,        Le CNRC dénie toute garantie
+ *  expressed, implied, or               énoncée, implicite ou légale,
+ *  statutory, of any kind with          de quelque nature que ce
+ *  respect to the software,             soit, concernant le logiciel,
+ *  including without limitation         y compris sans restriction
+ *  any warranty of merchantability      toute garantie de valeur
+ *  or fitness for a particular          marchande ou de pertinence
+ *  purpose. NRC shall not be            pour un usage particulier.
+ *  liable in any event for any          Le CNRC ne pourra en aucun cas
+ *  damages, whether direct or           être tenu responsable de tout
+ *  indirect, special or general,        dommage, direct ou indirect,
+ *  consequential or incidental,         particulier ou général,
+ *  arising from the use of the          accessoire ou fortuit, résultant
+ *  software.  Neither the name          de l'utilisation du logiciel. Ni
+ *  of the National Research             le nom du Conseil National de
+ *  Council of Canada nor the            Recherches du Canada ni les noms
+ *  names of its contributors may        de ses  participants ne peuvent
+ *  be used to endorse or promote        être utilisés pour approuver ou
+ *  products derived from this           promouvoir les produits dérivés
+ *  software without specific prior      de ce logiciel sans autorisation
+ *  written permission.                  préalable et particulière
+ *                                       par écrit.
+ *
+ *  This file is part of the             Ce fichier fait partie du projet
+ *  OpenCADC project.                    OpenCADC.
+ *
+ *  OpenCADC is free software:           OpenCADC est un logiciel libre ;
+ *  you can redistribute it and/or       vous pouvez le redistribuer ou le
+ *  modify it under the terms of         modifier suivant les termes de
+ *  the GNU Affero General Public        la “GNU Affero General Public
+ *  License as published by the          License” telle que publiée
+ *  Free Software Foundation,            par la Free Software Foundation
+ *  either version 3 of the              : soit la version 3 de cette
+ *  License, or (at your option)         licence, soit (à votre gré)
+ *  any later version.                   toute version ultérieure.
+ *
+ *  OpenCADC is distributed in the       OpenCADC est distribué
+ *  hope that it will be useful,         dans l’espoir qu’il vous
+ *  but WITHOUT ANY WARRANTY;            sera utile, mais SANS AUCUNE
+ *  without even the implied             GARANTIE : sans même la garantie
+ *  warranty of MERCHANTABILITY          implicite de COMMERCIALISABILITÉ
+ *  or FITNESS FOR A PARTICULAR          ni d’ADÉQUATION À UN OBJECTIF
+ *  PURPOSE.  See the GNU Affero         PARTICULIER. Consultez la Licence
+ *  General Public License for           Générale Publique GNU Affero
+ *  more details.                        pour plus de détails.
+ *
+ *  You should have received             Vous devriez avoir reçu une
+ *  a copy of the GNU Affero             copie de la Licence Générale
+ *  General Public License along         Publique GNU Affero avec
+ *  with OpenCADC.  If not, see          OpenCADC ; si ce n’est
+ *  <http://www.gnu.org/licenses/>.      pas le cas, consultez :
+ *                                       <http://www.gnu.org/licenses/>.
+ *
+ *
+ ************************************************************************
+ */
+
+package org.opencadc.gms;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Bounded cache of values that expire. An entry never outlives its own expiry time, if any, or the
+ * maximum age of the cache, and the least recently used entries are evicted when the cache is full.
+ * Expired entries are removed when they are looked up.
+ *
+ * @param <K> the key
+ * @param <V> the value, never null
+ */
+public class ExpiringCache<K, V> {
+    private static final class Entry<V> {
+        final V value;
+        final long expires;
+
+        Entry(V value, long expires) {
+            this.value = value;
+            this.expires = expires;
+        }
+    }
+
+    private final int maxEntries;
+    private final long maxAgeMillis;
+    private final LongSupplier clock;
+    private final Map<K, Entry<V>> entries;
+
+    private final AtomicLong hits = new AtomicLong(0L);
+    private final AtomicLong misses = new AtomicLong(0L);
+    private final AtomicLong evictions = new AtomicLong(0L);
+
+    /**
+     * Constructor.
+     *
+     * @param maxEntries   maximum number of entries held
+     * @param maxAgeMillis maximum time an entry is held, also for entries with a later expiry time;
+     *                     Long.MAX_VALUE to only expire entries at their own expiry time
+     */
+    public ExpiringCache(int maxEntries, long maxAgeMillis) {
+        this(maxEntries, maxAgeMillis, System::currentTimeMillis);
+    }
+
+    /**
+     * Constructor with the clock that decides when entries expire, e.g. to test expiry without waiting.
+     *
+     * @param maxEntries   maximum number of entries held
+     * @param maxAgeMillis maximum time an entry is held, also for entries with a later expiry time
+     * @param clock        current time in milliseconds
+     */
+    public ExpiringCache(int maxEntries, long maxAgeMillis, LongSupplier clock) {
+        if (maxEntries <= 0) {
+            throw new IllegalArgumentException("invalid maxEntries: " + maxEntries);
+        }
+        if (clock == null) {
+            throw new IllegalArgumentException("clock cannot be null");
+        }
+        this.maxEntries = maxEntries;
+        this.maxAgeMillis = maxAgeMillis;
+        this.clock = clock;
+        this.entries = new LinkedHashMap<K, Entry<V>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, Entry<V>> eldest) {
+                final boolean evict = size() > ExpiringCache.this.maxEntries;
+                if (evict) {
+                    evictions.incrementAndGet();
+                }
+                return evict;
+            }
+        };
+    }
+
+    /**
+     * Get a value.
+     *
+     * @param key the key
+     * @return the value, or null if it is not cached or has expired
+     */
+    public V get(K key) {
+        final Entry<V> e;
+        synchronized (entries) {
+            Entry<V> cur = entries.get(key);
+            if (cur != null && cur.expires <= clock.getAsLong()) {
+                entries.remove(key);
+                cur = null;
+            }
+            e = cur;
+        }
+        if (e == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+        return e.value;
+    }
+
+    /**
+     * Add a value that expires after the maximum age of the cache.
+     *
+     * @param key   the key
+     * @param value the value
+     */
+    public void put(K key, V value) {
+        put(key, value, null);
+    }
+
+    /**
+     * Add a value. Nothing is added if the value has already expired.
+     *
+     * @param key     the key
+     * @param value   the value
+     * @param expires expiry time of the value in milliseconds, or null if it only expires after the maximum age
+     */
+    public void put(K key, V value, Long expires) {
+        if (value == null) {
+            throw new IllegalArgumentException("value cannot be null");
+        }
+        final long now = clock.getAsLong();
+        long exp = (maxAgeMillis > Long.MAX_VALUE - now) ? Long.MAX_VALUE : now + maxAgeMillis;
+        if (expires != null) {
+            exp = Math.min(exp, expires);
+        }
+        if (exp <= now) {
+            return;
+        }
+        final Entry<V> e = new Entry<>(value, exp);
+        synchronized (entries) {
+            entries.put(key, e);
+        }
+    }
+
+    /**
+     * Remove a value.
+     *
+     * @param key the key
+     */
+    public void remove(K key) {
+        synchronized (entries) {
+            entries.remove(key);
+        }
+    }
+
+    /**
+     * Remove all values.
+     */
+    public void clear() {
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * @return number of least recently used entries removed to make room for new ones
+     */
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    /**
+     * @return fraction of lookups that found a value, 0 before the first lookup
+     */
+    public double getHitRate() {
+        final long h = hits.get();
+        final long total = h + misses.get();
+        return (total == 0L) ? 0.0 : ((double) h) / total;
+    }
+
+    @Override
+    public String toString() {
+        return "[size=" + size() + ",hits=" + hits.get() + ",misses=" + misses.get() + "]";
+    }
+}
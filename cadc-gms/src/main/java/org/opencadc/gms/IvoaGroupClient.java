@@ -73,6 +73,7 @@ import ca.nrc.cadc.cred.client.CredUtil;
 import ca.nrc.cadc.net.HttpGet;
 import ca.nrc.cadc.net.ResourceAlreadyExistsException;
 import ca.nrc.cadc.net.ResourceNotFoundException;
+import ca.nrc.cadc.net.TransientException;
 import ca.nrc.cadc.reg.Capabilities;
 import ca.nrc.cadc.reg.Capability;
 import ca.nrc.cadc.reg.Interface;
@@ -87,10 +88,13 @@ import java.net.URL;
 import java.security.AccessControlException;
 import java.security.cert.CertificateExpiredException;
 import java.security.cert.CertificateNotYetValidException;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeMap;
 import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicReference;
 import javax.security.auth.Subject;
 import org.apache.log4j.Logger;
 
@@ -102,7 +106,19 @@ import org.apache.log4j.Logger;
 public class IvoaGroupClient {
     private static final Logger log = Logger.getLogger(IvoaGroupClient.class);
 
+    // configuration of the parallel queries of getMemberships(Set, boolean), with system properties
+    public static final String MAX_THREADS = IvoaGroupClient.class.getName() + ".maxThreads";
+    public static final String TIMEOUT = IvoaGroupClient.class.getName() + ".timeout";
+    private static final int DEFAULT_MAX_THREADS = 8;
+    private static final long DEFAULT_TIMEOUT = 30000L; // ms
+
+    private static final int MAX_PARALLEL = Integer.getInteger(MAX_THREADS, DEFAULT_MAX_THREADS);
+    // helper threads are shared by concurrent callers: when all are busy a caller queries the services itself
+    private static final ParallelQueries<URI, Set<GroupURI>> QUERIES = (MAX_PARALLEL < 2) ? null
+            : new ParallelQueries<>(IvoaGroupClient.class.getSimpleName() + "-query", MAX_PARALLEL, 4 * MAX_PARALLEL);
+
     private final RegistryClient reg = new RegistryClient();
+    private long timeout = Long.getLong(TIMEOUT, DEFAULT_TIMEOUT);
 
     public IvoaGroupClient() {
     }
@@ -137,16 +153,115 @@ public class IvoaGroupClient {
      */
     public Set<GroupURI> getMemberships(Set<GroupURI> uris) throws IOException, InterruptedException,
             ResourceNotFoundException {
+        return getMemberships(uris, false);
+    }
+
+    /**
+     * Determine group membership in a specified list of candidate groups. When the groups
+     * belong to more than one GMS service, the services are queried in parallel (up to
+     * the MAX_THREADS system property at a time) with the calling subject, and each
+     * query must complete within the timeout once it has started.
+     *
+     * <p>With firstMatch, the caller only needs to know if it is a member of any of the
+     * groups: the memberships found by the first service that reports any are returned
+     * and the remaining queries are cancelled. Failures of the other services are then
+     * only thrown when no service reports a membership.
+     *
+     * @param uris       candidate groups to check
+     * @param firstMatch true to return as soon as one service reports memberships
+     * @return possibly empty list of groups where the caller is a member
+     * @throws java.io.IOException                       local caching by registry client fails
+     * @throws java.lang.InterruptedException            thread interrupted
+     * @throws ca.nrc.cadc.net.ResourceNotFoundException specified service not found in registry
+     * @throws ca.nrc.cadc.net.TransientException        the services did not respond within the timeout
+     */
+    public Set<GroupURI> getMemberships(Set<GroupURI> uris, boolean firstMatch) throws IOException,
+            InterruptedException, ResourceNotFoundException {
         // split uris into groups with same resourceID base
         Map<URI, Set<String>> gmsMap = splitByResourceID(uris);
         Set<GroupURI> ret = new TreeSet<>();
+        if (gmsMap.size() < 2 || QUERIES == null) {
+            for (Map.Entry<URI, Set<String>> me : gmsMap.entrySet()) {
+                Set<GroupURI> tmp = getMemberships(me.getKey(), me.getValue());
+                ret.addAll(tmp);
+                if (firstMatch && !ret.isEmpty()) {
+                    break;
+                }
+            }
+            return ret;
+        }
+
+        Map<URI, Callable<Set<GroupURI>>> queries = new LinkedHashMap<>();
         for (Map.Entry<URI, Set<String>> me : gmsMap.entrySet()) {
-            Set<GroupURI> tmp = getMemberships(me.getKey(), me.getValue());
-            ret.addAll(tmp);
+            final URI resourceID = me.getKey();
+            final Set<String> groupNames = me.getValue();
+            queries.put(resourceID, () -> getMemberships(resourceID, groupNames));
+        }
+
+        final AtomicReference<Exception> fail = new AtomicReference<>();
+        Set<URI> timedOut;
+        try {
+            timedOut = QUERIES.run(queries, timeout, (resourceID, groups, ex) -> {
+                if (ex != null) {
+                    log.debug("getMemberships: " + resourceID + " failed: " + ex);
+                    fail.compareAndSet(null, ex);
+                    return !firstMatch;
+                }
+                ret.addAll(groups);
+                if (firstMatch && !ret.isEmpty()) {
+                    log.debug("getMemberships: found in " + resourceID + ", skipping the other services");
+                    return true;
+                }
+                return false;
+            });
+        } catch (Exception ex) {
+            throwQueryFailure(ex);
+            return ret;
+        }
+        if (firstMatch && !ret.isEmpty()) {
+            return ret;
+        }
+        if (!timedOut.isEmpty()) {
+            throw new TransientException("timeout: no response from " + timedOut + " within " + timeout + "ms");
+        }
+        if (fail.get() != null) {
+            throwQueryFailure(fail.get());
         }
         return ret;
     }
 
+    // rethrow the failure of one service query as thrown by getMemberships(URI, Set)
+    private static void throwQueryFailure(Exception fail) throws IOException, InterruptedException,
+            ResourceNotFoundException {
+        if (fail instanceof IOException) {
+            throw (IOException) fail;
+        }
+        if (fail instanceof InterruptedException) {
+            throw (InterruptedException) fail;
+        }
+        if (fail instanceof ResourceNotFoundException) {
+            throw (ResourceNotFoundException) fail;
+        }
+        if (fail instanceof RuntimeException) {
+            throw (RuntimeException) fail;
+        }
+        throw new RuntimeException("unexpected failure: " + fail, fail);
+    }
+
+    /**
+     * Set the maximum time to wait for each service queried in parallel by
+     * getMemberships(Set, boolean), from the time its query starts. The default is
+     * the TIMEOUT system property, or 30 seconds.
+     *
+     * @param timeout time in milliseconds
+     */
+    public void setTimeout(long timeout) {
+        if (timeout <= 0) {
+            throw new IllegalArgumentException("invalid timeout: " + timeout);
+        }
+        this.timeout = timeout;
+    }
+
     /**
      * Get the complete list of groups the caller belongs to
      * from the specified GMS service.
@@ -0,0 +1,304 @@
+/*
+ ************************************************************************
+ *******************  CANADIAN ASTRONOMY DATA CENTRE  *******************
+ **************  CENTRE CANADIEN DE DONNÉES ASTRONOMIQUES  **************
+ *
+ *  (c) 2026.                            (c) 2026.
+ *  Government of Canada                 Gouvernement du Canada
+ *  National Research Council            Conseil national de recherches
+ *  Ottawa, Canada, K1A 0R6              Ottawa, Canada, K1A 0R6
+ *  All rights reserved                  Tous droits réservés
+ *
+ *  NRC disclaims any warranties,        Le CNRC dénie toute garantie
+ *  expressed, implied, or               énoncée, implicite ou légale,
+ *  statutory, of any kind with          de quelque nature que ce
+ *  respect to the software,             soit, concernant le logiciel,
+ *  including without limitation         y compris sans restriction
+ *  any warranty of merchantability      toute garantie de valeur
+ *  or fitness for a particular          marchande ou de pertinence
+ *  purpose. NRC shall not be            pour un usage particulier.
+ *  liable in any event for any          Le CNRC ne pourra en aucun cas
+ *  damages, whether direct or           être tenu responsable de tout
+ *  indirect, special or general,        dommage, direct ou indirect,
+ *  consequential or incidental,         particulier ou général,
+ *  arising from the use of the          accessoire ou fortuit, résultant
+ *  software.  Neither the name          de l'utilisation du logiciel. Ni
+ *  of the National Research             le nom du Conseil National de
+ *  Council of Canada nor the            Recherches du Canada ni les noms
+ *  names of its contributors may        de ses  participants ne peuvent
+ *  be used to endorse or promote        être utilisés pour approuver ou
+ *  products derived from this           promouvoir les produits dérivés
+ *  software without specific prior      de ce logiciel sans autorisation
+ *  written permission.                  préalable et particulière
+ *                                       par écrit.
+ *
+ *  This file is part of the             Ce fichier fait partie du projet
+ *  OpenCADC project.                    OpenCADC.
+ *
+ *  OpenCADC is free software:           OpenCADC est un logiciel libre ;
+ *  you can redistribute it and/or       vous pouvez le redistribuer ou le
+ *  modify it under the terms of         modifier suivant les termes de
+ *  the GNU Affero General Public        la “GNU Affero General Public
+ *  License as published by the          License” telle que publiée
+ *  Free Software Foundation,            par la Free Software Foundation
+ *  either version 3 of the              : soit la version 3 de cette
+ *  License, or (at your option)         licence, soit (à votre gré)
+ *  any later version.                   toute version ultérieure.
+ *
+ *  OpenCADC is distributed in the       OpenCADC est distribué
+ *  hope that it will be useful,         dans l’espoir qu’il vous
+ *  but WITHOUT ANY WARRANTY;            sera utile, mais SANS AUCUNE
+ *  without even the implied             GARANTIE : sans même la garantie
+ *  warranty of MERCHANTABILITY          implicite de COMMERCIALISABILITÉ
+ *  or FITNESS FOR A PARTICULAR          ni d’ADÉQUATION À UN OBJECTIF
+ *  PURPOSE.  See the GNU Affero         PARTICULIER. Consultez la Licence
+ *  General Public License for           Générale Publique GNU Affero
+ *  more details.                        pour plus de détails.
+ *
+ *  You should have received             Vous devriez avoir reçu une
+ *  a copy of the GNU Affero             copie de la Licence Générale
+ *  General Public License along         Publique GNU Affero avec
+ *  with OpenCADC.  If not, see          OpenCADC ; si ce n’est
+ *  <http://www.gnu.org/licenses/>.      pas le cas, consultez :
+ *                                       <http://www.gnu.org/licenses/>.
+ *
+ *
+ ************************************************************************
+ */
+
+package org.opencadc.gms;
+
+import ca.nrc.cadc.auth.AuthenticationUtil;
+import java.security.PrivilegedActionException;
+import java.security.PrivilegedExceptionAction;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import javax.security.auth.Subject;
+import org.apache.log4j.Logger;
+
+/**
+ * Runs independent queries, e.g. to several services, in parallel with the calling subject. Each call
+ * uses at most maxParallel helper threads from a pool of at most maxThreads threads shared by all callers.
+ * The pool has no queue: when all its threads are busy, the caller runs its queries itself, one at a time.
+ * Queries wait in a queue of the call until one of its helpers is free, and the timeout of a query only
+ * starts when it starts, so waiting for a helper is not counted. A query that runs in the caller thread
+ * cannot be timed out, it is only limited by its own (e.g. connection and read) timeouts.
+ *
+ * <p>The results are handled in the caller thread, so the handler does not need to be thread safe.
+ *
+ * @param <K> the key of a query, e.g. the service ID
+ * @param <V> the result of a query
+ */
+public class ParallelQueries<K, V> {
+    private static final Logger log = Logger.getLogger(ParallelQueries.class);
+
+    /**
+     * Handler of the query results.
+     *
+     * @param <K> the key of a query
+     * @param <V> the result of a query
+     */
+    public interface Handler<K, V> {
+        /**
+         * Handle the outcome of one query.
+         *
+         * @param key    the key of the query
+         * @param result the result, null when the query failed
+         * @param fail   the failure, null when the query succeeded
+         * @return true to stop: the queries that have not completed are skipped
+         * @throws Exception to stop and throw the exception from run
+         */
+        boolean handle(K key, V result, Exception fail) throws Exception;
+    }
+
+    private final int maxParallel;
+    private final ThreadPoolExecutor pool;
+
+    /**
+     * Constructor.
+     *
+     * @param name        name of the helper threads
+     * @param maxParallel maximum number of helper threads per call
+     * @param maxThreads  maximum number of helper threads of all callers
+     */
+    public ParallelQueries(String name, int maxParallel, int maxThreads) {
+        if (maxParallel < 1 || maxThreads < 1) {
+            throw new IllegalArgumentException("invalid maxParallel/maxThreads: " + maxParallel + "/" + maxThreads);
+        }
+        this.maxParallel = maxParallel;
+        this.pool = new ThreadPoolExecutor(0, maxThreads, 60L, TimeUnit.SECONDS, new SynchronousQueue<>(),
+            runnable -> {
+                final Thread thread = new Thread(runnable, name);
+                thread.setDaemon(true);
+                return thread;
+            });
+    }
+
+    /**
+     * Run the queries and handle the results as they complete.
+     *
+     * @param queries the queries, by key
+     * @param timeout maximum time in milliseconds that a query runs in a helper thread
+     * @param handler handler of the query results
+     * @return the keys of the queries that did not complete within the timeout, empty when all
+     *     completed or the handler stopped the queries
+     * @throws InterruptedException the caller was interrupted while waiting
+     * @throws Exception            from the handler
+     */
+    public Set<K> run(Map<K, Callable<V>> queries, long timeout, Handler<K, V> handler) throws Exception {
+        final Subject caller = AuthenticationUtil.getCurrentSubject();
+        final Call call = new Call();
+        for (Map.Entry<K, Callable<V>> me : queries.entrySet()) {
+            call.todo.add(new Query(me.getKey(), me.getValue()));
+        }
+
+        final int num = call.todo.size();
+        final List<Future<?>> helpers = new ArrayList<>();
+        try {
+            try {
+                while (helpers.size() < Math.min(maxParallel, num)) {
+                    helpers.add(pool.submit(() -> call.runQueries(caller)));
+                }
+            } catch (RejectedExecutionException ex) {
+                log.debug("run: " + helpers.size() + " helpers available for " + num + " queries");
+            }
+
+            if (helpers.isEmpty()) {
+                Query q = call.todo.poll();
+                while (q != null) {
+                    q.run();
+                    if (call.handle(q, handler)) {
+                        return Collections.emptySet();
+                    }
+                    q = call.todo.poll();
+                }
+                return Collections.emptySet();
+            }
+
+            int handled = 0;
+            while (handled < num) {
+                final long remaining = call.nextDeadline(timeout) - System.currentTimeMillis();
+                final Query q = (remaining > 0) ? call.done.poll(remaining, TimeUnit.MILLISECONDS) : null;
+                if (q == null) {
+                    return call.getPending();
+                }
+                handled++;
+                if (call.handle(q, handler)) {
+                    return Collections.emptySet();
+                }
+            }
+            return Collections.emptySet();
+        } finally {
+            call.todo.clear();
+            for (Future<?> f : helpers) {
+                // best effort: a blocking socket read is not interrupted, but no further query is started
+                f.cancel(true);
+            }
+        }
+    }
+
+    // one query of a call
+    private class Query {
+        final K key;
+        final Callable<V> callable;
+        volatile long started = 0L;
+        volatile boolean handled = false;
+        V result;
+        Throwable fail;
+
+        Query(K key, Callable<V> callable) {
+            this.key = key;
+            this.callable = callable;
+        }
+
+        void run() {
+            started = System.currentTimeMillis();
+            try {
+                result = callable.call();
+            } catch (Throwable ex) {
+                fail = ex;
+            }
+        }
+    }
+
+    // state of one call to run
+    private class Call {
+        final Queue<Query> todo = new ConcurrentLinkedQueue<>();
+        final BlockingQueue<Query> done = new LinkedBlockingQueue<>();
+        final List<Query> running = new ArrayList<>();
+
+        // helper thread: run queries of this call until there are none left
+        void runQueries(Subject caller) {
+            Query q = todo.poll();
+            while (q != null && !Thread.currentThread().isInterrupted()) {
+                final Query query = q;
+                synchronized (running) {
+                    running.add(query);
+                }
+                query.started = System.currentTimeMillis();
+                try {
+                    query.result = Subject.doAs(caller, (PrivilegedExceptionAction<V>) query.callable::call);
+                } catch (PrivilegedActionException ex) {
+                    query.fail = ex.getException();
+                } catch (Throwable ex) {
+                    query.fail = ex;
+                }
+                done.add(query);
+                q = todo.poll();
+            }
+        }
+
+        // the deadline of the query that started first, or a full timeout when none is running
+        long nextDeadline(long timeout) {
+            long ret = System.currentTimeMillis() + timeout;
+            synchronized (running) {
+                for (Query q : running) {
+                    if (!q.handled) {
+                        ret = Math.min(ret, q.started + timeout);
+                    }
+                }
+            }
+            return ret;
+        }
+
+        Set<K> getPending() {
+            Set<K> ret = new LinkedHashSet<>();
+            synchronized (running) {
+                for (Query q : running) {
+                    if (!q.handled) {
+                        ret.add(q.key);
+                    }
+                }
+            }
+            for (Query q : todo) {
+                ret.add(q.key);
+            }
+            return ret;
+        }
+
+        boolean handle(Query q, Handler<K, V> handler) throws Exception {
+            q.handled = true;
+            if (q.fail == null) {
+                return handler.handle(q.key, q.result, null);
+            }
+            if (q.fail instanceof Exception) {
+                return handler.handle(q.key, null, (Exception) q.fail);
+            }
+            throw new RuntimeException("unexpected failure querying " + q.key, q.fail);
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package org.opencadc.auth;
+
+import ca.nrc.cadc.util.Log4jInit;
+import java.io.IOException;
+import java.net.URI;
+import java.security.Key;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.jose4j.jwk.JsonWebKey;
+import org.jose4j.jwk.JsonWebKeySet;
+import org.jose4j.jwk.RsaJsonWebKey;
+import org.jose4j.jwk.RsaJwkGenerator;
+import org.jose4j.jws.AlgorithmIdentifiers;
+import org.jose4j.jws.JsonWebSignature;
+import org.jose4j.lang.UnresolvableKeyException;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class JwksKeyCacheTest {
+
+    private static Logger log = Logger.getLogger(JwksKeyCacheTest.class);
+
+    static {
+        Log4jInit.setLevel("org.opencadc.auth", Level.INFO);
+    }
+
+    private static final URI ISSUER = URI.create("https://oidc.example.net/");
+
+    private static RsaJsonWebKey generateKey(String kid) throws Exception {
+        RsaJsonWebKey ret = RsaJwkGenerator.generateJwk(2048);
+        ret.setKeyId(kid);
+        ret.setAlgorithm(AlgorithmIdentifiers.RSA_USING_SHA256);
+        return ret;
+    }
+
+    private static String toJwks(RsaJsonWebKey... keys) {
+        return new JsonWebKeySet(keys).toJson(JsonWebKey.OutputControlLevel.PUBLIC_ONLY);
+    }
+
+    private static JsonWebSignature sign(RsaJsonWebKey key, boolean withKeyID) throws Exception {
+        JsonWebSignature jws = new JsonWebSignature();
+        jws.setPayload("{\"sub\":\"someone\"}");
+        jws.setAlgorithmHeaderValue(AlgorithmIdentifiers.RSA_USING_SHA256);
+        if (withKeyID) {
+            jws.setKeyIdHeaderValue(key.getKeyId());
+        }
+        jws.setKey(key.getPrivateKey());
+        JsonWebSignature ret = new JsonWebSignature();
+        ret.setCompactSerialization(jws.getCompactSerialization());
+        return ret;
+    }
+
+    @Test
+    public void testResolveKey() throws Exception {
+        RsaJsonWebKey k1 = generateKey("k1");
+        RsaJsonWebKey k2 = generateKey("k2");
+        AtomicInteger reads = new AtomicInteger();
+        JwksKeyCache cache = new JwksKeyCache(ISSUER, () -> {
+            reads.incrementAndGet();
+            return toJwks(k1, k2);
+        }, 600000L, 60000L);
+
+        for (int i = 0; i < 100; i++) {
+            Key key = cache.resolveKey(sign(k1, true), false);
+            Assert.assertEquals(k1.getPublicKey(), key);
+            key = cache.resolveKey(sign(k2, true), false);
+            Assert.assertEquals(k2.getPublicKey(), key);
+        }
+        // without a key ID the key is selected by verifying the signature
+        Assert.assertEquals(k2.getPublicKey(), cache.resolveKey(sign(k2, false), true));
+
+        Assert.assertEquals(1, reads.get());
+        Assert.assertEquals(1L, cache.getLoads());
+        log.info(cache);
+    }
+
+    @Test
+    public void testUnknownKeyID() throws Exception {
+        RsaJsonWebKey k1 = generateKey("k1");
+        RsaJsonWebKey k2 = generateKey("k2");
+        RsaJsonWebKey k3 = generateKey("k3");
+        AtomicReference<String> jwks = new AtomicReference<>(toJwks(k1));
+        AtomicInteger reads = new AtomicInteger();
+        AtomicLong now = new AtomicLong(1000000L);
+        JwksKeyCache cache = new JwksKeyCache(ISSUER, () -> {
+            reads.incrementAndGet();
+            return jwks.get();
+        }, 600000L, 200L, now::get);
+
+        Assert.assertEquals(k1.getPublicKey(), cache.resolveKey(sign(k1, true), false));
+
+        // key rotation: the unknown key ID reloads the keys once the minimum refresh interval passed
+        jwks.set(toJwks(k1, k2));
+        now.addAndGet(200L);
+        Assert.assertEquals(k2.getPublicKey(), cache.resolveKey(sign(k2, true), false));
+        Assert.assertEquals(2, reads.get());
+
+        // unknown key IDs do not reload more often than the minimum refresh interval
+        for (int i = 0; i < 10; i++) {
+            try {
+                cache.resolveKey(sign(k3, true), false);
+                Assert.fail("expected UnresolvableKeyException");
+            } catch (UnresolvableKeyException expected) {
+                log.debug("caught expected: " + expected);
+            }
+        }
+        Assert.assertEquals(2, reads.get());
+    }
+
+    @Test
+    public void testExpired() throws Exception {
+        RsaJsonWebKey k1 = generateKey("k1");
+        AtomicInteger reads = new AtomicInteger();
+        AtomicLong now = new AtomicLong(1000000L);
+        JwksKeyCache cache = new JwksKeyCache(ISSUER, () -> {
+            reads.incrementAndGet();
+            return toJwks(k1);
+        }, 100L, 50L, now::get);
+
+        Assert.assertEquals(k1.getPublicKey(), cache.resolveKey(sign(k1, true), false));
+        now.addAndGet(101L);
+
+        // stale keys are used while they are reloaded in the background
+        Assert.assertEquals(k1.getPublicKey(), cache.resolveKey(sign(k1, true), false));
+        // wait for the background reload
+        long end = System.currentTimeMillis() + 5000L;
+        while (cache.getLoads() < 2L && System.currentTimeMillis() < end) {
+            Thread.sleep(10L);
+        }
+        Assert.assertEquals(2L, cache.getLoads());
+    }
+
+    @Test
+    public void testLoadFailure() throws Exception {
+        RsaJsonWebKey k1 = generateKey("k1");
+        JwksKeyCache cache = new JwksKeyCache(ISSUER, () -> {
+            throw new IOException("not available");
+        }, 600000L, 60000L);
+        try {
+            cache.resolveKey(sign(k1, true), false);
+            Assert.fail("expected UnresolvableKeyException");
+        } catch (UnresolvableKeyException expected) {
+            log.debug("caught expected: " + expected);
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package org.opencadc.auth;
+
+import ca.nrc.cadc.auth.PosixPrincipal;
+import ca.nrc.cadc.util.Log4jInit;
+import java.net.URI;
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.junit.Assert;
+import org.junit.Test;
+import org.opencadc.gms.GroupURI;
+
+public class PosixMappingCacheTest {
+
+    private static Logger log = Logger.getLogger(PosixMappingCacheTest.class);
+
+    static {
+        Log4jInit.setLevel("org.opencadc.auth", Level.INFO);
+    }
+
+    @Test
+    public void testUsers() {
+        PosixMappingCache cache = new PosixMappingCache(10, 60000L, 60000L);
+        Assert.assertNull(cache.getUser(10001));
+        Assert.assertNull(cache.getUser("alice"));
+
+        PosixPrincipal alice = new PosixPrincipal(10001);
+        alice.username = "alice";
+        alice.defaultGroup = 10001;
+        cache.putUser(alice);
+
+        PosixPrincipal byUID = cache.getUser(10001);
+        PosixPrincipal byName = cache.getUser("alice");
+        Assert.assertNotNull(byUID);
+        Assert.assertNotNull(byName);
+        Assert.assertEquals(10001, byName.getUidNumber());
+        Assert.assertEquals("alice", byUID.username);
+        Assert.assertEquals(Integer.valueOf(10001), byUID.defaultGroup);
+
+        // callers get a copy
+        byUID.username = "mallory";
+        Assert.assertEquals("alice", cache.getUser(10001).username);
+
+        Assert.assertEquals(3, cache.getHits());
+        Assert.assertEquals(2, cache.getMisses());
+    }
+
+    @Test
+    public void testGroups() {
+        PosixMappingCache cache = new PosixMappingCache(10, 60000L, 60000L);
+        GroupURI groupURI = new GroupURI(URI.create("ivo://example.org/gms?staff"));
+        cache.putGroup(new PosixGroup(20001, groupURI));
+
+        Assert.assertEquals(groupURI, cache.getGroup(20001).getGroupURI());
+        Assert.assertEquals(Integer.valueOf(20001), cache.getGroup(groupURI).getGID());
+        Assert.assertNull(cache.getGroup(20002));
+        Assert.assertNull(cache.getGroup(new GroupURI(URI.create("ivo://example.org/gms?other"))));
+    }
+
+    @Test
+    public void testMaxEntries() {
+        PosixMappingCache cache = new PosixMappingCache(3, 60000L, 60000L);
+        for (int uid = 1; uid <= 5; uid++) {
+            PosixPrincipal pp = new PosixPrincipal(uid);
+            pp.username = "user" + uid;
+            cache.putUser(pp);
+        }
+
+        // new users are still cached when full: the least recently used are evicted
+        Assert.assertNull(cache.getUser(1));
+        Assert.assertNull(cache.getUser("user2"));
+        Assert.assertNotNull(cache.getUser(3));
+        Assert.assertNotNull(cache.getUser(4));
+        Assert.assertEquals(5, cache.getUser("user5").getUidNumber());
+
+        // user 3 was used more recently than user 5
+        Assert.assertNotNull(cache.getUser(3));
+        PosixPrincipal pp = new PosixPrincipal(6);
+        pp.username = "user6";
+        cache.putUser(pp);
+        Assert.assertNotNull(cache.getUser(6));
+        Assert.assertNotNull(cache.getUser(3));
+        Assert.assertNull(cache.getUser(5));
+
+        // incremental refresh delivers changed users: the old username no longer maps to the UID
+        pp = new PosixPrincipal(3);
+        pp.username = "renamed";
+        cache.putUser(pp);
+        Assert.assertEquals("renamed", cache.getUser(3).username);
+        Assert.assertEquals(3, cache.getUser("renamed").getUidNumber());
+        Assert.assertNull(cache.getUser("user3"));
+
+        for (int gid = 1; gid <= 5; gid++) {
+            cache.putGroup(new PosixGroup(gid, new GroupURI(URI.create("ivo://example.org/gms?group" + gid))));
+        }
+        Assert.assertNull(cache.getGroup(2));
+        Assert.assertNotNull(cache.getGroup(5));
+        Assert.assertNotNull(cache.getGroup(new GroupURI(URI.create("ivo://example.org/gms?group3"))));
+        log.info(cache);
+    }
+
+    @Test
+    public void testExpired() {
+        AtomicLong now = new AtomicLong(1000000L);
+        PosixMappingCache cache = new PosixMappingCache(10, 50L, 60000L, now::get);
+        PosixPrincipal pp = new PosixPrincipal(10001);
+        pp.username = "alice";
+        cache.putUser(pp);
+        Assert.assertNotNull(cache.getUser(10001));
+
+        now.addAndGet(51L);
+        Assert.assertNull("bypassed when not refreshed within ttl", cache.getUser(10001));
+
+        Assert.assertTrue(cache.claimRefresh());
+        Assert.assertFalse("refresh in progress", cache.claimRefresh());
+        cache.refreshDone(true);
+        Assert.assertNotNull(cache.getUser(10001));
+        Assert.assertEquals(1, cache.getRefreshes());
+        Assert.assertFalse("refresh interval not elapsed", cache.claimRefresh());
+        now.addAndGet(60000L);
+        Assert.assertTrue("refresh interval elapsed", cache.claimRefresh());
+        cache.refreshDone(false);
+    }
+}
@@ -0,0 +1,73 @@
+package org.opencadc.auth;
+
+import ca.nrc.cadc.auth.HttpPrincipal;
+import ca.nrc.cadc.util.Log4jInit;
+import java.security.Principal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ValidatedTokenCacheTest {
+
+    private static Logger log = Logger.getLogger(ValidatedTokenCacheTest.class);
+
+    static {
+        Log4jInit.setLevel("org.opencadc.auth", Level.INFO);
+    }
+
+    private static List<Principal> principals(String username) {
+        List<Principal> ret = new ArrayList<>();
+        ret.add(new HttpPrincipal(username));
+        return ret;
+    }
+
+    @Test
+    public void testGetPut() {
+        ValidatedTokenCache cache = new ValidatedTokenCache(10, 60000L);
+        Assert.assertNull(cache.get("token1"));
+
+        long exp = System.currentTimeMillis() + 60000L;
+        cache.put("token1", principals("alice"), exp, true);
+        cache.put("token2", principals("bob"), null, false);
+        for (int i = 0; i < 10; i++) {
+            Assert.assertEquals(principals("alice"), cache.get("token1"));
+        }
+        Assert.assertEquals(principals("bob"), cache.get("token2"));
+        Assert.assertNull(cache.get("token3"));
+
+        Assert.assertEquals(11, cache.getHits());
+        Assert.assertEquals(2, cache.getMisses());
+        Assert.assertEquals(10, cache.getVerificationsAvoided());
+        Assert.assertEquals(1, cache.getUserInfoCallsAvoided());
+        Assert.assertEquals(11.0 / 13.0, cache.getHitRate(), 1.0e-9);
+        log.info(cache);
+
+        // cached principals cannot be modified by callers
+        try {
+            cache.get("token1").clear();
+            Assert.fail("expected UnsupportedOperationException");
+        } catch (UnsupportedOperationException expected) {
+            log.debug("caught expected: " + expected);
+        }
+    }
+
+    @Test
+    public void testExpiry() {
+        AtomicLong now = new AtomicLong(System.currentTimeMillis());
+        ValidatedTokenCache cache = new ValidatedTokenCache(10, 60000L, now::get);
+
+        // a token is held until its expiry, an opaque token until the max age
+        cache.put("token", principals("alice"), now.get() + 100L, true);
+        cache.put("opaque", principals("bob"), null, false);
+        now.addAndGet(100L);
+        Assert.assertNull(cache.get("token"));
+        Assert.assertNotNull(cache.get("opaque"));
+        now.addAndGet(59900L);
+        Assert.assertNull(cache.get("opaque"));
+        Assert.assertEquals(0, cache.size());
+    }
+}
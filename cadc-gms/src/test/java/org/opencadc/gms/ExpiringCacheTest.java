@@ -0,0 +1,165 @@
+/*
+ ************************************************************************
+ *******************  CANADIAN ASTRONOMY DATA CENTRE  *******************
+ **************  CENTRE CANADIEN DE DONNÉES ASTRONOMIQUES  **************
+ *
+ *  (c) 2026.                            (c) 2026.
+ *  Government of Canada                 Gouvernement du Canada
+ *  National Research Council            Conseil national de recherches
+ *  Ottawa, Canada, K1A 0R6              Ottawa, Canada, K1A 0R6
+ *  All rights reserved                  Tous droits réservés
+ *
+ *  NRC disclaims any warranties,        Le CNRC dénie toute garantie
+ *  expressed, implied, or               énoncée, implicite ou légale,
+ *  statutory, of any kind with          de quelque nature que ce
+ *  respect to the software,             soit, concernant le logiciel,
+ *  including without limitation         y compris sans restriction
+ *  any warranty of merchantability      toute garantie de valeur
+ *  or fitness for a particular          marchande ou de pertinence
+ *  purpose. NRC shall not be            pour un usage particulier.
+ *  liable in any event for any          Le CNRC ne pourra en aucun cas
+ *  damages, whether direct or           être tenu responsable de tout
+ *  indirect, special or general,        dommage, direct ou indirect,
+ *  consequential or incidental,         particulier ou général,
+ *  arising from the use of the          accessoire ou fortuit, résultant
+ *  software.  Neither the name          de l'utilisation du logiciel. Ni
+ *  of the National Research             le nom du Conseil National de
+ *  Council of Canada nor the            Recherches du Canada ni les noms
+ *  names of its contributors may        de ses  participants ne peuvent
+ *  be used to endorse or promote        être utilisés pour approuver ou
+ *  products derived from this           promouvoir les produits dérivés
+ *  software without specific prior      de ce logiciel sans autorisation
+ *  written permission.                  préalable et particulière
+ *                                       par écrit.
+ *
+ *  This file is part of the             Ce fichier fait partie du projet
+ *  OpenCADC project.                    OpenCADC.
+ *
+ *  OpenCADC is free software:           OpenCADC est un logiciel libre ;
+ *  you can redistribute it and/or       vous pouvez le redistribuer ou le
+ *  modify it under the terms of         modifier suivant les termes de
+ *  the GNU Affero General Public        la “GNU Affero General Public
+ *  License as published by the          License” telle que publiée
+ *  Free Software Foundation,            par la Free Software Foundation
+ *  either version 3 of the              : soit la version 3 de cette
+ *  License, or (at your option)         licence, soit (à votre gré)
+ *  any later version.                   toute version ultérieure.
+ *
+ *  OpenCADC is distributed in the       OpenCADC est distribué
+ *  hope that it will be useful,         dans l’espoir qu’il vous
+ *  but WITHOUT ANY WARRANTY;            sera utile, mais SANS AUCUNE
+ *  without even the implied             GARANTIE : sans même la garantie
+ *  warranty of MERCHANTABILITY          implicite de COMMERCIALISABILITÉ
+ *  or FITNESS FOR A PARTICULAR          ni d’ADÉQUATION À UN OBJECTIF
+ *  PURPOSE.  See the GNU Affero         PARTICULIER. Consultez la Licence
+ *  General Public License for           Générale Publique GNU Affero
+ *  more details.                        pour plus de détails.
+ *
+ *  You should have received             Vous devriez avoir reçu une
+ *  a copy of the GNU Affero             copie de la Licence Générale
+ *  General Public License along         Publique GNU Affero avec
+ *  with OpenCADC.  If not, see          OpenCADC ; si ce n’est
+ *  <http://www.gnu.org/licenses/>.      pas le cas, consultez :
+ *                                       <http://www.gnu.org/licenses/>.
+ *
+ *
+ ************************************************************************
+ */
+
+package org.opencadc.gms;
+
+import ca.nrc.cadc.util.Log4jInit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ExpiringCacheTest {
+    private static final Logger log = Logger.getLogger(ExpiringCacheTest.class);
+
+    static {
+        Log4jInit.setLevel("org.opencadc.gms", Level.INFO);
+    }
+
+    private final AtomicLong now = new AtomicLong(1000000L);
+
+    @Test
+    public void testGetPut() {
+        ExpiringCache<String, String> cache = new ExpiringCache<>(10, 60000L, now::get);
+        Assert.assertNull(cache.get("a"));
+        cache.put("a", "1");
+        cache.put("b", "2", now.get() + 60000L);
+        Assert.assertEquals("1", cache.get("a"));
+        Assert.assertEquals("2", cache.get("b"));
+        cache.remove("a");
+        Assert.assertNull(cache.get("a"));
+        cache.clear();
+        Assert.assertEquals(0, cache.size());
+        Assert.assertNull(cache.get("b"));
+
+        Assert.assertEquals(2, cache.getHits());
+        Assert.assertEquals(3, cache.getMisses());
+        Assert.assertEquals(0.4, cache.getHitRate(), 1.0e-9);
+        log.info(cache);
+
+        try {
+            cache.put("c", null);
+            Assert.fail("expected IllegalArgumentException");
+        } catch (IllegalArgumentException expected) {
+            log.debug("caught expected: " + expected);
+        }
+    }
+
+    @Test
+    public void testExpiry() {
+        ExpiringCache<String, String> cache = new ExpiringCache<>(10, 1000L, now::get);
+
+        // never held beyond the expiry of the value
+        cache.put("expiring", "1", now.get() + 100L);
+        cache.put("expired", "2", now.get() - 1L);
+        Assert.assertEquals(1, cache.size());
+        now.addAndGet(99L);
+        Assert.assertEquals("1", cache.get("expiring"));
+        now.addAndGet(1L);
+        Assert.assertNull(cache.get("expiring"));
+        Assert.assertEquals(0, cache.size());
+
+        // nor beyond the maximum age
+        cache.put("later", "3", now.get() + 60000L);
+        cache.put("unknown", "4");
+        now.addAndGet(999L);
+        Assert.assertNotNull(cache.get("later"));
+        Assert.assertNotNull(cache.get("unknown"));
+        now.addAndGet(1L);
+        Assert.assertNull(cache.get("later"));
+        Assert.assertNull(cache.get("unknown"));
+    }
+
+    @Test
+    public void testMaxEntries() {
+        ExpiringCache<Integer, String> cache = new ExpiringCache<>(3, 60000L, now::get);
+        for (int i = 1; i <= 3; i++) {
+            cache.put(i, "v" + i);
+        }
+        // least recently used is evicted
+        Assert.assertNotNull(cache.get(1));
+        cache.put(4, "v4");
+        Assert.assertEquals(3, cache.size());
+        Assert.assertNull(cache.get(2));
+        Assert.assertNotNull(cache.get(1));
+        Assert.assertNotNull(cache.get(3));
+        Assert.assertNotNull(cache.get(4));
+        Assert.assertEquals(1, cache.getEvictions());
+    }
+
+    @Test
+    public void testNoMaxAge() {
+        ExpiringCache<String, String> cache = new ExpiringCache<>(10, Long.MAX_VALUE, now::get);
+        cache.put("a", "1");
+        cache.put("b", "2", now.get() + 100L);
+        now.addAndGet(100L);
+        Assert.assertEquals("1", cache.get("a"));
+        Assert.assertNull(cache.get("b"));
+    }
+}
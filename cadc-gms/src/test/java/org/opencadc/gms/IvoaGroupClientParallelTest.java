@@ -0,0 +1,193 @@
+/*
+ ************************************************************************
+ *******************  CANADIAN ASTRONOMY DATA CENTRE  *******************
+ **************  CENTRE CANADIEN DE DONNÉES ASTRONOMIQUES  **************
+ *
+ *  (c) 2026.                            (c) 2026.
+ *  Government of Canada                 Gouvernement du Canada
+ *  National Research Council            Conseil national de recherches
+ *  Ottawa, Canada, K1A 0R6              Ottawa, Canada, K1A 0R6
+ *  All rights reserved                  Tous droits réservés
+ *
+ *  NRC disclaims any warranties,        Le CNRC dénie toute garantie
+ *  expressed, implied, or               énoncée, implicite ou légale,
+ *  statutory, of any kind with          de quelque nature que ce
+ *  respect to the software,             soit, concernant le logiciel,
+ *  including without limitation         y compris sans restriction
+ *  any warranty of merchantability      toute garantie de valeur
+ *  or fitness for a particular          marchande ou de pertinence
+ *  purpose. NRC shall not be            pour un usage particulier.
+ *  liable in any event for any          Le CNRC ne pourra en aucun cas
+ *  damages, whether direct or           être tenu responsable de tout
+ *  indirect, special or general,        dommage, direct ou indirect,
+ *  consequential or incidental,         particulier ou général,
+ *  arising from the use of the          accessoire ou fortuit, résultant
+ *  software.  Neither the name          de l'utilisation du logiciel. Ni
+ *  of the National Research             le nom du Conseil National de
+ *  Council of Canada nor the            Recherches du Canada ni les noms
+ *  names of its contributors may        de ses  participants ne peuvent
+ *  be used to endorse or promote        être utilisés pour approuver ou
+ *  products derived from this           promouvoir les produits dérivés
+ *  software without specific prior      de ce logiciel sans autorisation
+ *  written permission.                  préalable et particulière
+ *                                       par écrit.
+ *
+ *  This file is part of the             Ce fichier fait partie du projet
+ *  OpenCADC project.                    OpenCADC.
+ *
+ *  OpenCADC is free software:           OpenCADC est un logiciel libre ;
+ *  you can redistribute it and/or       vous pouvez le redistribuer ou le
+ *  modify it under the terms of         modifier suivant les termes de
+ *  the GNU Affero General Public        la “GNU Affero General Public
+ *  License as published by the          License” telle que publiée
+ *  Free Software Foundation,            par la Free Software Foundation
+ *  either version 3 of the              : soit la version 3 de cette
+ *  License, or (at your option)         licence, soit (à votre gré)
+ *  any later version.                   toute version ultérieure.
+ *
+ *  OpenCADC is distributed in the       OpenCADC est distribué
+ *  hope that it will be useful,         dans l’espoir qu’il vous
+ *  but WITHOUT ANY WARRANTY;            sera utile, mais SANS AUCUNE
+ *  without even the implied             GARANTIE : sans même la garantie
+ *  warranty of MERCHANTABILITY          implicite de COMMERCIALISABILITÉ
+ *  or FITNESS FOR A PARTICULAR          ni d’ADÉQUATION À UN OBJECTIF
+ *  PURPOSE.  See the GNU Affero         PARTICULIER. Consultez la Licence
+ *  General Public License for           Générale Publique GNU Affero
+ *  more details.                        pour plus de détails.
+ *
+ *  You should have received             Vous devriez avoir reçu une
+ *  a copy of the GNU Affero             copie de la Licence Générale
+ *  General Public License along         Publique GNU Affero avec
+ *  with OpenCADC.  If not, see          OpenCADC ; si ce n’est
+ *  <http://www.gnu.org/licenses/>.      pas le cas, consultez :
+ *                                       <http://www.gnu.org/licenses/>.
+ *
+ *
+ ************************************************************************
+ */
+
+package org.opencadc.gms;
+
+import ca.nrc.cadc.auth.AuthenticationUtil;
+import ca.nrc.cadc.auth.HttpPrincipal;
+import ca.nrc.cadc.net.TransientException;
+import ca.nrc.cadc.util.Log4jInit;
+import java.net.URI;
+import java.security.PrivilegedExceptionAction;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.security.auth.Subject;
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class IvoaGroupClientParallelTest {
+    private static final Logger log = Logger.getLogger(IvoaGroupClientParallelTest.class);
+
+    static {
+        Log4jInit.setLevel("org.opencadc.gms", Level.INFO);
+    }
+
+    private static final URI GMS1 = URI.create("ivo://example.net/gms1");
+    private static final URI GMS2 = URI.create("ivo://example.net/gms2");
+    private static final URI GMS3 = URI.create("ivo://example.net/gms3");
+
+    // client with services that answer after a delay, the caller being a member of
+    // the groups named "member"
+    private static class TestGroupClient extends IvoaGroupClient {
+        final Map<URI, Long> delays = new ConcurrentHashMap<>();
+        final Map<URI, Subject> callers = new ConcurrentHashMap<>();
+
+        @Override
+        public Set<GroupURI> getMemberships(URI resourceID, Set<String> groupNames) throws InterruptedException {
+            Subject caller = AuthenticationUtil.getCurrentSubject();
+            if (caller != null) {
+                callers.put(resourceID, caller);
+            }
+            Long delay = delays.get(resourceID);
+            if (delay != null) {
+                Thread.sleep(delay);
+            }
+            Set<GroupURI> ret = new TreeSet<>();
+            for (String name : groupNames) {
+                if (name.equals("member")) {
+                    ret.add(new GroupURI(resourceID, name));
+                }
+            }
+            return ret;
+        }
+    }
+
+    private static Set<GroupURI> groups(String name, URI... services) {
+        Set<GroupURI> ret = new TreeSet<>();
+        for (URI s : services) {
+            ret.add(new GroupURI(s, name));
+        }
+        return ret;
+    }
+
+    @Test
+    public void testParallelMemberships() throws Exception {
+        final TestGroupClient client = new TestGroupClient();
+        client.delays.put(GMS1, 500L);
+        client.delays.put(GMS2, 500L);
+        client.delays.put(GMS3, 500L);
+        Set<GroupURI> candidates = groups("member", GMS1, GMS2);
+        candidates.addAll(groups("other", GMS1, GMS2, GMS3));
+
+        Subject caller = new Subject();
+        caller.getPrincipals().add(new HttpPrincipal("someone"));
+        long start = System.currentTimeMillis();
+        Set<GroupURI> mems = Subject.doAs(caller,
+                (PrivilegedExceptionAction<Set<GroupURI>>) () -> client.getMemberships(candidates));
+        long dt = System.currentTimeMillis() - start;
+        log.info("getMemberships: " + dt + "ms");
+
+        Assert.assertEquals(groups("member", GMS1, GMS2), mems);
+        Assert.assertTrue("parallel: " + dt + "ms", dt < 1400L);
+        Assert.assertEquals(3, client.callers.size());
+        for (Subject s : client.callers.values()) {
+            Assert.assertSame(caller, s);
+        }
+    }
+
+    @Test
+    public void testFirstMatch() throws Exception {
+        TestGroupClient client = new TestGroupClient();
+        client.delays.put(GMS1, 10000L);
+        client.delays.put(GMS2, 50L);
+        Set<GroupURI> candidates = groups("member", GMS1, GMS2);
+
+        long start = System.currentTimeMillis();
+        Set<GroupURI> mems = client.getMemberships(candidates, true);
+        long dt = System.currentTimeMillis() - start;
+        log.info("getMemberships(firstMatch): " + dt + "ms");
+
+        Assert.assertEquals(groups("member", GMS2), mems);
+        Assert.assertTrue("first match: " + dt + "ms", dt < 5000L);
+    }
+
+    @Test
+    public void testTimeout() throws Exception {
+        TestGroupClient client = new TestGroupClient();
+        client.setTimeout(200L);
+        client.delays.put(GMS1, 10000L);
+        Set<GroupURI> candidates = groups("member", GMS1, GMS2);
+
+        long start = System.currentTimeMillis();
+        try {
+            client.getMemberships(candidates);
+            Assert.fail("expected TransientException");
+        } catch (TransientException expected) {
+            log.info("caught expected: " + expected);
+        }
+        long dt = System.currentTimeMillis() - start;
+        Assert.assertTrue("deadline: " + dt + "ms", dt < 5000L);
+
+        // the slow service is not needed when another one has a match
+        Assert.assertEquals(groups("member", GMS2), client.getMemberships(candidates, true));
+    }
+}
@@ -0,0 +1,209 @@
+/*
+ ************************************************************************
+ *******************  CANADIAN ASTRONOMY DATA CENTRE  *******************
+ **************  CENTRE CANADIEN DE DONNÉES ASTRONOMIQUES  **************
+ *
+ *  (c) 2026.                            (c) 2026.
+ *  Government of Canada                 Gouvernement du Canada
+ *  National Research Council            Conseil national de recherches
+ *  Ottawa, Canada, K1A 0R6              Ottawa, Canada, K1A 0R6
+ *  All rights reserved                  Tous droits réservés
+ *
+ *  NRC disclaims any warranties,        Le CNRC dénie toute garantie
+ *  expressed, implied, or               énoncée, implicite ou légale,
+ *  statutory, of any kind with          de quelque nature que ce
+ *  respect to the software,             soit, concernant le logiciel,
+ *  including without limitation         y compris sans restriction
+ *  any warranty of merchantability      toute garantie de valeur
+ *  or fitness for a particular          marchande ou de pertinence
+ *  purpose. NRC shall not be            pour un usage particulier.
+ *  liable in any event for any          Le CNRC ne pourra en aucun cas
+ *  damages, whether direct or           être tenu responsable de tout
+ *  indirect, special or general,        dommage, direct ou indirect,
+ *  consequential or incidental,         particulier ou général,
+ *  arising from the use of the          accessoire ou fortuit, résultant
+ *  software.  Neither the name          de l'utilisation du logiciel. Ni
+ *  of the National Research             le nom du Conseil National de
+ *  Council of Canada nor the            Recherches du Canada ni les noms
+ *  names of its contributors may        de ses  participants ne peuvent
+ *  be used to endorse or promote        être utilisés pour approuver ou
+ *  products derived from this           promouvoir les produits dérivés
+ *  software without specific prior      de ce logiciel sans autorisation
+ *  written permission.                  préalable et particulière
+ *                                       par écrit.
+ *
+ *  This file is part of the             Ce fichier fait partie du projet
+ *  OpenCADC project.                    OpenCADC.
+ *
+ *  OpenCADC is free software:           OpenCADC est un logiciel libre ;
+ *  you can redistribute it and/or       vous pouvez le redistribuer ou le
+ *  modify it under the terms of         modifier suivant les termes de
+ *  the GNU Affero General Public        la “GNU Affero General Public
+ *  License as published by the          License” telle que publiée
+ *  Free Software Foundation,            par la Free Software Foundation
+ *  either version 3 of the              : soit la version 3 de cette
+ *  License, or (at your option)         licence, soit (à votre gré)
+ *  any later version.                   toute version ultérieure.
+ *
+ *  OpenCADC is distributed in the       OpenCADC est distribué
+ *  hope that it will be useful,         dans l’espoir qu’il vous
+ *  but WITHOUT ANY WARRANTY;            sera utile, mais SANS AUCUNE
+ *  without even the implied             GARANTIE : sans même la garantie
+ *  warranty of MERCHANTABILITY          implicite de COMMERCIALISABILITÉ
+ *  or FITNESS FOR A PARTICULAR          ni d’ADÉQUATION À UN OBJECTIF
+ *  PURPOSE.  See the GNU Affero         PARTICULIER. Consultez la Licence
+ *  General Public License for           Générale Publique GNU Affero
+ *  more details.                        pour plus de détails.
+ *
+ *  You should have received             Vous devriez avoir reçu une
+ *  a copy of the GNU Affero             copie de la Licence Générale
+ *  General Public License along         Publique GNU Affero avec
+ *  with OpenCADC.  If not, see          OpenCADC ; si ce n’est
+ *  <http://www.gnu.org/licenses/>.      pas le cas, consultez :
+ *                                       <http://www.gnu.org/licenses/>.
+ *
+ *
+ ************************************************************************
+ */
+
+package org.opencadc.gms;
+
+import ca.nrc.cadc.util.Log4jInit;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ParallelQueriesTest {
+    private static final Logger log = Logger.getLogger(ParallelQueriesTest.class);
+
+    static {
+        Log4jInit.setLevel("org.opencadc.gms", Level.INFO);
+    }
+
+    private static Map<Integer, Callable<String>> queries(int num, long delay) {
+        Map<Integer, Callable<String>> ret = new LinkedHashMap<>();
+        for (int i = 0; i < num; i++) {
+            final int key = i;
+            ret.put(key, () -> {
+                Thread.sleep(delay);
+                return "r" + key;
+            });
+        }
+        return ret;
+    }
+
+    @Test
+    public void testWaitNotCounted() throws Exception {
+        // 6 queries of 300ms on 2 helpers take 900ms: more than the timeout, but each query is shorter
+        ParallelQueries<Integer, String> pq = new ParallelQueries<>("test", 2, 2);
+        List<String> results = new ArrayList<>();
+        long start = System.currentTimeMillis();
+        Set<Integer> timedOut = pq.run(queries(6, 300L), 700L, (key, result, fail) -> {
+            Assert.assertNull(fail);
+            results.add(result);
+            return false;
+        });
+        long dt = System.currentTimeMillis() - start;
+        log.info("run: " + dt + "ms");
+
+        Assert.assertTrue("timed out: " + timedOut, timedOut.isEmpty());
+        Assert.assertEquals(6, results.size());
+        Assert.assertTrue("2 at a time: " + dt + "ms", dt >= 900L);
+    }
+
+    @Test
+    public void testTimeout() throws Exception {
+        ParallelQueries<Integer, String> pq = new ParallelQueries<>("test", 2, 2);
+        Map<Integer, Callable<String>> queries = queries(1, 10000L);
+        queries.put(1, () -> "fast");
+        List<String> results = new ArrayList<>();
+
+        long start = System.currentTimeMillis();
+        Set<Integer> timedOut = pq.run(queries, 200L, (key, result, fail) -> {
+            results.add(result);
+            return false;
+        });
+        long dt = System.currentTimeMillis() - start;
+
+        Assert.assertEquals(Set.of(0), timedOut);
+        Assert.assertEquals(List.of("fast"), results);
+        Assert.assertTrue("deadline: " + dt + "ms", dt < 5000L);
+    }
+
+    @Test
+    public void testStopAndFail() throws Exception {
+        ParallelQueries<Integer, String> pq = new ParallelQueries<>("test", 2, 2);
+        Map<Integer, Callable<String>> queries = queries(1, 10000L);
+        queries.put(1, () -> {
+            throw new IllegalStateException("failed");
+        });
+        queries.put(2, () -> "fast");
+
+        List<Exception> fails = new ArrayList<>();
+        long start = System.currentTimeMillis();
+        Set<Integer> timedOut = pq.run(queries, 10000L, (key, result, fail) -> {
+            if (fail != null) {
+                fails.add(fail);
+                return false;
+            }
+            return true;
+        });
+        long dt = System.currentTimeMillis() - start;
+
+        // queries 1 and 2 share a helper once query 0 occupies the other one
+        Assert.assertTrue(timedOut.isEmpty());
+        Assert.assertEquals(1, fails.size());
+        Assert.assertTrue(fails.get(0) instanceof IllegalStateException);
+        Assert.assertTrue("stopped: " + dt + "ms", dt < 5000L);
+    }
+
+    @Test
+    public void testCallerRuns() throws Exception {
+        // the only helper thread is busy with another caller
+        final ParallelQueries<Integer, String> pq = new ParallelQueries<>("test", 2, 1);
+        final CountDownLatch busy = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        Map<Integer, Callable<String>> blocking = new LinkedHashMap<>();
+        blocking.put(0, () -> {
+            busy.countDown();
+            release.await();
+            return "other";
+        });
+        Thread other = new Thread(() -> {
+            try {
+                pq.run(blocking, 10000L, (key, result, fail) -> false);
+            } catch (Exception ex) {
+                log.error("unexpected", ex);
+            }
+        });
+        other.start();
+        try {
+            Assert.assertTrue(busy.await(5, TimeUnit.SECONDS));
+
+            final Thread caller = Thread.currentThread();
+            Map<Integer, Callable<String>> queries = new LinkedHashMap<>();
+            for (int i = 0; i < 3; i++) {
+                queries.put(i, () -> (Thread.currentThread() == caller) ? "caller" : "helper");
+            }
+            List<String> results = new ArrayList<>();
+            Set<Integer> timedOut = pq.run(queries, 10000L, (key, result, fail) -> {
+                results.add(result);
+                return false;
+            });
+            Assert.assertTrue(timedOut.isEmpty());
+            Assert.assertEquals(List.of("caller", "caller", "caller"), results);
+        } finally {
+            release.countDown();
+            other.join(5000L);
+        }
+    }
+}
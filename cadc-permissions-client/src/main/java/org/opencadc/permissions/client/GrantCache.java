@@ -0,0 +1,153 @@
+/*
+ ************************************************************************
+ *******************  CANADIAN ASTRONOMY DATA CENTRE  *******************
+ **************  CENTRE CANADIEN DE DONNÉES ASTRONOMIQUES  **************
+ *
+ *  (c) 2026.                            (c) 2026.
+ *  Government of Canada                 Gouvernement du Canada
+ *  National Research Council            Conseil national de recherches
+ *  Ottawa, Canada, K1A 0R6              Ottawa, Canada, K1A 0R6
+ *  All rights reserved                  Tous droits réservés
+ *
+ *  NRC disclaims any warranties,        Le CNRC dénie toute garantie
+ *  expressed, implied, or               énoncée, implicite ou légale,
+ *  statutory, of any kind with          de quelque nature que ce
+ *  respect to the software,             soit, concernant le logiciel,
+ *  including without limitation         y compris sans restriction
+ *  any warranty of merchantability      toute garantie de valeur
+ *  or fitness for a particular          marchande ou de pertinence
+ *  purpose. NRC shall not be            pour un usage particulier.
+ *  liable in any event for any          Le CNRC ne pourra en aucun cas
+ *  damages, whether direct or           être tenu responsable de tout
+ *  indirect, special or general,        dommage, direct ou indirect,
+ *  consequential or incidental,         particulier ou général,
+ *  arising from the use of the          accessoire ou fortuit, résultant
+ *  software.  Neither the name          de l'utilisation du logiciel. Ni
+ *  of the National Research             le nom du Conseil National de
+ *  Council of Canada nor the            Recherches du Canada ni les noms
+ *  names of its contributors may        de ses  participants ne peuvent
+ *  be used to endorse or promote        être utilisés pour approuver ou
+ *  products derived from this           promouvoir les produits dérivés
+ *  software without specific prior      de ce logiciel sans autorisation
+ *  written permission.                  préalable et particulière
+ *                                       par écrit.
+ *
+ *  This file is part of the             Ce fichier fait partie du projet
+ *  OpenCADC project.                    OpenCADC.
+ *
+ *  OpenCADC is free software:           OpenCADC est un logiciel libre ;
+ *  you can redistribute it and/or       vous pouvez le redistribuer ou le
+ *  modify it under the terms of         modifier suivant les termes de
+ *  the GNU Affero General Public        la “GNU Affero General Public
+ *  License as published by the          License” telle que publiée
+ *  Free Software Foundation,            par la Free Software Foundation
+ *  either version 3 of the              : soit la version 3 de cette
+ *  License, or (at your option)         licence, soit (à votre gré)
+ *  any later version.                   toute version ultérieure.
+ *
+ *  OpenCADC is distributed in the       OpenCADC est distribué
+ *  hope that it will be useful,         dans l’espoir qu’il vous
+ *  but WITHOUT ANY WARRANTY;            sera utile, mais SANS AUCUNE
+ *  without even the implied             GARANTIE : sans même la garantie
+ *  warranty of MERCHANTABILITY          implicite de COMMERCIALISABILITÉ
+ *  or FITNESS FOR A PARTICULAR          ni d’ADÉQUATION À UN OBJECTIF
+ *  PURPOSE.  See the GNU Affero         PARTICULIER. Consultez la Licence
+ *  General Public License for           Générale Publique GNU Affero
+ *  more details.                        pour plus de détails.
+ *
+ *  You should have received             Vous devriez avoir reçu une
+ *  a copy of the GNU Affero             copie de la Licence Générale
+ *  General Public License along         Publique GNU Affero avec
+ *  with OpenCADC.  If not, see          OpenCADC ; si ce n’est
+ *  <http://www.gnu.org/licenses/>.      pas le cas, consultez :
+ *                                       <http://www.gnu.org/licenses/>.
+ *
+ *
+ ************************************************************************
+ */
+
+package org.opencadc.permissions.client;
+
+import java.net.URI;
+import java.util.function.LongSupplier;
+import org.opencadc.gms.ExpiringCache;
+import org.opencadc.permissions.Grant;
+
+/**
+ * Bounded cache of the grants returned by permissions services, keyed by service, asset and operation.
+ * A service that has no grant for the asset is cached as a null grant, so it is not asked again either.
+ * Entries never outlive the expiry date of the grant or the maximum age of the cache, and the least
+ * recently used entries are evicted when the cache is full. Cached grants are shared by all callers
+ * and must not be modified.
+ */
+class GrantCache {
+    static final class Entry {
+        final Grant grant;
+
+        Entry(Grant grant) {
+            this.grant = grant;
+        }
+    }
+
+    private final ExpiringCache<String, Entry> entries;
+
+    /**
+     * Constructor.
+     *
+     * @param maxEntries   maximum number of grants held
+     * @param maxAgeMillis maximum time a grant is held, also for grants with a later expiry date
+     */
+    GrantCache(int maxEntries, long maxAgeMillis) {
+        this(maxEntries, maxAgeMillis, System::currentTimeMillis);
+    }
+
+    GrantCache(int maxEntries, long maxAgeMillis, LongSupplier clock) {
+        this.entries = new ExpiringCache<>(maxEntries, maxAgeMillis, clock);
+    }
+
+    /**
+     * Get the grant a service returned before.
+     *
+     * @param serviceID permissions service
+     * @param assetID   the asset
+     * @param op        the operation
+     * @return the entry with the possibly null grant, or null if the service was not asked or the grant expired
+     */
+    Entry get(URI serviceID, URI assetID, PermissionsClient.Operation op) {
+        return entries.get(key(serviceID, assetID, op));
+    }
+
+    /**
+     * Add the grant a service returned.
+     *
+     * @param serviceID permissions service
+     * @param assetID   the asset
+     * @param op        the operation
+     * @param grant     the grant, or null if the service has no grant for the asset
+     */
+    void put(URI serviceID, URI assetID, PermissionsClient.Operation op, Grant grant) {
+        final Long expires = (grant == null) ? null : grant.getExpiryDate().getTime();
+        entries.put(key(serviceID, assetID, op), new Entry(grant), expires);
+    }
+
+    int size() {
+        return entries.size();
+    }
+
+    long getHits() {
+        return entries.getHits();
+    }
+
+    long getMisses() {
+        return entries.getMisses();
+    }
+
+    @Override
+    public String toString() {
+        return GrantCache.class.getSimpleName() + entries;
+    }
+
+    private static String key(URI serviceID, URI assetID, PermissionsClient.Operation op) {
+        return op.name() + " " + serviceID.toASCIIString() + " " + assetID.toASCIIString();
+    }
+}
@@ -81,15 +81,22 @@ import java.security.AccessControlException;
 import java.security.PrivilegedExceptionAction;
 import java.security.cert.CertificateException;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.Callable;
 import javax.security.auth.Subject;
 import org.apache.log4j.Logger;
+import org.opencadc.gms.ExpiringCache;
 import org.opencadc.gms.GroupURI;
 import org.opencadc.gms.IvoaGroupClient;
+import org.opencadc.gms.ParallelQueries;
+import org.opencadc.permissions.Grant;
 import org.opencadc.permissions.ReadGrant;
 import org.opencadc.permissions.WriteGrant;
+import org.opencadc.permissions.client.PermissionsClient.Operation;
 
 /**
  * Queries permission services for read or write permissions for an Artifact.
@@ -97,6 +104,26 @@ import org.opencadc.permissions.WriteGrant;
 public class PermissionsCheck {
     private static final Logger log = Logger.getLogger(PermissionsCheck.class);
 
+    // configuration of the grant queries and the grant cache, with system properties
+    public static final String MAX_THREADS = PermissionsCheck.class.getName() + ".maxThreads";
+    public static final String TIMEOUT = PermissionsCheck.class.getName() + ".timeout";
+    public static final String CACHE_SIZE = PermissionsCheck.class.getName() + ".cacheSize";
+    public static final String CACHE_MAX_AGE = PermissionsCheck.class.getName() + ".cacheMaxAge";
+    private static final int DEFAULT_MAX_THREADS = 8;
+    private static final long DEFAULT_TIMEOUT = 30000L; // ms
+    private static final int DEFAULT_CACHE_SIZE = 10000;
+    private static final long DEFAULT_CACHE_MAX_AGE = 60000L; // ms
+
+    private static final long QUERY_TIMEOUT = Long.getLong(TIMEOUT, DEFAULT_TIMEOUT);
+    private static final int MAX_PARALLEL = Integer.getInteger(MAX_THREADS, DEFAULT_MAX_THREADS);
+    // helper threads are shared by concurrent callers: when all are busy a caller queries the services itself
+    private static final ParallelQueries<URI, Grant> QUERIES = (MAX_PARALLEL < 2) ? null
+            : new ParallelQueries<>(PermissionsCheck.class.getSimpleName() + "-query", MAX_PARALLEL, 4 * MAX_PARALLEL);
+    private static final GrantCache GRANT_CACHE = createGrantCache();
+
+    // clients by serviceID, so the service URL is only looked up once per cache max age
+    private static final ExpiringCache<URI, PermissionsClient> CLIENTS = createClientCache();
+
     private final URI artifactURI;
     private final boolean authenticateOnly;
     private final WebServiceLogInfo logInfo;
@@ -135,6 +162,26 @@ public class PermissionsCheck {
 
     }
 
+    // a cache size or max age of 0 disables the cache
+    private static GrantCache createGrantCache() {
+        int size = Integer.getInteger(CACHE_SIZE, DEFAULT_CACHE_SIZE);
+        long maxAge = Long.getLong(CACHE_MAX_AGE, DEFAULT_CACHE_MAX_AGE);
+        if (size <= 0 || maxAge <= 0) {
+            return null;
+        }
+        return new GrantCache(size, maxAge);
+    }
+
+    // clients expire with the grants, so a service that moved is looked up again
+    private static ExpiringCache<URI, PermissionsClient> createClientCache() {
+        int size = Integer.getInteger(CACHE_SIZE, DEFAULT_CACHE_SIZE);
+        long maxAge = Long.getLong(CACHE_MAX_AGE, DEFAULT_CACHE_MAX_AGE);
+        if (size <= 0 || maxAge <= 0) {
+            return null;
+        }
+        return new ExpiringCache<>(size, maxAge);
+    }
+
     private Subject createOpsSubject() {
         File opscert = new File(System.getProperty("user.home") + "/.ssl/cadcproxy.pem");
         if (opscert.exists()) {
@@ -208,8 +255,9 @@ public class PermissionsCheck {
 
         try {
             if (CredUtil.checkCredentials()) {
+                // only one membership is needed: stop at the first GMS service that finds one
                 IvoaGroupClient client = new IvoaGroupClient();
-                Set<GroupURI> mems = client.getMemberships(granted);
+                Set<GroupURI> mems = client.getMemberships(granted, true);
                 if (!mems.isEmpty()) {
                     StringBuilder sb = new StringBuilder("read: ");
                     for (GroupURI g : mems) {
@@ -219,6 +267,9 @@ public class PermissionsCheck {
                     return;
                 }
             }
+        } catch (TransientException ex) {
+            // GMS services that did not respond in time
+            throw ex;
         } catch (IOException ex) {
             throw new RuntimeException("unexpected failure", ex);
         } catch (CertificateException ex) {
@@ -260,6 +311,8 @@ public class PermissionsCheck {
                 for (WriteGrant g : grants) {
                     granted.addAll(g.getGroups());
                 }
+            } catch (TransientException ex) {
+                throw ex;
             } catch (Exception ex) {
                 throw new RuntimeException("unexpected exception calling permissions service(s)", ex);
             }
@@ -271,8 +324,9 @@ public class PermissionsCheck {
 
         try {
             if (CredUtil.checkCredentials()) {
+                // only one membership is needed: stop at the first GMS service that finds one
                 IvoaGroupClient client = new IvoaGroupClient();
-                Set<GroupURI> mems = client.getMemberships(granted);
+                Set<GroupURI> mems = client.getMemberships(granted, true);
                 if (!mems.isEmpty()) {
                     StringBuilder sb = new StringBuilder("write: ");
                     for (GroupURI g : mems) {
@@ -282,6 +336,9 @@ public class PermissionsCheck {
                     return;
                 }
             }
+        } catch (TransientException ex) {
+            // GMS services that did not respond in time
+            throw ex;
         } catch (IOException ex) {
             throw new RuntimeException("unexpected failure", ex);
         } catch (CertificateException ex) {
@@ -303,31 +360,8 @@ public class PermissionsCheck {
 
         @Override
         public List<ReadGrant> run() throws Exception {
-            // TODO: could call multiple services in parallel
-            List<ReadGrant> ret = new ArrayList<>();
-            boolean partialSuccess = false;
-            URI lastServiceFail = null;
-            Exception lastFail = null;
-            for (URI ps : this.readGrantServices) {
-                try {
-                    PermissionsClient pc = new PermissionsClient(ps);
-                    ReadGrant grant = pc.getReadGrant(this.artifactURI);
-                    if (grant != null) {
-                        ret.add(grant);
-                    }
-                    partialSuccess = true;
-                } catch (ResourceNotFoundException ex) {
-                    log.warn("failed to find granting service: " + ps + " -- cause: " + ex);
-                } catch (Exception ex) {
-                    log.warn("failed to call granting service: " + ps + " -- casuse: " + ex);
-                    lastServiceFail = ps;
-                    lastFail = ex;
-                }
-            }
-            if (!partialSuccess) {
-                throw new RuntimeException("failed to call granting service: " + lastServiceFail, lastFail);
-            }
-            return ret;
+            // a read is allowed by any service that responds
+            return getGrants(this.artifactURI, this.readGrantServices, Operation.read, ReadGrant.class, true);
         }
     }
 
@@ -343,20 +377,132 @@ public class PermissionsCheck {
 
         @Override
         public List<WriteGrant> run() throws Exception {
-            // TODO: could call multiple services in parallel
-            List<WriteGrant> ret = new ArrayList<>();
-            for (URI ps : this.writeGrantServices) {
+            return getGrants(this.artifactURI, this.writeGrantServices, Operation.write, WriteGrant.class, false);
+        }
+    }
+
+    /**
+     * Get the grants of the services for an asset. Cached grants are used, and the other services are
+     * queried in parallel (up to the MAX_THREADS system property at a time) with the calling subject;
+     * each query must complete within the TIMEOUT system property once it has started. Services that
+     * are not found in the registry are skipped.
+     *
+     * @param asset    the asset
+     * @param services permissions services
+     * @param op       the operation
+     * @param type     the grant class of the operation
+     * @param partial  true to only fail if no service responds, false to fail if any service fails
+     * @return list of grants
+     * @throws Exception the failure of a service query
+     * @throws TransientException the services did not respond within the timeout
+     */
+    private static <T extends Grant> List<T> getGrants(URI asset, List<URI> services, Operation op,
+            Class<T> type, boolean partial) throws Exception {
+        GrantQueries<T> result = new GrantQueries<>(type, partial);
+        List<URI> todo = new ArrayList<>();
+        for (URI ps : services) {
+            GrantCache.Entry cached = (GRANT_CACHE == null) ? null : GRANT_CACHE.get(ps, asset, op);
+            if (cached != null) {
+                result.add(cached.grant);
+            } else {
+                todo.add(ps);
+            }
+        }
+        if (GRANT_CACHE != null) {
+            log.debug(GRANT_CACHE);
+        }
+
+        if (todo.size() < 2 || QUERIES == null) {
+            for (URI ps : todo) {
                 try {
-                    PermissionsClient pc = new PermissionsClient(ps);
-                    WriteGrant grant = pc.getWriteGrant(this.artifactURI);
-                    if (grant != null) {
-                        ret.add(grant);
-                    }
-                } catch (ResourceNotFoundException ex) {
-                    log.warn("failed to find granting service: " + ps + " -- cause: " + ex);
+                    result.add(queryGrant(ps, asset, op));
+                } catch (Exception ex) {
+                    result.fail(ps, ex);
                 }
             }
-            return ret;
+            return result.getGrants();
+        }
+
+        Map<URI, Callable<Grant>> queries = new LinkedHashMap<>();
+        for (URI ps : todo) {
+            queries.put(ps, () -> queryGrant(ps, asset, op));
+        }
+        Set<URI> timedOut = QUERIES.run(queries, QUERY_TIMEOUT, (ps, grant, ex) -> {
+            if (ex != null) {
+                result.fail(ps, ex);
+            } else {
+                result.add(grant);
+            }
+            return false;
+        });
+        if (!timedOut.isEmpty()) {
+            String msg = "timeout: no response from " + timedOut + " within " + QUERY_TIMEOUT + "ms";
+            if (partial && result.success) {
+                log.warn("failed to call granting service(s) -- cause: " + msg);
+                return result.getGrants();
+            }
+            throw new TransientException(msg);
+        }
+        return result.getGrants();
+    }
+
+    // get a grant from a service, with a reused client, and cache it
+    private static Grant queryGrant(URI serviceID, URI asset, Operation op)
+            throws ResourceNotFoundException, TransientException {
+        PermissionsClient pc = (CLIENTS == null) ? null : CLIENTS.get(serviceID);
+        if (pc == null) {
+            pc = new PermissionsClient(serviceID);
+            if (CLIENTS != null) {
+                CLIENTS.put(serviceID, pc);
+            }
+        }
+        Grant grant = pc.getGrant(asset, op);
+        if (GRANT_CACHE != null) {
+            GRANT_CACHE.put(serviceID, asset, op, grant);
+        }
+        return grant;
+    }
+
+    // grants and failures of the services queried for one asset
+    private static class GrantQueries<T extends Grant> {
+        private final Class<T> type;
+        private final boolean partial;
+        private final List<T> grants = new ArrayList<>();
+
+        boolean success = false;
+        private URI lastServiceFail;
+        private Exception lastFail;
+
+        GrantQueries(Class<T> type, boolean partial) {
+            this.type = type;
+            this.partial = partial;
+        }
+
+        void add(Grant grant) {
+            if (grant != null) {
+                grants.add(type.cast(grant));
+            }
+            success = true;
+        }
+
+        void fail(URI ps, Exception ex) throws Exception {
+            if (ex instanceof ResourceNotFoundException) {
+                log.warn("failed to find granting service: " + ps + " -- cause: " + ex);
+                return;
+            }
+            if (!partial) {
+                throw ex;
+            }
+            log.warn("failed to call granting service: " + ps + " -- cause: " + ex);
+            lastServiceFail = ps;
+            lastFail = ex;
+        }
+
+        List<T> getGrants() {
+            if (partial && !success) {
+                throw new RuntimeException("failed to call granting service: " + lastServiceFail, lastFail);
+            }
+            return grants;
         }
     }
 
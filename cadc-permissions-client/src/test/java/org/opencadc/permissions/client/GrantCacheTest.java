@@ -0,0 +1,141 @@
+/*
+ ************************************************************************
+ *******************  CANADIAN ASTRONOMY DATA CENTRE  *******************
+ **************  CENTRE CANADIEN DE DONNÉES ASTRONOMIQUES  **************
+ *
+ *  (c) 2026.                            (c) 2026.
+ *  Government of Canada                 Gouvernement du Canada
+ *  National Research Council            Conseil national de recherches
+ *  Ottawa, Canada, K1A 0R6              Ottawa, Canada, K1A 0R6
+ *  All rights reserved                  Tous droits réservés
+ *
+ *  NRC disclaims any warranties,        Le CNRC dénie toute garantie
+ *  expressed, implied, or               énoncée, implicite ou légale,
+ *  statutory, of any kind with          de quelque nature que ce
+ *  respect to the software,             soit, concernant le logiciel,
+ *  including without limitation         y compris sans restriction
+ *  any warranty of merchantability      toute garantie de valeur
+ *  or fitness for a particular          marchande ou de pertinence
+ *  purpose. NRC shall not be            pour un usage particulier.
+ *  liable in any event for any          Le CNRC ne pourra en aucun cas
+ *  damages, whether direct or           être tenu responsable de tout
+ *  indirect, special or general,        dommage, direct ou indirect,
+ *  consequential or incidental,         particulier ou général,
+ *  arising from the use of the          accessoire ou fortuit, résultant
+ *  software.  Neither the name          de l'utilisation du logiciel. Ni
+ *  of the National Research             le nom du Conseil National de
+ *  Council of Canada nor the            Recherches du Canada ni les noms
+ *  names of its contributors may        de ses  participants ne peuvent
+ *  be used to endorse or promote        être utilisés pour approuver ou
+ *  products derived from this           promouvoir les produits dérivés
+ *  software without specific prior      de ce logiciel sans autorisation
+ *  written permission.                  préalable et particulière
+ *                                       par écrit.
+ *
+ *  This file is part of the             Ce fichier fait partie du projet
+ *  OpenCADC project.                    OpenCADC.
+ *
+ *  OpenCADC is free software:           OpenCADC est un logiciel libre ;
+ *  you can redistribute it and/or       vous pouvez le redistribuer ou le
+ *  modify it under the terms of         modifier suivant les termes de
+ *  the GNU Affero General Public        la “GNU Affero General Public
+ *  License as published by the          License” telle que publiée
+ *  Free Software Foundation,            par la Free Software Foundation
+ *  either version 3 of the              : soit la version 3 de cette
+ *  License, or (at your option)         licence, soit (à votre gré)
+ *  any later version.                   toute version ultérieure.
+ *
+ *  OpenCADC is distributed in the       OpenCADC est distribué
+ *  hope that it will be useful,         dans l’espoir qu’il vous
+ *  but WITHOUT ANY WARRANTY;            sera utile, mais SANS AUCUNE
+ *  without even the implied             GARANTIE : sans même la garantie
+ *  warranty of MERCHANTABILITY          implicite de COMMERCIALISABILITÉ
+ *  or FITNESS FOR A PARTICULAR          ni d’ADÉQUATION À UN OBJECTIF
+ *  PURPOSE.  See the GNU Affero         PARTICULIER. Consultez la Licence
+ *  General Public License for           Générale Publique GNU Affero
+ *  more details.                        pour plus de détails.
+ *
+ *  You should have received             Vous devriez avoir reçu une
+ *  a copy of the GNU Affero             copie de la Licence Générale
+ *  General Public License along         Publique GNU Affero avec
+ *  with OpenCADC.  If not, see          OpenCADC ; si ce n’est
+ *  <http://www.gnu.org/licenses/>.      pas le cas, consultez :
+ *                                       <http://www.gnu.org/licenses/>.
+ *
+ *
+ ************************************************************************
+ */
+
+package org.opencadc.permissions.client;
+
+import ca.nrc.cadc.util.Log4jInit;
+import java.net.URI;
+import java.util.Date;
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.junit.Assert;
+import org.junit.Test;
+import org.opencadc.permissions.ReadGrant;
+import org.opencadc.permissions.WriteGrant;
+import org.opencadc.permissions.client.PermissionsClient.Operation;
+
+public class GrantCacheTest {
+    private static final Logger log = Logger.getLogger(GrantCacheTest.class);
+
+    static {
+        Log4jInit.setLevel("org.opencadc.permissions", Level.INFO);
+    }
+
+    private static final URI SERVICE1 = URI.create("ivo://example.net/perms1");
+    private static final URI SERVICE2 = URI.create("ivo://example.net/perms2");
+    private static final URI ASSET = URI.create("cadc:TEST/file.fits");
+
+    @Test
+    public void testGetPut() {
+        GrantCache cache = new GrantCache(10, 60000L);
+        Assert.assertNull(cache.get(SERVICE1, ASSET, Operation.read));
+
+        ReadGrant grant = new ReadGrant(ASSET, new Date(System.currentTimeMillis() + 60000L), true);
+        cache.put(SERVICE1, ASSET, Operation.read, grant);
+        GrantCache.Entry e = cache.get(SERVICE1, ASSET, Operation.read);
+        Assert.assertNotNull(e);
+        Assert.assertSame(grant, e.grant);
+
+        // keyed by service and operation
+        Assert.assertNull(cache.get(SERVICE2, ASSET, Operation.read));
+        Assert.assertNull(cache.get(SERVICE1, ASSET, Operation.write));
+
+        // no grant is cached too
+        cache.put(SERVICE2, ASSET, Operation.read, null);
+        e = cache.get(SERVICE2, ASSET, Operation.read);
+        Assert.assertNotNull(e);
+        Assert.assertNull(e.grant);
+
+        Assert.assertEquals(2, cache.getHits());
+        Assert.assertEquals(3, cache.getMisses());
+        log.info(cache);
+    }
+
+    @Test
+    public void testExpiry() {
+        AtomicLong now = new AtomicLong(System.currentTimeMillis());
+        GrantCache cache = new GrantCache(10, 60000L, now::get);
+        cache.put(SERVICE1, ASSET, Operation.write, new WriteGrant(ASSET, new Date(now.get() - 1L)));
+        Assert.assertNull("expired grant", cache.get(SERVICE1, ASSET, Operation.write));
+        Assert.assertEquals(0, cache.size());
+
+        // held until the expiry date of the grant
+        cache.put(SERVICE1, ASSET, Operation.write, new WriteGrant(ASSET, new Date(now.get() + 50L)));
+        Assert.assertNotNull(cache.get(SERVICE1, ASSET, Operation.write));
+        now.addAndGet(50L);
+        Assert.assertNull("grant expired in cache", cache.get(SERVICE1, ASSET, Operation.write));
+
+        // no grant only expires after the max age
+        cache.put(SERVICE2, ASSET, Operation.write, null);
+        now.addAndGet(59999L);
+        Assert.assertNotNull(cache.get(SERVICE2, ASSET, Operation.write));
+        now.addAndGet(1L);
+        Assert.assertNull(cache.get(SERVICE2, ASSET, Operation.write));
+    }
+}
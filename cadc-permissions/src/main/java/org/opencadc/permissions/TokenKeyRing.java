@@ -0,0 +1,300 @@
+/*
+ ************************************************************************
+ *******************  CANADIAN ASTRONOMY DATA CENTRE  *******************
+ **************  CENTRE CANADIEN DE DONNÉES ASTRONOMIQUES  **************
+ *
+ *  (c) 2026.                            (c) 2026.
+ *  Government of Canada                 Gouvernement du Canada
+ *  National Research Council            Conseil national de recherches
+ *  Ottawa, Canada, K1A 0R6              Ottawa, Canada, K1A 0R6
+ *  All rights reserved                  Tous droits réservés
+ *
+ *  NRC disclaims any warranties,        Le CNRC dénie toute garantie
+ *  expressed, implied, or               énoncée, implicite ou légale,
+ *  statutory, of any kind with          de quelque nature que ce
+ *  respect to the software,             soit, concernant le logiciel,
+ *  including without limitation         y compris sans restriction
+ *  any warranty of merchantability      toute garantie de valeur
+ *  or fitness for a particular          marchande ou de pertinence
+ *  purpose. NRC shall not be            pour un usage particulier.
+ *  liable in any event for any          Le CNRC ne pourra en aucun cas
+ *  damages, whether direct or           être tenu responsable de tout
+ *  indirect, special or general,        dommage, direct ou indirect,
+ *  consequential or incidental,         particulier ou général,
+ *  arising from the use of the          accessoire ou fortuit, résultant
+ *  software.  Neither the name          de l'utilisation du logiciel. Ni
+ *  of the National Research             le nom du Conseil National de
+ *  Council of Canada nor the            Recherches du Canada ni les noms
+ *  names of its contributors may        de ses  participants ne peuvent
+ *  be used to endorse or promote        être utilisés pour approuver ou
+ *  products derived from this           promouvoir les produits dérivés
+ *  software without specific prior      de ce logiciel sans autorisation
+ *  written permission.                  préalable et particulière
+ *                                       par écrit.
+ *
+ *  This file is part of the             Ce fichier fait partie du projet
+ *  OpenCADC project.                    OpenCADC.
+ *
+ *  OpenCADC is free software:           OpenCADC est un logiciel libre ;
+ *  you can redistribute it and/or       vous pouvez le redistribuer ou le
+ *  modify it under the terms of         modifier suivant les termes de
+ *  the GNU Affero General Public        la “GNU Affero General Public
+ *  License as published by the          License” telle que publiée
+ *  Free Software Foundation,            par la Free Software Foundation
+ *  either version 3 of the              : soit la version 3 de cette
+ *  License, or (at your option)         licence, soit (à votre gré)
+ *  any later version.                   toute version ultérieure.
+ *
+ *  OpenCADC is distributed in the       OpenCADC est distribué
+ *  hope that it will be useful,         dans l’espoir qu’il vous
+ *  but WITHOUT ANY WARRANTY;            sera utile, mais SANS AUCUNE
+ *  without even the implied             GARANTIE : sans même la garantie
+ *  warranty of MERCHANTABILITY          implicite de COMMERCIALISABILITÉ
+ *  or FITNESS FOR A PARTICULAR          ni d’ADÉQUATION À UN OBJECTIF
+ *  PURPOSE.  See the GNU Affero         PARTICULIER. Consultez la Licence
+ *  General Public License for           Générale Publique GNU Affero
+ *  more details.                        pour plus de détails.
+ *
+ *  You should have received             Vous devriez avoir reçu une
+ *  a copy of the GNU Affero             copie de la Licence Générale
+ *  General Public License along         Publique GNU Affero avec
+ *  with OpenCADC.  If not, see          OpenCADC ; si ce n’est
+ *  <http://www.gnu.org/licenses/>.      pas le cas, consultez :
+ *                                       <http://www.gnu.org/licenses/>.
+ *
+ *
+ ************************************************************************
+ */
+
+package org.opencadc.permissions;
+
+import ca.nrc.cadc.util.RsaSignatureGenerator;
+import ca.nrc.cadc.util.RsaSignatureVerifier;
+import java.io.File;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+import org.apache.log4j.Logger;
+
+/**
+ * Set of keys for pre-authorized tokens, loaded from a directory so keys can be rotated
+ * without restarting. Each key has a short key ID taken from its file names:
+ * {id}-pub.key is the public key used to validate tokens and {id}-priv.key, if present,
+ * the private key used to generate them. Tokens are generated with the private key with
+ * the greatest ID (e.g. a date) and carry that ID so the validating key is found directly.
+ *
+ * <p>The key with ID "default" is the key of tokens without a key ID: tokens generated
+ * with it carry no ID, as with a TokenTool with a single key, and it is only used to
+ * generate tokens when it is the only private key.
+ *
+ * <p>The directory is checked for new or removed keys at most once per check interval,
+ * and also when a token has an unknown key ID. To rotate keys, add the new public key to
+ * all the services that validate tokens before adding the new private key.
+ */
+public class TokenKeyRing {
+    private static final Logger log = Logger.getLogger(TokenKeyRing.class);
+
+    public static final String DEFAULT_KEY_ID = "default";
+    public static final String PUBLIC_KEY_SUFFIX = "-pub.key";
+    public static final String PRIVATE_KEY_SUFFIX = "-priv.key";
+
+    private static final long DEFAULT_CHECK_INTERVAL = 60000L; // ms
+    private static final Pattern KEY_ID = Pattern.compile("[A-Za-z0-9._]{1,32}");
+
+    /**
+     * The key to generate tokens with.
+     */
+    static class SigningKey {
+        final String keyID; // null for the default key
+        final RsaSignatureGenerator generator;
+
+        SigningKey(String keyID, RsaSignatureGenerator generator) {
+            this.keyID = keyID;
+            this.generator = generator;
+        }
+    }
+
+    // key loaded from a file, reused while the file is not modified
+    private static class LoadedKey<T> {
+        final T key;
+        final long lastModified;
+
+        LoadedKey(T key, long lastModified) {
+            this.key = key;
+            this.lastModified = lastModified;
+        }
+    }
+
+    // immutable snapshot of the keys in the directory
+    private static class Keys {
+        final Map<String, LoadedKey<RsaSignatureVerifier>> verifiers;
+        final Map<String, LoadedKey<RsaSignatureGenerator>> generators;
+        final SigningKey signingKey;
+        final long dirModified;
+
+        Keys(Map<String, LoadedKey<RsaSignatureVerifier>> verifiers,
+                Map<String, LoadedKey<RsaSignatureGenerator>> generators, SigningKey signingKey, long dirModified) {
+            this.verifiers = verifiers;
+            this.generators = generators;
+            this.signingKey = signingKey;
+            this.dirModified = dirModified;
+        }
+    }
+
+    private final File dir;
+    private final long checkInterval;
+
+    private volatile Keys keys;
+    private volatile long lastCheck;
+
+    /**
+     * Constructor.
+     *
+     * @param dir directory of the key files
+     */
+    public TokenKeyRing(File dir) {
+        this(dir, DEFAULT_CHECK_INTERVAL);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param dir           directory of the key files
+     * @param checkInterval minimum time in milliseconds between checks of the directory
+     */
+    public TokenKeyRing(File dir, long checkInterval) {
+        if (dir == null || !dir.isDirectory()) {
+            throw new IllegalArgumentException("invalid key directory: " + dir);
+        }
+        this.dir = dir;
+        this.checkInterval = checkInterval;
+        this.keys = load(new Keys(Collections.emptyMap(), Collections.emptyMap(), null, 0L));
+        this.lastCheck = System.currentTimeMillis();
+    }
+
+    /**
+     * @return IDs of the keys that can validate tokens
+     */
+    public Set<String> getKeyIDs() {
+        check(false);
+        return keys.verifiers.keySet();
+    }
+
+    /**
+     * Get the key to validate tokens with the given key ID.
+     *
+     * @param keyID key ID from the token, or null for tokens without one
+     * @return the verifier, or null if there is no such key
+     */
+    RsaSignatureVerifier getVerifier(String keyID) {
+        String id = (keyID == null) ? DEFAULT_KEY_ID : keyID;
+        LoadedKey<RsaSignatureVerifier> ret = keys.verifiers.get(id);
+        if (ret == null) {
+            // new key, or a key that was replaced in place
+            if (check(true)) {
+                ret = keys.verifiers.get(id);
+            }
+        } else {
+            check(false);
+        }
+        return (ret == null) ? null : ret.key;
+    }
+
+    /**
+     * @return the key to generate tokens with, or null if there is no private key
+     */
+    SigningKey getSigningKey() {
+        check(false);
+        return keys.signingKey;
+    }
+
+    // reload the keys if the directory changed, at most once per check interval;
+    // unknown forces a reload; returns true if the keys were reloaded
+    private boolean check(boolean unknown) {
+        long now = System.currentTimeMillis();
+        if (now - lastCheck < checkInterval) {
+            return false;
+        }
+        synchronized (this) {
+            if (now - lastCheck < checkInterval) {
+                return false;
+            }
+            lastCheck = now;
+            Keys cur = keys;
+            if (!unknown && dir.lastModified() == cur.dirModified) {
+                return false;
+            }
+            keys = load(cur);
+            return true;
+        }
+    }
+
+    private Keys load(Keys cur) {
+        long dirModified = dir.lastModified();
+        Map<String, LoadedKey<RsaSignatureVerifier>> verifiers = new HashMap<>();
+        Map<String, LoadedKey<RsaSignatureGenerator>> generators = new HashMap<>();
+        File[] files = dir.listFiles();
+        if (files == null) {
+            log.warn("failed to list key directory: " + dir + " -- keeping " + cur.verifiers.keySet());
+            return cur;
+        }
+        for (File f : files) {
+            String name = f.getName();
+            try {
+                if (name.endsWith(PUBLIC_KEY_SUFFIX)) {
+                    String id = getKeyID(name, PUBLIC_KEY_SUFFIX);
+                    if (id != null) {
+                        LoadedKey<RsaSignatureVerifier> k = cur.verifiers.get(id);
+                        if (k == null || k.lastModified != f.lastModified()) {
+                            k = new LoadedKey<>(new RsaSignatureVerifier(f), f.lastModified());
+                            log.info("loaded public key " + id + " from " + f);
+                        }
+                        verifiers.put(id, k);
+                    }
+                } else if (name.endsWith(PRIVATE_KEY_SUFFIX)) {
+                    String id = getKeyID(name, PRIVATE_KEY_SUFFIX);
+                    if (id != null) {
+                        LoadedKey<RsaSignatureGenerator> k = cur.generators.get(id);
+                        if (k == null || k.lastModified != f.lastModified()) {
+                            k = new LoadedKey<>(new RsaSignatureGenerator(f), f.lastModified());
+                            log.info("loaded private key " + id + " from " + f);
+                        }
+                        generators.put(id, k);
+                    }
+                }
+            } catch (RuntimeException ex) {
+                log.warn("failed to load key " + f + " -- SKIP: " + ex);
+            }
+        }
+
+        String signingID = null;
+        for (String id : generators.keySet()) {
+            if (DEFAULT_KEY_ID.equals(id)) {
+                continue;
+            }
+            if (signingID == null || id.compareTo(signingID) > 0) {
+                signingID = id;
+            }
+        }
+        SigningKey signingKey = null;
+        if (signingID != null) {
+            signingKey = new SigningKey(signingID, generators.get(signingID).key);
+        } else if (generators.containsKey(DEFAULT_KEY_ID)) {
+            signingKey = new SigningKey(null, generators.get(DEFAULT_KEY_ID).key);
+        }
+        log.debug("keys in " + dir + ": " + verifiers.keySet() + " signing key: " + signingID);
+        return new Keys(Collections.unmodifiableMap(verifiers), Collections.unmodifiableMap(generators),
+                signingKey, dirModified);
+    }
+
+    private static String getKeyID(String fileName, String suffix) {
+        String id = fileName.substring(0, fileName.length() - suffix.length());
+        if (!KEY_ID.matcher(id).matches()) {
+            log.warn("invalid key ID: " + id + " in " + fileName + " -- SKIP");
+            return null;
+        }
+        return id;
+    }
+}
@@ -76,6 +76,9 @@ import java.io.IOException;
 import java.net.URI;
 import java.security.AccessControlException;
 import java.security.InvalidKeyException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import org.apache.log4j.Logger;
 
 /**
@@ -94,8 +97,36 @@ public class TokenTool {
 
     private final RsaSignatureGenerator sg;
     private final RsaSignatureVerifier sv;
+    private final TokenKeyRing keyRing;
 
     private static final String TOKEN_DELIM = "~";
+    private static final char TOKEN_DELIM_CHAR = '~';
+
+    // values of the base 64 characters, including the substitutions of base64URLEncode
+    private static final int[] BASE64_VALUES = new int[128];
+
+    static {
+        Arrays.fill(BASE64_VALUES, -1);
+        String alphabet = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/";
+        for (int i = 0; i < alphabet.length(); i++) {
+            BASE64_VALUES[alphabet.charAt(i)] = i;
+        }
+        BASE64_VALUES['_'] = BASE64_VALUES['+'];
+        BASE64_VALUES['-'] = BASE64_VALUES['/'];
+    }
+
+    // content of a token with a valid signature
+    private static class TokenMeta {
+        String uri;
+        String grant;
+        String user;
+        // key that verified the signature, checked against the key ring when served from the cache
+        String keyID;
+        RsaSignatureVerifier verifier;
+    }
+
+    // optional cache of verified tokens, see setCacheSize
+    private volatile Map<String, TokenMeta> verifiedTokens;
 
     /**
      * Constructor for a TokenTool that can validate tokens.
@@ -108,6 +139,7 @@ public class TokenTool {
         }
         this.sv = new RsaSignatureVerifier(publicKey);
         this.sg = null;
+        this.keyRing = null;
     }
 
     /**
@@ -126,20 +158,39 @@ public class TokenTool {
         this.sv = new RsaSignatureVerifier(publicKey);
         ;
         this.sg = new RsaSignatureGenerator(privateKey);
+        this.keyRing = null;
     }
 
     public TokenTool(byte[] publicKey) {
         this.sv = new RsaSignatureVerifier(publicKey);
         this.sg = null;
+        this.keyRing = null;
     }
 
     public TokenTool(byte[] publicKey, byte[] privateKey) {
         this.sv = new RsaSignatureVerifier(publicKey);
         ;
         this.sg = new RsaSignatureGenerator(privateKey);
+        this.keyRing = null;
     }
 
 
+    /**
+     * Constructor for a TokenTool that uses the keys of a key ring: tokens are generated
+     * with its current private key, if any, and carry the ID of that key so they are
+     * validated with the matching public key.
+     *
+     * @param keyRing the keys
+     */
+    public TokenTool(TokenKeyRing keyRing) {
+        if (keyRing == null) {
+            throw new IllegalArgumentException("keyRing cannot be null");
+        }
+        this.sv = null;
+        this.sg = null;
+        this.keyRing = keyRing;
+    }
+
     /**
      * Generate an artifact token given the input parameters.
      *
@@ -149,7 +200,16 @@ public class TokenTool {
      * @return A pre-authorized signed token.
      */
     public String generateToken(URI uri, Class<? extends Grant> grantClass, String user) {
-        if (sg == null) {
+        RsaSignatureGenerator generator = sg;
+        String keyID = null;
+        if (keyRing != null) {
+            TokenKeyRing.SigningKey signingKey = keyRing.getSigningKey();
+            if (signingKey != null) {
+                generator = signingKey.generator;
+                keyID = signingKey.keyID;
+            }
+        }
+        if (generator == null) {
             throw new IllegalStateException("cannot generate token: no private key");
         }
 
@@ -171,7 +231,7 @@ public class TokenTool {
 
         String sig;
         try {
-            byte[] sigBytes = sg.sign(new ByteArrayInputStream(metaBytes));
+            byte[] sigBytes = generator.sign(new ByteArrayInputStream(metaBytes));
             sig = new String(Base64.encode(sigBytes));
             log.debug("Created signature: " + sig + " for meta: " + metaSb.toString());
         } catch (InvalidKeyException | IOException | RuntimeException e) {
@@ -189,6 +249,10 @@ public class TokenTool {
         log.debug("metaURLEncoded: " + metaURLEncoded);
         log.debug("sigURLEncoded: " + sigURLEncoded);
 
+        if (keyID != null) {
+            token.append(keyID);
+            token.append(TOKEN_DELIM);
+        }
         token.append(metaURLEncoded);
         token.append(TOKEN_DELIM);
         token.append(sigURLEncoded);
@@ -211,50 +275,34 @@ public class TokenTool {
             throws AccessControlException, IOException {
 
         log.debug("validating token: " + token);
-        String[] parts = token.split(TOKEN_DELIM);
-        if (parts.length != 2) {
-            log.debug("invalid format, not two parts");
-            throw new AccessControlException("Invalid auth token");
-        }
-
-        byte[] metaBytes = Base64.decode(base64URLDecode(parts[0]));
-        byte[] sigBytes = Base64.decode(base64URLDecode(parts[1]));
-
-        boolean verified;
-        try {
-            verified = sv.verify(new ByteArrayInputStream(metaBytes), sigBytes);
-        } catch (InvalidKeyException | RuntimeException e) {
-            log.debug("Received invalid signature", e);
-            throw new AccessControlException("Invalid auth token");
-        }
-        if (!verified) {
-            log.debug("verified==false");
-            throw new AccessControlException("Invalid auth token");
-        }
-
-        String[] metaParams = new String(metaBytes).split("&");
-        String uri = null;
-        String grant = null;
-        String user = null;
-        for (String metaParam : metaParams) {
-            log.debug("Processing param: " + metaParam);
-            int eqIndex = metaParam.indexOf("=");
-            if (eqIndex < 2) {
-                log.debug("invalid param key/value pair");
-                throw new AccessControlException("Invalid auth token");
-            }
-            String key = metaParam.substring(0, eqIndex);
-            String value = metaParam.substring(eqIndex + 1);
-            if (KEY_META_URI.equals(key)) {
-                uri = value;
+        final Map<String, TokenMeta> cache = this.verifiedTokens;
+        TokenMeta meta = null;
+        if (cache != null) {
+            synchronized (cache) {
+                meta = cache.get(token);
             }
-            if (KEY_META_GRANT.equals(key)) {
-                grant = value;
+            if (meta != null && keyRing != null && keyRing.getVerifier(meta.keyID) != meta.verifier) {
+                // key was removed or replaced since the token was verified
+                log.debug("[TokenTool.validateToken]: key changed, verifying again: " + meta.keyID);
+                synchronized (cache) {
+                    cache.remove(token);
+                }
+                meta = null;
             }
-            if (KEY_META_SUBJECT.equals(key)) {
-                user = value;
+        }
+        if (meta == null) {
+            meta = verifyToken(token);
+            if (cache != null) {
+                synchronized (cache) {
+                    cache.put(token, meta);
+                }
             }
+        } else {
+            log.debug("[TokenTool.validateToken]: verified token from cache");
         }
+        String uri = meta.uri;
+        String grant = meta.grant;
+        String user = meta.user;
         log.debug("[TokenTool.validateToken]: uri: " + uri);
         log.debug("[TokenTool.validateToken]: grant: " + grant);
         log.debug("[TokenTool.validateToken]: subject: " + user);
@@ -278,6 +326,165 @@ public class TokenTool {
 
     }
 
+    /**
+     * Keep the content of up to maxEntries verified tokens so that validating the same
+     * token again, e.g. by parallel readers of a file, does not verify the signature again.
+     * The expected uri and grant are still checked on every call. Only tokens with a valid
+     * signature are kept; the least recently used one is dropped when the cache is full.
+     * With a key ring, a cached token is only used while the key that verified it is still
+     * in the ring, so removing a key also revokes its cached tokens.
+     *
+     * @param maxEntries maximum number of tokens to keep, 0 to disable the cache (default)
+     */
+    public void setCacheSize(final int maxEntries) {
+        if (maxEntries < 0) {
+            throw new IllegalArgumentException("invalid maxEntries: " + maxEntries);
+        }
+        if (maxEntries == 0) {
+            this.verifiedTokens = null;
+            return;
+        }
+        this.verifiedTokens = new LinkedHashMap<String, TokenMeta>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, TokenMeta> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    // decode the token and verify the signature of its metadata in one pass over the token,
+    // without the intermediate strings of the url decode and split
+    private TokenMeta verifyToken(String token) throws AccessControlException, IOException {
+        // [keyID~]meta~signature
+        int delim = token.indexOf(TOKEN_DELIM_CHAR);
+        int keyDelim = -1;
+        if (delim >= 0) {
+            int next = token.indexOf(TOKEN_DELIM_CHAR, delim + 1);
+            if (next >= 0) {
+                keyDelim = delim;
+                delim = next;
+            }
+        }
+        if (delim < 0 || token.indexOf(TOKEN_DELIM_CHAR, delim + 1) >= 0) {
+            log.debug("invalid format, not two or three parts");
+            throw new AccessControlException("Invalid auth token");
+        }
+
+        RsaSignatureVerifier verifier;
+        String keyID = null;
+        if (keyRing != null) {
+            keyID = (keyDelim < 0) ? null : token.substring(0, keyDelim);
+            verifier = keyRing.getVerifier(keyID);
+            if (verifier == null) {
+                log.debug("unknown key ID: " + keyID);
+                throw new AccessControlException("Invalid auth token");
+            }
+        } else if (keyDelim < 0) {
+            verifier = sv;
+        } else {
+            log.debug("invalid format, key ID without key ring");
+            throw new AccessControlException("Invalid auth token");
+        }
+
+        byte[] metaBytes = base64URLDecode(token, keyDelim + 1, delim);
+        byte[] sigBytes = base64URLDecode(token, delim + 1, token.length());
+
+        boolean verified;
+        try {
+            verified = verifier.verify(new ByteArrayInputStream(metaBytes), sigBytes);
+        } catch (InvalidKeyException | RuntimeException e) {
+            log.debug("Received invalid signature", e);
+            throw new AccessControlException("Invalid auth token");
+        }
+        if (!verified) {
+            log.debug("verified==false");
+            throw new AccessControlException("Invalid auth token");
+        }
+
+        // key=value pairs separated by &
+        TokenMeta ret = new TokenMeta();
+        ret.keyID = keyID;
+        ret.verifier = verifier;
+        int start = 0;
+        while (start < metaBytes.length) {
+            int end = indexOf(metaBytes, (byte) '&', start, metaBytes.length);
+            int eqIndex = indexOf(metaBytes, (byte) '=', start, end);
+            if (eqIndex - start < 2) {
+                log.debug("invalid param key/value pair");
+                throw new AccessControlException("Invalid auth token");
+            }
+            if (regionEquals(metaBytes, start, eqIndex, KEY_META_URI)) {
+                ret.uri = new String(metaBytes, eqIndex + 1, end - eqIndex - 1);
+            } else if (regionEquals(metaBytes, start, eqIndex, KEY_META_GRANT)) {
+                ret.grant = new String(metaBytes, eqIndex + 1, end - eqIndex - 1);
+            } else if (regionEquals(metaBytes, start, eqIndex, KEY_META_SUBJECT)) {
+                ret.user = new String(metaBytes, eqIndex + 1, end - eqIndex - 1);
+            }
+            start = end + 1;
+        }
+        return ret;
+    }
+
+    // index of b in buf[start, end), or -1 if not found for '=' and end otherwise
+    private static int indexOf(byte[] buf, byte b, int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (buf[i] == b) {
+                return i;
+            }
+        }
+        return (b == '=') ? -1 : end;
+    }
+
+    private static boolean regionEquals(byte[] buf, int start, int end, String key) {
+        if (end - start != key.length()) {
+            return false;
+        }
+        for (int i = start; i < end; i++) {
+            if (buf[i] != key.charAt(i - start)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Decode a segment of a URL encoded base 64 string.
+     *
+     * @param s     The string to decode.
+     * @param start Start of the segment.
+     * @param end   End of the segment, exclusive.
+     * @return The decoded bytes.
+     * @throws AccessControlException if the segment is not base 64
+     */
+    static byte[] base64URLDecode(String s, int start, int end) throws AccessControlException {
+        byte[] ret = new byte[(end - start) * 3 / 4];
+        int len = 0;
+        int bits = 0;
+        int numBits = 0;
+        for (int i = start; i < end; i++) {
+            char c = s.charAt(i);
+            if (c == '=') {
+                break;
+            }
+            if (c <= ' ') {
+                continue; // line breaks
+            }
+            int v = (c < BASE64_VALUES.length) ? BASE64_VALUES[c] : -1;
+            if (v < 0) {
+                log.debug("invalid base 64 character: " + c);
+                throw new AccessControlException("Invalid auth token");
+            }
+            bits = (bits << 6) | v;
+            numBits += 6;
+            if (numBits >= 8) {
+                numBits -= 8;
+                ret[len++] = (byte) (bits >> numBits);
+                bits &= (1 << numBits) - 1;
+            }
+        }
+        return (len == ret.length) ? ret : Arrays.copyOf(ret, len);
+    }
+
     /**
      * Make a base 64 string safe for URLs.
      *
@@ -0,0 +1,164 @@
+/*
+ ************************************************************************
+ *******************  CANADIAN ASTRONOMY DATA CENTRE  *******************
+ **************  CENTRE CANADIEN DE DONNÉES ASTRONOMIQUES  **************
+ *
+ *  (c) 2026.                            (c) 2026.
+ *  Government of Canada                 Gouvernement du Canada
+ *  National Research Council            Conseil national de recherches
+ *  Ottawa, Canada, K1A 0R6              Ottawa, Canada, K1A 0R6
+ *  All rights reserved                  Tous droits réservés
+ *
+ *  NRC disclaims any warranties,        Le CNRC dénie toute garantie
+ *  expressed, implied, or               énoncée, implicite ou légale,
+ *  statutory, of any kind with          de quelque nature que ce
+ *  respect to the software,             soit, concernant le logiciel,
+ *  including without limitation         y compris sans restriction
+ *  any warranty of merchantability      toute garantie de valeur
+ *  or fitness for a particular          marchande ou de pertinence
+ *  purpose. NRC shall not be            pour un usage particulier.
+ *  liable in any event for any          Le CNRC ne pourra en aucun cas
+ *  damages, whether direct or           être tenu responsable de tout
+ *  indirect, special or general,        dommage, direct ou indirect,
+ *  consequential or incidental,         particulier ou général,
+ *  arising from the use of the          accessoire ou fortuit, résultant
+ *  software.  Neither the name          de l'utilisation du logiciel. Ni
+ *  of the National Research             le nom du Conseil National de
+ *  Council of Canada nor the            Recherches du Canada ni les noms
+ *  names of its contributors may        de ses  participants ne peuvent
+ *  be used to endorse or promote        être utilisés pour approuver ou
+ *  products derived from this           promouvoir les produits dérivés
+ *  software without specific prior      de ce logiciel sans autorisation
+ *  written permission.                  préalable et particulière
+ *                                       par écrit.
+ *
+ *  This file is part of the             Ce fichier fait partie du projet
+ *  OpenCADC project.                    OpenCADC.
+ *
+ *  OpenCADC is free software:           OpenCADC est un logiciel libre ;
+ *  you can redistribute it and/or       vous pouvez le redistribuer ou le
+ *  modify it under the terms of         modifier suivant les termes de
+ *  the GNU Affero General Public        la “GNU Affero General Public
+ *  License as published by the          License” telle que publiée
+ *  Free Software Foundation,            par la Free Software Foundation
+ *  either version 3 of the              : soit la version 3 de cette
+ *  License, or (at your option)         licence, soit (à votre gré)
+ *  any later version.                   toute version ultérieure.
+ *
+ *  OpenCADC is distributed in the       OpenCADC est distribué
+ *  hope that it will be useful,         dans l’espoir qu’il vous
+ *  but WITHOUT ANY WARRANTY;            sera utile, mais SANS AUCUNE
+ *  without even the implied             GARANTIE : sans même la garantie
+ *  warranty of MERCHANTABILITY          implicite de COMMERCIALISABILITÉ
+ *  or FITNESS FOR A PARTICULAR          ni d’ADÉQUATION À UN OBJECTIF
+ *  PURPOSE.  See the GNU Affero         PARTICULIER. Consultez la Licence
+ *  General Public License for           Générale Publique GNU Affero
+ *  more details.                        pour plus de détails.
+ *
+ *  You should have received             Vous devriez avoir reçu une
+ *  a copy of the GNU Affero             copie de la Licence Générale
+ *  General Public License along         Publique GNU Affero avec
+ *  with OpenCADC.  If not, see          OpenCADC ; si ce n’est
+ *  <http://www.gnu.org/licenses/>.      pas le cas, consultez :
+ *                                       <http://www.gnu.org/licenses/>.
+ *
+ *
+ ************************************************************************
+ */
+
+package org.opencadc.permissions;
+
+import ca.nrc.cadc.util.Log4jInit;
+import ca.nrc.cadc.util.RsaSignatureGenerator;
+import java.net.URI;
+import java.security.KeyPair;
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Measures the throughput of TokenTool.generateToken and validateToken, with and without
+ * the verification cache. The number of iterations can be set with system properties
+ * prefixed with this class name, e.g. -Dorg.opencadc.permissions.TokenToolBenchmarkTest.iterations=100000;
+ * the defaults keep the test quick.
+ */
+public class TokenToolBenchmarkTest {
+    private static final Logger log = Logger.getLogger(TokenToolBenchmarkTest.class);
+
+    private static final String PREFIX = TokenToolBenchmarkTest.class.getName();
+    private static final int WARMUP = Integer.getInteger(PREFIX + ".warmup", 100);
+    private static final int ITERATIONS = Integer.getInteger(PREFIX + ".iterations", 500);
+    private static final int KEY_LENGTH = Integer.getInteger(PREFIX + ".keyLength", 2048);
+
+    private static final URI ARTIFACT_URI = URI.create("cadc:TEST/long/file/path/file.fits");
+
+    private static TokenTool tokenTool;
+
+    private interface Operation {
+        void run(int i) throws Exception;
+    }
+
+    static {
+        Log4jInit.setLevel("org.opencadc.permissions", Level.INFO);
+    }
+
+    @BeforeClass
+    public static void setUpBeforeClass() throws Exception {
+        KeyPair keyPair = RsaSignatureGenerator.getKeyPair(KEY_LENGTH);
+        tokenTool = new TokenTool(keyPair.getPublic().getEncoded(), keyPair.getPrivate().getEncoded());
+    }
+
+    @Test
+    public void testGenerateToken() throws Exception {
+        measure("generateToken", new Operation() {
+            @Override
+            public void run(int i) throws Exception {
+                Assert.assertNotNull(tokenTool.generateToken(ARTIFACT_URI, ReadGrant.class, "user" + i));
+            }
+        });
+    }
+
+    @Test
+    public void testValidateToken() throws Exception {
+        final String token = tokenTool.generateToken(ARTIFACT_URI, ReadGrant.class, "user");
+        tokenTool.setCacheSize(0);
+        double uncached = measure("validateToken", new Operation() {
+            @Override
+            public void run(int i) throws Exception {
+                Assert.assertEquals("user", tokenTool.validateToken(token, ARTIFACT_URI, ReadGrant.class));
+            }
+        });
+
+        // the same token validated repeatedly, e.g. by parallel range readers of a file
+        tokenTool.setCacheSize(1000);
+        try {
+            double cached = measure("validateToken(cached)", new Operation() {
+                @Override
+                public void run(int i) throws Exception {
+                    Assert.assertEquals("user", tokenTool.validateToken(token, ARTIFACT_URI, ReadGrant.class));
+                }
+            });
+            Assert.assertTrue("cached " + cached + " ops/s uncached " + uncached + " ops/s", cached > uncached);
+        } finally {
+            tokenTool.setCacheSize(0);
+        }
+    }
+
+    // run the operation WARMUP times, then ITERATIONS times, and return the ops/s
+    private double measure(String name, Operation op) throws Exception {
+        for (int i = 0; i < WARMUP; i++) {
+            op.run(i);
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            op.run(WARMUP + i);
+        }
+        long nanos = System.nanoTime() - start;
+        double opsPerSecond = ITERATIONS * 1.0e9 / nanos;
+        log.info(String.format("%s: keyLength %d: %d ops %.3f ms/op %.1f ops/s", name, KEY_LENGTH, ITERATIONS,
+                nanos / 1.0e6 / ITERATIONS, opsPerSecond));
+        return opsPerSecond;
+    }
+}
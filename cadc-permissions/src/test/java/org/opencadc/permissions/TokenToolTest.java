@@ -72,6 +72,7 @@ import ca.nrc.cadc.util.Log4jInit;
 import ca.nrc.cadc.util.RsaSignatureGenerator;
 import java.io.File;
 import java.net.URI;
+import java.nio.file.Files;
 import java.security.AccessControlException;
 import java.security.KeyPair;
 import java.util.ArrayList;
@@ -290,4 +291,165 @@ public class TokenToolTest {
         }
     }
 
+    @Test
+    public void testBase64URLDecode() throws Exception {
+        TokenTool gen = new TokenTool(pubKeyFile, privateKeyFile);
+        for (int n = 0; n < 64; n++) {
+            StringBuilder user = new StringBuilder();
+            for (int i = 0; i < n; i++) {
+                user.append((char) ('a' + (i * 7) % 26));
+            }
+            String token = gen.generateToken(URI.create("cadc:TEST/file" + n + ".fits"), ReadGrant.class, user.toString());
+            for (String part : token.split("~")) {
+                byte[] expected = Base64.decode(TokenTool.base64URLDecode(part));
+                Assert.assertArrayEquals(expected, TokenTool.base64URLDecode(part, 0, part.length()));
+            }
+        }
+
+        try {
+            TokenTool.base64URLDecode("abc*", 0, 4);
+            Assert.fail("expected AccessControlException");
+        } catch (AccessControlException expected) {
+            log.debug("caught expected: " + expected);
+        }
+    }
+
+    @Test
+    public void testVerificationCache() throws Exception {
+        String uri = "cadc:TEST/file.fits";
+        TokenTool gen = new TokenTool(pubKeyFile, privateKeyFile);
+        TokenTool ver = new TokenTool(pubKeyFile);
+        ver.setCacheSize(2);
+        String token = gen.generateToken(URI.create(uri), ReadGrant.class, "user");
+        for (int i = 0; i < 3; i++) {
+            Assert.assertEquals("user", ver.validateToken(token, URI.create(uri), ReadGrant.class));
+
+            // expectations are checked for cached tokens
+            try {
+                ver.validateToken(token, URI.create("cadc:TEST/file2.fits"), ReadGrant.class);
+                Assert.fail("Should have failed with wrong uri");
+            } catch (AccessControlException expected) {
+                log.debug("caught expected: " + expected);
+            }
+            try {
+                ver.validateToken(token, URI.create(uri), WriteGrant.class);
+                Assert.fail("Should have failed with wrong grant");
+            } catch (AccessControlException expected) {
+                log.debug("caught expected: " + expected);
+            }
+        }
+
+        // invalid tokens are never accepted
+        String[] parts = token.split("~");
+        String tampered = parts[0] + "~" + TokenTool.base64URLEncode(new String(Base64.encode("junk".getBytes())));
+        for (int i = 0; i < 2; i++) {
+            try {
+                ver.validateToken(tampered, URI.create(uri), ReadGrant.class);
+                Assert.fail("Should have failed with invalid signature");
+            } catch (AccessControlException expected) {
+                log.debug("caught expected: " + expected);
+            }
+        }
+
+        // more tokens than the cache size
+        for (int i = 0; i < 5; i++) {
+            String t = gen.generateToken(URI.create("cadc:TEST/file" + i + ".fits"), WriteGrant.class, "user" + i);
+            Assert.assertEquals("user" + i, ver.validateToken(t, URI.create("cadc:TEST/file" + i + ".fits"), WriteGrant.class));
+        }
+        Assert.assertEquals("user", ver.validateToken(token, URI.create(uri), ReadGrant.class));
+
+        ver.setCacheSize(0);
+        Assert.assertEquals("user", ver.validateToken(token, URI.create(uri), ReadGrant.class));
+    }
+
+    @Test
+    public void testKeyRing() throws Exception {
+        File genDir = new File("build/resources/test/keyring-gen");
+        File verDir = new File("build/resources/test/keyring-ver");
+        try {
+            Assert.assertTrue(genDir.mkdirs() || genDir.isDirectory());
+            Assert.assertTrue(verDir.mkdirs() || verDir.isDirectory());
+            String uri = "cadc:TEST/file.fits";
+
+            // only the default key: tokens as generated with a single key
+            genKeys(genDir, verDir, TokenKeyRing.DEFAULT_KEY_ID);
+            TokenTool gen = new TokenTool(new TokenKeyRing(genDir, 0L));
+            TokenTool ver = new TokenTool(new TokenKeyRing(verDir, 0L));
+            ver.setCacheSize(10);
+            String token1 = gen.generateToken(URI.create(uri), ReadGrant.class, "user");
+            Assert.assertEquals(1, token1.split("~").length - 1);
+            Assert.assertEquals("user", ver.validateToken(token1, URI.create(uri), ReadGrant.class));
+            TokenTool single = new TokenTool(new File(verDir, TokenKeyRing.DEFAULT_KEY_ID + TokenKeyRing.PUBLIC_KEY_SUFFIX));
+            Assert.assertEquals("user", single.validateToken(token1, URI.create(uri), ReadGrant.class));
+
+            // new key: tokens carry its ID and earlier tokens stay valid
+            genKeys(genDir, verDir, "k20261018");
+            String token2 = gen.generateToken(URI.create(uri), ReadGrant.class, "user2");
+            Assert.assertTrue(token2, token2.startsWith("k20261018~"));
+            Assert.assertEquals("user2", ver.validateToken(token2, URI.create(uri), ReadGrant.class));
+            Assert.assertEquals("user", ver.validateToken(token1, URI.create(uri), ReadGrant.class));
+            try {
+                single.validateToken(token2, URI.create(uri), ReadGrant.class);
+                Assert.fail("Should have failed with key ID");
+            } catch (AccessControlException expected) {
+                log.debug("caught expected: " + expected);
+            }
+
+            // the key ID selects the key: a token signed with another key under that ID is invalid
+            try {
+                ver.validateToken("k20261018~" + token1, URI.create(uri), ReadGrant.class);
+                Assert.fail("Should have failed with wrong key");
+            } catch (AccessControlException expected) {
+                log.debug("caught expected: " + expected);
+            }
+            try {
+                ver.validateToken("unknown~" + token1, URI.create(uri), ReadGrant.class);
+                Assert.fail("Should have failed with unknown key");
+            } catch (AccessControlException expected) {
+                log.debug("caught expected: " + expected);
+            }
+
+            // removed key: also revokes the tokens it verified that are in the cache
+            Assert.assertTrue(new File(verDir, TokenKeyRing.DEFAULT_KEY_ID + TokenKeyRing.PUBLIC_KEY_SUFFIX).delete());
+            verDir.setLastModified(verDir.lastModified() + 1000L);
+            try {
+                ver.validateToken(token1, URI.create(uri), ReadGrant.class);
+                Assert.fail("Should have failed with removed key in cache");
+            } catch (AccessControlException expected) {
+                log.debug("caught expected: " + expected);
+            }
+            Assert.assertEquals("user2", ver.validateToken(token2, URI.create(uri), ReadGrant.class));
+            TokenKeyRing verRing = new TokenKeyRing(verDir, 0L);
+            Assert.assertEquals(1, verRing.getKeyIDs().size());
+            try {
+                new TokenTool(verRing).validateToken(token1, URI.create(uri), ReadGrant.class);
+                Assert.fail("Should have failed with removed key");
+            } catch (AccessControlException expected) {
+                log.debug("caught expected: " + expected);
+            }
+        } finally {
+            deleteDir(genDir);
+            deleteDir(verDir);
+        }
+    }
+
+    // new key pair in the generating dir, with the public key in the validating dir too
+    private static void genKeys(File genDir, File verDir, String keyID) throws Exception {
+        File pub = new File(genDir, keyID + TokenKeyRing.PUBLIC_KEY_SUFFIX);
+        RsaSignatureGenerator.genKeyPair(pub, new File(genDir, keyID + TokenKeyRing.PRIVATE_KEY_SUFFIX), 1024);
+        Files.copy(pub.toPath(), new File(verDir, pub.getName()).toPath());
+        // make sure the change is seen with a coarse file system timestamp
+        genDir.setLastModified(genDir.lastModified() + 1000L);
+        verDir.setLastModified(verDir.lastModified() + 1000L);
+    }
+
+    private static void deleteDir(File dir) {
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File f : files) {
+                f.delete();
+            }
+        }
+        dir.delete();
+    }
 }
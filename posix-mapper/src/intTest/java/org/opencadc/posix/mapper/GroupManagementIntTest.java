@@ -152,6 +152,50 @@ public class GroupManagementIntTest {
         });
     }
 
+    @Test
+    public void testChangedSinceDefaultGroup() throws Exception {
+        Subject.doAs(userSubject, (PrivilegedExceptionAction<Void>) () -> {
+            try {
+                // A new Group from the GID range exists before the User is created.
+                ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+                getGroups(byteArrayOutputStream, GroupManagementIntTest.TSV_CONTENT_TYPE,
+                        new String[]{"ivo://test.org/groups?" + randomGroupName()}, new int[0]);
+                final int gid = Integer.parseInt(byteArrayOutputStream.toString().trim().split("\t")[1]);
+
+                final HttpGet fullGet = new HttpGet(groupMapperURL, true);
+                fullGet.setRequestProperty("accept", GroupManagementIntTest.TSV_CONTENT_TYPE);
+                fullGet.prepare();
+                fullGet.getInputStream().readAllBytes();
+                final String cursor = fullGet.getResponseHeader("X-Mapping-Cursor");
+                Assert.assertNotNull("Missing change cursor", cursor);
+
+                final String username = randomGroupName();
+                final URL userMapperURL = new RegistryClient().getServiceURL(
+                        GroupManagementIntTest.POSIX_MAPPER_SERVICE_ID, Standards.POSIX_USERMAP, AuthMethod.TOKEN);
+                final HttpGet userGet = new HttpGet(new URL(userMapperURL + "?user=" + username), true);
+                userGet.setRequestProperty("accept", GroupManagementIntTest.TSV_CONTENT_TYPE);
+                userGet.prepare();
+                final int uid = Integer.parseInt(new String(userGet.getInputStream().readAllBytes())
+                                                         .trim().split("\t")[1]);
+                log.info("new default GID " + uid + " after GID " + gid);
+
+                // The default Group of the new User is included, whatever its GID.
+                final HttpGet changedGet = new HttpGet(new URL(groupMapperURL + "?changedSince=" + cursor), true);
+                changedGet.setRequestProperty("accept", GroupManagementIntTest.TSV_CONTENT_TYPE);
+                changedGet.prepare();
+                final String changed = new String(changedGet.getInputStream().readAllBytes());
+                Assert.assertTrue("Missing default group in " + changed,
+                        Arrays.asList(changed.split("\n")).contains(
+                                "ivo://default-group-should-be-ignored.opencadc.org/default-group?" + username
+                                + "\t" + uid));
+            } catch (Throwable throwable) {
+                throw new Exception(throwable.getMessage(), throwable);
+            }
+
+            return null;
+        });
+    }
+
     final String randomGroupName() {
         return RandomStringUtils.randomAlphabetic(4, 12);
     }
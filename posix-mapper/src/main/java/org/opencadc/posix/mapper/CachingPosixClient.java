@@ -0,0 +1,387 @@
+/*
+ ************************************************************************
+ *******************  CANADIAN ASTRONOMY DATA CENTRE  *******************
+ **************  CENTRE CANADIEN DE DONNÉES ASTRONOMIQUES  **************
+ *
+ *  (c) 2026.                            (c) 2026.
+ *  Government of Canada                 Gouvernement du Canada
+ *  National Research Council            Conseil national de recherches
+ *  Ottawa, Canada, K1A 0R6              Ottawa, Canada, K1A 0R6
+ *  All rights reserved                  Tous droits réservés
+ *
+ *  NRC disclaims any warranties,        Le CNRC dénie toute garantie
+ *  expressed, implied, or               énoncée, implicite ou légale,
+ *  statutory, of any kind with          de quelque nature que ce
+ *  respect to the software,             soit, concernant le logiciel,
+ *  including without limitation         y compris sans restriction
+ *  any warranty of merchantability      toute garantie de valeur
+ *  or fitness for a particular          marchande ou de pertinence
+ *  purpose. NRC shall not be            pour un usage particulier.
+ *  liable in any event for any          Le CNRC ne pourra en aucun cas
+ *  damages, whether direct or           être tenu responsable de tout
+ *  indirect, special or general,        dommage, direct ou indirect,
+ *  consequential or incidental,         particulier ou général,
+ *  arising from the use of the          accessoire ou fortuit, résultant
+ *  software.  Neither the name          de l'utilisation du logiciel. Ni
+ *  of the National Research             le nom du Conseil National de
+ *  Council of Canada nor the            Recherches du Canada ni les noms
+ *  names of its contributors may        de ses  participants ne peuvent
+ *  be used to endorse or promote        être utilisés pour approuver ou
+ *  products derived from this           promouvoir les produits dérivés
+ *  software without specific prior      de ce logiciel sans autorisation
+ *  written permission.                  préalable et particulière
+ *                                       par écrit.
+ *
+ *  This file is part of the             Ce fichier fait partie du projet
+ *  OpenCADC project.                    OpenCADC.
+ *
+ *  OpenCADC is free software:           OpenCADC est un logiciel libre ;
+ *  you can redistribute it and/or       vous pouvez le redistribuer ou le
+ *  modify it under the terms of         modifier suivant les termes de
+ *  the GNU Affero General Public        la “GNU Affero General Public
+ *  License as published by the          License” telle que publiée
+ *  Free Software Foundation,            par la Free Software Foundation
+ *  either version 3 of the              : soit la version 3 de cette
+ *  License, or (at your option)         licence, soit (à votre gré)
+ *  any later version.                   toute version ultérieure.
+ *
+ *  OpenCADC is distributed in the       OpenCADC est distribué
+ *  hope that it will be useful,         dans l’espoir qu’il vous
+ *  but WITHOUT ANY WARRANTY;            sera utile, mais SANS AUCUNE
+ *  without even the implied             GARANTIE : sans même la garantie
+ *  warranty of MERCHANTABILITY          implicite de COMMERCIALISABILITÉ
+ *  or FITNESS FOR A PARTICULAR          ni d’ADÉQUATION À UN OBJECTIF
+ *  PURPOSE.  See the GNU Affero         PARTICULIER. Consultez la Licence
+ *  General Public License for           Générale Publique GNU Affero
+ *  more details.                        pour plus de détails.
+ *
+ *  You should have received             Vous devriez avoir reçu une
+ *  a copy of the GNU Affero             copie de la Licence Générale
+ *  General Public License along         Publique GNU Affero avec
+ *  with OpenCADC.  If not, see          OpenCADC ; si ce n’est
+ *  <http://www.gnu.org/licenses/>.      pas le cas, consultez :
+ *                                       <http://www.gnu.org/licenses/>.
+ *
+ *
+ ************************************************************************
+ */
+
+package org.opencadc.posix.mapper;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+import org.apache.log4j.Logger;
+import org.opencadc.gms.GroupURI;
+import org.opencadc.posix.mapper.web.group.GroupWriter;
+import org.opencadc.posix.mapper.web.user.UserWriter;
+
+/**
+ * PosixClient that serves mappings from an in-process cache, and delegates to another PosixClient on a miss.  Lookups
+ * are cached in both directions (username to UID and UID to username, GroupURI to GID and GID to GroupURI).  Full and
+ * incremental exports are always streamed from the delegate, so memory use does not depend on the size of the
+ * mapping.  Only the mapping versions are cached: they are re-read once older than the configured interval, or as
+ * soon as this client has added or changed a mapping.  A version read while such a write was in progress is not
+ * used once the write returns, so it cannot hide the new mappings.
+ */
+public class CachingPosixClient implements PosixClient {
+
+    private static final Logger LOGGER = Logger.getLogger(CachingPosixClient.class);
+
+    private final PosixClient delegate;
+    private final long versionMaxAgeMillis;
+    private final LongSupplier clock;
+
+    private final MappingCache<String, User> usersByName;
+    private final MappingCache<Integer, User> usersByUID;
+    private final MappingCache<GroupURI, Group> groupsByURI;
+    private final MappingCache<Integer, Group> groupsByGID;
+
+    private volatile CachedVersion usersVersion;
+    private volatile CachedVersion groupsVersion;
+    // incremented after each write through this client; versions read before the increment are stale
+    private final AtomicLong usersGeneration = new AtomicLong(0L);
+    private final AtomicLong groupsGeneration = new AtomicLong(0L);
+    private final AtomicLong versionHits = new AtomicLong(0L);
+    private final AtomicLong versionRefreshes = new AtomicLong(0L);
+
+    /**
+     * Constructor.
+     *
+     * @param delegate            The PosixClient to read from on a cache miss.
+     * @param maxSize             The maximum number of entries in each cache.
+     * @param ttlMillis           The time-to-live of each cache entry.
+     * @param versionMaxAgeMillis The maximum age of the cached mapping versions.
+     */
+    public CachingPosixClient(final PosixClient delegate, final int maxSize, final long ttlMillis,
+                              final long versionMaxAgeMillis) {
+        this(delegate, maxSize, ttlMillis, versionMaxAgeMillis, System::currentTimeMillis);
+    }
+
+    CachingPosixClient(final PosixClient delegate, final int maxSize, final long ttlMillis,
+                       final long versionMaxAgeMillis, final LongSupplier clock) {
+        PosixUtil.assertNotNull(CachingPosixClient.class, "delegate", delegate);
+        this.delegate = delegate;
+        this.versionMaxAgeMillis = versionMaxAgeMillis;
+        this.clock = clock;
+        this.usersByName = new MappingCache<>(maxSize, ttlMillis, clock);
+        this.usersByUID = new MappingCache<>(maxSize, ttlMillis, clock);
+        this.groupsByURI = new MappingCache<>(maxSize, ttlMillis, clock);
+        this.groupsByGID = new MappingCache<>(maxSize, ttlMillis, clock);
+    }
+
+    @Override
+    public User getUser(String userId) throws Exception {
+        final User cachedUser = usersByName.get(userId);
+        if (cachedUser != null) {
+            return cachedUser;
+        }
+
+        final User user = delegate.getUser(userId);
+        return (user == null) ? null : cacheUser(user);
+    }
+
+    @Override
+    public User saveUser(User user) throws Exception {
+        final User savedUser = delegate.saveUser(user);
+        cacheUser(savedUser);
+        invalidateUsersVersion();
+        return savedUser;
+    }
+
+    @Override
+    public User updateUser(User user) throws Exception {
+        final User cachedUser = usersByUID.get(user.getUid());
+        if (cachedUser != null) {
+            usersByName.remove(cachedUser.getUsername());
+        }
+        final User updatedUser = delegate.updateUser(user);
+        cacheUser(updatedUser);
+        invalidateUsersVersion();
+        return updatedUser;
+    }
+
+    @Override
+    public Group getGroup(GroupURI groupURI) throws Exception {
+        final Group cachedGroup = groupsByURI.get(groupURI);
+        if (cachedGroup != null) {
+            return cachedGroup;
+        }
+
+        final Group group = delegate.getGroup(groupURI);
+        return (group == null) ? null : cacheGroup(group);
+    }
+
+    @Override
+    public Group saveGroup(Group group) throws Exception {
+        final Group savedGroup = delegate.saveGroup(group);
+        cacheGroup(savedGroup);
+        invalidateGroupsVersion();
+        return savedGroup;
+    }
+
+    @Override
+    public void close() throws Exception {
+        delegate.close();
+    }
+
+    @Override
+    public void writeUsers(UserWriter writer, String[] usernames, Integer[] uidConstraints) throws Exception {
+        if (usernames.length == 0 && uidConstraints.length == 0) {
+            delegate.writeUsers(writer, usernames, uidConstraints);
+            return;
+        }
+
+        final Map<Integer, User> found = new LinkedHashMap<>();
+        final List<String> missedUsernames = new ArrayList<>();
+        final List<Integer> missedUIDs = new ArrayList<>();
+
+        for (final String username : usernames) {
+            final User cachedUser = usersByName.get(username);
+            if (cachedUser == null) {
+                missedUsernames.add(username);
+            } else {
+                found.put(cachedUser.getUid(), cachedUser);
+            }
+        }
+
+        for (final Integer uid : uidConstraints) {
+            final User cachedUser = usersByUID.get(uid);
+            if (cachedUser == null) {
+                missedUIDs.add(uid);
+            } else {
+                found.put(cachedUser.getUid(), cachedUser);
+            }
+        }
+
+        // Only the misses go to the delegate, which also ensures missing usernames are created.
+        if (!missedUsernames.isEmpty() || !missedUIDs.isEmpty()) {
+            delegate.writeUsers(userIterator -> userIterator.forEachRemaining(user -> {
+                final User cachedUser = cacheUser(user);
+                found.put(cachedUser.getUid(), cachedUser);
+            }), missedUsernames.toArray(new String[0]), missedUIDs.toArray(new Integer[0]));
+            if (!missedUsernames.isEmpty()) {
+                invalidateUsersVersion();
+                invalidateGroupsVersion(); // default Groups
+            }
+        }
+
+        writer.write(found.values().iterator());
+    }
+
+    @Override
+    public void writeGroups(GroupWriter writer, GroupURI[] groupURIConstraints, Integer[] gidConstraints)
+            throws Exception {
+        if (groupURIConstraints.length == 0 && gidConstraints.length == 0) {
+            delegate.writeGroups(writer, groupURIConstraints, gidConstraints);
+            return;
+        }
+
+        final Map<Integer, Group> found = new LinkedHashMap<>();
+        final List<GroupURI> missedGroupURIs = new ArrayList<>();
+        final List<Integer> missedGIDs = new ArrayList<>();
+
+        for (final GroupURI groupURI : groupURIConstraints) {
+            final Group cachedGroup = groupsByURI.get(groupURI);
+            if (cachedGroup == null) {
+                missedGroupURIs.add(groupURI);
+            } else {
+                found.put(cachedGroup.getGid(), cachedGroup);
+            }
+        }
+
+        for (final Integer gid : gidConstraints) {
+            final Group cachedGroup = groupsByGID.get(gid);
+            if (cachedGroup == null) {
+                missedGIDs.add(gid);
+            } else {
+                found.put(cachedGroup.getGid(), cachedGroup);
+            }
+        }
+
+        // Only the misses go to the delegate, which also ensures missing GroupURIs are created.
+        if (!missedGroupURIs.isEmpty() || !missedGIDs.isEmpty()) {
+            delegate.writeGroups(groupIterator -> groupIterator.forEachRemaining(group -> {
+                final Group cachedGroup = cacheGroup(group);
+                found.put(cachedGroup.getGid(), cachedGroup);
+            }), missedGroupURIs.toArray(new GroupURI[0]), missedGIDs.toArray(new Integer[0]));
+            if (!missedGroupURIs.isEmpty()) {
+                invalidateGroupsVersion();
+            }
+        }
+
+        writer.write(found.values().iterator());
+    }
+
+    @Override
+    public void writeUsersSince(UserWriter writer, long sinceChange) throws Exception {
+        delegate.writeUsersSince(writer, sinceChange);
+    }
+
+    @Override
+    public void writeGroupsSince(GroupWriter writer, long sinceChange) throws Exception {
+        delegate.writeGroupsSince(writer, sinceChange);
+    }
+
+    @Override
+    public String getUsersVersion() throws Exception {
+        // read the generation first: a version read from the delegate after that belongs to it or a later one
+        final long generation = usersGeneration.get();
+        CachedVersion currentVersion = usersVersion;
+        if (!isCurrent(currentVersion, generation)) {
+            currentVersion = new CachedVersion(delegate.getUsersVersion(), generation, clock.getAsLong());
+            usersVersion = currentVersion;
+            versionRefreshes.incrementAndGet();
+        } else {
+            versionHits.incrementAndGet();
+        }
+
+        return currentVersion.version;
+    }
+
+    @Override
+    public String getGroupsVersion() throws Exception {
+        final long generation = groupsGeneration.get();
+        CachedVersion currentVersion = groupsVersion;
+        if (!isCurrent(currentVersion, generation)) {
+            currentVersion = new CachedVersion(delegate.getGroupsVersion(), generation, clock.getAsLong());
+            groupsVersion = currentVersion;
+            versionRefreshes.incrementAndGet();
+        } else {
+            versionHits.incrementAndGet();
+        }
+
+        return currentVersion.version;
+    }
+
+    /**
+     * Summary of cache usage, suitable for the availability output.
+     *
+     * @return String statistics, never null.
+     */
+    public String getStatistics() {
+        return "mapping cache: usernames=" + usersByName + " uids=" + usersByUID + " groupURIs=" + groupsByURI
+               + " gids=" + groupsByGID + " versions[hits=" + versionHits.get() + ", refreshes="
+               + versionRefreshes.get() + "]";
+    }
+
+    MappingCache<String, User> getUsersByName() {
+        return usersByName;
+    }
+
+    MappingCache<GroupURI, Group> getGroupsByURI() {
+        return groupsByURI;
+    }
+
+    private boolean isCurrent(final CachedVersion cachedVersion, final long generation) {
+        return cachedVersion != null && cachedVersion.generation == generation
+               && (clock.getAsLong() - cachedVersion.createdAt) <= versionMaxAgeMillis;
+    }
+
+    // Called once the delegate has returned, so that a version read during the write is not kept.
+    private void invalidateUsersVersion() {
+        usersGeneration.incrementAndGet();
+        usersVersion = null;
+    }
+
+    private void invalidateGroupsVersion() {
+        groupsGeneration.incrementAndGet();
+        groupsVersion = null;
+    }
+
+    private User cacheUser(final User user) {
+        // Cache a detached copy so that nothing outside can modify it.
+        final User cachedUser = new User(user.getUsername());
+        cachedUser.setUid(user.getUid());
+        usersByName.put(cachedUser.getUsername(), cachedUser);
+        usersByUID.put(cachedUser.getUid(), cachedUser);
+        return cachedUser;
+    }
+
+    private Group cacheGroup(final Group group) {
+        // Cache a detached copy so that nothing outside can modify it.
+        final Group cachedGroup = new Group(group.getGroupURI());
+        cachedGroup.setGid(group.getGid());
+        groupsByURI.put(cachedGroup.getGroupURI(), cachedGroup);
+        groupsByGID.put(cachedGroup.getGid(), cachedGroup);
+        return cachedGroup;
+    }
+
+    /**
+     * Mapping version read from the delegate.
+     */
+    private static final class CachedVersion {
+        private final String version;
+        private final long generation;
+        private final long createdAt;
+
+        CachedVersion(final String version, final long generation, final long createdAt) {
+            this.version = version;
+            this.generation = generation;
+            this.createdAt = createdAt;
+        }
+    }
+}
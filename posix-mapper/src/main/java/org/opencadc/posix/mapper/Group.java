@@ -28,6 +28,10 @@ public class Group {
     @Type(value = GroupURIType.class)
     private GroupURI groupURI;
 
+    // assigned by the database on insert
+    @Column(name = "changeSeq", insertable = false, updatable = false)
+    private Long changeSeq;
+
     public Group() {
     }
 
@@ -47,6 +51,10 @@ public class Group {
         return groupURI;
     }
 
+    public Long getChangeSeq() {
+        return changeSeq;
+    }
+
     @Override
     public boolean equals(Object obj) {
         if (!(obj instanceof Group)) {
@@ -52,4 +52,64 @@ public interface PosixClient {
      */
     void writeGroups(GroupWriter writer, GroupURI[] groupURIConstraints, Integer[] gidConstraints)
             throws Exception;
+
+    /**
+     * Write out the User mappings added or changed after the given change, in change order.  Used for incremental
+     * refreshes of the full mapping.  UIDs are not assigned in increasing order, so they cannot be used for this.
+     *
+     * @param writer      The Writer to write to.
+     * @param sinceChange Only mappings with a later change than this value are written.
+     * @throws Exception If Users cannot be obtained, or written.
+     */
+    void writeUsersSince(UserWriter writer, long sinceChange) throws Exception;
+
+    /**
+     * Write out the Group mappings added or changed after the given change, in change order.  Used for incremental
+     * refreshes of the full mapping.  GIDs are not assigned in increasing order (default Groups share the UID of
+     * their User), so they cannot be used for this.
+     *
+     * @param writer      The Writer to write to.
+     * @param sinceChange Only mappings with a later change than this value are written.
+     * @throws Exception If Groups cannot be obtained, or written.
+     */
+    void writeGroupsSince(GroupWriter writer, long sinceChange) throws Exception;
+
+    /**
+     * Obtain an opaque version of the full User mapping.  The version changes whenever a User is added or changed,
+     * and is suitable as an entity tag.  See changeCursor(String) for the change it includes.
+     *
+     * @return String version, never null.
+     * @throws Exception If the version cannot be obtained.
+     */
+    String getUsersVersion() throws Exception;
+
+    /**
+     * Obtain an opaque version of the full Group mapping.  The version changes whenever a Group is added or changed,
+     * and is suitable as an entity tag.  See changeCursor(String) for the change it includes.
+     *
+     * @return String version, never null.
+     * @throws Exception If the version cannot be obtained.
+     */
+    String getGroupsVersion() throws Exception;
+
+    /**
+     * Build a mapping version from the last change and the number of mappings.
+     *
+     * @param lastChange The last change, or null if there are no mappings.
+     * @param count      The number of mappings.
+     * @return String version, never null.
+     */
+    static String mappingVersion(final Long lastChange, final long count) {
+        return (lastChange == null ? "0" : lastChange.toString()) + "." + count;
+    }
+
+    /**
+     * Obtain the last change included in a mapping version, to request the next incremental refresh with.
+     *
+     * @param mappingVersion A version from mappingVersion(Long, long).
+     * @return The last change, 0 if there are no mappings.
+     */
+    static long changeCursor(final String mappingVersion) {
+        return Long.parseLong(mappingVersion.substring(0, mappingVersion.indexOf('.')));
+    }
 }
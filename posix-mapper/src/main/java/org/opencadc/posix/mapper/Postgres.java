@@ -9,8 +9,10 @@ import java.util.function.Function;
 import org.apache.log4j.Logger;
 import org.hibernate.Session;
 import org.hibernate.SessionFactory;
+import org.hibernate.StatelessSession;
 import org.hibernate.cfg.Configuration;
 import org.hibernate.exception.ConstraintViolationException;
+import org.hibernate.jdbc.Work;
 import org.opencadc.posix.mapper.web.PosixInitAction;
 import jakarta.persistence.NoResultException;
 import jakarta.persistence.TypedQuery;
@@ -41,6 +43,8 @@ public class Postgres {
         properties.put("hibernate.show_sql", Boolean.toString(LOGGER.isDebugEnabled()));
         properties.put("hibernate.format_sql", "true");
         properties.put("hibernate.hbm2ddl.auto", "validate");
+        properties.put("hibernate.jdbc.batch_size", "50");
+        properties.put("hibernate.order_inserts", "true");
         properties.put("hibernate.current_session_context_class",
                 "org.hibernate.context.internal.JTASessionContext");
         return properties;
@@ -55,6 +59,10 @@ public class Postgres {
         return configuration;
     }
 
+    public String getDefaultSchema() {
+        return this.defaultSchema;
+    }
+
     public Postgres entityClass(Class<?>... entityClasses) {
         this.entityClasses.addAll(Arrays.asList(entityClasses));
         return this;
@@ -102,9 +110,50 @@ public class Postgres {
         }
     }
 
+    /**
+     * Run the given function in a transaction on a StatelessSession.  Nothing is held in a persistence context, which
+     * makes this suitable for streaming large result sets with a JDBC fetch size.
+     *
+     * @param function The function to apply.
+     * @param <R>      The return type.
+     * @return The function's return value.
+     */
+    public <R> R inStatelessTransaction(Function<StatelessSession, R> function) {
+        try (final StatelessSession session = this.sessionFactory.openStatelessSession()) {
+            session.beginTransaction();
+            final R val;
+            try {
+                val = function.apply(session);
+            } catch (Exception e) {
+                session.getTransaction().rollback();
+                throw e;
+            }
+            session.getTransaction().commit();
+            return val;
+        } catch (Exception e) {
+            LOGGER.error(e);
+            throw e;
+        }
+    }
+
     public <T> T save(T entity) {
+        return save(entity, null);
+    }
+
+    /**
+     * Persist a new entity, after running the given JDBC work in the same transaction.
+     *
+     * @param entity     The entity to persist.
+     * @param beforeSave The work to run first, or null.
+     * @param <T>        The entity type.
+     * @return The persisted entity.
+     */
+    public <T> T save(T entity, Work beforeSave) {
         try {
             return inTransaction(session -> {
+                if (beforeSave != null) {
+                    session.doWork(beforeSave);
+                }
                 session.persist(entity);
                 return entity;
             });
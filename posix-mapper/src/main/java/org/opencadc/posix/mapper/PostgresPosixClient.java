@@ -69,22 +69,27 @@
 package org.opencadc.posix.mapper;
 
 import java.io.IOException;
-import java.net.URI;
-import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.stream.Stream;
 import org.hibernate.query.Query;
 import org.opencadc.gms.GroupURI;
+import org.opencadc.posix.mapper.db.BatchMappingInserter;
 import org.opencadc.posix.mapper.web.group.GroupWriter;
 import org.opencadc.posix.mapper.web.user.UserWriter;
 
 
 public class PostgresPosixClient implements PosixClient {
 
+    // rows fetched per round trip when streaming the full mapping
+    private static final int FETCH_SIZE = 1000;
+
     private final Postgres postgres;
+    private final BatchMappingInserter batchMappingInserter;
 
     public PostgresPosixClient(Postgres postgres) {
         this.postgres = postgres;
+        this.batchMappingInserter = new BatchMappingInserter(postgres.getDefaultSchema());
     }
 
     /**
@@ -106,12 +111,19 @@ public class PostgresPosixClient implements PosixClient {
 
     @Override
     public User saveUser(User user) {
-        return postgres.save(user);
+        // The change sequence is taken from the column default on insert.
+        return postgres.save(user, batchMappingInserter::lockChangeSequence);
     }
 
     @Override
     public User updateUser(User user) {
-        return postgres.update(user);
+        // The change sequence is only assigned by the database, so move the User to the end of it here.
+        return postgres.inTransaction(session -> {
+            session.merge(user);
+            session.flush();
+            session.doWork(connection -> batchMappingInserter.markUserChanged(connection, user.getUid()));
+            return user;
+        });
     }
 
     @Override
@@ -123,29 +135,23 @@ public class PostgresPosixClient implements PosixClient {
 
     @Override
     public Group saveGroup(Group group) {
-        return postgres.save(group);
+        return postgres.save(group, batchMappingInserter::lockChangeSequence);
     }
 
     @Override
     public void writeUsers(UserWriter writer, String[] usernames, Integer[] uidConstraints) {
+        if (usernames.length == 0 && uidConstraints.length == 0) {
+            streamUsers(writer, null);
+            return;
+        }
 
-        // Ensure GroupURIs are all persisted.
-        Arrays.stream(usernames).forEach(username -> {
-            final User u = getUser(username);
-            if (u == null) {
-                postgres.inTransaction(session -> {
-                    final User toBePersisted = new User(username);
-                    session.persist(toBePersisted);
-
-                    final Group defaultGroup = new Group(new GroupURI(URI.create(PosixClient.DEFAULT_GROUP_AUTHORITY
-                            + "?"
-                            + toBePersisted.getUsername())));
-                    defaultGroup.setGid(toBePersisted.getUid());
-                    session.merge(defaultGroup);
-                    return Boolean.TRUE;
-                });
-            }
-        });
+        // Ensure Users (and their default Groups) are all persisted in a single transaction.
+        if (usernames.length > 0) {
+            postgres.inTransaction(session -> {
+                session.doWork(connection -> batchMappingInserter.ensureUsers(connection, usernames));
+                return Boolean.TRUE;
+            });
+        }
 
         final Map<String, Object[]> queryParameters = new HashMap<>();
 
@@ -183,14 +189,18 @@ public class PostgresPosixClient implements PosixClient {
 
     @Override
     public void writeGroups(GroupWriter writer, GroupURI[] groupURIConstraints, Integer[] gidConstraints) {
+        if (groupURIConstraints.length == 0 && gidConstraints.length == 0) {
+            streamGroups(writer, null);
+            return;
+        }
 
-        // Ensure GroupURIs are all persisted.
-        Arrays.stream(groupURIConstraints).forEach(groupURI -> {
-            final Group g = getGroup(groupURI);
-            if (g == null) {
-                saveGroup(new Group(groupURI));
-            }
-        });
+        // Ensure GroupURIs are all persisted in a single transaction.
+        if (groupURIConstraints.length > 0) {
+            postgres.inTransaction(session -> {
+                session.doWork(connection -> batchMappingInserter.ensureGroups(connection, groupURIConstraints));
+                return Boolean.TRUE;
+            });
+        }
 
         final Map<String, Object[]> queryParameters = new HashMap<>();
 
@@ -225,4 +235,90 @@ public class PostgresPosixClient implements PosixClient {
             return Boolean.TRUE;
         });
     }
+
+    @Override
+    public void writeUsersSince(UserWriter writer, long sinceChange) {
+        streamUsers(writer, sinceChange);
+    }
+
+    @Override
+    public void writeGroupsSince(GroupWriter writer, long sinceChange) {
+        streamGroups(writer, sinceChange);
+    }
+
+    @Override
+    public String getUsersVersion() {
+        return postgres.inStatelessTransaction(session -> {
+            final Object[] result = session.createQuery("select max(u.changeSeq), count(u.uid) from Users u",
+                                                        Object[].class)
+                                           .getSingleResult();
+            return PosixClient.mappingVersion((Long) result[0], ((Number) result[1]).longValue());
+        });
+    }
+
+    @Override
+    public String getGroupsVersion() {
+        return postgres.inStatelessTransaction(session -> {
+            final Object[] result = session.createQuery("select max(g.changeSeq), count(g.gid) from Groups g",
+                                                        Object[].class)
+                                           .getSingleResult();
+            return PosixClient.mappingVersion((Long) result[0], ((Number) result[1]).longValue());
+        });
+    }
+
+    /**
+     * Stream Users out through a JDBC cursor on a StatelessSession, so memory use does not depend on the size of the
+     * table.
+     *
+     * @param writer      The Writer to write to.
+     * @param sinceChange Only write Users changed after this value, in change order, or null for all in UID order.
+     */
+    private void streamUsers(final UserWriter writer, final Long sinceChange) {
+        postgres.inStatelessTransaction(session -> {
+            final Query<User> userQuery = session.createQuery(
+                    sinceChange == null ? "from Users u order by u.uid"
+                                        : "from Users u where u.changeSeq > :since order by u.changeSeq",
+                    User.class);
+            if (sinceChange != null) {
+                userQuery.setParameter("since", sinceChange);
+            }
+            userQuery.setFetchSize(PostgresPosixClient.FETCH_SIZE);
+
+            try (final Stream<User> userStream = userQuery.stream()) {
+                writer.write(userStream.iterator());
+            } catch (IOException ioException) {
+                return Boolean.FALSE;
+            }
+
+            return Boolean.TRUE;
+        });
+    }
+
+    /**
+     * Stream Groups out through a JDBC cursor on a StatelessSession, so memory use does not depend on the size of the
+     * table.
+     *
+     * @param writer      The Writer to write to.
+     * @param sinceChange Only write Groups changed after this value, in change order, or null for all in GID order.
+     */
+    private void streamGroups(final GroupWriter writer, final Long sinceChange) {
+        postgres.inStatelessTransaction(session -> {
+            final Query<Group> groupQuery = session.createQuery(
+                    sinceChange == null ? "from Groups g order by g.gid"
+                                        : "from Groups g where g.changeSeq > :since order by g.changeSeq",
+                    Group.class);
+            if (sinceChange != null) {
+                groupQuery.setParameter("since", sinceChange);
+            }
+            groupQuery.setFetchSize(PostgresPosixClient.FETCH_SIZE);
+
+            try (final Stream<Group> groupStream = groupQuery.stream()) {
+                writer.write(groupStream.iterator());
+            } catch (IOException ioException) {
+                return Boolean.FALSE;
+            }
+
+            return Boolean.TRUE;
+        });
+    }
 }
@@ -71,6 +71,7 @@ import ca.nrc.cadc.rest.RestAction;
 import ca.nrc.cadc.vosi.Availability;
 import ca.nrc.cadc.vosi.AvailabilityPlugin;
 import org.apache.log4j.Logger;
+import org.opencadc.posix.mapper.web.PosixInitAction;
 
 /**
  * This class performs the work of determining if the executing artifact
@@ -129,6 +130,11 @@ public class ServiceAvailability implements AvailabilityPlugin {
             if (RestAction.STATE_READ_ONLY.equals(state)) {
                 return new Availability(false, RestAction.STATE_READ_ONLY_MSG);
             }
+
+            final PosixClient posixClient = PosixInitAction.lookupPosixClient();
+            if (posixClient instanceof CachingPosixClient) {
+                note += "; " + ((CachingPosixClient) posixClient).getStatistics();
+            }
         } catch (Throwable t) {
             // the test itself failed
             log.debug("failure", t);
@@ -26,6 +26,10 @@ public class User {
     @Column(unique = true)
     private String username;
 
+    // assigned by the database on insert, and on update (see PostgresPosixClient)
+    @Column(name = "changeSeq", insertable = false, updatable = false)
+    private Long changeSeq;
+
 
     public User() {
     }
@@ -50,6 +54,10 @@ public class User {
         this.username = username;
     }
 
+    public Long getChangeSeq() {
+        return changeSeq;
+    }
+
     @Override
     public String toString() {
         return "User{" +
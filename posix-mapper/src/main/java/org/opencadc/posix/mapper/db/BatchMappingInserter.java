@@ -0,0 +1,259 @@
+/*
+ ************************************************************************
+ *******************  CANADIAN ASTRONOMY DATA CENTRE  *******************
+ **************  CENTRE CANADIEN DE DONNÉES ASTRONOMIQUES  **************
+ *
+ *  (c) 2026.                            (c) 2026.
+ *  Government of Canada                 Gouvernement du Canada
+ *  National Research Council            Conseil national de recherches
+ *  Ottawa, Canada, K1A 0R6              Ottawa, Canada, K1A 0R6
+ *  All rights reserved                  Tous droits réservés
+ *
+ *  NRC disclaims any warranties,        Le CNRC dénie toute garantie
+ *  expressed, implied, or               énoncée, implicite ou légale,
+ *  statutory, of any kind with          de quelque nature que ce
+ *  respect to the software,             soit, concernant le logiciel,
+ *  including without limitation         y compris sans restriction
+ *  any warranty of merchantability      toute garantie de valeur
+ *  or fitness for a particular          marchande ou de pertinence
+ *  purpose. NRC shall not be            pour un usage particulier.
+ *  liable in any event for any          Le CNRC ne pourra en aucun cas
+ *  damages, whether direct or           être tenu responsable de tout
+ *  indirect, special or general,        dommage, direct ou indirect,
+ *  consequential or incidental,         particulier ou général,
+ *  arising from the use of the          accessoire ou fortuit, résultant
+ *  software.  Neither the name          de l'utilisation du logiciel. Ni
+ *  of the National Research             le nom du Conseil National de
+ *  Council of Canada nor the            Recherches du Canada ni les noms
+ *  names of its contributors may        de ses  participants ne peuvent
+ *  be used to endorse or promote        être utilisés pour approuver ou
+ *  products derived from this           promouvoir les produits dérivés
+ *  software without specific prior      de ce logiciel sans autorisation
+ *  written permission.                  préalable et particulière
+ *                                       par écrit.
+ *
+ *  This file is part of the             Ce fichier fait partie du projet
+ *  OpenCADC project.                    OpenCADC.
+ *
+ *  OpenCADC is free software:           OpenCADC est un logiciel libre ;
+ *  you can redistribute it and/or       vous pouvez le redistribuer ou le
+ *  modify it under the terms of         modifier suivant les termes de
+ *  the GNU Affero General Public        la “GNU Affero General Public
+ *  License as published by the          License” telle que publiée
+ *  Free Software Foundation,            par la Free Software Foundation
+ *  either version 3 of the              : soit la version 3 de cette
+ *  License, or (at your option)         licence, soit (à votre gré)
+ *  any later version.                   toute version ultérieure.
+ *
+ *  OpenCADC is distributed in the       OpenCADC est distribué
+ *  hope that it will be useful,         dans l’espoir qu’il vous
+ *  but WITHOUT ANY WARRANTY;            sera utile, mais SANS AUCUNE
+ *  without even the implied             GARANTIE : sans même la garantie
+ *  warranty of MERCHANTABILITY          implicite de COMMERCIALISABILITÉ
+ *  or FITNESS FOR A PARTICULAR          ni d’ADÉQUATION À UN OBJECTIF
+ *  PURPOSE.  See the GNU Affero         PARTICULIER. Consultez la Licence
+ *  General Public License for           Générale Publique GNU Affero
+ *  more details.                        pour plus de détails.
+ *
+ *  You should have received             Vous devriez avoir reçu une
+ *  a copy of the GNU Affero             copie de la Licence Générale
+ *  General Public License along         Publique GNU Affero avec
+ *  with OpenCADC.  If not, see          OpenCADC ; si ce n’est
+ *  <http://www.gnu.org/licenses/>.      pas le cas, consultez :
+ *                                       <http://www.gnu.org/licenses/>.
+ *
+ *
+ ************************************************************************
+ */
+
+package org.opencadc.posix.mapper.db;
+
+import java.net.URI;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import org.apache.log4j.Logger;
+import org.opencadc.gms.GroupURI;
+import org.opencadc.posix.mapper.Group;
+import org.opencadc.posix.mapper.PosixClient;
+import org.opencadc.posix.mapper.User;
+
+/**
+ * Set-based find-or-create of Users and Groups.  Regardless of how many usernames or GroupURIs are requested, at most
+ * one lookup and one insert statement is issued against the given Connection.  The caller is responsible for the
+ * enclosing transaction.  New rows get their change sequence from the column default.
+ *
+ * <p>Change sequence values are taken when a row is written, not when its transaction commits, so without care a
+ * transaction with a lower value could commit after a reader has already handed out a higher value as its
+ * changedSince cursor, and that row would never be exported incrementally.  Every write of a change sequence value
+ * therefore first takes a transaction-level advisory lock (see lockChangeSequence), which is held until commit:
+ * values are then committed in increasing order, and the highest committed value is a safe cursor.
+ */
+public class BatchMappingInserter {
+    private static final Logger LOGGER = Logger.getLogger(BatchMappingInserter.class);
+
+    private final String usersTable;
+    private final String groupsTable;
+    private final String userSequence;
+    private final String groupSequence;
+    private final String changeSequence;
+    private final String lockSQL;
+
+    public BatchMappingInserter(final String schema) {
+        final String prefix = (schema == null) ? "" : schema + ".";
+        this.usersTable = prefix + "Users";
+        this.groupsTable = prefix + "Groups";
+        this.userSequence = prefix + "users_uid_seq1";
+        this.groupSequence = prefix + "groups_gid_seq1";
+        this.changeSequence = prefix + "mapping_change_seq";
+        this.lockSQL = "SELECT pg_advisory_xact_lock(hashtext('" + changeSequence + "'))";
+    }
+
+    /**
+     * Wait for other transactions writing change sequence values to commit, and keep them waiting until the
+     * current transaction ends.  Must be called before a change sequence value is taken, including by the column
+     * default of a new row; writes outside this service (e.g. administrative SQL) should do the same.
+     *
+     * @param connection The Connection of the current transaction.
+     * @throws SQLException If the lock cannot be taken.
+     */
+    public void lockChangeSequence(final Connection connection) throws SQLException {
+        try (final PreparedStatement statement = connection.prepareStatement(lockSQL)) {
+            statement.executeQuery().close();
+        }
+    }
+
+    /**
+     * Ensure a User, and its default Group, exists for each of the given usernames.
+     *
+     * @param connection The Connection to use.
+     * @param usernames  The usernames to find or create.
+     * @return The newly created Users, never null.
+     * @throws SQLException If the lookup or insert fails.
+     */
+    public List<User> ensureUsers(final Connection connection, final String[] usernames) throws SQLException {
+        final Set<String> missing = new LinkedHashSet<>(Arrays.asList(usernames));
+        if (missing.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        final String lookupSQL = "SELECT username FROM " + usersTable + " WHERE username = ANY (?)";
+        try (final PreparedStatement statement = connection.prepareStatement(lookupSQL)) {
+            statement.setArray(1, connection.createArrayOf("varchar", missing.toArray()));
+            try (final ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    missing.remove(resultSet.getString(1));
+                }
+            }
+        }
+
+        final List<User> created = new ArrayList<>();
+        if (missing.isEmpty()) {
+            return created;
+        }
+
+        lockChangeSequence(connection);
+
+        // The default Group for each new User shares its ID.
+        final String insertSQL = "WITH new_users AS ("
+                                 + "INSERT INTO " + usersTable + " (uid, username)"
+                                 + " SELECT nextval('" + userSequence + "'), u.username"
+                                 + " FROM unnest(?::varchar[]) AS u(username)"
+                                 + " ON CONFLICT (username) DO NOTHING"
+                                 + " RETURNING uid, username),"
+                                 + " new_groups AS ("
+                                 + "INSERT INTO " + groupsTable + " (gid, groupURI)"
+                                 + " SELECT uid, ?::varchar || username FROM new_users"
+                                 + " ON CONFLICT DO NOTHING)"
+                                 + " SELECT uid, username FROM new_users";
+        try (final PreparedStatement statement = connection.prepareStatement(insertSQL)) {
+            statement.setArray(1, connection.createArrayOf("varchar", missing.toArray()));
+            statement.setString(2, PosixClient.DEFAULT_GROUP_AUTHORITY + "?");
+            try (final ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    final User user = new User(resultSet.getString(2));
+                    user.setUid(resultSet.getInt(1));
+                    created.add(user);
+                }
+            }
+        }
+
+        LOGGER.debug("ensureUsers: requested " + usernames.length + ", created " + created.size());
+        return created;
+    }
+
+    /**
+     * Ensure a Group exists for each of the given GroupURIs.
+     *
+     * @param connection The Connection to use.
+     * @param groupURIs  The GroupURIs to find or create.
+     * @return The newly created Groups, never null.
+     * @throws SQLException If the lookup or insert fails.
+     */
+    public List<Group> ensureGroups(final Connection connection, final GroupURI[] groupURIs) throws SQLException {
+        final Set<String> missing = new LinkedHashSet<>();
+        Arrays.stream(groupURIs).forEach(groupURI -> missing.add(groupURI.getURI().toString()));
+        if (missing.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        final String lookupSQL = "SELECT groupURI FROM " + groupsTable + " WHERE groupURI = ANY (?)";
+        try (final PreparedStatement statement = connection.prepareStatement(lookupSQL)) {
+            statement.setArray(1, connection.createArrayOf("varchar", missing.toArray()));
+            try (final ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    missing.remove(resultSet.getString(1));
+                }
+            }
+        }
+
+        final List<Group> created = new ArrayList<>();
+        if (missing.isEmpty()) {
+            return created;
+        }
+
+        lockChangeSequence(connection);
+
+        final String insertSQL = "INSERT INTO " + groupsTable + " (gid, groupURI)"
+                                 + " SELECT nextval('" + groupSequence + "'), g.groupURI"
+                                 + " FROM unnest(?::varchar[]) AS g(groupURI)"
+                                 + " ON CONFLICT DO NOTHING"
+                                 + " RETURNING gid, groupURI";
+        try (final PreparedStatement statement = connection.prepareStatement(insertSQL)) {
+            statement.setArray(1, connection.createArrayOf("varchar", missing.toArray()));
+            try (final ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    final Group group = new Group(new GroupURI(URI.create(resultSet.getString(2))));
+                    group.setGid(resultSet.getInt(1));
+                    created.add(group);
+                }
+            }
+        }
+
+        LOGGER.debug("ensureGroups: requested " + groupURIs.length + ", created " + created.size());
+        return created;
+    }
+
+    /**
+     * Move a changed User to the end of the change sequence, so incremental exports include it again.
+     *
+     * @param connection The Connection to use.
+     * @param uid        The UID of the changed User.
+     * @throws SQLException If the update fails.
+     */
+    public void markUserChanged(final Connection connection, final int uid) throws SQLException {
+        lockChangeSequence(connection);
+        final String updateSQL = "UPDATE " + usersTable + " SET changeSeq = nextval('" + changeSequence + "')"
+                                 + " WHERE uid = ?";
+        try (final PreparedStatement statement = connection.prepareStatement(updateSQL)) {
+            statement.setInt(1, uid);
+            statement.executeUpdate();
+        }
+    }
+}
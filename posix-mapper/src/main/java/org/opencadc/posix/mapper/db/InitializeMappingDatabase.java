@@ -85,19 +85,24 @@ import org.opencadc.posix.mapper.web.PosixInitAction;
 public class InitializeMappingDatabase extends InitDatabase {
 
     public static final String MODEL_NAME = "posix-mapping";
-    public static final String MODEL_VERSION = "0.1";
-    public static final String PREV_MODEL_VERSION = "0.0";
+    public static final String MODEL_VERSION = "0.2";
+    public static final String PREV_MODEL_VERSION = "0.1";
 
     static String[] CREATE_SQL = new String[]{
             "mapping.modelversion.sql",
             "mapping.model.sql"
     };
 
+    static String[] UPGRADE_SQL = new String[]{
+            "mapping.upgrade-0.2.sql"
+    };
+
     public InitializeMappingDatabase(DataSource dataSource, String database, String schema) {
         super(dataSource, database, schema, InitializeMappingDatabase.MODEL_NAME,
                 InitializeMappingDatabase.MODEL_VERSION, InitializeMappingDatabase.PREV_MODEL_VERSION);
 
         this.createSQL.addAll(Arrays.stream(InitializeMappingDatabase.CREATE_SQL).collect(Collectors.toList()));
+        this.upgradeSQL.addAll(Arrays.stream(InitializeMappingDatabase.UPGRADE_SQL).collect(Collectors.toList()));
     }
 
     @Override
@@ -76,8 +76,19 @@ import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.TreeMap;
+import java.util.function.Supplier;
+import java.util.logging.Level;
 import java.util.logging.Logger;
+import javax.naming.InitialContext;
+import javax.naming.NameNotFoundException;
+import javax.naming.NamingException;
 import javax.sql.DataSource;
+import org.opencadc.posix.mapper.CachingPosixClient;
+import org.opencadc.posix.mapper.Group;
+import org.opencadc.posix.mapper.PosixClient;
+import org.opencadc.posix.mapper.Postgres;
+import org.opencadc.posix.mapper.PostgresPosixClient;
+import org.opencadc.posix.mapper.User;
 import org.opencadc.posix.mapper.db.InitializeMappingDatabase;
 
 public class PosixInitAction extends InitAction {
@@ -87,6 +98,12 @@ public class PosixInitAction extends InitAction {
     // config keys
     public static final String JNDI_DATASOURCE = "jdbc/posix-mapper"; // context.xml
 
+    // shared, application scoped PosixClient (and underlying Hibernate SessionFactory)
+    static final String JNDI_POSIX_CLIENT = PosixClient.class.getName();
+
+    // static monitor as the init action is run once per servlet
+    private static final Object JNDI_MONITOR = new Object();
+
     // config keys
     private static final String POSIX_KEY = "org.opencadc.posix.mapper";
     static final String SCHEMA_KEY = PosixInitAction.POSIX_KEY + ".schema";
@@ -96,6 +113,14 @@ public class PosixInitAction extends InitAction {
 
     static final String RESOURCE_ID_KEY = PosixInitAction.POSIX_KEY + ".resourceID";
 
+    // optional mapping cache config
+    static final String CACHE_MAX_SIZE_KEY = PosixInitAction.POSIX_KEY + ".cache.maxSize";
+    static final String CACHE_TTL_KEY = PosixInitAction.POSIX_KEY + ".cache.ttl";
+    static final String CACHE_VERSION_INTERVAL_KEY = PosixInitAction.POSIX_KEY + ".cache.versionInterval";
+    static final int DEFAULT_CACHE_MAX_SIZE = 100000;
+    static final long DEFAULT_CACHE_TTL_SECONDS = 3600L;
+    static final long DEFAULT_CACHE_VERSION_INTERVAL_SECONDS = 60L;
+
     static final String[] CHECK_CONFIG_KEYS = new String[]{
             PosixInitAction.SCHEMA_KEY, PosixInitAction.RESOURCE_ID_KEY,
             PosixInitAction.UID_START_KEY, PosixInitAction.GID_START_KEY
@@ -108,6 +133,16 @@ public class PosixInitAction extends InitAction {
     public void doInit() {
         initConfig();
         initDatabase();
+        initPosixClient();
+    }
+
+    @Override
+    public void doShutdown() {
+        try {
+            PosixInitAction.unbindPosixClient();
+        } catch (Exception ex) {
+            LOGGER.log(Level.WARNING, "failed to close PosixClient", ex);
+        }
     }
 
     /**
@@ -172,4 +207,100 @@ public class PosixInitAction extends InitAction {
             throw new IllegalStateException("check/init database failed", ex);
         }
     }
+
+    private void initPosixClient() {
+        LOGGER.info("initPosixClient: START");
+        try {
+            PosixInitAction.initPosixClient(() -> PosixInitAction.withCache(new PostgresPosixClient(
+                    Postgres.instance((String) daoConfig.get("schema"))
+                            .entityClass(User.class, Group.class)
+                            .build()), props));
+            LOGGER.info("initPosixClient: OK");
+        } catch (NamingException ex) {
+            throw new IllegalStateException("init PosixClient failed", ex);
+        }
+    }
+
+    /**
+     * Bind the shared PosixClient, unless an init action of another servlet already did.
+     *
+     * @param posixClientFactory Creates the PosixClient when none is bound yet.
+     * @return The bound PosixClient.
+     * @throws NamingException If the JNDI lookup or bind fails.
+     */
+    static PosixClient initPosixClient(final Supplier<PosixClient> posixClientFactory) throws NamingException {
+        synchronized (PosixInitAction.JNDI_MONITOR) {
+            PosixClient posixClient = PosixInitAction.lookupPosixClient();
+            if (posixClient == null) {
+                posixClient = posixClientFactory.get();
+                PosixInitAction.bindPosixClient(posixClient);
+                LOGGER.info("initPosixClient: bound " + PosixInitAction.JNDI_POSIX_CLIENT);
+            } else {
+                LOGGER.info("initPosixClient: reusing " + PosixInitAction.JNDI_POSIX_CLIENT);
+            }
+            return posixClient;
+        }
+    }
+
+    static PosixClient withCache(final PosixClient posixClient, final MultiValuedProperties props) {
+        final int maxSize = Integer.parseInt(PosixInitAction.getConfigValue(props, PosixInitAction.CACHE_MAX_SIZE_KEY,
+                Integer.toString(PosixInitAction.DEFAULT_CACHE_MAX_SIZE)));
+        if (maxSize <= 0) {
+            LOGGER.info("initPosixClient: mapping cache disabled");
+            return posixClient;
+        }
+
+        final long ttlSeconds = Long.parseLong(PosixInitAction.getConfigValue(props, PosixInitAction.CACHE_TTL_KEY,
+                Long.toString(PosixInitAction.DEFAULT_CACHE_TTL_SECONDS)));
+        final long versionIntervalSeconds = Long.parseLong(PosixInitAction.getConfigValue(props,
+                PosixInitAction.CACHE_VERSION_INTERVAL_KEY,
+                Long.toString(PosixInitAction.DEFAULT_CACHE_VERSION_INTERVAL_SECONDS)));
+        LOGGER.info("initPosixClient: mapping cache maxSize=" + maxSize + " ttl=" + ttlSeconds
+                    + "s versionInterval=" + versionIntervalSeconds + "s");
+        return new CachingPosixClient(posixClient, maxSize, ttlSeconds * 1000L, versionIntervalSeconds * 1000L);
+    }
+
+    private static String getConfigValue(final MultiValuedProperties props, final String key,
+                                         final String defaultValue) {
+        final String value = props.getFirstPropertyValue(key);
+        return (value == null) ? defaultValue : value.trim();
+    }
+
+    /**
+     * Obtain the shared PosixClient created at startup.  Callers MUST NOT close the returned instance as it is
+     * closed when the application is undeployed.
+     *
+     * @return PosixClient instance, or null if none is bound.
+     * @throws NamingException If the JNDI lookup fails.
+     */
+    public static PosixClient lookupPosixClient() throws NamingException {
+        try {
+            final InitialContext initialContext = new InitialContext();
+            return (PosixClient) initialContext.lookup(PosixInitAction.JNDI_POSIX_CLIENT);
+        } catch (NameNotFoundException notFoundException) {
+            return null;
+        }
+    }
+
+    static void bindPosixClient(final PosixClient posixClient) throws NamingException {
+        final InitialContext initialContext = new InitialContext();
+        try {
+            // unbind just to be safe
+            initialContext.unbind(PosixInitAction.JNDI_POSIX_CLIENT);
+        } catch (NamingException e) {
+            // nothing bound, expected
+        }
+        initialContext.bind(PosixInitAction.JNDI_POSIX_CLIENT, posixClient);
+    }
+
+    static void unbindPosixClient() throws Exception {
+        synchronized (PosixInitAction.JNDI_MONITOR) {
+            final PosixClient posixClient = PosixInitAction.lookupPosixClient();
+            if (posixClient != null) {
+                new InitialContext().unbind(PosixInitAction.JNDI_POSIX_CLIENT);
+                posixClient.close();
+                LOGGER.info("closed " + PosixInitAction.JNDI_POSIX_CLIENT);
+            }
+        }
+    }
 }
@@ -78,12 +78,9 @@ import java.io.BufferedWriter;
 import java.io.IOException;
 import java.io.OutputStreamWriter;
 import java.io.Writer;
+import javax.naming.NamingException;
 import javax.security.auth.Subject;
-import org.opencadc.posix.mapper.Group;
 import org.opencadc.posix.mapper.PosixClient;
-import org.opencadc.posix.mapper.Postgres;
-import org.opencadc.posix.mapper.PostgresPosixClient;
-import org.opencadc.posix.mapper.User;
 import org.opencadc.posix.mapper.web.group.AsciiGroupWriter;
 import org.opencadc.posix.mapper.web.group.GroupWriter;
 import org.opencadc.posix.mapper.web.group.TSVGroupWriter;
@@ -96,6 +93,9 @@ public abstract class PosixMapperAction extends RestAction {
     protected static final MultiValuedProperties POSIX_CONFIGURATION = PosixInitAction.getConfig();
     protected static final String TSV_CONTENT_TYPE = "text/tab-separated-values";
 
+    // last change included in a full mapping response, for the next changedSince request
+    public static final String CHANGE_CURSOR_HEADER = "X-Mapping-Cursor";
+
     protected PosixMapperAction() {
 
     }
@@ -107,15 +107,21 @@ public abstract class PosixMapperAction extends RestAction {
     }
 
     /**
-     * Create a new PosixClient instance.  Callers MUST remember to call `close()` on the returned instance.
+     * Obtain the shared PosixClient instance created by the PosixInitAction.  Callers MUST NOT call `close()` on the
+     * returned instance as it is shared across requests and closed when the application is undeployed.
      *
      * @return PosixClient instance, never null.
      */
     protected PosixClient getPosixClient() {
-        return new PostgresPosixClient(Postgres.instance(
-                        PosixMapperAction.POSIX_CONFIGURATION.getFirstPropertyValue(PosixInitAction.SCHEMA_KEY))
-                .entityClass(User.class, Group.class)
-                .build());
+        try {
+            final PosixClient posixClient = PosixInitAction.lookupPosixClient();
+            if (posixClient == null) {
+                throw new IllegalStateException("PosixClient not initialized: " + PosixInitAction.JNDI_POSIX_CLIENT);
+            }
+            return posixClient;
+        } catch (NamingException namingException) {
+            throw new IllegalStateException("JNDI error", namingException);
+        }
     }
 
     private void checkAuthorization() {
@@ -145,6 +151,62 @@ public abstract class PosixMapperAction extends RestAction {
         }
     }
 
+    /**
+     * Set the ETag of the full mapping on the response, and check it against the If-None-Match request header.  When
+     * it matches, a 304 (Not Modified) is set and nothing should be written.
+     *
+     * @param mappingVersion The current version of the requested mapping.
+     * @return True if the caller already has this version, False otherwise.
+     */
+    protected boolean checkNotModified(final String mappingVersion) {
+        final String entityTag = "\"" + mappingVersion + "\"";
+        this.syncOutput.setHeader("ETag", entityTag);
+
+        final String ifNoneMatch = syncInput.getHeader("If-None-Match");
+        if (ifNoneMatch != null) {
+            for (final String requestTag : ifNoneMatch.split(",")) {
+                final String trimmedTag = requestTag.trim();
+                final String strongTag = trimmedTag.startsWith("W/") ? trimmedTag.substring(2) : trimmedTag;
+                if ("*".equals(strongTag) || entityTag.equals(strongTag)) {
+                    this.syncOutput.setCode(304);
+                    return true;
+                }
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Set the change cursor of the given mapping version on the response, so the caller can request only what was
+     * added or changed after it.
+     *
+     * @param mappingVersion The current version of the requested mapping.
+     */
+    protected void setChangeCursor(final String mappingVersion) {
+        this.syncOutput.setHeader(PosixMapperAction.CHANGE_CURSOR_HEADER,
+                                  Long.toString(PosixClient.changeCursor(mappingVersion)));
+    }
+
+    /**
+     * Obtain the optional changedSince parameter used to request only mappings added or changed after the given
+     * change cursor.
+     *
+     * @return Long change cursor, or null if not requested.
+     */
+    protected Long changedSinceParameter() {
+        final String changedSince = syncInput.getParameter("changedSince");
+        if (changedSince == null || changedSince.isBlank()) {
+            return null;
+        }
+
+        try {
+            return Long.parseLong(changedSince.trim());
+        } catch (NumberFormatException numberFormatException) {
+            throw new IllegalArgumentException("invalid changedSince: " + changedSince);
+        }
+    }
+
     protected String prepareContent() {
         final String requestContentType = syncInput.getHeader("accept");
         final String writeContentType = PosixMapperAction.TSV_CONTENT_TYPE.equals(requestContentType)
@@ -79,16 +79,30 @@ import org.opencadc.posix.mapper.web.PosixMapperAction;
 public class GetAction extends PosixMapperAction {
     @Override
     public void doAction() throws Exception {
-        final GroupWriter groupWriter = getGroupWriter();
-        PosixClient posixClient = null;
-        try {
-            posixClient = getPosixClient();
-            posixClient.writeGroups(groupWriter, groupParameters().toArray(new GroupURI[0]),
-                    gidParameters().toArray(new Integer[0]));
-        } finally {
-            if (posixClient != null) {
-                posixClient.close();
+        final PosixClient posixClient = getPosixClient();
+        final List<GroupURI> groupURIs = groupParameters();
+        final List<Integer> gids = gidParameters();
+        final Long changedSince = changedSinceParameter();
+
+        if (groupURIs.isEmpty() && gids.isEmpty()) {
+            // Full mapping, or only what was added or changed after the given change cursor.
+            final String mappingVersion = posixClient.getGroupsVersion();
+            if (checkNotModified(mappingVersion)) {
+                return;
+            }
+            setChangeCursor(mappingVersion);
+
+            final GroupWriter groupWriter = getGroupWriter();
+            if (changedSince == null) {
+                posixClient.writeGroups(groupWriter, new GroupURI[0], new Integer[0]);
+            } else {
+                posixClient.writeGroupsSince(groupWriter, changedSince);
             }
+        } else if (changedSince != null) {
+            throw new IllegalArgumentException("changedSince cannot be combined with group or gid");
+        } else {
+            final GroupWriter groupWriter = getGroupWriter();
+            posixClient.writeGroups(groupWriter, groupURIs.toArray(new GroupURI[0]), gids.toArray(new Integer[0]));
         }
 
         syncOutput.getOutputStream().flush();
@@ -79,16 +79,30 @@ public class GetAction extends PosixMapperAction {
 
     @Override
     public void doAction() throws Exception {
-        final UserWriter userWriter = getUserWriter();
-        PosixClient posixClient = null;
-        try {
-            posixClient = getPosixClient();
-            posixClient.writeUsers(userWriter, usernameParameters().toArray(new String[0]),
-                    uidParameters().toArray(new Integer[0]));
-        } finally {
-            if (posixClient != null) {
-                posixClient.close();
+        final PosixClient posixClient = getPosixClient();
+        final List<String> usernames = usernameParameters();
+        final List<Integer> uids = uidParameters();
+        final Long changedSince = changedSinceParameter();
+
+        if (usernames.isEmpty() && uids.isEmpty()) {
+            // Full mapping, or only what was added or changed after the given change cursor.
+            final String mappingVersion = posixClient.getUsersVersion();
+            if (checkNotModified(mappingVersion)) {
+                return;
+            }
+            setChangeCursor(mappingVersion);
+
+            final UserWriter userWriter = getUserWriter();
+            if (changedSince == null) {
+                posixClient.writeUsers(userWriter, new String[0], new Integer[0]);
+            } else {
+                posixClient.writeUsersSince(userWriter, changedSince);
             }
+        } else if (changedSince != null) {
+            throw new IllegalArgumentException("changedSince cannot be combined with user or uid");
+        } else {
+            final UserWriter userWriter = getUserWriter();
+            posixClient.writeUsers(userWriter, usernames.toArray(new String[0]), uids.toArray(new Integer[0]));
         }
 
         syncOutput.getOutputStream().flush();
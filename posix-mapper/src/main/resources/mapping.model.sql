@@ -1,7 +1,10 @@
+create sequence <schema>.mapping_change_seq;
+
 CREATE TABLE <schema>.Users
 (
-    uid      INTEGER GENERATED BY DEFAULT AS IDENTITY NOT NULL,
-    username VARCHAR(255) UNIQUE,
+    uid       INTEGER GENERATED BY DEFAULT AS IDENTITY NOT NULL,
+    username  VARCHAR(255) UNIQUE,
+    changeSeq BIGINT NOT NULL DEFAULT nextval('<schema>.mapping_change_seq'),
     CONSTRAINT pk_users PRIMARY KEY (uid)
 );
 
@@ -9,9 +12,13 @@ CREATE TABLE <schema>.Groups
 (
     gid       INTEGER GENERATED BY DEFAULT AS IDENTITY NOT NULL,
     groupURI  VARCHAR(255) UNIQUE,
+    changeSeq BIGINT NOT NULL DEFAULT nextval('<schema>.mapping_change_seq'),
     CONSTRAINT pk_groups PRIMARY KEY (gid)
 );
 
+create index users_changeseq on <schema>.Users (changeSeq);
+create index groups_changeseq on <schema>.Groups (changeSeq);
+
 create sequence <schema>.groups_gid_seq1
     start with <gid_start>;
 
@@ -0,0 +1,10 @@
+create sequence <schema>.mapping_change_seq;
+
+alter table <schema>.Users
+    add column changeSeq BIGINT NOT NULL DEFAULT nextval('<schema>.mapping_change_seq');
+
+alter table <schema>.Groups
+    add column changeSeq BIGINT NOT NULL DEFAULT nextval('<schema>.mapping_change_seq');
+
+create index users_changeseq on <schema>.Users (changeSeq);
+create index groups_changeseq on <schema>.Groups (changeSeq);
@@ -0,0 +1,358 @@
+package org.opencadc.posix.mapper;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.Assert;
+import org.junit.Test;
+import org.opencadc.gms.GroupURI;
+import org.opencadc.posix.mapper.web.group.GroupWriter;
+import org.opencadc.posix.mapper.web.user.UserWriter;
+
+public class CachingPosixClientTest {
+
+    @Test
+    public void writeUsersFromCache() throws Exception {
+        final CountingPosixClient delegate = new CountingPosixClient();
+        final CachingPosixClient testSubject = new CachingPosixClient(delegate, 100, 60000L, 60000L);
+
+        final List<User> firstResults = new ArrayList<>();
+        testSubject.writeUsers(collectUsers(firstResults), new String[] {"alice", "bob"}, new Integer[0]);
+        Assert.assertEquals("Wrong result count", 2, firstResults.size());
+        Assert.assertEquals("Wrong delegate calls", 1, delegate.writeUsersCount);
+
+        // Username and UID lookups are now both served from the cache.
+        final List<User> secondResults = new ArrayList<>();
+        testSubject.writeUsers(collectUsers(secondResults), new String[] {"bob"},
+                               new Integer[] {firstResults.get(0).getUid()});
+        Assert.assertEquals("Wrong result count", 2, secondResults.size());
+        Assert.assertEquals("Should not call delegate", 1, delegate.writeUsersCount);
+
+        // Only the miss goes to the delegate.
+        final List<User> thirdResults = new ArrayList<>();
+        testSubject.writeUsers(collectUsers(thirdResults), new String[] {"alice", "carol"}, new Integer[0]);
+        Assert.assertEquals("Wrong result count", 2, thirdResults.size());
+        Assert.assertEquals("Wrong delegate calls", 2, delegate.writeUsersCount);
+        Assert.assertEquals("Wrong delegate constraints", List.of("carol"), delegate.lastUsernames);
+
+        Assert.assertEquals("Wrong hit count", 2L, testSubject.getUsersByName().getHits());
+        Assert.assertEquals("Wrong miss count", 3L, testSubject.getUsersByName().getMisses());
+    }
+
+    @Test
+    public void writeGroupsFromCache() throws Exception {
+        final CountingPosixClient delegate = new CountingPosixClient();
+        final CachingPosixClient testSubject = new CachingPosixClient(delegate, 100, 60000L, 60000L);
+        final GroupURI groupURI = new GroupURI(URI.create("ivo://example.org/gms?group-a"));
+
+        final List<Group> firstResults = new ArrayList<>();
+        testSubject.writeGroups(collectGroups(firstResults), new GroupURI[] {groupURI}, new Integer[0]);
+        Assert.assertEquals("Wrong result count", 1, firstResults.size());
+
+        final List<Group> secondResults = new ArrayList<>();
+        testSubject.writeGroups(collectGroups(secondResults), new GroupURI[0],
+                                new Integer[] {firstResults.get(0).getGid()});
+        Assert.assertEquals("Wrong result", groupURI, secondResults.get(0).getGroupURI());
+        Assert.assertEquals("Should not call delegate", 1, delegate.writeGroupsCount);
+    }
+
+    @Test
+    public void fullMapStreamed() throws Exception {
+        final CountingPosixClient delegate = new CountingPosixClient();
+        final CachingPosixClient testSubject = new CachingPosixClient(delegate, 100, 60000L, 60000L);
+
+        testSubject.writeUsers(collectUsers(new ArrayList<>()), new String[] {"alice", "bob"}, new Integer[0]);
+
+        // Full exports are not held in memory, and always go to the delegate.
+        final List<User> firstResults = new ArrayList<>();
+        testSubject.writeUsers(collectUsers(firstResults), new String[0], new Integer[0]);
+        Assert.assertEquals("Wrong result count", 2, firstResults.size());
+        Assert.assertEquals("Wrong delegate calls", 2, delegate.writeUsersCount);
+
+        final List<User> secondResults = new ArrayList<>();
+        testSubject.writeUsers(collectUsers(secondResults), new String[0], new Integer[0]);
+        Assert.assertEquals("Wrong result count", 2, secondResults.size());
+        Assert.assertEquals("Wrong delegate calls", 3, delegate.writeUsersCount);
+
+        // Only the version is cached.
+        final String version = testSubject.getUsersVersion();
+        Assert.assertEquals("Version should be cached", version, testSubject.getUsersVersion());
+        Assert.assertEquals("Wrong version calls", 1, delegate.usersVersionCount);
+
+        // A new mapping invalidates the version.
+        testSubject.writeUsers(collectUsers(new ArrayList<>()), new String[] {"carol"}, new Integer[0]);
+        Assert.assertNotEquals("Version should change", version, testSubject.getUsersVersion());
+        Assert.assertEquals("Wrong version calls", 2, delegate.usersVersionCount);
+    }
+
+    @Test
+    public void versionAndChangedSince() throws Exception {
+        final CountingPosixClient delegate = new CountingPosixClient();
+        final CachingPosixClient testSubject = new CachingPosixClient(delegate, 100, 60000L, 60000L);
+
+        Assert.assertEquals("Wrong empty version", "0.0", testSubject.getUsersVersion());
+
+        testSubject.writeUsers(collectUsers(new ArrayList<>()), new String[] {"alice", "bob"}, new Integer[0]);
+        final String version = testSubject.getUsersVersion();
+        Assert.assertEquals("Wrong version", delegate.getUsersVersion(), version);
+        Assert.assertEquals("Version should be stable", version, testSubject.getUsersVersion());
+
+        testSubject.writeUsers(collectUsers(new ArrayList<>()), new String[] {"carol"}, new Integer[0]);
+        Assert.assertNotEquals("Version should change", version, testSubject.getUsersVersion());
+
+        final List<User> sinceResults = new ArrayList<>();
+        testSubject.writeUsersSince(collectUsers(sinceResults), PosixClient.changeCursor(version));
+        Assert.assertEquals("Wrong since count", 1, sinceResults.size());
+        Assert.assertEquals("Wrong since result", "carol", sinceResults.get(0).getUsername());
+    }
+
+    @Test
+    public void updateUserChangesVersion() throws Exception {
+        final CountingPosixClient delegate = new CountingPosixClient();
+        final CachingPosixClient testSubject = new CachingPosixClient(delegate, 100, 60000L, 60000L);
+
+        final List<User> users = new ArrayList<>();
+        testSubject.writeUsers(collectUsers(users), new String[] {"alice", "bob"}, new Integer[0]);
+        final String version = testSubject.getUsersVersion();
+        final long cursor = PosixClient.changeCursor(version);
+
+        // Same number of Users, but the change counter in the version moves, so the ETag does too.
+        testSubject.updateUser(users.get(0));
+        final String updatedVersion = testSubject.getUsersVersion();
+        Assert.assertNotEquals("Version should change", version, updatedVersion);
+        Assert.assertTrue("Change cursor should increase", PosixClient.changeCursor(updatedVersion) > cursor);
+
+        final List<User> changed = new ArrayList<>();
+        testSubject.writeUsersSince(collectUsers(changed), cursor);
+        Assert.assertEquals("Wrong since count", 1, changed.size());
+        Assert.assertEquals("Wrong since result", users.get(0).getUsername(), changed.get(0).getUsername());
+    }
+
+    @Test
+    public void versionReadDuringWrite() throws Exception {
+        final CountingPosixClient delegate = new CountingPosixClient();
+        final CachingPosixClient testSubject = new CachingPosixClient(delegate, 100, 60000L, 60000L);
+        testSubject.writeUsers(collectUsers(new ArrayList<>()), new String[] {"alice"}, new Integer[0]);
+
+        // Another request reads the version while the new mapping is being inserted.
+        final List<String> concurrentVersions = new ArrayList<>();
+        delegate.beforeWrite = () -> concurrentVersions.add(testSubject.getUsersVersion());
+        testSubject.writeUsers(collectUsers(new ArrayList<>()), new String[] {"bob"}, new Integer[0]);
+        delegate.beforeWrite = null;
+
+        Assert.assertEquals("Wrong concurrent reads", 1, concurrentVersions.size());
+        Assert.assertEquals("Version should be current", delegate.getUsersVersion(), testSubject.getUsersVersion());
+        Assert.assertNotEquals("Version should change", concurrentVersions.get(0), testSubject.getUsersVersion());
+    }
+
+    @Test
+    public void versionExpires() throws Exception {
+        final AtomicLong now = new AtomicLong(1000000L);
+        final CountingPosixClient delegate = new CountingPosixClient();
+        final CachingPosixClient testSubject = new CachingPosixClient(delegate, 100, 60000L, 1000L, now::get);
+
+        testSubject.getUsersVersion();
+        now.addAndGet(1000L);
+        testSubject.getUsersVersion();
+        Assert.assertEquals("Version should be cached", 1, delegate.usersVersionCount);
+
+        now.addAndGet(1L);
+        testSubject.getUsersVersion();
+        Assert.assertEquals("Version should be re-read", 2, delegate.usersVersionCount);
+    }
+
+    @Test
+    public void changedSinceNewDefaultGroup() throws Exception {
+        final CountingPosixClient delegate = new CountingPosixClient();
+        final CachingPosixClient testSubject = new CachingPosixClient(delegate, 100, 60000L, 60000L);
+
+        // A Group from the GID range exists before the User is created.
+        final List<Group> groups = new ArrayList<>();
+        testSubject.writeGroups(collectGroups(groups), new GroupURI[] {
+            new GroupURI(URI.create("ivo://example.org/gms?group-a"))}, new Integer[0]);
+        final long cursor = PosixClient.changeCursor(testSubject.getGroupsVersion());
+
+        final List<User> users = new ArrayList<>();
+        testSubject.writeUsers(collectUsers(users), new String[] {"dave"}, new Integer[0]);
+        final int uid = users.get(0).getUid();
+        Assert.assertTrue("Default GID should be below the existing GID", uid < groups.get(0).getGid());
+
+        // The default Group of the new User is included, although its GID is lower.
+        final List<Group> changed = new ArrayList<>();
+        testSubject.writeGroupsSince(collectGroups(changed), cursor);
+        Assert.assertEquals("Wrong since count", 1, changed.size());
+        Assert.assertEquals("Wrong since GID", Integer.valueOf(uid), changed.get(0).getGid());
+        Assert.assertEquals("Wrong since group", PosixClient.DEFAULT_GROUP_AUTHORITY + "?dave",
+                            changed.get(0).getGroupURI().getURI().toString());
+    }
+
+    @Test
+    public void boundedCache() {
+        final MappingCache<Integer, String> testSubject = new MappingCache<>(2, 0L);
+        testSubject.put(1, "one");
+        testSubject.put(2, "two");
+        Assert.assertEquals("Wrong value", "one", testSubject.get(1));
+        testSubject.put(3, "three");
+
+        // Least recently used entry is evicted.
+        Assert.assertNull("Should be evicted", testSubject.get(2));
+        Assert.assertEquals("Wrong value", "one", testSubject.get(1));
+        Assert.assertEquals("Wrong value", "three", testSubject.get(3));
+        Assert.assertEquals("Wrong eviction count", 1L, testSubject.getEvictions());
+    }
+
+    @Test
+    public void expiredEntry() {
+        final AtomicLong now = new AtomicLong(1000000L);
+        final MappingCache<Integer, String> testSubject = new MappingCache<>(2, 100L, now::get);
+        testSubject.put(1, "one");
+        now.addAndGet(99L);
+        Assert.assertEquals("Wrong value", "one", testSubject.get(1));
+        now.addAndGet(1L);
+        Assert.assertNull("Should be expired", testSubject.get(1));
+    }
+
+    private static UserWriter collectUsers(final List<User> results) {
+        return userIterator -> userIterator.forEachRemaining(results::add);
+    }
+
+    private static GroupWriter collectGroups(final List<Group> results) {
+        return groupIterator -> groupIterator.forEachRemaining(results::add);
+    }
+
+    /**
+     * In-memory PosixClient that creates mappings on demand and counts calls.  Like the database, each User gets a
+     * default Group with its UID, and mappings are numbered in the order they change.
+     */
+    private static final class CountingPosixClient implements PosixClient {
+        private final Map<String, User> users = new TreeMap<>();
+        private final Map<GroupURI, Group> groups = new TreeMap<>((o1, o2) -> o1.getURI().compareTo(o2.getURI()));
+        private final Map<Object, Long> changes = new HashMap<>();
+        private long lastChange = 0L;
+        private int writeUsersCount = 0;
+        private int writeGroupsCount = 0;
+        private int usersVersionCount = 0;
+        private List<String> lastUsernames;
+        private Callable<?> beforeWrite;
+
+        @Override
+        public User getUser(String userId) {
+            return users.get(userId);
+        }
+
+        @Override
+        public User saveUser(User user) {
+            user.setUid(10000 + users.size());
+            users.put(user.getUsername(), user);
+            changes.put(user.getUsername(), ++lastChange);
+
+            final Group defaultGroup = new Group(new GroupURI(URI.create(PosixClient.DEFAULT_GROUP_AUTHORITY + "?"
+                                                                         + user.getUsername())));
+            defaultGroup.setGid(user.getUid());
+            groups.put(defaultGroup.getGroupURI(), defaultGroup);
+            changes.put(defaultGroup.getGroupURI(), ++lastChange);
+            return user;
+        }
+
+        @Override
+        public User updateUser(User user) {
+            changes.put(user.getUsername(), ++lastChange);
+            return user;
+        }
+
+        @Override
+        public Group getGroup(GroupURI groupURI) {
+            return groups.get(groupURI);
+        }
+
+        @Override
+        public Group saveGroup(Group group) {
+            group.setGid(90000 + groups.size());
+            groups.put(group.getGroupURI(), group);
+            changes.put(group.getGroupURI(), ++lastChange);
+            return group;
+        }
+
+        @Override
+        public void close() {
+        }
+
+        @Override
+        public void writeUsers(UserWriter writer, String[] usernames, Integer[] uidConstraints) throws Exception {
+            writeUsersCount++;
+            if (beforeWrite != null) {
+                beforeWrite.call();
+            }
+            lastUsernames = Arrays.asList(usernames);
+            final List<Integer> uids = Arrays.asList(uidConstraints);
+            for (final String username : usernames) {
+                if (!users.containsKey(username)) {
+                    saveUser(new User(username));
+                }
+            }
+
+            final List<User> results = new ArrayList<>();
+            users.values().stream()
+                 .filter(u -> (usernames.length == 0 && uidConstraints.length == 0)
+                              || lastUsernames.contains(u.getUsername()) || uids.contains(u.getUid()))
+                 .forEach(results::add);
+            writer.write(results.iterator());
+        }
+
+        @Override
+        public void writeUsersSince(UserWriter writer, long sinceChange) throws Exception {
+            final List<User> results = new ArrayList<>();
+            users.values().stream().filter(u -> changes.get(u.getUsername()) > sinceChange)
+                 .sorted(Comparator.comparing(u -> changes.get(u.getUsername()))).forEach(results::add);
+            writer.write(results.iterator());
+        }
+
+        @Override
+        public void writeGroupsSince(GroupWriter writer, long sinceChange) throws Exception {
+            final List<Group> results = new ArrayList<>();
+            groups.values().stream().filter(g -> changes.get(g.getGroupURI()) > sinceChange)
+                  .sorted(Comparator.comparing(g -> changes.get(g.getGroupURI()))).forEach(results::add);
+            writer.write(results.iterator());
+        }
+
+        @Override
+        public String getUsersVersion() {
+            usersVersionCount++;
+            return PosixClient.mappingVersion(users.keySet().stream().map(changes::get).max(Long::compare)
+                                                   .orElse(null), users.size());
+        }
+
+        @Override
+        public String getGroupsVersion() {
+            return PosixClient.mappingVersion(groups.keySet().stream().map(changes::get).max(Long::compare)
+                                                    .orElse(null), groups.size());
+        }
+
+        @Override
+        public void writeGroups(GroupWriter writer, GroupURI[] groupURIConstraints, Integer[] gidConstraints)
+                throws Exception {
+            writeGroupsCount++;
+            final List<GroupURI> groupURIs = Arrays.asList(groupURIConstraints);
+            final List<Integer> gids = Arrays.asList(gidConstraints);
+            for (final GroupURI groupURI : groupURIConstraints) {
+                if (!groups.containsKey(groupURI)) {
+                    saveGroup(new Group(groupURI));
+                }
+            }
+
+            final List<Group> results = new ArrayList<>();
+            groups.values().stream()
+                  .filter(g -> (groupURIConstraints.length == 0 && gidConstraints.length == 0)
+                               || groupURIs.contains(g.getGroupURI()) || gids.contains(g.getGid()))
+                  .forEach(results::add);
+            writer.write(results.iterator());
+        }
+    }
+}
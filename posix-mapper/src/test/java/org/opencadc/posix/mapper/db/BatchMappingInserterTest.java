@@ -0,0 +1,317 @@
+package org.opencadc.posix.mapper.db;
+
+import java.lang.reflect.Proxy;
+import java.net.URI;
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.Assert;
+import org.junit.Test;
+import org.opencadc.gms.GroupURI;
+import org.opencadc.posix.mapper.Group;
+import org.opencadc.posix.mapper.User;
+
+public class BatchMappingInserterTest {
+
+    @Test
+    public void ensureUsersRoundTrips() throws Exception {
+        for (final int requestSize : new int[] {1, 10, 500}) {
+            final Set<String> existing = existing("user", requestSize);
+            final RecordingConnection recordingConnection = new RecordingConnection(existing);
+            final BatchMappingInserter testSubject = new BatchMappingInserter("mapping");
+
+            final String[] usernames = new String[requestSize];
+            for (int i = 0; i < requestSize; i++) {
+                usernames[i] = "user" + i;
+            }
+
+            final List<User> created = testSubject.ensureUsers(recordingConnection.connection(), usernames);
+            Assert.assertEquals("Wrong created count for " + requestSize, requestSize - existing.size(),
+                                created.size());
+            created.forEach(user -> Assert.assertTrue("Should be new " + user, user.getUid() > 0));
+            Assert.assertEquals("Round trips should not depend on request size (" + requestSize + ")",
+                                3, recordingConnection.executeCount.get());
+            Assert.assertTrue("Wrong insert SQL", recordingConnection.lastSQL.contains("ON CONFLICT"));
+        }
+    }
+
+    @Test
+    public void ensureUsersAllExisting() throws Exception {
+        final RecordingConnection recordingConnection = new RecordingConnection(Set.of("user0", "user1"));
+        final BatchMappingInserter testSubject = new BatchMappingInserter("mapping");
+
+        final List<User> created = testSubject.ensureUsers(recordingConnection.connection(),
+                                                           new String[] {"user0", "user1", "user1"});
+        Assert.assertTrue("Nothing should be created", created.isEmpty());
+        Assert.assertEquals("Only the lookup should be issued", 1, recordingConnection.executeCount.get());
+    }
+
+    @Test
+    public void ensureGroupsRoundTrips() throws Exception {
+        for (final int requestSize : new int[] {1, 10, 500}) {
+            final Set<String> existing = existing("ivo://example.org/gms?group", requestSize);
+            final RecordingConnection recordingConnection = new RecordingConnection(existing);
+            final BatchMappingInserter testSubject = new BatchMappingInserter("mapping");
+
+            final GroupURI[] groupURIs = new GroupURI[requestSize];
+            for (int i = 0; i < requestSize; i++) {
+                groupURIs[i] = new GroupURI(URI.create("ivo://example.org/gms?group" + i));
+            }
+
+            final List<Group> created = testSubject.ensureGroups(recordingConnection.connection(), groupURIs);
+            Assert.assertEquals("Wrong created count for " + requestSize, requestSize - existing.size(),
+                                created.size());
+            Assert.assertEquals("Round trips should not depend on request size (" + requestSize + ")",
+                                3, recordingConnection.executeCount.get());
+        }
+    }
+
+    @Test
+    public void changesCommitInSequenceOrder() throws Exception {
+        final SequencedDatabase database = new SequencedDatabase();
+        final BatchMappingInserter testSubject = new BatchMappingInserter("mapping");
+        final CountDownLatch firstWritten = new CountDownLatch(1);
+        final CountDownLatch firstCommit = new CountDownLatch(1);
+        final ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            // The first writer takes its change sequence values, then is slow to commit.
+            final Future<?> first = executor.submit(() -> {
+                final Connection connection = database.connection();
+                testSubject.ensureUsers(connection, new String[] {"alice"});
+                firstWritten.countDown();
+                firstCommit.await();
+                connection.commit();
+                return null;
+            });
+            Assert.assertTrue("First writer should write", firstWritten.await(10, TimeUnit.SECONDS));
+
+            // The second writer has to wait, rather than take higher values and commit first.
+            final Future<?> second = executor.submit(() -> {
+                final Connection connection = database.connection();
+                testSubject.markUserChanged(connection, 10001);
+                testSubject.ensureGroups(connection, new GroupURI[] {
+                    new GroupURI(URI.create("ivo://example.org/gms?group"))});
+                connection.commit();
+                return null;
+            });
+            try {
+                second.get(200L, TimeUnit.MILLISECONDS);
+                Assert.fail("Second writer should wait for the first to commit");
+            } catch (TimeoutException expected) {
+                Assert.assertEquals("Nothing committed yet", 0L, database.getCursor());
+            }
+
+            firstCommit.countDown();
+            first.get(10, TimeUnit.SECONDS);
+            second.get(10, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        // Every commit only has values above those already committed, so no change is ever behind a cursor.
+        long previous = 0L;
+        for (final List<Long> commit : database.commits) {
+            for (final long changeSeq : commit) {
+                Assert.assertTrue("Change " + changeSeq + " committed after " + previous, changeSeq > previous);
+            }
+            previous = commit.stream().max(Long::compare).orElse(previous);
+        }
+        Assert.assertEquals("Wrong commits", 2, database.commits.size());
+        Assert.assertEquals("Wrong first commit", Arrays.asList(1L, 2L), database.commits.get(0));
+        Assert.assertEquals("Wrong last cursor", 4L, database.getCursor());
+    }
+
+    /**
+     * Every odd entry already exists.
+     */
+    private static Set<String> existing(final String prefix, final int requestSize) {
+        final Set<String> existing = new HashSet<>();
+        for (int i = 1; i < requestSize; i += 2) {
+            existing.add(prefix + i);
+        }
+        return existing;
+    }
+
+    /**
+     * Minimal JDBC stand-in that records every statement execution.  Lookups return the known existing values, and
+     * inserts return every value passed in with a new ID.
+     */
+    private static final class RecordingConnection {
+        private final Set<String> existing;
+        private final AtomicInteger executeCount = new AtomicInteger(0);
+        private final AtomicInteger nextID = new AtomicInteger(10000);
+        private String lastSQL;
+
+        RecordingConnection(final Set<String> existing) {
+            this.existing = existing;
+        }
+
+        Connection connection() {
+            return (Connection) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] {Connection.class},
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "createArrayOf":
+                            return array((Object[]) args[1]);
+                        case "prepareStatement":
+                            return statement((String) args[0]);
+                        default:
+                            throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+        }
+
+        private PreparedStatement statement(final String sql) {
+            final List<Object> values = new ArrayList<>();
+            return (PreparedStatement) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[] {PreparedStatement.class}, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "setArray":
+                            values.addAll(Arrays.asList((Object[]) ((Array) args[1]).getArray()));
+                            return null;
+                        case "setString":
+                        case "close":
+                            return null;
+                        case "executeQuery":
+                            executeCount.incrementAndGet();
+                            lastSQL = sql;
+                            final List<Object[]> rows = new ArrayList<>();
+                            if (sql.startsWith("SELECT")) {
+                                values.stream().filter(existing::contains).forEach(v -> rows.add(new Object[] {v}));
+                            } else {
+                                values.forEach(v -> rows.add(new Object[] {nextID.incrementAndGet(), v}));
+                            }
+                            return resultSet(rows.iterator());
+                        default:
+                            throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+        }
+    }
+
+    /**
+     * JDBC stand-in for concurrent transactions on one database.  Nothing exists yet, each inserted or updated row
+     * takes the next change sequence value when the statement runs, and the rows only become visible on commit.  The
+     * advisory lock is a semaphore released on commit.
+     */
+    private static final class SequencedDatabase {
+        private final AtomicLong changeSequence = new AtomicLong(0L);
+        private final AtomicInteger nextID = new AtomicInteger(10000);
+        private final Semaphore advisoryLock = new Semaphore(1);
+        private final List<List<Long>> commits = new ArrayList<>();
+
+        long getCursor() {
+            synchronized (commits) {
+                return commits.stream().flatMap(List::stream).max(Long::compare).orElse(0L);
+            }
+        }
+
+        Connection connection() {
+            final List<Long> pending = new ArrayList<>();
+            final boolean[] locked = new boolean[1];
+            return (Connection) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] {Connection.class},
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "createArrayOf":
+                            return array((Object[]) args[1]);
+                        case "prepareStatement":
+                            return statement((String) args[0], pending, locked);
+                        case "commit":
+                            synchronized (commits) {
+                                commits.add(new ArrayList<>(pending));
+                            }
+                            if (locked[0]) {
+                                advisoryLock.release();
+                            }
+                            return null;
+                        default:
+                            throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+        }
+
+        private PreparedStatement statement(final String sql, final List<Long> pending, final boolean[] locked) {
+            final List<Object> values = new ArrayList<>();
+            return (PreparedStatement) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[] {PreparedStatement.class}, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "setArray":
+                            values.addAll(Arrays.asList((Object[]) ((Array) args[1]).getArray()));
+                            return null;
+                        case "setString":
+                        case "setInt":
+                        case "close":
+                            return null;
+                        case "executeUpdate":
+                            pending.add(changeSequence.incrementAndGet());
+                            return 1;
+                        case "executeQuery":
+                            final List<Object[]> rows = new ArrayList<>();
+                            if (sql.contains("pg_advisory_xact_lock")) {
+                                if (!locked[0]) {
+                                    advisoryLock.acquire();
+                                    locked[0] = true;
+                                }
+                            } else if (!sql.startsWith("SELECT")) {
+                                // a new User also inserts its default Group
+                                final int rowsPerValue = sql.startsWith("WITH") ? 2 : 1;
+                                for (final Object value : values) {
+                                    for (int i = 0; i < rowsPerValue; i++) {
+                                        pending.add(changeSequence.incrementAndGet());
+                                    }
+                                    rows.add(new Object[] {nextID.incrementAndGet(), value});
+                                }
+                            }
+                            return resultSet(rows.iterator());
+                        default:
+                            throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+        }
+    }
+
+    private static Array array(final Object[] values) {
+        return (Array) Proxy.newProxyInstance(BatchMappingInserterTest.class.getClassLoader(),
+            new Class<?>[] {Array.class}, (proxy, method, args) -> {
+                if ("getArray".equals(method.getName())) {
+                    return values;
+                }
+                throw new UnsupportedOperationException(method.getName());
+            });
+    }
+
+    private static ResultSet resultSet(final Iterator<Object[]> rows) {
+        final Object[][] current = new Object[1][];
+        return (ResultSet) Proxy.newProxyInstance(BatchMappingInserterTest.class.getClassLoader(),
+            new Class<?>[] {ResultSet.class}, (proxy, method, args) -> {
+                switch (method.getName()) {
+                    case "next":
+                        current[0] = rows.hasNext() ? rows.next() : null;
+                        return current[0] != null;
+                    case "getString":
+                        return current[0][(Integer) args[0] - 1].toString();
+                    case "getInt":
+                        return current[0][(Integer) args[0] - 1];
+                    case "close":
+                        return null;
+                    default:
+                        throw new UnsupportedOperationException(method.getName());
+                }
+            });
+    }
+}
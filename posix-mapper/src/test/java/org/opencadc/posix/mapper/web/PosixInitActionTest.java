@@ -0,0 +1,219 @@
+package org.opencadc.posix.mapper.web;
+
+import ca.nrc.cadc.db.StandaloneContextFactory;
+import ca.nrc.cadc.rest.SyncInput;
+import ca.nrc.cadc.rest.SyncOutput;
+import ca.nrc.cadc.util.Log4jInit;
+import ca.nrc.cadc.util.PropertiesReader;
+import java.io.ByteArrayOutputStream;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletResponse;
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.easymock.EasyMock;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.opencadc.gms.GroupURI;
+import org.opencadc.posix.mapper.Group;
+import org.opencadc.posix.mapper.PosixClient;
+import org.opencadc.posix.mapper.User;
+import org.opencadc.posix.mapper.web.group.GroupWriter;
+import org.opencadc.posix.mapper.web.user.UserWriter;
+
+public class PosixInitActionTest {
+    private static final Logger LOGGER = Logger.getLogger(PosixInitActionTest.class);
+
+    static {
+        Log4jInit.setLevel("org.opencadc.posix", Level.INFO);
+        // config read when the GET actions are loaded
+        System.setProperty(PropertiesReader.class.getName() + ".dir", "src/test/config");
+    }
+
+    @Before
+    public void initJNDI() throws Exception {
+        StandaloneContextFactory.initJNDI();
+        CountingPosixClient.INSTANCES.set(0);
+    }
+
+    @After
+    public void teardownJNDI() throws Exception {
+        PosixInitAction.unbindPosixClient();
+    }
+
+    @Test
+    public void sharedClientAcrossRequests() throws Exception {
+        final AtomicInteger initCount = new AtomicInteger(0);
+        final Supplier<PosixClient> factory = () -> {
+            initCount.incrementAndGet();
+            return new CountingPosixClient();
+        };
+
+        // Each servlet (users and groups) runs its own init action.
+        final PosixClient posixClient = PosixInitAction.initPosixClient(factory);
+        Assert.assertSame("Wrong client", posixClient, PosixInitAction.initPosixClient(factory));
+
+        final int requestCount = 1000;
+        final long start = System.nanoTime();
+        for (int i = 0; i < requestCount; i++) {
+            final org.opencadc.posix.mapper.web.user.GetAction getUsers =
+                    new org.opencadc.posix.mapper.web.user.GetAction();
+            getUsers.setSyncInput(new TestSyncInput("user", "user" + i));
+            getUsers.setSyncOutput(createSyncOutput());
+            getUsers.doAction();
+
+            final org.opencadc.posix.mapper.web.group.GetAction getGroups =
+                    new org.opencadc.posix.mapper.web.group.GetAction();
+            getGroups.setSyncInput(new TestSyncInput("gid", Integer.toString(10000 + i)));
+            getGroups.setSyncOutput(createSyncOutput());
+            getGroups.doAction();
+        }
+        final long elapsedNanos = System.nanoTime() - start;
+        LOGGER.info("sharedClientAcrossRequests: " + (2 * requestCount) + " requests in "
+                    + (elapsedNanos / 1_000_000L) + "ms");
+
+        final CountingPosixClient countingPosixClient = (CountingPosixClient) posixClient;
+        Assert.assertEquals("Should only be initialized once", 1, initCount.get());
+        Assert.assertEquals("Should only be one client", 1, CountingPosixClient.INSTANCES.get());
+        Assert.assertEquals("Wrong user requests", requestCount, countingPosixClient.userRequests.get());
+        Assert.assertEquals("Wrong group requests", requestCount, countingPosixClient.groupRequests.get());
+        Assert.assertEquals("Should not be closed", 0, countingPosixClient.closeCount.get());
+    }
+
+    private static SyncOutput createSyncOutput() throws Exception {
+        final ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+        final HttpServletResponse mockResponse = EasyMock.createNiceMock(HttpServletResponse.class);
+        EasyMock.expect(mockResponse.getOutputStream()).andReturn(new ServletOutputStream() {
+            @Override
+            public boolean isReady() {
+                return true;
+            }
+
+            @Override
+            public void setWriteListener(WriteListener writeListener) {
+            }
+
+            @Override
+            public void write(int b) {
+                byteArrayOutputStream.write(b);
+            }
+        }).anyTimes();
+        EasyMock.replay(mockResponse);
+        return new SyncOutput(mockResponse);
+    }
+
+    // Single valued request parameter, and no headers.
+    private static final class TestSyncInput extends SyncInput {
+        private final String parameterName;
+        private final String parameterValue;
+
+        TestSyncInput(final String parameterName, final String parameterValue) {
+            this.parameterName = parameterName;
+            this.parameterValue = parameterValue;
+        }
+
+        @Override
+        public String getHeader(String name) {
+            return null;
+        }
+
+        @Override
+        public String getParameter(String name) {
+            return parameterName.equals(name) ? parameterValue : null;
+        }
+
+        @Override
+        public List<String> getParameters(String name) {
+            return parameterName.equals(name) ? Collections.singletonList(parameterValue) : null;
+        }
+    }
+
+    @Test
+    public void closeOnShutdown() throws Exception {
+        final CountingPosixClient posixClient = new CountingPosixClient();
+        PosixInitAction.bindPosixClient(posixClient);
+
+        PosixInitAction.unbindPosixClient();
+        Assert.assertNull("Should be unbound", PosixInitAction.lookupPosixClient());
+        Assert.assertEquals("Should be closed once", 1, posixClient.closeCount.get());
+
+        // Second servlet shutdown is a no-op.
+        PosixInitAction.unbindPosixClient();
+        Assert.assertEquals("Should be closed once", 1, posixClient.closeCount.get());
+    }
+
+    private static final class CountingPosixClient implements PosixClient {
+        private static final AtomicInteger INSTANCES = new AtomicInteger(0);
+        private final AtomicInteger closeCount = new AtomicInteger(0);
+        private final AtomicInteger userRequests = new AtomicInteger(0);
+        private final AtomicInteger groupRequests = new AtomicInteger(0);
+
+        CountingPosixClient() {
+            INSTANCES.incrementAndGet();
+        }
+
+        @Override
+        public User getUser(String userId) {
+            return null;
+        }
+
+        @Override
+        public User saveUser(User user) {
+            return user;
+        }
+
+        @Override
+        public User updateUser(User user) {
+            return user;
+        }
+
+        @Override
+        public Group getGroup(GroupURI groupURI) {
+            return null;
+        }
+
+        @Override
+        public Group saveGroup(Group group) {
+            return group;
+        }
+
+        @Override
+        public void close() {
+            closeCount.incrementAndGet();
+        }
+
+        @Override
+        public void writeUsers(UserWriter writer, String[] usernames, Integer[] uidConstraints) {
+            userRequests.incrementAndGet();
+        }
+
+        @Override
+        public void writeGroups(GroupWriter writer, GroupURI[] groupURIConstraints, Integer[] gidConstraints) {
+            groupRequests.incrementAndGet();
+        }
+
+        @Override
+        public void writeUsersSince(UserWriter writer, long sinceChange) {
+        }
+
+        @Override
+        public void writeGroupsSince(GroupWriter writer, long sinceChange) {
+        }
+
+        @Override
+        public String getUsersVersion() {
+            return PosixClient.mappingVersion(null, 0L);
+        }
+
+        @Override
+        public String getGroupsVersion() {
+            return PosixClient.mappingVersion(null, 0L);
+        }
+    }
+}